@@ -42,82 +42,147 @@ public class Parse {
   }
 
   public Parse(String text, String tags[], int level, int offset) throws FitParseException {
-    String lc = text.toLowerCase();
-    int startTag = lc.indexOf("<" + tags[level]);
-    int endTag = lc.indexOf(">", startTag) + 1;
-//		int startEnd = lc.indexOf("</" + tags[level], endTag);
-    int startEnd = findMatchingEndTag(lc, endTag, tags[level], offset);
-    int endEnd = lc.indexOf(">", startEnd) + 1;
-    int startMore = lc.indexOf("<" + tags[level], endEnd);
-    if (startTag < 0 || endTag < 0 || startEnd < 0 || endEnd < 0) {
-      throw new FitParseException("Can't find tag: " + tags[level], offset);
-    }
-
-    leader = text.substring(0, startTag);
-    tag = text.substring(startTag, endTag);
-    body = text.substring(endTag, startEnd);
-    end = text.substring(startEnd, endEnd);
-    trailer = text.substring(endEnd);
-
-    if (level + 1 < tags.length) {
-      parts = new Parse(body, tags, level + 1, offset + endTag);
-      body = null;
-    } else { // Check for nested table
-      int index = body.indexOf("<" + tags[0]);
-      if (index >= 0) {
-        parts = new Parse(body, tags, 0, offset + endTag);
-        body = "";
-      }
-    }
+    new Parser(text, tags, offset).parse(this, level, 0, text.length());
+  }
 
-    if (startMore >= 0) {
-      more = new Parse(trailer, tags, level, offset + endEnd);
-      trailer = null;
-    }
+  private Parse() {
   }
 
   /* Added by Rick Mugridge, Feb 2005 */
   protected static int findMatchingEndTag(String lc, int matchFromHere, String tag, int offset) throws FitParseException {
-    int fromHere = matchFromHere;
+    return findMatchingEndTag(lc, matchFromHere, lc.length(), tag, offset);
+  }
+
+  private static int findMatchingEndTag(String lc, int matchFromHere, int to, String tag, int offset) throws FitParseException {
+    String startTag = "<" + tag;
+    String endTag = "</" + tag;
     int count = 1;
-    int startEnd = 0;
-    while (count > 0) {
-      int embeddedTag = lc.indexOf("<" + tag, fromHere);
-      int embeddedTagEnd = lc.indexOf("</" + tag, fromHere);
-      // Which one is closer?
-      if (embeddedTag < 0 && embeddedTagEnd < 0)
-        throw new FitParseException("Can't find tag: " + tag, offset);
-      if (embeddedTag < 0)
-        embeddedTag = Integer.MAX_VALUE;
-      if (embeddedTagEnd < 0)
-        embeddedTagEnd = Integer.MAX_VALUE;
-      if (embeddedTag < embeddedTagEnd) {
+    int fromHere = matchFromHere;
+    int embedded;
+    while ((embedded = indexOf(lc, "<", fromHere, to)) >= 0) {
+      if (lc.startsWith(endTag, embedded) && embedded + endTag.length() <= to) {
+        if (--count == 0)
+          return embedded;
+      } else if (lc.startsWith(startTag, embedded) && embedded + startTag.length() <= to) {
         count++;
-        startEnd = embeddedTag;
-        fromHere = lc.indexOf(">", embeddedTag) + 1;
-      } else if (embeddedTagEnd < embeddedTag) {
-        count--;
-        startEnd = embeddedTagEnd;
-        fromHere = lc.indexOf(">", embeddedTagEnd) + 1;
+      } else {
+        fromHere = embedded + 1;
+        continue;
       }
+      fromHere = indexOf(lc, ">", embedded, to) + 1;
+      if (fromHere == 0)
+        break;
+    }
+    throw new FitParseException("Can't find tag: " + tag, offset);
+  }
+
+  /**
+   * The index of pattern in s between from and to, or -1.  Unlike
+   * String.indexOf this never looks past the end of the element being
+   * parsed, which keeps parsing linear in the length of the document.
+   */
+  private static int indexOf(String s, String pattern, int from, int to) {
+    char first = pattern.charAt(0);
+    int last = to - pattern.length();
+    for (int i = from; i <= last; i++) {
+      if (s.charAt(i) == first && s.startsWith(pattern, i))
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Parses a document in one pass over a single lower-cased copy, using
+   * offsets into it instead of substrings of the remaining text.  Siblings
+   * are linked in a loop, so only nesting (tables, rows, cells and nested
+   * tables) uses the stack.
+   */
+  private static class Parser {
+    private final String text;
+    private final String lc;
+    private final String[] tags;
+    private final int offset;
+
+    Parser(String text, String[] tags, int offset) {
+      this.text = text;
+      this.lc = lowerCase(text);
+      this.tags = tags;
+      this.offset = offset;
+    }
+
+    void parse(Parse first, int level, int from, int to) throws FitParseException {
+      String startPattern = "<" + tags[level];
+      Parse parse = first;
+      int start = from;
+      while (true) {
+        int startTag = indexOf(lc, startPattern, start, to);
+        int endTag = startTag < 0 ? -1 : indexOf(lc, ">", startTag, to) + 1;
+        if (endTag <= 0)
+          throw new FitParseException("Can't find tag: " + tags[level], offset + start);
+        int startEnd = findMatchingEndTag(lc, endTag, to, tags[level], offset + start);
+        int endEnd = indexOf(lc, ">", startEnd, to) + 1;
+        if (endEnd <= 0)
+          throw new FitParseException("Can't find tag: " + tags[level], offset + start);
+
+        parse.leader = text.substring(start, startTag);
+        parse.tag = text.substring(startTag, endTag);
+        parse.end = text.substring(startEnd, endEnd);
+
+        if (level + 1 < tags.length) {
+          parse.parts = new Parse();
+          parse(parse.parts, level + 1, endTag, startEnd);
+        } else if (indexOf(text, "<" + tags[0], endTag, startEnd) >= 0) {
+          parse.parts = new Parse();
+          parse(parse.parts, 0, endTag, startEnd);
+          parse.body = "";
+        } else {
+          parse.body = text.substring(endTag, startEnd);
+        }
+
+        if (indexOf(lc, startPattern, endEnd, to) < 0) {
+          parse.trailer = text.substring(endEnd, to);
+          return;
+        }
+        parse.more = new Parse();
+        parse = parse.more;
+        start = endEnd;
+      }
+    }
+
+    private static String lowerCase(String text) {
+      char[] chars = text.toCharArray();
+      for (int i = 0; i < chars.length; i++)
+        chars[i] = Character.toLowerCase(chars[i]);
+      return new String(chars);
     }
-    return startEnd;
   }
 
   public int size() {
-    return more == null ? 1 : more.size() + 1;
+    int size = 1;
+    for (Parse p = more; p != null; p = p.more)
+      size++;
+    return size;
   }
 
   public Parse last() {
-    return more == null ? this : more.last();
+    Parse last = this;
+    while (last.more != null)
+      last = last.more;
+    return last;
   }
 
   public Parse leaf() {
-    return parts == null ? this : parts.leaf();
+    Parse leaf = this;
+    while (leaf.parts != null)
+      leaf = leaf.parts;
+    return leaf;
   }
 
   public Parse at(int i) {
-    return i == 0 || more == null ? this : more.at(i - 1);
+    Parse p = this;
+    for (; i != 0 && p.more != null; i--)
+      p = p.more;
+    return p;
   }
 
   public Parse at(int i, int j) {
@@ -200,18 +265,21 @@ public class Parse {
   }
 
   public void print(PrintWriter out) {
-    out.print(leader);
-    out.print(tag);
-    if (parts != null) {
-      parts.print(out);
-    } else {
-      out.print(body);
-    }
-    out.print(end);
-    if (more != null) {
-      more.print(out);
-    } else {
-      out.print(trailer);
+    Parse p = this;
+    while (true) {
+      out.print(p.leader);
+      out.print(p.tag);
+      if (p.parts != null) {
+        p.parts.print(out);
+      } else {
+        out.print(p.body);
+      }
+      out.print(p.end);
+      if (p.more == null) {
+        out.print(p.trailer);
+        return;
+      }
+      p = p.more;
     }
   }
 }
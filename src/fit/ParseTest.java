@@ -3,6 +3,9 @@
 // Released under the terms of the GNU General Public License version 2 or later.
 package fit;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 import junit.framework.TestCase;
 import fit.exception.FitParseException;
 
@@ -136,4 +139,41 @@ public class ParseTest extends TestCase {
     assertEquals(1, sub.at(0, 1, 0).size());
   }
 
-}
\ No newline at end of file
+  public void testParseExceptionInLaterSibling() {
+    try {
+      new Parse("<table><tr><td>one</td></tr></table><table><tr><th>two</th></tr></table>");
+    }
+    catch (FitParseException e) {
+      assertEquals(47, e.getErrorOffset());
+      assertEquals("Can't find tag: td", e.getMessage());
+      return;
+    }
+    fail("exptected exception not thrown");
+  }
+
+  public void testTagsDoNotMatchPastTheEndOfTheirParent() throws Exception {
+    Parse p = new Parse("<table><tr></tr></table><table><tr><td>cell</td></tr></table>", new String[]{"table", "tr"});
+    assertEquals(2, p.size());
+    assertEquals("", p.parts.body);
+    assertEquals("<td>cell</td>", p.more.parts.body);
+  }
+
+  public void testPrintingReproducesTheDocument() throws Exception {
+    String document = "leader<TABLE><tr><td>one</td><td>two</td></tr>\n<tr><td>three</td></tr></TABLE>" +
+      "between<table><tr><td>four</td></tr></table>trailer";
+    StringWriter printed = new StringWriter();
+    new Parse(document).print(new PrintWriter(printed));
+    assertEquals(document, printed.toString());
+  }
+
+  public void testLongSiblingChains() throws Exception {
+    StringBuilder document = new StringBuilder("<table>");
+    for (int row = 0; row < 100000; row++)
+      document.append("<tr><td>").append(row).append("</td></tr>");
+    Parse p = new Parse(document.append("</table>").toString());
+    assertEquals(100000, p.parts.size());
+    assertEquals("99999", p.parts.last().leaf().body);
+    assertEquals("50000", p.at(0, 50000, 0).body);
+    assertEquals("99999", p.at(0, 200000, 0).body);
+  }
+}
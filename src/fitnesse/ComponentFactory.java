@@ -32,6 +32,13 @@ public class ComponentFactory {
   public static final String CONTENT_FILTER = "ContentFilter";
   public static final String VERSIONS_CONTROLLER = "VersionsController";
   public static final String DEFAULT_NEWPAGE_CONTENT = "newpage.default.content";
+  public static final String PAGE_TREE_INDEX_THREADS = "PageTreeIndexThreads";
+  public static final String PAGE_TREE_INDEX_FILE = "PageTreeIndexFile";
+  public static final String PAGE_TREE_INDEX_RESCAN_INTERVAL = "PageTreeIndexRescanInterval";
+  public static final String SEARCH_INDEX_FILE = "SearchIndexFile";
+  public static final String LOG_ROTATE_DAILY = "LogRotateDaily";
+  public static final String LOG_MAXIMUM_FILE_SIZE = "LogMaximumFileSize";
+  public static final String LOG_COMPRESS_ROTATED_FILES = "LogCompressRotatedFiles";
 
   private final Properties loadedProperties;
   private final String propertiesLocation;
@@ -2,7 +2,9 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse;
 
+import fitnesse.components.RecentChanges;
 import fitnesse.http.*;
+import fitnesse.responders.run.slimResponder.SlimTestSystem;
 import fitnesse.socketservice.SocketService;
 import fitnesse.testutil.MockSocket;
 
@@ -76,6 +78,11 @@ public class FitNesse {
       theService.close();
       theService = null;
     }
+    SlimTestSystem.shutDownSlimProcessPool();
+    if (context.root != null)
+      RecentChanges.forPage(context.root).flush();
+    if (context.logger != null)
+      context.logger.close();
   }
 
   private void establishRequiredDirectories() {
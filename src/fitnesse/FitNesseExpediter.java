@@ -3,11 +3,12 @@
 package fitnesse;
 
 import fitnesse.components.LogData;
+import fitnesse.http.FileResponseSender;
 import fitnesse.http.HttpException;
 import fitnesse.http.Request;
 import fitnesse.http.Response;
-import fitnesse.http.ResponseSender;
 import fitnesse.responders.ErrorResponder;
+import fitnesse.socketservice.Connection;
 import util.StringUtil;
 
 import java.io.IOException;
@@ -16,12 +17,19 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.GregorianCalendar;
+import java.util.Timer;
+import java.util.TimerTask;
 
 //import fitnesseMain.FitNesseMain;
 
-public class FitNesseExpediter implements ResponseSender {
+public class FitNesseExpediter implements FileResponseSender {
+  private static final Timer requestTimer = new Timer("FitNesseExpediter request timer", true);
   private Socket socket;
+  private Connection connection;
   private InputStream input;
   private OutputStream output;
   private Request request;
@@ -29,8 +37,11 @@ public class FitNesseExpediter implements ResponseSender {
   private FitNesseContext context;
   protected long requestParsingTimeLimit;
   private long requestProgress;
-  private long requestParsingDeadline;
   private volatile boolean hasError;
+  private volatile boolean keepAlive;
+  private volatile boolean broken;
+  private boolean parsingFinished;
+  private boolean parsingTimedOut;
 
   public FitNesseExpediter(Socket s,
                            FitNesseContext context) throws Exception {
@@ -41,6 +52,13 @@ public class FitNesseExpediter implements ResponseSender {
     requestParsingTimeLimit = 10000;
   }
 
+  public FitNesseExpediter(Connection connection,
+                           FitNesseContext context) throws Exception {
+    this(connection.getSocket(), context);
+    this.connection = connection;
+    input = connection.getInputStream();
+  }
+
   public void start() throws Exception {
     try {
       Request request = makeRequest();
@@ -49,12 +67,20 @@ public class FitNesseExpediter implements ResponseSender {
     }
     catch (SocketException se) {
       // can be thrown by makeResponse or sendResponse.
+      abandonConnection();
     }
     catch (Throwable e) {
       e.printStackTrace();
+      abandonConnection();
     }
   }
 
+  private void abandonConnection() {
+    keepAlive = false;
+    if (connection != null)
+      connection.close();
+  }
+
   public void setRequestParsingTimeLimit(long t) {
     requestParsingTimeLimit = t;
   }
@@ -69,13 +95,39 @@ public class FitNesseExpediter implements ResponseSender {
       output.flush();
     }
     catch (IOException stopButtonPressed_probably) {
+      broken = true;
+    }
+  }
+
+  public void sendFile(FileChannel file, long position, long count) throws Exception {
+    try {
+      output.flush();
+      WritableByteChannel channel = socket.getChannel();
+      if (channel == null)
+        channel = Channels.newChannel(output);
+      while (count > 0) {
+        long sent = file.transferTo(position, count, channel);
+        if (sent <= 0) {
+          broken = true;
+          break;
+        }
+        position += sent;
+        count -= sent;
+      }
+      output.flush();
+    }
+    catch (IOException stopButtonPressed_probably) {
+      broken = true;
     }
   }
 
   public void close() throws Exception {
     try {
       log(socket, request, response);
-      socket.close();
+      if (keepAlive && !broken)
+        connection.release();
+      else
+        socket.close();
     }
     catch (IOException e) {
       e.printStackTrace();
@@ -83,6 +135,7 @@ public class FitNesseExpediter implements ResponseSender {
   }
 
   public Socket getSocket() throws Exception {
+    keepAlive = false;
     return socket;
   }
 
@@ -92,15 +145,21 @@ public class FitNesseExpediter implements ResponseSender {
   }
 
   public void sendResponse() throws Exception {
+    if (parsingTimedOut)
+      return;
+    keepAlive = connection != null && shouldKeepAlive(request, response);
+    response.addHeader("Connection", keepAlive ? "keep-alive" : "close");
     response.readyToSend(this);
   }
 
+  private boolean shouldKeepAlive(Request request, Response response) {
+    return !hasError && request.isKeepAlive() && response.isSelfDelimiting();
+  }
+
   private Response makeResponse(Request request) throws Exception {
     try {
-      Thread parseThread = createParsingThread(request);
-      parseThread.start();
-
-      waitForRequest(request);
+      if (!parseRequest(request))
+        return response;
       if (!hasError)
         response = createGoodResponse(request);
     }
@@ -121,23 +180,64 @@ public class FitNesseExpediter implements ResponseSender {
     responder = context.authenticator.authenticate(context, request, responder);
     response = responder.makeResponse(context, request);
     response.addHeader("Server", "FitNesse-" + FitNesse.VERSION);
-    response.addHeader("Connection", "close");
     return response;
   }
 
-  private void waitForRequest(Request request) throws InterruptedException {
-    long now = System.currentTimeMillis();
-    requestParsingDeadline = now + requestParsingTimeLimit;
+  private boolean parseRequest(Request request) throws Exception {
+    TimerTask watchdog = startParsingWatchdog(request);
+    Exception parseError = null;
+    try {
+      request.parse();
+    }
+    catch (Exception e) {
+      parseError = e;
+    }
+    finally {
+      watchdog.cancel();
+    }
+    if (hasTimedOut())
+      return false;
+    if (parseError instanceof HttpException)
+      reportError(((HttpException) parseError).getStatus(), parseError.getMessage());
+    else if (parseError != null)
+      reportError(parseError);
+    return true;
+  }
+
+  private synchronized boolean hasTimedOut() {
+    parsingFinished = true;
+    return parsingTimedOut;
+  }
+
+  private TimerTask startParsingWatchdog(final Request request) {
     requestProgress = 0;
-    while (!hasError && !request.hasBeenParsed()) {
-      Thread.sleep(10);
-      if (timeIsUp(now) && parsingIsUnproductive(request))
-        reportError(408, "The client request has been unproductive for too long.  It has timed out and will now longer be processed");
+    TimerTask watchdog = new TimerTask() {
+      public void run() {
+        if (parsingIsUnproductive(request))
+          timeOutRequest();
+      }
+    };
+    requestTimer.schedule(watchdog, requestParsingTimeLimit, requestParsingTimeLimit);
+    return watchdog;
+  }
+
+  private void timeOutRequest() {
+    synchronized (this) {
+      if (parsingFinished || request.hasBeenParsed())
+        return;
+      parsingTimedOut = true;
+    }
+    reportError(408, "The client request has been unproductive for too long.  It has timed out and will now longer be processed");
+    try {
+      response.readyToSend(this);
+    }
+    catch (Exception e) {
+      e.printStackTrace();
     }
   }
 
   private boolean parsingIsUnproductive(Request request) {
-    long updatedRequestProgress = request.numberOfBytesParsed();
+    long updatedRequestProgress = request.numberOfBytesReceived();
     if (updatedRequestProgress > requestProgress) {
       requestProgress = updatedRequestProgress;
       return false;
@@ -145,32 +245,6 @@ public class FitNesseExpediter implements ResponseSender {
       return true;
   }
 
-  private boolean timeIsUp(long now) {
-    now = System.currentTimeMillis();
-    if (now > requestParsingDeadline) {
-      requestParsingDeadline = now + requestParsingTimeLimit;
-      return true;
-    } else
-      return false;
-  }
-
-  private Thread createParsingThread(final Request request) {
-    Thread parseThread = new Thread() {
-      public synchronized void run() {
-        try {
-          request.parse();
-        }
-        catch (HttpException e) {
-          reportError(400, e.getMessage());
-        }
-        catch (Exception e) {
-          reportError(e);
-        }
-      }
-    };
-    return parseThread;
-  }
-
   private void reportError(int status, String message) {
     try {
       response = new ErrorResponder(message).makeResponse(context, request);
@@ -11,8 +11,11 @@ import fitnesse.http.ResponseParser;
 import fitnesse.responders.ResponderFactory;
 import fitnesse.testutil.MockSocket;
 import fitnesse.wiki.InMemoryPage;
+import util.FileUtil;
 import util.RegexTestCase;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
@@ -58,6 +61,21 @@ public class FitNesseExpediterTest extends RegexTestCase {
     }
   }
 
+  public void testFilesAreSentToTheSocket() throws Exception {
+    File file = FileUtil.createFile(new File("testExpediterFile.txt"), "some file content");
+    socket = new MockSocket("");
+    expediter = new FitNesseExpediter(socket, context);
+    FileInputStream input = new FileInputStream(file);
+    try {
+      expediter.send("header ".getBytes());
+      expediter.sendFile(input.getChannel(), 5, 4);
+      assertEquals("header file", socket.getOutput());
+    } finally {
+      input.close();
+      FileUtil.deleteFile(file);
+    }
+  }
+
   public void testIncompleteRequestsTimeOut() throws Exception {
     final FitNesseExpediter sender = preparePipedFitNesseExpediter();
 
@@ -4,9 +4,10 @@ package fitnesse;
 
 import java.net.Socket;
 
-import fitnesse.socketservice.SocketServer;
+import fitnesse.socketservice.Connection;
+import fitnesse.socketservice.KeepAliveSocketServer;
 
-public class FitNesseServer implements SocketServer {
+public class FitNesseServer implements KeepAliveSocketServer {
   private FitNesseContext context;
 
   public FitNesseServer(FitNesseContext context) {
@@ -27,4 +28,14 @@ public class FitNesseServer implements SocketServer {
       e.printStackTrace();
     }
   }
+
+  public void serve(Connection connection) {
+    try {
+      FitNesseExpediter sender = new FitNesseExpediter(connection, context);
+      sender.start();
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
 }
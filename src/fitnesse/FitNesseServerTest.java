@@ -2,14 +2,19 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.util.regex.Pattern;
 
 import util.RegexTestCase;
 import fitnesse.components.LogData;
 import fitnesse.http.MockRequest;
+import fitnesse.http.ResponseParser;
 import fitnesse.http.SimpleResponse;
 import fitnesse.responders.ResponderFactory;
 import fitnesse.responders.files.SampleFileUtility;
+import fitnesse.socketservice.SocketService;
 import fitnesse.testutil.MockSocket;
 import fitnesse.testutil.FitNesseUtil;
 import fitnesse.wiki.InMemoryPage;
@@ -119,6 +124,35 @@ public class FitNesseServerTest extends RegexTestCase {
     assertEquals("billy", data.username);
   }
 
+  public void testPersistentConnectionServesSeveralRequests() throws Exception {
+    crawler.addPage(root, pageOnePath, "Page One Content");
+    crawler.addPage(root, pageOneTwoPath, "Page Two Content");
+    SocketService service = new SocketService(FitNesseUtil.port, new FitNesseServer(context));
+    try {
+      Socket socket = new Socket("localhost", FitNesseUtil.port);
+      OutputStream output = socket.getOutputStream();
+      InputStream input = socket.getInputStream();
+      output.write("GET /PageOne HTTP/1.1\r\n\r\nGET /PageOne.PageTwo HTTP/1.1\r\n\r\n".getBytes());
+      output.flush();
+
+      ResponseParser first = new ResponseParser(input);
+      assertEquals("keep-alive", first.getHeader("Connection"));
+      assertSubString("Page One Content", first.getBody());
+
+      output.write("GET /PageOne HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+      output.flush();
+      ResponseParser second = new ResponseParser(input);
+      assertSubString("Page Two Content", second.getBody());
+      ResponseParser third = new ResponseParser(input);
+      assertEquals("close", third.getHeader("Connection"));
+      assertEquals(-1, input.read());
+      socket.close();
+    }
+    finally {
+      service.close();
+    }
+  }
+
   private String getSocketOutput(String requestLine, WikiPage page) throws Exception {
     MockSocket s = new MockSocket(requestLine);
     context.rootPagePath = SampleFileUtility.base;
@@ -0,0 +1,104 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.http.ChunkedResponse;
+import fitnesse.http.MockRequest;
+import fitnesse.http.ResponseSender;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Sends a response made of many small fragments, as a suite run sends its
+ * test output, over a loopback socket, writing and flushing every send as
+ * the server does, and reports the time taken, the number of writes and the
+ * bytes on the wire against the bytes of content: once plain and once for
+ * a client that accepts gzip.
+ * <p/>
+ * usage: ChunkedResponseBenchmark [fragments [fragmentSize]]
+ */
+public class ChunkedResponseBenchmark {
+  public static void main(String[] args) throws Exception {
+    int fragments = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    int fragmentSize = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+    run("plain", fragments, fragmentSize, false);
+    run("gzip", fragments, fragmentSize, true);
+  }
+
+  private static void run(String description, int fragments, int fragmentSize, boolean gzip) throws Exception {
+    ServerSocket server = new ServerSocket(0);
+    Socket client = new Socket("localhost", server.getLocalPort());
+    final Socket socket = server.accept();
+    Thread reader = drain(client.getInputStream());
+    SocketSender sender = new SocketSender(socket);
+
+    MockRequest request = new MockRequest();
+    if (gzip)
+      request.addHeader("Accept-Encoding", "gzip");
+    ChunkedResponse response = new ChunkedResponse("html");
+    response.compressIfAccepted(request);
+    long start = System.nanoTime();
+    response.readyToSend(sender);
+    for (int i = 0; i < fragments; i++)
+      response.add(fragment(i, fragmentSize));
+    response.closeAll();
+    double millis = (System.nanoTime() - start) / 1000000.0;
+    reader.join();
+    server.close();
+    System.out.println(String.format("%s, %d fragments: %.0f ms, %d writes, %d bytes on the wire for %d bytes of content",
+      description, fragments, millis, sender.writes, sender.bytes, response.getContentSize()));
+  }
+
+  private static String fragment(int i, int size) {
+    StringBuilder fragment = new StringBuilder("<tr><td>row ").append(i).append("</td><td>");
+    while (fragment.length() < size - 10)
+      fragment.append('x');
+    return fragment.append("</td></tr>").toString();
+  }
+
+  private static Thread drain(final InputStream input) {
+    Thread reader = new Thread() {
+      public void run() {
+        try {
+          byte[] bytes = new byte[65536];
+          while (input.read(bytes) != -1) {
+          }
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    reader.start();
+    return reader;
+  }
+
+  private static class SocketSender implements ResponseSender {
+    private final Socket socket;
+    private final OutputStream output;
+    int writes;
+    long bytes;
+
+    SocketSender(Socket socket) throws Exception {
+      this.socket = socket;
+      this.output = socket.getOutputStream();
+    }
+
+    public void send(byte[] bytes) throws Exception {
+      output.write(bytes);
+      output.flush();
+      writes++;
+      this.bytes += bytes.length;
+    }
+
+    public void close() throws Exception {
+      socket.close();
+    }
+
+    public Socket getSocket() throws Exception {
+      return socket;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fit.Parse;
+
+/**
+ * Parses Fit documents holding one table of a growing number of rows and
+ * reports the parse time per document and per row.  The time per row should
+ * stay flat as the table grows.
+ * <p/>
+ * usage: FitParseBenchmark [maximumRows [iterations]]
+ */
+public class FitParseBenchmark {
+  private final int maximumRows;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    int maximumRows = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    new FitParseBenchmark(maximumRows, iterations).run();
+  }
+
+  public FitParseBenchmark(int maximumRows, int iterations) {
+    this.maximumRows = maximumRows;
+    this.iterations = iterations;
+  }
+
+  public void run() throws Exception {
+    measure(Math.min(1000, maximumRows), false);
+    for (int rows = Math.max(1, maximumRows / 16); rows <= maximumRows; rows *= 2)
+      measure(rows, true);
+  }
+
+  private void measure(int rows, boolean report) throws Exception {
+    String document = makeDocument(rows);
+    int parsedRows = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      parsedRows = new Parse(document).parts.size();
+    double millisPerDocument = (System.nanoTime() - start) / 1000000.0 / iterations;
+    if (report)
+      System.out.println(String.format("%6d rows %10.2f ms/document %8.4f ms/row %9d chars",
+        parsedRows, millisPerDocument, millisPerDocument / parsedRows, document.length()));
+  }
+
+  private String makeDocument(int rows) {
+    StringBuilder document = new StringBuilder("<html><body>\n<table border=\"1\">\n");
+    document.append("<tr><td>eg.Division</td></tr>\n");
+    document.append("<tr><td>numerator</td><td>denominator</td><td>quotient()</td></tr>\n");
+    for (int row = 2; row < rows; row++)
+      document.append("<tr><td>").append(row * 10).append("</td><td>").append(row)
+        .append("</td><td>10</td></tr>\n");
+    return document.append("</table>\n</body></html>\n").toString();
+  }
+}
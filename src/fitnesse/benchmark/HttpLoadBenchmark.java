@@ -0,0 +1,168 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fitnesse.FitNesse;
+import fitnesse.FitNesseContext;
+import fitnesse.http.ResponseParser;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.InMemoryPage;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Hammers a local FitNesse server with many concurrent clients, first opening
+ * a connection per request and then reusing persistent connections, and
+ * reports requests per second and the peak number of server threads.
+ * <p/>
+ * usage: HttpLoadBenchmark [clients [requestsPerClient [port]]]
+ */
+public class HttpLoadBenchmark {
+  private static final String PAGE = "BenchmarkPage";
+
+  private final int clients;
+  private final int requestsPerClient;
+  private final int port;
+  private final AtomicInteger failures = new AtomicInteger();
+  private volatile int peakServerThreads;
+  private volatile boolean monitoring;
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : 1999;
+    new HttpLoadBenchmark(clients, requests, port).run();
+  }
+
+  public HttpLoadBenchmark(int clients, int requestsPerClient, int port) {
+    this.clients = clients;
+    this.requestsPerClient = requestsPerClient;
+    this.port = port;
+  }
+
+  public void run() throws Exception {
+    WikiPage root = InMemoryPage.makeRoot("RooT");
+    root.getPageCrawler().addPage(root, PathParser.parse(PAGE),
+      "!1 Benchmark\n|script|\n|check|value|1|\n|check|value|2|\n");
+    FitNesseContext context = FitNesseUtil.makeTestContext(root);
+    context.port = port;
+    FitNesse fitnesse = new FitNesse(context, false);
+    fitnesse.start();
+    try {
+      warmUp();
+      measure("connection per request", false);
+      measure("persistent connections", true);
+    } finally {
+      fitnesse.stop();
+    }
+  }
+
+  private void warmUp() throws Exception {
+    Socket socket = new Socket("localhost", port);
+    try {
+      request(socket.getOutputStream(), socket.getInputStream(), "close");
+    } finally {
+      socket.close();
+    }
+  }
+
+  private void measure(String label, final boolean keepAlive) throws Exception {
+    failures.set(0);
+    peakServerThreads = 0;
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(clients);
+    for (int i = 0; i < clients; i++) {
+      new Thread(new Runnable() {
+        public void run() {
+          try {
+            startGate.await();
+            if (keepAlive)
+              requestOverOneConnection();
+            else
+              requestOverNewConnections();
+          } catch (Exception e) {
+            failures.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+    Thread monitor = startThreadMonitor();
+    long start = System.currentTimeMillis();
+    startGate.countDown();
+    done.await();
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    monitoring = false;
+    monitor.join();
+
+    int requests = clients * requestsPerClient;
+    System.out.println(String.format("%-24s %6d requests in %6d ms: %8.1f requests/sec, peak server threads %4d, failures %d",
+      label, requests, elapsed, requests * 1000.0 / elapsed, peakServerThreads, failures.get()));
+  }
+
+  private void requestOverNewConnections() throws Exception {
+    for (int i = 0; i < requestsPerClient; i++) {
+      Socket socket = new Socket("localhost", port);
+      try {
+        request(socket.getOutputStream(), socket.getInputStream(), "close");
+      } finally {
+        socket.close();
+      }
+    }
+  }
+
+  private void requestOverOneConnection() throws Exception {
+    Socket socket = new Socket("localhost", port);
+    try {
+      OutputStream output = socket.getOutputStream();
+      InputStream input = socket.getInputStream();
+      for (int i = 0; i < requestsPerClient; i++)
+        request(output, input, "keep-alive");
+    } finally {
+      socket.close();
+    }
+  }
+
+  private void request(OutputStream output, InputStream input, String connection) throws Exception {
+    String request = "GET /" + PAGE + " HTTP/1.1\r\nHost: localhost\r\nConnection: " + connection + "\r\n\r\n";
+    output.write(request.getBytes());
+    output.flush();
+    ResponseParser response = new ResponseParser(input);
+    if (response.getStatus() != 200)
+      failures.incrementAndGet();
+  }
+
+  private Thread startThreadMonitor() {
+    monitoring = true;
+    Thread monitor = new Thread(new Runnable() {
+      public void run() {
+        while (monitoring) {
+          peakServerThreads = Math.max(peakServerThreads, countServerThreads());
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    });
+    monitor.start();
+    return monitor;
+  }
+
+  private int countServerThreads() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("SocketService:" + port))
+        count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.components.LogData;
+import fitnesse.components.Logger;
+import util.FileUtil;
+
+import java.io.File;
+import java.util.GregorianCalendar;
+
+/**
+ * Logs requests from several threads at once, as the server does at the end
+ * of every request, and reports the time the request threads spend in
+ * log(), the time until every line is written and the log is closed, and
+ * the number of lines that were dropped because the queue was full.
+ * <p/>
+ * usage: LoggerBenchmark [threads [linesPerThread [queueCapacity]]]
+ */
+public class LoggerBenchmark {
+  public static void main(String[] args) throws Exception {
+    final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    final int linesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 25000;
+    File logDirectory = new File(System.getProperty("java.io.tmpdir"), "LoggerBenchmark");
+    FileUtil.deleteFileSystemDirectory(logDirectory);
+    try {
+      if (args.length > 2)
+        Logger.queueCapacity = Integer.parseInt(args[2]);
+      final Logger logger = new Logger(logDirectory.getPath());
+      Thread[] workers = new Thread[threads];
+      final long[] nanosInLog = new long[threads];
+      long start = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        final int worker = t;
+        workers[t] = new Thread() {
+          public void run() {
+            try {
+              for (int i = 0; i < linesPerThread; i++) {
+                LogData data = makeLogData(worker, i);
+                long before = System.nanoTime();
+                logger.log(data);
+                nanosInLog[worker] += System.nanoTime() - before;
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+        workers[t].start();
+      }
+      for (Thread worker : workers)
+        worker.join();
+      logger.close();
+      double millis = (System.nanoTime() - start) / 1000000.0;
+      long totalNanosInLog = 0;
+      for (long nanos : nanosInLog)
+        totalNanosInLog += nanos;
+      System.out.println(String.format("%d threads, %d lines each: %.2f us per log() call, %.0f ms until closed, %d dropped",
+        threads, linesPerThread, totalNanosInLog / 1000.0 / (threads * linesPerThread), millis, logger.getDroppedLines()));
+    } finally {
+      FileUtil.deleteFileSystemDirectory(logDirectory);
+    }
+  }
+
+  private static LogData makeLogData(int worker, int line) {
+    LogData data = new LogData();
+    data.host = "10.0.0." + worker;
+    data.username = worker % 2 == 0 ? null : "user" + worker;
+    data.time = new GregorianCalendar();
+    data.requestLine = "GET /FrontPage.ChildPage" + line + " HTTP/1.1";
+    data.status = 200;
+    data.size = 4096 + line % 1000;
+    return data;
+  }
+}
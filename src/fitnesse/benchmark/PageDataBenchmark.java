@@ -0,0 +1,72 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import fitnesse.components.TraversalListener;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PageDataCache;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Reads the data of every page of a wiki over and over for a number of
+ * seconds, as a busy server would, and reports the reads per second and the
+ * bytes allocated per read, followed by the page data cache counters.
+ * <p/>
+ * usage: PageDataBenchmark [rootPath [rootName [seconds]]]
+ */
+public class PageDataBenchmark {
+  private final List<WikiPage> pages = new ArrayList<WikiPage>();
+  private final int seconds;
+
+  public static void main(String[] args) throws Exception {
+    String rootPath = args.length > 0 ? args[0] : ".";
+    String rootName = args.length > 1 ? args[1] : "FitNesseRoot";
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    new PageDataBenchmark(new FileSystemPage(rootPath, rootName), seconds).run();
+  }
+
+  public PageDataBenchmark(WikiPage root, int seconds) throws Exception {
+    this.seconds = seconds;
+    root.getPageCrawler().traverse(root, new TraversalListener() {
+      public void processPage(WikiPage page) throws Exception {
+        pages.add(page);
+      }
+    });
+  }
+
+  public void run() throws Exception {
+    readAll();
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    long end = start + seconds * 1000000000L;
+    long reads = 0;
+    while (System.nanoTime() < end)
+      reads += readAll();
+    long elapsed = System.nanoTime() - start;
+    long allocated = allocatedBytes() - allocatedBefore;
+
+    System.out.println(String.format("%d pages, %d reads in %.1f s: %.0f reads/s, %d bytes allocated per read",
+      pages.size(), reads, elapsed / 1e9, reads * 1e9 / elapsed, allocated / reads));
+    PageDataCache cache = PageDataCache.getInstance();
+    System.out.println(String.format("cache: %d pages, %d KB, %d hits, %d misses, %d invalidations, %d evictions",
+      cache.size(), cache.getBytes() / 1024, cache.getHits(), cache.getMisses(), cache.getInvalidations(),
+      cache.getEvictions()));
+  }
+
+  private int readAll() throws Exception {
+    for (WikiPage page : pages)
+      page.getData();
+    return pages.size();
+  }
+
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean)
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    return 0;
+  }
+}
@@ -0,0 +1,49 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Walks the page tree of a wiki over and over, the way !contents -R and
+ * suite discovery do, and reports the time per walk and per page.  Every
+ * walk asks every page for its children and looks up one child that does not
+ * exist.
+ * <p/>
+ * usage: PageTreeBenchmark [rootPath [rootName [iterations]]]
+ */
+public class PageTreeBenchmark {
+  private final WikiPage root;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    String rootPath = args.length > 0 ? args[0] : ".";
+    String rootName = args.length > 1 ? args[1] : "FitNesseRoot";
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    new PageTreeBenchmark(new FileSystemPage(rootPath, rootName), iterations).run();
+  }
+
+  public PageTreeBenchmark(WikiPage root, int iterations) {
+    this.root = root;
+    this.iterations = iterations;
+  }
+
+  public void run() throws Exception {
+    int pages = walk(root);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      walk(root);
+    double millisPerWalk = (System.nanoTime() - start) / 1000000.0 / iterations;
+    System.out.println(String.format("%d pages: %.2f ms per walk, %.2f us per page",
+      pages, millisPerWalk, millisPerWalk * 1000 / pages));
+  }
+
+  private int walk(WikiPage page) throws Exception {
+    int pages = 1;
+    page.getChildPage("NoSuchChildPage");
+    for (WikiPage child : page.getChildren())
+      pages += walk(child);
+    return pages;
+  }
+}
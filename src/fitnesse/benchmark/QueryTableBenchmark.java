@@ -0,0 +1,85 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import static util.ListUtility.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fitnesse.responders.run.slimResponder.MockSlimTestContext;
+import fitnesse.slim.SlimClient;
+import fitnesse.slimTables.HtmlTableScanner;
+import fitnesse.slimTables.QueryTable;
+
+/**
+ * Evaluates query tables of a growing number of rows against query results
+ * in reverse order -- most rows match, a few are missing and a few are
+ * surplus -- and reports the evaluation time per table and per row.  The
+ * time per row should stay flat as the table grows.
+ * <p/>
+ * usage: QueryTableBenchmark [maximumRows [iterations]]
+ */
+public class QueryTableBenchmark {
+  private final int maximumRows;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    int maximumRows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    new QueryTableBenchmark(maximumRows, iterations).run();
+  }
+
+  public QueryTableBenchmark(int maximumRows, int iterations) {
+    this.maximumRows = maximumRows;
+    this.iterations = iterations;
+  }
+
+  public void run() throws Exception {
+    measure(Math.min(500, maximumRows), false);
+    for (int rows = Math.max(1, maximumRows / 8); rows <= maximumRows; rows *= 2)
+      measure(rows, true);
+  }
+
+  private void measure(int rows, boolean report) throws Exception {
+    String html = makeTable(rows);
+    List<Object> queryResults = makeQueryResults(rows);
+    long nanos = 0;
+    for (int i = 0; i < iterations; i++) {
+      QueryTable table = new QueryTable(new HtmlTableScanner(html).getTable(0), "id", new MockSlimTestContext());
+      table.appendInstructions(new ArrayList<Object>());
+      Map<String, Object> results = SlimClient.resultToMap(list(
+        list("queryTable_id_0", "OK"),
+        list("queryTable_id_1", "OK"),
+        list("queryTable_id_2", queryResults)));
+      long start = System.nanoTime();
+      table.evaluateReturnValues(results);
+      nanos += System.nanoTime() - start;
+    }
+    double millisPerTable = nanos / 1000000.0 / iterations;
+    if (report)
+      System.out.println(String.format("%6d rows %10.2f ms/table %8.4f ms/row", rows, millisPerTable, millisPerTable / rows));
+  }
+
+  private String makeTable(int rows) {
+    StringBuilder html = new StringBuilder("<table>");
+    html.append("<tr><td>query:employees</td></tr>");
+    html.append("<tr><td>id</td><td>name</td><td>department</td></tr>");
+    for (int row = 0; row < rows; row++) {
+      int id = (row % 50 == 49) ? rows + row : row;
+      html.append("<tr><td>").append(id).append("</td><td>name ").append(row)
+        .append("</td><td>department ").append(row % 7).append("</td></tr>");
+    }
+    return html.append("</table>").toString();
+  }
+
+  private List<Object> makeQueryResults(int rows) {
+    List<Object> results = new ArrayList<Object>();
+    for (int row = rows - 1; row >= 0; row--) {
+      String department = (row % 10 == 9) ? "moved" : "department " + (row % 7);
+      results.add(list(list("id", "" + row), list("name", "name " + row), list("department", department)));
+    }
+    return results;
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.components.RecentChanges;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.WikiPage;
+import util.FileUtil;
+
+import java.io.File;
+
+/**
+ * Records saves of many pages in the recent changes of a file system wiki
+ * from several threads at once, as concurrent saves do, and reports the time
+ * per recorded save and the number of versions of the RecentChanges page
+ * that were made.
+ * <p/>
+ * usage: RecentChangesBenchmark [threads [savesPerThread]]
+ */
+public class RecentChangesBenchmark {
+  public static void main(String[] args) throws Exception {
+    final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    final int savesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 250;
+    File rootDirectory = new File(System.getProperty("java.io.tmpdir"), "RecentChangesBenchmark");
+    FileUtil.deleteFileSystemDirectory(rootDirectory);
+    rootDirectory.mkdirs();
+    try {
+      WikiPage root = new FileSystemPage(rootDirectory.getPath(), "RooT");
+      final PageData[] pages = new PageData[200];
+      for (int i = 0; i < pages.length; i++)
+        pages[i] = root.addChildPage("BenchmarkPage" + i).getData();
+
+      Thread[] workers = new Thread[threads];
+      long start = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        final int offset = t;
+        workers[t] = new Thread() {
+          public void run() {
+            try {
+              for (int i = 0; i < savesPerThread; i++)
+                RecentChanges.updateRecentChanges(pages[(offset * 37 + i) % pages.length]);
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+        workers[t].start();
+      }
+      for (Thread worker : workers)
+        worker.join();
+      double microsPerSave = (System.nanoTime() - start) / 1000.0 / (threads * savesPerThread);
+      Thread.sleep(RecentChanges.flushDelay * 2);
+      WikiPage recentChanges = root.getChildPage("RecentChanges");
+      int versions = recentChanges == null ? 0 : recentChanges.getData().getVersions().size();
+      System.out.println(String.format("%d threads, %d saves each: %.1f us per save, %d versions of RecentChanges",
+        threads, savesPerThread, microsPerSave, versions));
+    } finally {
+      FileUtil.deleteFileSystemDirectory(rootDirectory);
+    }
+  }
+}
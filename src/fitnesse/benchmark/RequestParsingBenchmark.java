@@ -0,0 +1,93 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.http.Request;
+import fitnesse.http.UploadedFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Parses requests as a browser sends them: a page request with the usual
+ * dozen headers, a form post of an edited page, and a multipart upload of a
+ * file, and reports the requests parsed per second and the megabytes of
+ * upload parsed per second.
+ * <p/>
+ * usage: RequestParsingBenchmark [seconds [uploadKilobytes]]
+ */
+public class RequestParsingBenchmark {
+  private static final String HEADERS =
+    "Host: localhost:8080\r\n" +
+    "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0\r\n" +
+    "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n" +
+    "Accept-Language: en-US,en;q=0.5\r\n" +
+    "Accept-Encoding: gzip, deflate, br\r\n" +
+    "Referer: http://localhost:8080/FrontPage\r\n" +
+    "Connection: keep-alive\r\n" +
+    "Cookie: JSESSIONID=1f0a8e7c9b2d4e6f; lastPage=FitNesse.UserGuide\r\n" +
+    "Upgrade-Insecure-Requests: 1\r\n" +
+    "Sec-Fetch-Dest: document\r\n" +
+    "Sec-Fetch-Mode: navigate\r\n" +
+    "Sec-Fetch-Site: same-origin\r\n" +
+    "Cache-Control: max-age=0\r\n";
+
+  public static void main(String[] args) throws Exception {
+    int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    int uploadKilobytes = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+    byte[] get = ("GET /FitNesse.UserGuide.WritingAcceptanceTests?test HTTP/1.1\r\n" + HEADERS + "\r\n").getBytes();
+    byte[] post = makePost();
+    byte[] upload = makeUpload(uploadKilobytes * 1024);
+
+    measure("page request", get, seconds, 0);
+    measure("form post", post, seconds, 0);
+    measure("file upload", upload, seconds, uploadKilobytes * 1024);
+  }
+
+  private static void measure(String name, byte[] message, int seconds, long uploadSize) throws Exception {
+    long end = System.nanoTime() + seconds * 1000000000L;
+    long start = System.nanoTime();
+    int requests = 0;
+    while (System.nanoTime() < end) {
+      Request request = new Request(new ByteArrayInputStream(message));
+      request.parse();
+      if (uploadSize > 0)
+        ((UploadedFile) request.getInput("file")).delete();
+      requests++;
+    }
+    double elapsed = (System.nanoTime() - start) / 1000000000.0;
+    String line = String.format("%-12s %10.0f requests/s", name, requests / elapsed);
+    if (uploadSize > 0)
+      line += String.format(", %.1f MB/s", uploadSize * requests / elapsed / (1024 * 1024));
+    System.out.println(line);
+  }
+
+  private static byte[] makePost() {
+    StringBuffer content = new StringBuffer("saveTime=1234567890&ticketId=42&responder=saveData&pageContent=");
+    for (int i = 0; i < 200; i++)
+      content.append("%7C+cell+").append(i).append("+%7C+value+").append(i).append("+%7C%0D%0A");
+    return ("POST /FrontPage HTTP/1.1\r\n" + HEADERS +
+      "Content-Type: application/x-www-form-urlencoded\r\n" +
+      "Content-Length: " + content.length() + "\r\n\r\n" + content).getBytes();
+  }
+
+  private static byte[] makeUpload(int size) throws Exception {
+    String boundary = "---------------------------41184676334";
+    ByteArrayOutputStream body = new ByteArrayOutputStream(size + 1024);
+    body.write(("--" + boundary + "\r\n" +
+      "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+      "Content-Type: application/octet-stream\r\n\r\n").getBytes());
+    for (int i = 0; i < size; i++)
+      body.write((i * 31 + i / 253) & 0xff);
+    body.write(("\r\n--" + boundary + "\r\n" +
+      "Content-Disposition: form-data; name=\"responder\"\r\n\r\n" +
+      "upload\r\n--" + boundary + "--\r\n").getBytes());
+    ByteArrayOutputStream message = new ByteArrayOutputStream(body.size() + 1024);
+    message.write(("POST /files/ HTTP/1.1\r\n" + HEADERS +
+      "Content-Type: multipart/form-data; boundary=" + boundary + "\r\n" +
+      "Content-Length: " + body.size() + "\r\n\r\n").getBytes());
+    body.writeTo(message);
+    return message.toByteArray();
+  }
+}
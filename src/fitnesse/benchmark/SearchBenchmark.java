@@ -0,0 +1,61 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.util.regex.Pattern;
+
+import fitnesse.components.RegularExpressionWikiPageFinder;
+import fitnesse.components.SearchObserver;
+import fitnesse.components.TitleWikiPageFinder;
+import fitnesse.components.WikiPageFinder;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Runs the content and title searches of the search page against a wiki over
+ * and over, and reports the time per search and the number of hits.  The
+ * first search of each kind is not timed.
+ * <p/>
+ * usage: SearchBenchmark [rootPath [rootName [iterations [searchString...]]]]
+ */
+public class SearchBenchmark implements SearchObserver {
+  private final WikiPage root;
+  private final int iterations;
+  private int hits;
+
+  public static void main(String[] args) throws Exception {
+    String rootPath = args.length > 0 ? args[0] : ".";
+    String rootName = args.length > 1 ? args[1] : "FitNesseRoot";
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    String[] searchStrings = args.length > 3 ? new String[args.length - 3] :
+      new String[]{"fixture", "ColumnFixture", "!define TEST_SYSTEM", "nothing like this"};
+    if (args.length > 3)
+      System.arraycopy(args, 3, searchStrings, 0, searchStrings.length);
+    SearchBenchmark benchmark = new SearchBenchmark(new FileSystemPage(rootPath, rootName), iterations);
+    for (String searchString : searchStrings) {
+      benchmark.run("content", searchString, new RegularExpressionWikiPageFinder(
+        Pattern.compile(searchString, Pattern.CASE_INSENSITIVE + Pattern.LITERAL), benchmark));
+      benchmark.run("title", searchString, new TitleWikiPageFinder(searchString, benchmark));
+    }
+  }
+
+  public SearchBenchmark(WikiPage root, int iterations) {
+    this.root = root;
+    this.iterations = iterations;
+  }
+
+  public void run(String kind, String searchString, WikiPageFinder finder) throws Exception {
+    finder.search(root);
+    hits = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      finder.search(root);
+    double millisPerSearch = (System.nanoTime() - start) / 1000000.0 / iterations;
+    System.out.println(String.format("%s search for '%s': %.2f ms per search, %d hits",
+      kind, searchString, millisPerSearch, hits / iterations));
+  }
+
+  public void hit(WikiPage page) {
+    hits++;
+  }
+}
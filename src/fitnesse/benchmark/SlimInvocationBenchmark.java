@@ -0,0 +1,62 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.slim.StatementExecutor;
+
+/**
+ * Calls fixture methods through a StatementExecutor the way a data driven
+ * Slim test does, and reports the calls per second for a few kinds of call:
+ * methods of the fixture itself, methods found in a library after missing
+ * on the fixture, and constructors found through an import path.
+ * <p/>
+ * usage: SlimInvocationBenchmark [calls]
+ */
+public class SlimInvocationBenchmark {
+  private final StatementExecutor executor = new StatementExecutor();
+  private final int calls;
+
+  public static void main(String[] args) throws Exception {
+    int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    new SlimInvocationBenchmark(calls).run();
+  }
+
+  public SlimInvocationBenchmark(int calls) {
+    this.calls = calls;
+    executor.addPath("fitnesse.slim.test.library");
+    executor.addPath("fitnesse.slim.test");
+    executor.create("fixture", "TestSlim", new Object[0]);
+    executor.create("library", "EchoSupport", new Object[0]);
+  }
+
+  public void run() {
+    for (int i = 0; i < 2; i++) {
+      measure("fixture, no arguments", "fixture", "returnInt", new Object[0], i == 1);
+      measure("fixture, int arguments", "fixture", "addTo", new Object[]{"1", "2"}, i == 1);
+      measure("fixture, string argument", "fixture", "echoString", new Object[]{"hello"}, i == 1);
+      measure("library", "fixture", "echoSupportCalled", new Object[0], i == 1);
+      measureCreate("constructor on import path", "TestSlim", new Object[]{"3"}, i == 1);
+    }
+  }
+
+  private void measure(String label, String instance, String method, Object[] args, boolean report) {
+    long start = System.nanoTime();
+    for (int i = 0; i < calls; i++)
+      executor.call(instance, method, args);
+    report(label, System.nanoTime() - start, calls, report);
+  }
+
+  private void measureCreate(String label, String className, Object[] args, boolean report) {
+    int creates = calls / 10;
+    long start = System.nanoTime();
+    for (int i = 0; i < creates; i++)
+      executor.create("created", className, args);
+    report(label, System.nanoTime() - start, creates, report);
+  }
+
+  private void report(String label, long nanos, int count, boolean report) {
+    if (report)
+      System.out.println(String.format("%-28s %12.0f calls/s %8.0f ns/call",
+        label, count * 1e9 / nanos, (double) nanos / count));
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import fitnesse.slim.BinaryListDeserializer;
+import fitnesse.slim.BinaryListSerializer;
+import fitnesse.slim.ListDeserializer;
+import fitnesse.slim.ListSerializer;
+
+/**
+ * Encodes and decodes the messages of a data heavy Slim test -- the
+ * instructions of a decision table and the results of a query table -- with
+ * the text and the binary Slim formats, and reports the time per round trip
+ * and the size on the wire.
+ * <p/>
+ * usage: SlimProtocolBenchmark [rows [iterations]]
+ */
+public class SlimProtocolBenchmark {
+  private static final int COLUMNS = 8;
+
+  private final List<Object> instructions;
+  private final List<Object> results;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    new SlimProtocolBenchmark(rows, iterations).run();
+  }
+
+  public SlimProtocolBenchmark(int rows, int iterations) {
+    this.iterations = iterations;
+    instructions = makeDecisionTableInstructions(rows);
+    results = makeQueryTableResults(rows);
+  }
+
+  public void run() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      measure("decision table instructions", instructions, i == 1);
+      measure("query table results", results, i == 1);
+    }
+  }
+
+  private void measure(String label, List<Object> message, boolean report) throws Exception {
+    long textBytes = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      textBytes = textRoundTrip(message);
+    long textTime = System.nanoTime() - start;
+
+    long binaryBytes = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      binaryBytes = binaryRoundTrip(message);
+    long binaryTime = System.nanoTime() - start;
+
+    if (report) {
+      System.out.println(String.format("%-28s text   %8.3f ms %9d bytes", label, textTime / 1000000.0 / iterations, textBytes));
+      System.out.println(String.format("%-28s binary %8.3f ms %9d bytes", label, binaryTime / 1000000.0 / iterations, binaryBytes));
+    }
+  }
+
+  private long textRoundTrip(List<Object> message) throws Exception {
+    byte[] bytes = ListSerializer.serialize(message).getBytes("UTF-8");
+    ListDeserializer.deserialize(new String(bytes, "UTF-8"));
+    return bytes.length;
+  }
+
+  private long binaryRoundTrip(List<Object> message) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new BinaryListSerializer(output).serialize(message);
+    byte[] bytes = output.toByteArray();
+    new BinaryListDeserializer(new ByteArrayInputStream(bytes)).deserialize();
+    return bytes.length;
+  }
+
+  private static List<Object> makeDecisionTableInstructions(int rows) {
+    List<Object> instructions = new ArrayList<Object>();
+    instructions.add(list("decisionTable_0_0", "make", "decisionTable_0", "fixtures.OrderFixture"));
+    for (int row = 0; row < rows; row++) {
+      String id = "decisionTable_0_" + row;
+      instructions.add(list(id + "_0", "call", "decisionTable_0", "table", "row " + row));
+      instructions.add(list(id + "_1", "call", "decisionTable_0", "reset"));
+      for (int column = 0; column < COLUMNS; column++)
+        instructions.add(list(id + "_" + (column + 2), "call", "decisionTable_0", "setColumn" + column, "value " + row + "." + column));
+      instructions.add(list(id + "_" + (COLUMNS + 2), "call", "decisionTable_0", "execute"));
+      instructions.add(list(id + "_" + (COLUMNS + 3), "call", "decisionTable_0", "total"));
+    }
+    return instructions;
+  }
+
+  private static List<Object> makeQueryTableResults(int rows) {
+    List<Object> table = new ArrayList<Object>();
+    for (int row = 0; row < rows; row++) {
+      List<Object> fields = new ArrayList<Object>();
+      for (int column = 0; column < COLUMNS; column++)
+        fields.add(list("column" + column, "résult " + row + "." + column));
+      table.add(fields);
+    }
+    List<Object> results = new ArrayList<Object>();
+    results.add(list("queryTable_0_0", "OK"));
+    results.add(list("queryTable_0_1", table));
+    return results;
+  }
+
+  private static List<Object> list(Object... items) {
+    List<Object> list = new ArrayList<Object>();
+    for (Object item : items)
+      list.add(item);
+    return list;
+  }
+}
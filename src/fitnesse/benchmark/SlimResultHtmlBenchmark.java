@@ -0,0 +1,78 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.slimTables.HtmlTableScanner;
+import fitnesse.slimTables.Table;
+
+/**
+ * Writes the results of a Slim test page table by table, the way
+ * SlimTestSystem does, for pages of a growing number of tables, and reports
+ * the time per page and per table.  The time per table should stay flat as
+ * the page grows.
+ * <p/>
+ * usage: SlimResultHtmlBenchmark [rowsPerTable [iterations]]
+ */
+public class SlimResultHtmlBenchmark {
+  private static final int[] TABLE_COUNTS = {125, 250, 500, 1000, 2000};
+
+  private final int rowsPerTable;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    int rowsPerTable = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    new SlimResultHtmlBenchmark(rowsPerTable, iterations).run();
+  }
+
+  public SlimResultHtmlBenchmark(int rowsPerTable, int iterations) {
+    this.rowsPerTable = rowsPerTable;
+    this.iterations = iterations;
+  }
+
+  public void run() throws Exception {
+    measure(TABLE_COUNTS[0], false);
+    for (int tables : TABLE_COUNTS)
+      measure(tables, true);
+  }
+
+  private void measure(int tables, boolean report) throws Exception {
+    String page = makePage(tables);
+    long characters = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      characters = writeResults(new HtmlTableScanner(page));
+    double millisPerPage = (System.nanoTime() - start) / 1000000.0 / iterations;
+    if (report)
+      System.out.println(String.format("%5d tables %9.2f ms/page %8.4f ms/table %9d chars",
+        tables, millisPerPage, millisPerPage / tables, characters));
+  }
+
+  private long writeResults(HtmlTableScanner scanner) {
+    long characters = 0;
+    int tables = scanner.getTableCount();
+    for (int i = 0; i < tables; i++) {
+      Table table = scanner.getTable(i);
+      Table startWith = (i == 0) ? null : table;
+      Table next = (i + 1 < tables) ? scanner.getTable(i + 1) : null;
+      table.setCell(0, 1, table.pass("7"));
+      characters += scanner.toHtml(startWith, next).length();
+    }
+    return characters;
+  }
+
+  private String makePage(int tables) {
+    StringBuilder page = new StringBuilder("<div class=\"main\">\n");
+    for (int t = 0; t < tables; t++) {
+      page.append("<p>Table ").append(t).append(" checks a few sums.</p>\n");
+      page.append("<table border=\"1\" cellspacing=\"0\">\n");
+      page.append("<tr><td>DT:fixtures.Sum</td></tr>\n");
+      page.append("<tr><td>a</td><td>b</td><td>sum?</td></tr>\n");
+      for (int row = 0; row < rowsPerTable; row++)
+        page.append("<tr><td>").append(row).append("</td><td>").append(t)
+          .append("</td><td>").append(row + t).append("</td></tr>\n");
+      page.append("</table>\n");
+    }
+    return page.append("</div>\n").toString();
+  }
+}
@@ -0,0 +1,186 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fitnesse.FitNesse;
+import fitnesse.FitNesseContext;
+import fitnesse.responders.ResponderFactory;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.InMemoryPage;
+import util.FileUtil;
+
+/**
+ * Requests the static files of a local FitNesse server from several clients
+ * over persistent connections and reports requests per second and bytes
+ * per second: small style sheets and scripts, the same with Accept-Encoding:
+ * gzip, conditional requests for them, and a large test history artifact.
+ * <p/>
+ * usage: StaticFileBenchmark [clients [requestsPerClient [port]]]
+ */
+public class StaticFileBenchmark {
+  private static final String[] SMALL_FILES = {"files/css/fitnesse.css", "files/javascript/fitnesse.js"};
+  private static final String LARGE_FILE = "files/testResults/artifact.xml";
+
+  private final int clients;
+  private final int requestsPerClient;
+  private final int port;
+  private final AtomicInteger failures = new AtomicInteger();
+  private final AtomicLong bytesRead = new AtomicLong();
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : 1999;
+    new StaticFileBenchmark(clients, requests, port).run();
+  }
+
+  public StaticFileBenchmark(int clients, int requestsPerClient, int port) {
+    this.clients = clients;
+    this.requestsPerClient = requestsPerClient;
+    this.port = port;
+  }
+
+  public void run() throws Exception {
+    File rootDirectory = new File(System.getProperty("java.io.tmpdir"), "StaticFileBenchmark");
+    FileUtil.deleteFileSystemDirectory(rootDirectory);
+    makeFiles(new File(rootDirectory, "FitNesseRoot"));
+    FitNesseContext context = FitNesseUtil.makeTestContext(InMemoryPage.makeRoot("RooT"));
+    context.rootPath = rootDirectory.getPath();
+    context.rootDirectoryName = "FitNesseRoot";
+    context.setRootPagePath();
+    context.responderFactory = new ResponderFactory(context.rootPagePath);
+    context.port = port;
+    FitNesse fitnesse = new FitNesse(context, false);
+    fitnesse.start();
+    try {
+      measure("small files", SMALL_FILES, "", requestsPerClient);
+      measure("small files, gzip", SMALL_FILES, "Accept-Encoding: gzip\r\n", requestsPerClient);
+      measure("small file, not modified", new String[]{SMALL_FILES[0]}, conditionalHeaders(SMALL_FILES[0]), requestsPerClient);
+      measure("large file", new String[]{LARGE_FILE}, "", Math.max(1, requestsPerClient / 100));
+    } finally {
+      fitnesse.stop();
+      FileUtil.deleteFileSystemDirectory(rootDirectory);
+    }
+  }
+
+  private void makeFiles(File root) throws Exception {
+    new File(root, "files/css").mkdirs();
+    new File(root, "files/javascript").mkdirs();
+    new File(root, "files/testResults").mkdirs();
+    StringBuilder css = new StringBuilder();
+    for (int i = 0; i < 600; i++)
+      css.append(".style").append(i).append(" { color: #").append(100000 + i).append("; margin: 0; }\n");
+    FileUtil.createFile(new File(root, SMALL_FILES[0]), css.toString());
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 400; i++)
+      js.append("function toggle").append(i).append("(id) { var e = document.getElementById(id); e.style.display = 'none'; }\n");
+    FileUtil.createFile(new File(root, SMALL_FILES[1]), js.toString());
+    OutputStream output = new FileOutputStream(new File(root, LARGE_FILE));
+    byte[] line = "<result><right>1</right><wrong>0</wrong><content>some cell content</content></result>\n".getBytes();
+    for (int i = 0; i < 20 * 1024 * 1024 / line.length; i++)
+      output.write(line);
+    output.close();
+  }
+
+  private String conditionalHeaders(String resource) throws Exception {
+    Socket socket = new Socket("localhost", port);
+    try {
+      Response response = request(socket.getOutputStream(), new BufferedInputStream(socket.getInputStream()), resource, "");
+      String etag = response.header("ETag");
+      return etag != null ? "If-None-Match: " + etag + "\r\n" : "If-Modified-Since: " + response.header("Last-Modified") + "\r\n";
+    } finally {
+      socket.close();
+    }
+  }
+
+  private void measure(String label, final String[] resources, final String headers, final int requests) throws Exception {
+    failures.set(0);
+    bytesRead.set(0);
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(clients);
+    for (int i = 0; i < clients; i++) {
+      new Thread(new Runnable() {
+        public void run() {
+          try {
+            startGate.await();
+            Socket socket = new Socket("localhost", port);
+            try {
+              OutputStream output = socket.getOutputStream();
+              InputStream input = new BufferedInputStream(socket.getInputStream(), 65536);
+              for (int r = 0; r < requests; r++)
+                request(output, input, resources[r % resources.length], headers);
+            } finally {
+              socket.close();
+            }
+          } catch (Exception e) {
+            failures.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+    long start = System.currentTimeMillis();
+    startGate.countDown();
+    done.await();
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    int total = clients * requests;
+    System.out.println(String.format("%-26s %6d requests in %6d ms: %8.1f requests/sec, %7.1f MB/sec, failures %d",
+      label, total, elapsed, total * 1000.0 / elapsed, bytesRead.get() / 1024.0 / 1024.0 * 1000.0 / elapsed, failures.get()));
+  }
+
+  private Response request(OutputStream output, InputStream input, String resource, String headers) throws Exception {
+    String request = "GET /" + resource + " HTTP/1.1\r\nHost: localhost\r\nConnection: keep-alive\r\n" + headers + "\r\n";
+    output.write(request.getBytes());
+    output.flush();
+    Response response = new Response(input);
+    if (response.status != 200 && response.status != 304)
+      failures.incrementAndGet();
+    return response;
+  }
+
+  private class Response {
+    final int status;
+    final String headers;
+
+    Response(InputStream input) throws Exception {
+      StringBuilder text = new StringBuilder();
+      while (!text.toString().endsWith("\r\n\r\n")) {
+        int c = input.read();
+        if (c < 0)
+          throw new Exception("connection closed");
+        text.append((char) c);
+      }
+      headers = text.toString();
+      status = Integer.parseInt(headers.substring(9, 12));
+      String length = header("Content-Length");
+      long remaining = length == null ? 0 : Long.parseLong(length);
+      bytesRead.addAndGet(remaining);
+      byte[] buffer = new byte[65536];
+      while (remaining > 0) {
+        int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0)
+          throw new Exception("connection closed");
+        remaining -= read;
+      }
+    }
+
+    String header(String name) {
+      int start = headers.indexOf("\r\n" + name + ": ");
+      if (start < 0)
+        return null;
+      start += name.length() + 4;
+      return headers.substring(start, headers.indexOf("\r\n", start));
+    }
+  }
+}
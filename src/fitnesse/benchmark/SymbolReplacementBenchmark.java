@@ -0,0 +1,85 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.responders.run.slimResponder.MockSlimTestContext;
+import fitnesse.slim.VariableStore;
+import fitnesse.slimTables.HtmlTableScanner;
+import fitnesse.slimTables.ScriptTable;
+import fitnesse.slimTables.SlimTable;
+
+/**
+ * Replaces symbols in the cells of a symbol heavy script table -- some
+ * cells without symbols, some with one, some with several -- on the Slim
+ * side (VariableStore) and on the FitNesse side (SlimTable), and reports
+ * the time per cell.
+ * <p/>
+ * usage: SymbolReplacementBenchmark [cells [iterations]]
+ */
+public class SymbolReplacementBenchmark {
+  private static final String[] CELL_PATTERNS = {
+    "check", "login as", "$user%d", "password %d", "$user%d logged in at $time%d from $host%d",
+    "account $account%d has balance $balance%d", "no symbols in this cell %d", "$$%d", "$total%d"
+  };
+  private static final int SYMBOLS = 100;
+
+  private final Object[] cells;
+  private final int iterations;
+  private final VariableStore variables = new VariableStore();
+  private final MockSlimTestContext context = new MockSlimTestContext();
+  private final SlimTable table;
+
+  public static void main(String[] args) throws Exception {
+    int cells = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    new SymbolReplacementBenchmark(cells, iterations).run();
+  }
+
+  public SymbolReplacementBenchmark(int cells, int iterations) throws Exception {
+    this.iterations = iterations;
+    this.cells = new Object[cells];
+    for (int i = 0; i < cells; i++)
+      this.cells[i] = CELL_PATTERNS[i % CELL_PATTERNS.length].replace("%d", "" + (i % SYMBOLS));
+    for (String name : new String[]{"user", "time", "host", "account", "balance", "total"}) {
+      for (int i = 0; i < SYMBOLS; i++) {
+        variables.setSymbol(name + i, name + " value " + i);
+        context.setSymbol(name + i, name + " value " + i);
+      }
+    }
+    HtmlTableScanner scanner = new HtmlTableScanner("<table><tr><td>script</td></tr></table>");
+    table = new ScriptTable(scanner.getTable(0), "id", context);
+  }
+
+  public void run() {
+    for (int i = 0; i < 2; i++) {
+      measureSlim(i == 1);
+      measureTable(false, i == 1);
+      measureTable(true, i == 1);
+    }
+  }
+
+  private void measureSlim(boolean report) {
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      variables.replaceSymbols(cells);
+    report("VariableStore", System.nanoTime() - start, report);
+  }
+
+  private void measureTable(boolean fullExpansion, boolean report) {
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      for (Object cell : cells) {
+        if (fullExpansion)
+          table.replaceSymbolsWithFullExpansion((String) cell);
+        else
+          table.replaceSymbols((String) cell);
+      }
+    }
+    report(fullExpansion ? "SlimTable, full expansion" : "SlimTable", System.nanoTime() - start, report);
+  }
+
+  private void report(String label, long nanos, boolean report) {
+    if (report)
+      System.out.println(String.format("%-26s %8.1f ns/cell", label, (double) nanos / iterations / cells.length));
+  }
+}
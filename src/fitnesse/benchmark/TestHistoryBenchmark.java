@@ -0,0 +1,93 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.responders.run.TestSummary;
+import fitnesse.responders.testHistory.HistoryStore;
+import fitnesse.responders.testHistory.PageHistory;
+import fitnesse.responders.testHistory.TestHistory;
+import fitnesse.responders.testHistory.TestHistoryImporter;
+import util.FileUtil;
+
+import java.io.File;
+
+/**
+ * Reads the test history of a results directory the way the test history
+ * page does -- every page, with its counts and bar graph -- over and over,
+ * and reports the time per read: first with a result file per run, as
+ * earlier versions wrote them, and then after importing those files into
+ * the HistoryStore.  The results are made up, one run a day for each page.
+ * <p/>
+ * usage: TestHistoryBenchmark [pages [runsPerPage [iterations]]]
+ */
+public class TestHistoryBenchmark {
+  private static final long DAY = 24L * 60 * 60 * 1000;
+
+  private final File resultsDirectory;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    int pages = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int runsPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    File resultsDirectory = new File(System.getProperty("java.io.tmpdir"), "TestHistoryBenchmark");
+    FileUtil.deleteFileSystemDirectory(resultsDirectory);
+    try {
+      TestHistoryBenchmark benchmark = new TestHistoryBenchmark(resultsDirectory, iterations);
+      benchmark.writeResultFiles(pages, runsPerPage);
+      benchmark.run(String.format("%d pages, %d result files each", pages, runsPerPage));
+      TestHistoryImporter importer = new TestHistoryImporter(new HistoryStore(resultsDirectory));
+      long start = System.nanoTime();
+      importer.importAll(false);
+      System.out.println(String.format("imported %d runs in %.0f ms", importer.getRuns(), (System.nanoTime() - start) / 1000000.0));
+      benchmark.run(String.format("%d pages, %d stored runs each", pages, runsPerPage));
+    } finally {
+      FileUtil.deleteFileSystemDirectory(resultsDirectory);
+    }
+  }
+
+  public TestHistoryBenchmark(File resultsDirectory, int iterations) {
+    this.resultsDirectory = resultsDirectory;
+    this.iterations = iterations;
+  }
+
+  public void writeResultFiles(int pages, int runsPerPage) throws Exception {
+    long firstRun = System.currentTimeMillis() - runsPerPage * DAY;
+    for (int page = 0; page < pages; page++) {
+      File pageDirectory = new File(resultsDirectory, "SuiteBenchmark.TestPage" + page);
+      pageDirectory.mkdirs();
+      for (int run = 0; run < runsPerPage; run++) {
+        TestSummary counts = new TestSummary(10 + run % 7, run % 5 == 0 ? 1 : 0, 0, 0);
+        String name = TestHistory.makeResultFileName(counts, firstRun + run * DAY);
+        FileUtil.createFile(new File(pageDirectory, name), resultsDocument(page, counts));
+      }
+    }
+  }
+
+  private String resultsDocument(int page, TestSummary counts) {
+    return String.format("<?xml version=\"1.0\"?>\n<testResults>\n<rootPath>TestPage%d</rootPath>\n" +
+      "<finalCounts><right>%d</right><wrong>%d</wrong><ignores>0</ignores><exceptions>0</exceptions></finalCounts>\n" +
+      "</testResults>\n", page, counts.getRight(), counts.getWrong());
+  }
+
+  public void run(String description) throws Exception {
+    int runs = readHistory();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      readHistory();
+    double millisPerRead = (System.nanoTime() - start) / 1000000.0 / iterations;
+    System.out.println(String.format("%s: %.1f ms per read, %d runs", description, millisPerRead, runs));
+  }
+
+  private int readHistory() {
+    TestHistory history = new TestHistory();
+    history.readHistoryDirectory(resultsDirectory);
+    int runs = 0;
+    for (String pageName : history.getPageNames()) {
+      PageHistory pageHistory = history.getPageHistory(pageName);
+      if (pageHistory != null)
+        runs += pageHistory.size();
+    }
+    return runs;
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.io.File;
+import java.util.Properties;
+
+import util.DiskFileSystem;
+import util.FileUtil;
+import fitnesse.ComponentFactory;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.VersionsController;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.blobs.BlobVersionsController;
+import fitnesse.wiki.zip.ZipFileVersionsController;
+
+/**
+ * Saves one page over and over, changing one line of it each time, first with
+ * zip file versions and then with content-addressed versions, and reports the
+ * time per save, the time to list the history of the page, and the disk space
+ * and number of files the versions take.
+ * <p/>
+ * usage: VersionStoreBenchmark [saves [pageLines]]
+ */
+public class VersionStoreBenchmark {
+  private static final String DIRECTORY = "versionStoreBenchmark";
+
+  private final int saves;
+  private final int pageLines;
+
+  public static void main(String[] args) throws Exception {
+    int saves = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int pageLines = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    VersionStoreBenchmark benchmark = new VersionStoreBenchmark(saves, pageLines);
+    benchmark.run(ZipFileVersionsController.class);
+    benchmark.run(BlobVersionsController.class);
+  }
+
+  public VersionStoreBenchmark(int saves, int pageLines) {
+    this.saves = saves;
+    this.pageLines = pageLines;
+  }
+
+  public void run(Class<? extends VersionsController> controller) throws Exception {
+    FileUtil.deleteFileSystemDirectory(DIRECTORY);
+    try {
+      Properties properties = new Properties();
+      properties.setProperty(ComponentFactory.VERSIONS_CONTROLLER, controller.getName());
+      FileSystemPage root = new FileSystemPage(DIRECTORY, "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+      WikiPage page = root.getPageCrawler().addPage(root, PathParser.parse("BenchmarkPage"), content(0));
+
+      long start = System.nanoTime();
+      for (int i = 1; i <= saves; i++) {
+        PageData data = page.getData();
+        data.setContent(content(i));
+        page.commit(data);
+      }
+      double millisPerSave = (System.nanoTime() - start) / 1000000.0 / saves;
+
+      start = System.nanoTime();
+      VersionsController versionsController = controller.newInstance();
+      int versions = 0;
+      for (int i = 0; i < 20; i++)
+        versions = versionsController.history((FileSystemPage) page).size();
+      double millisPerHistory = (System.nanoTime() - start) / 1000000.0 / 20;
+
+      long bytes = diskBytes(new File(DIRECTORY));
+      int files = fileCount(new File(DIRECTORY));
+      System.out.println(String.format("%s: %d versions, %.2f ms per save, %.2f ms per history, %d KB in %d files",
+        controller.getSimpleName(), versions, millisPerSave, millisPerHistory, bytes / 1024, files));
+    } finally {
+      FileUtil.deleteFileSystemDirectory(DIRECTORY);
+    }
+  }
+
+  private String content(int save) {
+    StringBuilder content = new StringBuilder();
+    for (int line = 0; line < pageLines; line++) {
+      if (line == save % pageLines)
+        content.append("|changed in save|").append(save).append("|\n");
+      else
+        content.append("|some row of a table|").append(line).append("|with a few cells|\n");
+    }
+    return content.toString();
+  }
+
+  private static long diskBytes(File file) {
+    if (!file.isDirectory())
+      return file.length();
+    long bytes = 0;
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files)
+        bytes += diskBytes(child);
+    }
+    return bytes;
+  }
+
+  private static int fileCount(File file) {
+    if (!file.isDirectory())
+      return 1;
+    int count = 0;
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files)
+        count += fileCount(child);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import fitnesse.components.SearchObserver;
+import fitnesse.components.WhereUsedPageFinder;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Finds the pages that refer to each of the given pages over and over, as the
+ * where used page and the rename and move refactorings do, and reports the
+ * time per search and the number of referring pages.  The first search for
+ * each page is not timed.
+ * <p/>
+ * usage: WhereUsedBenchmark [rootPath [rootName [iterations [pagePath...]]]]
+ */
+public class WhereUsedBenchmark implements SearchObserver {
+  private final WikiPage root;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    String rootPath = args.length > 0 ? args[0] : ".";
+    String rootName = args.length > 1 ? args[1] : "FitNesseRoot";
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    String[] pagePaths = args.length > 3 ? new String[args.length - 3] :
+      new String[]{"FrontPage", "FitNesse.UserGuide", "FitNesse.SuiteAcceptanceTests"};
+    if (args.length > 3)
+      System.arraycopy(args, 3, pagePaths, 0, pagePaths.length);
+    WhereUsedBenchmark benchmark = new WhereUsedBenchmark(new FileSystemPage(rootPath, rootName), iterations);
+    for (String pagePath : pagePaths)
+      benchmark.run(pagePath);
+  }
+
+  public WhereUsedBenchmark(WikiPage root, int iterations) {
+    this.root = root;
+    this.iterations = iterations;
+  }
+
+  public void run(String pagePath) throws Exception {
+    WikiPage page = root.getPageCrawler().getPage(root, PathParser.parse(pagePath));
+    if (page == null) {
+      System.out.println(String.format("%s: no such page", pagePath));
+      return;
+    }
+    int references = new WhereUsedPageFinder(page, this).search(root).size();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+      new WhereUsedPageFinder(page, this).search(root);
+    double millisPerSearch = (System.nanoTime() - start) / 1000000.0 / iterations;
+    System.out.println(String.format("%s: %.2f ms per search, %d referring pages", pagePath, millisPerSearch, references));
+  }
+
+  public void hit(WikiPage page) {
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import fitnesse.FitNesseContext;
+import fitnesse.components.TraversalListener;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.RenderedHtmlCache;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Renders every page of a wiki to HTML and reports the average render time
+ * and the bytes allocated per page, first with the rendered page cache
+ * emptied before every render and then with the cache in use.
+ * <p/>
+ * usage: WikiTextRenderBenchmark [rootPath [rootName [iterations]]]
+ */
+public class WikiTextRenderBenchmark {
+  private final List<PageData> pages = new ArrayList<PageData>();
+  private final RenderedHtmlCache cache;
+  private final int iterations;
+
+  public static void main(String[] args) throws Exception {
+    String rootPath = args.length > 0 ? args[0] : ".";
+    String rootName = args.length > 1 ? args[1] : "FitNesseRoot";
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    WikiPage root = new FileSystemPage(rootPath, rootName);
+    FitNesseContext.globalContext = new FitNesseContext(root);
+    new WikiTextRenderBenchmark(root, iterations).run();
+  }
+
+  public WikiTextRenderBenchmark(WikiPage root, int iterations) throws Exception {
+    this.iterations = iterations;
+    cache = RenderedHtmlCache.forPage(root);
+    root.getPageCrawler().traverse(root, new TraversalListener() {
+      public void processPage(WikiPage page) throws Exception {
+        pages.add(page.getData());
+      }
+    });
+  }
+
+  public void run() throws Exception {
+    measure("uncached", false);
+    measure("cached", true);
+  }
+
+  private void measure(String label, boolean cached) throws Exception {
+    renderAll(cached);
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    long characters = 0;
+    for (int i = 0; i < iterations; i++)
+      characters += renderAll(cached);
+    long elapsed = System.nanoTime() - start;
+    long allocated = allocatedBytes() - allocatedBefore;
+
+    long renders = (long) pages.size() * iterations;
+    System.out.println(String.format("%-8s %d pages, %d iterations, %d html characters per iteration",
+      label, pages.size(), iterations, characters / iterations));
+    System.out.println(String.format("%-8s %.3f ms per page, %d bytes allocated per page",
+      label, elapsed / 1000000.0 / renders, allocated / renders));
+  }
+
+  private long renderAll(boolean cached) throws Exception {
+    long characters = 0;
+    for (PageData data : pages) {
+      if (!cached)
+        cache.clear();
+      characters += data.getHtml().length();
+    }
+    return characters;
+  }
+
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean)
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    return 0;
+  }
+}
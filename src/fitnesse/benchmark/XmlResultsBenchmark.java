@@ -0,0 +1,153 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.benchmark;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fitnesse.FitNesseContext;
+import fitnesse.responders.run.TestSummary;
+import fitnesse.responders.run.formatters.XmlFormatter;
+import fitnesse.responders.run.slimResponder.HtmlSlimTestSystem;
+import fitnesse.responders.run.slimResponder.MockSlimTestContext;
+import fitnesse.slimTables.DecisionTable;
+import fitnesse.slimTables.HtmlTableScanner;
+import fitnesse.slimTables.SlimTable;
+import fitnesse.testutil.FitNesseUtil;
+import fitnesse.wiki.InMemoryPage;
+import fitnesse.wiki.WikiPage;
+
+/**
+ * Formats the results of a suite of Slim decision table pages as XML, the
+ * way format=xml does, and reports the formatting time per instruction and
+ * the heap in use once every page has completed.  The time per instruction
+ * should stay flat as the pages grow, and the heap should not grow with the
+ * number of pages.
+ * <p/>
+ * usage: XmlResultsBenchmark [pages [maximumRows]]
+ */
+public class XmlResultsBenchmark {
+  private final int pages;
+  private final int maximumRows;
+
+  public static void main(String[] args) throws Exception {
+    int pages = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int maximumRows = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+    new XmlResultsBenchmark(pages, maximumRows).run();
+  }
+
+  public XmlResultsBenchmark(int pages, int maximumRows) {
+    this.pages = pages;
+    this.maximumRows = maximumRows;
+  }
+
+  public void run() throws Exception {
+    measure(Math.min(250, maximumRows), false);
+    for (int rows = Math.max(1, maximumRows / 8); rows <= maximumRows; rows *= 2)
+      measure(rows, true);
+  }
+
+  private void measure(int rows, boolean report) throws Exception {
+    WikiPage root = InMemoryPage.makeRoot("RooT");
+    FitNesseContext context = FitNesseUtil.makeTestContext(root);
+    final CountingWriter writer = new CountingWriter();
+    XmlFormatter formatter = new XmlFormatter(context, root, new XmlFormatter.WriterFactory() {
+      public Writer getWriter(FitNesseContext context, WikiPage page, TestSummary counts, long time) {
+        return writer;
+      }
+    });
+    formatter.writeHead("Suite");
+    long nanos = 0;
+    int instructions = 0;
+    for (int page = 0; page < pages; page++) {
+      PageResults results = new PageResults(root, rows);
+      instructions += results.getInstructions().size();
+      long start = System.nanoTime();
+      formatter.testSystemStarted(results, "slim", "fitnesse.slim.SlimService");
+      formatter.newTestStarted(root, System.currentTimeMillis());
+      formatter.testOutputChunk("<table>...</table>");
+      formatter.testComplete(root, new TestSummary(rows, 0, 0, 0));
+      nanos += System.nanoTime() - start;
+    }
+    long heap = usedHeap();
+    long start = System.nanoTime();
+    formatter.allTestingComplete();
+    nanos += System.nanoTime() - start;
+    if (report)
+      System.out.println(String.format("%5d rows/page %9.1f ms/page %7.2f us/instruction %6d KB heap %8d KB written",
+        rows, nanos / 1e6 / pages, nanos / 1e3 / instructions, heap / 1024, writer.characters / 1024));
+  }
+
+  private long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static class PageResults extends HtmlSlimTestSystem {
+    private final List<SlimTable> tables = new ArrayList<SlimTable>();
+    private final List<Object> instructions = new ArrayList<Object>();
+    private final Map<String, Object> instructionResults = new HashMap<String, Object>();
+    private final List<SlimTable.Expectation> expectations = new ArrayList<SlimTable.Expectation>();
+
+    PageResults(WikiPage page, int rows) throws Exception {
+      super(page, null);
+      MockSlimTestContext context = new MockSlimTestContext() {
+        public void addExpectation(SlimTable.Expectation e) {
+          expectations.add(e);
+        }
+      };
+      DecisionTable table = new DecisionTable(new HtmlTableScanner(makeTable(rows)).getTable(0), "id", context);
+      table.appendInstructions(instructions);
+      for (Object instruction : instructions) {
+        String id = (String) ((List<?>) instruction).get(0);
+        instructionResults.put(id, id.hashCode() % 3 == 0 ? "7" : "/__VOID__/");
+      }
+      for (SlimTable.Expectation expectation : expectations)
+        expectation.evaluateExpectation(instructionResults);
+      tables.add(table);
+    }
+
+    private static String makeTable(int rows) {
+      StringBuilder html = new StringBuilder("<table><tr><td>DT:fixtures.Sum</td></tr>");
+      html.append("<tr><td>a</td><td>b</td><td>sum?</td></tr>");
+      for (int row = 0; row < rows; row++)
+        html.append("<tr><td>").append(row).append("</td><td>7</td><td>").append(row + 7).append("</td></tr>");
+      return html.append("</table>").toString();
+    }
+
+    public List<SlimTable> getTestTables() {
+      return tables;
+    }
+
+    public List<Object> getInstructions() {
+      return instructions;
+    }
+
+    public Map<String, Object> getInstructionResults() {
+      return instructionResults;
+    }
+
+    public List<SlimTable.Expectation> getExpectations() {
+      return expectations;
+    }
+  }
+
+  private static class CountingWriter extends Writer {
+    private long characters = 0;
+
+    public void write(char[] cbuf, int off, int len) {
+      characters += len;
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+  }
+}
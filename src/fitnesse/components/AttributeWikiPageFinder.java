@@ -2,6 +2,7 @@ package fitnesse.components;
 
 import static fitnesse.wiki.PageData.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -9,6 +10,7 @@ import java.util.Map;
 
 import fitnesse.responders.search.ExecuteSearchPropertiesResponder;
 import fitnesse.wiki.PageData;
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.PageType;
 import fitnesse.wiki.WikiPage;
 
@@ -56,13 +58,13 @@ public class AttributeWikiPageFinder extends WikiPageFinder {
 
   protected boolean pageMatches(WikiPage page) throws Exception {
 
-    if (!meetsSetUpTearDownConditions(page)) {
+    if (!meetsSetUpTearDownConditions(page.getName())) {
       return false;
     }
 
     PageData pageData = page.getData();
 
-    if (!pageIsOfRequestedPageType(page, requestedPageTypes)) {
+    if (!requestedPageTypes.contains(PageType.fromWikiPage(page))) {
       return false;
     }
 
@@ -75,47 +77,73 @@ public class AttributeWikiPageFinder extends WikiPageFinder {
         return false;
     }
 
-    return suitesMatchInput(pageData, suites);
+    return suitesMatchInput(pageData.getAttribute(PropertySUITES), suites);
   }
 
-  private boolean meetsSetUpTearDownConditions(WikiPage page) throws Exception {
+  @Override
+  protected List<PageSearchIndex.Document> findCandidates(PageSearchIndex index, String path) throws Exception {
+    List<PageSearchIndex.Document> candidates = new ArrayList<PageSearchIndex.Document>();
+    for (PageSearchIndex.Document document : index.getDocuments(path)) {
+      if (documentMatches(document))
+        candidates.add(document);
+    }
+    return candidates;
+  }
+
+  @Override
+  protected boolean candidateMatches(WikiPage page) {
+    return true;
+  }
+
+  private boolean documentMatches(PageSearchIndex.Document document) {
+    if (!meetsSetUpTearDownConditions(document.getName()))
+      return false;
+
+    if (!requestedPageTypes.contains(document.getPageType()))
+      return false;
+
+    for (Map.Entry<String, Boolean> input : attributes.entrySet()) {
+      if ("SetUp".equals(input.getKey()) || "TearDown".equals(input.getKey()))
+        continue;
+
+      if (!attributeMatchesInput(document.hasAttribute(input.getKey()), input.getValue()))
+        return false;
+    }
+
+    return suitesMatchInput(document.getAttribute(PropertySUITES), suites);
+  }
+
+  private boolean meetsSetUpTearDownConditions(String pageName) {
 
     if (attributes.containsKey("SetUp") && attributes.containsKey("TearDown")) {
       Boolean setupWanted = attributes.get("SetUp");
       Boolean teardownWanted = attributes.get("TearDown");
 
       if (setupWanted && teardownWanted) {
-        return isSetUpPage(page) || isTearDownPage(page);
+        return isSetUpPage(pageName) || isTearDownPage(pageName);
       }
 
-      return isSetUpPage(page) == setupWanted && isTearDownPage(page) == teardownWanted;
+      return isSetUpPage(pageName) == setupWanted && isTearDownPage(pageName) == teardownWanted;
 
     }
 
     if (attributes.containsKey("SetUp")) {
-      return isSetUpPage(page) == attributes.get("SetUp");
+      return isSetUpPage(pageName) == attributes.get("SetUp");
     }
 
     if (attributes.containsKey("TearDown")) {
-      return isTearDownPage(page) == attributes.get("TearDown");
+      return isTearDownPage(pageName) == attributes.get("TearDown");
     }
 
     return true;
   }
 
-  private boolean isTearDownPage(WikiPage page) throws Exception {
-    return tearDownPageNames.contains(page.getName());
+  private boolean isTearDownPage(String pageName) {
+    return tearDownPageNames.contains(pageName);
   }
 
-  private boolean isSetUpPage(WikiPage page) throws Exception {
-    return setUpPageNames.contains(page.getName());
-  }
-
-  private boolean pageIsOfRequestedPageType(WikiPage page,
-      List<PageType> requestedPageTypesEnum) throws Exception {
-    PageType pageType = PageType.fromWikiPage(page);
-
-    return (requestedPageTypesEnum.contains(pageType));
+  private boolean isSetUpPage(String pageName) {
+    return setUpPageNames.contains(pageName);
   }
 
   protected boolean attributeMatchesInput(boolean attributeSet,
@@ -123,11 +151,11 @@ public class AttributeWikiPageFinder extends WikiPageFinder {
     return attributeSet == inputValueOn;
   }
 
-  private boolean suitesMatchInput(PageData pageData, List<String> suites) throws Exception {
+  private boolean suitesMatchInput(String suitesAttribute, List<String> suites) {
     if (suites == null)
       return true;
 
-    List<String> suitesProperty = splitSuitesIntoArray(pageData.getAttribute(PropertySUITES));
+    List<String> suitesProperty = splitSuitesIntoArray(suitesAttribute);
 
     if (suites.isEmpty() != isEmptyOrNull(suitesProperty))
       return false;
@@ -3,17 +3,46 @@
 
 package fitnesse.components;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Writes the access log: one line per request, in a file per day.  log()
+ * only puts the request on a queue of at most queueCapacity lines; requests
+ * that find the queue full are not logged but counted, see
+ * getDroppedLines().  A single background thread formats the lines and
+ * writes them, and flushes the file when flushSize characters are waiting or
+ * the oldest of them has waited flushInterval milliseconds.  close() writes
+ * what is queued and stops the thread.
+ * <p/>
+ * Besides every day, a new file can be started when the current one would
+ * grow beyond a maximum size, and the files that are done with can be
+ * compressed with gzip.
+ */
 public class Logger {
-  private File directory;
+  public static int queueCapacity = 10000;
+  public static int flushSize = 8192;
+  public static long flushInterval = 1000;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
   public static SimpleDateFormat makeLogFormat() {
     //SimpleDateFormat is not thread safe, so we need to create each instance independently.
@@ -25,8 +54,26 @@ public class Logger {
     return new SimpleDateFormat("yyyyMMddHHmmss");
   }
 
-  private PrintWriter writer;
+  private final File directory;
+  private final ConcurrentLinkedQueue<LogData> queue = new ConcurrentLinkedQueue<LogData>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong loggedLines = new AtomicLong();
+  private final AtomicLong droppedLines = new AtomicLong();
+  private volatile boolean closed;
+  private volatile boolean idle;
+  private volatile Timestamp lastTimestamp;
+  private volatile Thread writerThread;
+
+  private boolean rotateDaily = true;
+  private long maximumFileSize;
+  private boolean compressRotatedFiles;
+
+  private Writer writer;
+  private File currentFile;
   private GregorianCalendar currentFileCreationDate;
+  private long currentFileSize;
+  private int unflushed;
+  private long oldestUnflushed;
 
   public Logger(String dirPath) {
     directory = new File(dirPath);
@@ -37,17 +84,50 @@ public class Logger {
     return directory;
   }
 
+  public void setRotateDaily(boolean rotateDaily) {
+    this.rotateDaily = rotateDaily;
+  }
+
+  /**
+   * Start a new file before one grows beyond this many bytes; 0 for no limit.
+   */
+  public void setMaximumFileSize(long maximumFileSize) {
+    this.maximumFileSize = maximumFileSize;
+  }
+
+  public void setCompressRotatedFiles(boolean compressRotatedFiles) {
+    this.compressRotatedFiles = compressRotatedFiles;
+  }
+
+  public long getLoggedLines() {
+    return loggedLines.get();
+  }
+
+  public long getDroppedLines() {
+    return droppedLines.get();
+  }
+
   String formatLogLine(LogData data) {
-    StringBuffer line = new StringBuffer();
+    StringBuilder line = new StringBuilder(128);
     line.append(data.host).append(" - ");
     line.append(data.username == null ? "-" : data.username);
-    line.append(" [").append(format(makeLogFormat(), data.time)).append("] ");
+    line.append(" [").append(formatTimestamp(data.time)).append("] ");
     line.append('"').append(data.requestLine).append("\" ");
     line.append(data.status).append(" ");
     line.append(data.size);
     return line.toString();
   }
 
+  private String formatTimestamp(Calendar time) {
+    long second = time.getTimeInMillis() / 1000;
+    Timestamp timestamp = lastTimestamp;
+    if (timestamp == null || timestamp.second != second || !timestamp.zone.equals(time.getTimeZone())) {
+      timestamp = new Timestamp(second, time.getTimeZone(), format(makeLogFormat(), time));
+      lastTimestamp = timestamp;
+    }
+    return timestamp.text;
+  }
+
   static String makeLogFileName(Calendar calendar) {
     StringBuffer name = new StringBuffer();
     name.append("fitnesse").append(format(makeFileNameFormat(), calendar)).append(".log");
@@ -55,36 +135,167 @@ public class Logger {
   }
 
   public void log(LogData data) throws Exception {
-    if (needNewFile(data.time))
-      openNewFile(data);
-    writer.println(formatLogLine(data));
-    writer.flush();
+    if (closed) {
+      droppedLines.incrementAndGet();
+      return;
+    }
+    if (queued.incrementAndGet() > queueCapacity) {
+      queued.decrementAndGet();
+      droppedLines.incrementAndGet();
+      return;
+    }
+    queue.offer(data);
+    Thread thread = writerThread;
+    if (thread == null)
+      startWriterThread();
+    else if (idle)
+      LockSupport.unpark(thread);
   }
 
-  private boolean needNewFile(GregorianCalendar time) {
-    if (writer == null)
-      return true;
-    else {
-      boolean different = (time.get(Calendar.DAY_OF_YEAR) != currentFileCreationDate.get(Calendar.DAY_OF_YEAR))
-        || (time.get(Calendar.YEAR) != currentFileCreationDate.get(Calendar.YEAR));
-      return different;
+  private synchronized void startWriterThread() {
+    if (writerThread != null || closed)
+      return;
+    writerThread = new Thread(new Runnable() {
+      public void run() {
+        writeLines();
+      }
+    }, "Logger");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  private void writeLines() {
+    while (true) {
+      LogData data = queue.poll();
+      if (data != null) {
+        queued.decrementAndGet();
+        writeLine(data);
+        if (unflushed >= flushSize)
+          flushFile();
+        continue;
+      }
+      long now = System.currentTimeMillis();
+      if (unflushed > 0 && now - oldestUnflushed >= flushInterval)
+        flushFile();
+      if (closed && queue.isEmpty())
+        return;
+      idle = true;
+      if (queue.isEmpty() && !closed) {
+        if (unflushed > 0)
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval - (now - oldestUnflushed)));
+        else
+          LockSupport.park();
+      }
+      idle = false;
+    }
+  }
+
+  private void writeLine(LogData data) {
+    try {
+      String line = formatLogLine(data) + LINE_SEPARATOR;
+      if (needNewFile(data.time, line.length()))
+        openNewFile(data);
+      writer.write(line);
+      if (unflushed == 0)
+        oldestUnflushed = System.currentTimeMillis();
+      unflushed += line.length();
+      currentFileSize += line.length();
+      loggedLines.incrementAndGet();
+    } catch (IOException e) {
+      droppedLines.incrementAndGet();
+      e.printStackTrace();
+      closeFile();
     }
+  }
 
+  private boolean needNewFile(GregorianCalendar time, int lineLength) {
+    if (writer == null)
+      return true;
+    if (rotateDaily && ((time.get(Calendar.DAY_OF_YEAR) != currentFileCreationDate.get(Calendar.DAY_OF_YEAR))
+      || (time.get(Calendar.YEAR) != currentFileCreationDate.get(Calendar.YEAR))))
+      return true;
+    return maximumFileSize > 0 && currentFileSize > 0 && currentFileSize + lineLength > maximumFileSize;
   }
 
-  private void openNewFile(LogData data) throws FileNotFoundException {
-    if (writer != null)
-      writer.close();
+  private void openNewFile(LogData data) throws IOException {
+    File rotated = writer == null ? null : currentFile;
+    closeFile();
+    if (rotated != null && compressRotatedFiles)
+      compress(rotated);
     currentFileCreationDate = data.time;
-    String filename = makeLogFileName(data.time);
+    currentFile = makeNewFile(data.time);
+    currentFileSize = 0;
+    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(currentFile)), Math.max(flushSize, 1024) * 2);
+  }
+
+  private File makeNewFile(Calendar time) {
+    String filename = makeLogFileName(time);
     File file = new File(directory, filename);
-    FileOutputStream outputStream = new FileOutputStream(file);
-    writer = new PrintWriter(outputStream);
+    String base = filename.substring(0, filename.length() - ".log".length());
+    for (int i = 1; currentFile != null && (file.exists() || new File(file.getPath() + ".gz").exists()); i++)
+      file = new File(directory, base + "-" + i + ".log");
+    return file;
+  }
+
+  private void flushFile() {
+    try {
+      if (writer != null)
+        writer.flush();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    unflushed = 0;
+  }
+
+  private void closeFile() {
+    try {
+      if (writer != null)
+        writer.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    writer = null;
+    unflushed = 0;
+  }
+
+  private static void compress(File file) {
+    File compressed = new File(file.getPath() + ".gz");
+    try {
+      InputStream input = new FileInputStream(file);
+      OutputStream output = new GZIPOutputStream(new FileOutputStream(compressed));
+      try {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1)
+          output.write(buffer, 0, read);
+      } finally {
+        input.close();
+        output.close();
+      }
+      file.delete();
+    } catch (IOException e) {
+      compressed.delete();
+      e.printStackTrace();
+    }
   }
 
   public void close() {
-    if (writer != null)
-      writer.close();
+    Thread thread;
+    synchronized (this) {
+      closed = true;
+      thread = writerThread;
+    }
+    if (thread == null)
+      return;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    while (queue.poll() != null)
+      droppedLines.incrementAndGet();
+    closeFile();
   }
 
   private static String format(DateFormat format, Calendar calendar) {
@@ -96,4 +307,16 @@ public class Logger {
   public String toString() {
     return getDirectory().getAbsolutePath();
   }
+
+  private static class Timestamp {
+    final long second;
+    final TimeZone zone;
+    final String text;
+
+    Timestamp(long second, TimeZone zone, String text) {
+      this.second = second;
+      this.zone = zone;
+      this.text = text;
+    }
+  }
 }
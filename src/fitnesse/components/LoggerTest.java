@@ -5,13 +5,16 @@ package fitnesse.components;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStreamReader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
 import junit.framework.TestCase;
 import util.FileUtil;
@@ -40,6 +43,8 @@ public class LoggerTest extends TestCase {
 
   public void tearDown() throws Exception {
     l.close();
+    Logger.queueCapacity = 10000;
+    Logger.flushInterval = 1000;
     FileUtil.deleteFileSystemDirectory(dirPath);
     Locale.setDefault(saveLocale);
   }
@@ -89,6 +94,7 @@ public class LoggerTest extends TestCase {
     LogData ld2 = (LogData) ld.clone();
     ld2.host = "newHost";
     l.log(ld2);
+    l.close();
     File dir = l.getDirectory();
     File file = new File(dir, filename);
     BufferedReader br = new BufferedReader(new FileReader(file));
@@ -126,6 +132,76 @@ public class LoggerTest extends TestCase {
     assertEquals(logLine + System.getProperty("line.separator"), contents);
   }
 
+  public void testLinesAreWrittenWithinTheFlushInterval() throws Exception {
+    Logger.flushInterval = 10;
+    l.log(ld);
+    File file = new File(l.getDirectory(), filename);
+    String expected = logLine + System.getProperty("line.separator");
+    for (int i = 0; i < 500 && !(file.exists() && FileUtil.getFileContent(file).equals(expected)); i++)
+      Thread.sleep(10);
+    assertEquals(expected, FileUtil.getFileContent(file));
+    assertEquals(1, l.getLoggedLines());
+  }
+
+  public void testLinesAreDroppedWhenTheQueueIsFull() throws Exception {
+    Logger.queueCapacity = 0;
+    l.log(ld);
+    l.log(ld);
+    l.close();
+    assertEquals(2, l.getDroppedLines());
+    assertEquals(0, l.getLoggedLines());
+    assertFalse(new File(l.getDirectory(), filename).exists());
+  }
+
+  public void testLinesAreDroppedAfterClose() throws Exception {
+    l.close();
+    l.log(ld);
+    assertEquals(1, l.getDroppedLines());
+    assertEquals(0, l.getDirectory().list().length);
+  }
+
+  public void testNewFileWhenMaximumSizeIsReached() throws Exception {
+    l.setMaximumFileSize(logLine.length() + System.getProperty("line.separator").length() + 1);
+    l.log(ld);
+    l.log(ld);
+    l.log(ld);
+    l.close();
+    String expected = logLine + System.getProperty("line.separator");
+    assertEquals(expected, FileUtil.getFileContent(new File(l.getDirectory(), filename)));
+    assertEquals(expected, FileUtil.getFileContent(new File(l.getDirectory(), "fitnesse20030306134205-1.log")));
+    assertEquals(expected, FileUtil.getFileContent(new File(l.getDirectory(), "fitnesse20030306134205-2.log")));
+    assertEquals(3, l.getDirectory().list().length);
+  }
+
+  public void testRotatedFilesAreCompressed() throws Exception {
+    l.setCompressRotatedFiles(true);
+    LogData nextDay = (LogData) ld.clone();
+    nextDay.time.add(Calendar.DATE, 1);
+    l.log(ld);
+    l.log(nextDay);
+    l.close();
+    File firstFile = getLogFileFor(ld);
+    assertFalse(firstFile.exists());
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+      new GZIPInputStream(new FileInputStream(firstFile.getPath() + ".gz"))));
+    assertEquals(logLine, reader.readLine());
+    assertNull(reader.readLine());
+    reader.close();
+    assertTrue(getLogFileFor(nextDay).exists());
+  }
+
+  public void testNoNewFileEachDayWhenNotRotatingDaily() throws Exception {
+    l.setRotateDaily(false);
+    LogData nextDay = (LogData) ld.clone();
+    nextDay.time.add(Calendar.DATE, 1);
+    l.log(ld);
+    l.log(nextDay);
+    l.close();
+    assertEquals(1, l.getDirectory().list().length);
+    assertEquals(l.formatLogLine(ld) + System.getProperty("line.separator") + l.formatLogLine(nextDay) + System.getProperty("line.separator"),
+      FileUtil.getFileContent(getLogFileFor(ld)));
+  }
+
   private File getLogFileFor(LogData data) {
     return new File(l.getDirectory(), Logger.makeLogFileName(data.time));
   }
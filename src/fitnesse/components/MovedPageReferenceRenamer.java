@@ -18,6 +18,10 @@ public class MovedPageReferenceRenamer extends ReferenceRenamer implements Widge
     this.newParentName = newParentName;
   }
 
+  protected WikiPage getReferencedPage() {
+    return pageToBeMoved;
+  }
+
   public void visit(AliasLinkWidget widget) throws Exception {
   }
 
@@ -17,6 +17,10 @@ public class PageReferenceRenamer extends ReferenceRenamer {
     this.newName = newName;
   }
 
+  protected WikiPage getReferencedPage() {
+    return subjectPage;
+  }
+
   public void visit(WikiWidget widget) throws Exception {
   }
 
@@ -2,10 +2,15 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.components;
 
+import util.FileUtil;
 import util.RegexTestCase;
+import fitnesse.wiki.CachingPage;
+import fitnesse.wiki.FileSystemPage;
 import fitnesse.wiki.InMemoryPage;
 import fitnesse.wiki.PageCrawler;
 import fitnesse.wiki.PageData;
+import fitnesse.wiki.PageDataCache;
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.PathParser;
 import fitnesse.wiki.WikiPage;
 
@@ -27,6 +32,32 @@ public class PageReferenceRenamerTest extends RegexTestCase {
     subWiki_pageTwo_pageTwoChild = crawler.addPage(subWiki_pageTwo, PathParser.parse("PageTwoChild"), "");
   }
 
+  public void testReferencesWrittenOnDiskAreRenamed() throws Exception {
+    int refreshInterval = PageSearchIndex.refreshInterval;
+    int validationInterval = PageDataCache.validationInterval;
+    int cacheTime = CachingPage.cacheTime;
+    PageSearchIndex.refreshInterval = 60000;
+    PageDataCache.validationInterval = 0;
+    CachingPage.cacheTime = 0;
+    try {
+      FileSystemPage fileSystemRoot = new FileSystemPage("testDir", "RooT");
+      PageCrawler fileSystemCrawler = fileSystemRoot.getPageCrawler();
+      WikiPage pageTwo = fileSystemCrawler.addPage(fileSystemRoot, PathParser.parse("PageTwo"), "");
+      fileSystemCrawler.addPage(fileSystemRoot, PathParser.parse("PageOne"), "no references");
+      PageSearchIndex.forPage(fileSystemRoot).findReferences("PageTwo", "");
+      FileUtil.createFile("testDir/RooT/PageOne/content.txt", "Stuff PageTwo Stuff\n");
+
+      new PageReferenceRenamer(fileSystemRoot, pageTwo, "PageThree").renameReferences();
+
+      assertEquals("Stuff PageThree Stuff\n", fileSystemRoot.getChildPage("PageOne").getData().getContent());
+    } finally {
+      PageSearchIndex.refreshInterval = refreshInterval;
+      PageDataCache.validationInterval = validationInterval;
+      CachingPage.cacheTime = cacheTime;
+      FileUtil.deleteFileSystemDirectory("testDir");
+    }
+  }
+
   public void testReferencesOnPageOne_1() throws Exception {
     checkChangesOnPageOne("Stuff PageTwo Stuff\n", "Stuff PageThree Stuff\n");
   }
@@ -6,29 +6,64 @@ import java.io.BufferedReader;
 import java.io.StringReader;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import fitnesse.FitNesseContext;
+import fitnesse.wiki.BaseWikiPage;
+import fitnesse.wiki.CommitingPage;
 import fitnesse.wiki.PageCrawler;
 import fitnesse.wiki.PageData;
 import fitnesse.wiki.PathParser;
 import fitnesse.wiki.WikiPage;
 import fitnesse.wiki.WikiPagePath;
 
+/**
+ * The most recently changed pages of one wiki, newest first, at most
+ * MAXIMUM_CHANGES of them and each page once.  The changes are kept in
+ * memory, as an array that every update replaces with compareAndSet, so
+ * saves never wait for each other.  They are written to the RecentChanges
+ * page by a background thread at most flushDelay milliseconds after a save,
+ * all changes since the last write at once, and without making a version of
+ * the page.  The changes are read from the page when the wiki is first
+ * changed or the feed is first read.
+ * <p/>
+ * There is one feed per root page; see forPage().
+ */
 public class RecentChanges {
+  public static final int MAXIMUM_CHANGES = 100;
+  public static long flushDelay = 1000;
+
   private static final String RECENT_CHANGES = "RecentChanges";
 
+  private final WikiPage root;
+  private final AtomicReference<Change[]> changes = new AtomicReference<Change[]>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final Object flushLock = new Object();
+  private Change[] flushed;
+
+  public RecentChanges(WikiPage root) {
+    this.root = root;
+  }
+
+  public static RecentChanges forPage(WikiPage page) throws Exception {
+    WikiPage root = page.getPageCrawler().getRoot(page);
+    if (root instanceof BaseWikiPage)
+      return ((BaseWikiPage) root).getRecentChanges();
+    return new RecentChanges(root);
+  }
+
   private static SimpleDateFormat makeDateFormat() {
     //SimpleDateFormat is not thread safe, so we need to create each instance independently.
     return new SimpleDateFormat(FitNesseContext.recentChangesDateFormat);
   }
 
   public static void updateRecentChanges(PageData pageData) throws Exception {
-    createRecentChangesIfNecessary(pageData);
-    addCurrentPageToRecentChanges(pageData);
+    forPage(pageData.getWikiPage()).update(pageData);
   }
 
   public static List<String> getRecentChangesLines(PageData recentChangesdata) throws Exception {
@@ -41,58 +76,165 @@ public class RecentChanges {
     return lines;
   }
 
-  private static void addCurrentPageToRecentChanges(PageData data) throws Exception {
-    WikiPage recentChanges = data.getWikiPage().getPageCrawler().getRoot(data.getWikiPage()).getChildPage(RECENT_CHANGES);
-    String resource = resource(data);
-    PageData recentChangesdata = recentChanges.getData();
-    List<String> lines = getRecentChangesLines(recentChangesdata);
-    removeDuplicate(lines, resource);
-    lines.add(0, makeRecentChangesLine(data));
-    trimExtraLines(lines);
-    String content = convertLinesToWikiText(lines);
-    recentChangesdata.setContent(content);
-    recentChanges.commit(recentChangesdata);
+  public void update(PageData data) throws Exception {
+    Change change = new Change(resource(data), user(data), makeDateFormat().format(new Date()));
+    while (true) {
+      Change[] current = getOrLoad();
+      if (changes.compareAndSet(current, withChange(current, change)))
+        break;
+    }
+    if (flushDelay <= 0)
+      flush();
+    else
+      scheduleFlush();
   }
 
-  private static String resource(PageData data) throws Exception {
-    WikiPagePath fullPath = data.getWikiPage().getPageCrawler().getFullPath(data.getWikiPage());
-    String resource = PathParser.render(fullPath);
-    return resource;
+  /**
+   * The changes, newest first.
+   */
+  public List<Change> getChanges() throws Exception {
+    return Collections.unmodifiableList(Arrays.asList(getOrLoad()));
   }
 
-  private static void createRecentChangesIfNecessary(PageData data) throws Exception {
-    PageCrawler crawler = data.getWikiPage().getPageCrawler();
-    WikiPage root = crawler.getRoot(data.getWikiPage());
-    if (!root.hasChildPage(RECENT_CHANGES))
-      crawler.addPage(root, PathParser.parse(RECENT_CHANGES), "");
+  /**
+   * Writes the changes to the RecentChanges page now, if there are any that
+   * have not been written yet.
+   */
+  public void flush() throws Exception {
+    synchronized (flushLock) {
+      Change[] current = changes.get();
+      if (current == null || current == flushed)
+        return;
+      WikiPage recentChanges = getOrCreatePage();
+      PageData data = recentChanges.getData();
+      data.setContent(convertChangesToWikiText(current));
+      if (recentChanges instanceof CommitingPage)
+        ((CommitingPage) recentChanges).commitWithoutVersion(data);
+      else
+        recentChanges.commit(data);
+      flushed = current;
+    }
   }
 
-  private static String makeRecentChangesLine(PageData data) throws Exception {
-    String user = data.getAttribute(PageData.LAST_MODIFYING_USER);
-    if (user == null)
-      user = "";
-    return "|" + resource(data) + "|" + user + "|" + makeDateFormat().format(new Date()) + "|";
+  private void scheduleFlush() {
+    if (!flushScheduled.compareAndSet(false, true))
+      return;
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          Thread.sleep(flushDelay);
+          flushScheduled.set(false);
+          flush();
+        } catch (Exception e) {
+          flushScheduled.set(false);
+          e.printStackTrace();
+        }
+      }
+    }, "RecentChanges");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private Change[] getOrLoad() throws Exception {
+    Change[] current = changes.get();
+    if (current != null)
+      return current;
+    changes.compareAndSet(null, load());
+    return changes.get();
   }
 
-  private static void removeDuplicate(List<String> lines, String resource) {
-    for (ListIterator<String> iterator = lines.listIterator(); iterator.hasNext();) {
-      String s = iterator.next();
-      if (s.startsWith("|" + resource + "|"))
-        iterator.remove();
+  private Change[] load() throws Exception {
+    WikiPage recentChanges = root.getChildPage(RECENT_CHANGES);
+    if (recentChanges == null)
+      return new Change[0];
+    List<Change> loaded = new ArrayList<Change>();
+    for (String line : getRecentChangesLines(recentChanges.getData())) {
+      if (loaded.size() < MAXIMUM_CHANGES)
+        loaded.add(new Change(line));
     }
+    Change[] current = loaded.toArray(new Change[loaded.size()]);
+    synchronized (flushLock) {
+      flushed = current;
+    }
+    return current;
   }
 
-  private static String convertLinesToWikiText(List<String> lines) {
-    StringBuffer buffer = new StringBuffer();
-    for (Iterator<String> iterator = lines.iterator(); iterator.hasNext();) {
-      String s = iterator.next();
-      buffer.append(s).append("\n");
+  private static Change[] withChange(Change[] current, Change change) {
+    List<Change> updated = new ArrayList<Change>(current.length + 1);
+    updated.add(change);
+    for (Change old : current) {
+      if (updated.size() < MAXIMUM_CHANGES && !old.line.startsWith("|" + change.resource + "|"))
+        updated.add(old);
     }
+    return updated.toArray(new Change[updated.size()]);
+  }
+
+  private WikiPage getOrCreatePage() throws Exception {
+    WikiPage recentChanges = root.getChildPage(RECENT_CHANGES);
+    if (recentChanges == null) {
+      PageCrawler crawler = root.getPageCrawler();
+      recentChanges = crawler.addPage(root, PathParser.parse(RECENT_CHANGES), "");
+    }
+    return recentChanges;
+  }
+
+  private static String resource(PageData data) throws Exception {
+    WikiPagePath fullPath = data.getWikiPage().getPageCrawler().getFullPath(data.getWikiPage());
+    return PathParser.render(fullPath);
+  }
+
+  private static String user(PageData data) throws Exception {
+    String user = data.getAttribute(PageData.LAST_MODIFYING_USER);
+    return user == null ? "" : user;
+  }
+
+  private static String convertChangesToWikiText(Change[] changes) {
+    StringBuilder buffer = new StringBuilder();
+    for (Change change : changes)
+      buffer.append(change.line).append("\n");
     return buffer.toString();
   }
 
-  private static void trimExtraLines(List<String> lines) {
-    while (lines.size() > 100)
-      lines.remove(100);
+  /**
+   * One line of the RecentChanges page: |resource|user|date|.  Lines that
+   * are not in that form are kept as they are, with null fields.
+   */
+  public static class Change {
+    private final String line;
+    private final String resource;
+    private final String user;
+    private final String date;
+
+    Change(String resource, String user, String date) {
+      this.line = "|" + resource + "|" + user + "|" + date + "|";
+      this.resource = resource;
+      this.user = user;
+      this.date = date;
+    }
+
+    Change(String line) {
+      String[] fields = line.split("\\|");
+      boolean wellFormed = fields.length >= 4;
+      this.line = line;
+      this.resource = wellFormed ? fields[1] : null;
+      this.user = wellFormed ? fields[2] : null;
+      this.date = wellFormed ? fields[3] : null;
+    }
+
+    public String getResource() {
+      return resource;
+    }
+
+    public String getUser() {
+      return user;
+    }
+
+    public String getDate() {
+      return date;
+    }
+
+    public String getLine() {
+      return line;
+    }
   }
 }
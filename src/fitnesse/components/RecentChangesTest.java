@@ -5,6 +5,8 @@ package fitnesse.components;
 import java.util.List;
 
 import util.RegexTestCase;
+import fitnesse.FitNesse;
+import fitnesse.testutil.FitNesseUtil;
 import fitnesse.wiki.InMemoryPage;
 import fitnesse.wiki.PageData;
 import fitnesse.wiki.WikiPage;
@@ -28,9 +30,8 @@ public class RecentChangesTest extends RegexTestCase {
   public void testFirstRecentChange() throws Exception {
     assertEquals(false, rootPage.hasChildPage("RecentChanges"));
     RecentChanges.updateRecentChanges(newPage.getData());
+    List<String> lines = flushedLines();
     assertEquals(true, rootPage.hasChildPage("RecentChanges"));
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
     assertEquals(1, lines.size());
     assertHasRegexp("SomeNewPage", lines.get(0));
   }
@@ -38,8 +39,7 @@ public class RecentChangesTest extends RegexTestCase {
   public void testTwoChanges() throws Exception {
     RecentChanges.updateRecentChanges(page1.getData());
     RecentChanges.updateRecentChanges(page2.getData());
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
+    List<String> lines = flushedLines();
     assertEquals(2, lines.size());
     assertHasRegexp("PageTwo", lines.get(0));
     assertHasRegexp("PageOne", lines.get(1));
@@ -48,8 +48,7 @@ public class RecentChangesTest extends RegexTestCase {
   public void testNoDuplicates() throws Exception {
     RecentChanges.updateRecentChanges(page1.getData());
     RecentChanges.updateRecentChanges(page1.getData());
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
+    List<String> lines = flushedLines();
     assertEquals(1, lines.size());
     assertHasRegexp("PageOne", lines.get(0));
   }
@@ -63,15 +62,13 @@ public class RecentChangesTest extends RegexTestCase {
       RecentChanges.updateRecentChanges(page.getData());
     }
 
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
+    List<String> lines = flushedLines();
     assertEquals(100, lines.size());
   }
 
   public void testUsernameColumnWithoutUser() throws Exception {
     RecentChanges.updateRecentChanges(page1.getData());
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
+    List<String> lines = flushedLines();
     String line = lines.get(0).toString();
     assertSubString("|PageOne||", line);
   }
@@ -82,9 +79,95 @@ public class RecentChangesTest extends RegexTestCase {
     page1.commit(data);
 
     RecentChanges.updateRecentChanges(page1.getData());
-    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
-    List<String> lines = RecentChanges.getRecentChangesLines(recentChanges.getData());
+    List<String> lines = flushedLines();
     String line = lines.get(0).toString();
     assertSubString("|PageOne|Aladdin|", line);
   }
+
+  public void testChangesAreWrittenInTheBackground() throws Exception {
+    RecentChanges.flushDelay = 10;
+    try {
+      RecentChanges.updateRecentChanges(page1.getData());
+      RecentChanges.updateRecentChanges(page2.getData());
+      for (int i = 0; i < 500 && !rootPage.hasChildPage("RecentChanges"); i++)
+        Thread.sleep(10);
+      assertEquals(2, flushedLines().size());
+    } finally {
+      RecentChanges.flushDelay = 1000;
+    }
+  }
+
+  public void testChangesAreWrittenWhenFitNesseStops() throws Exception {
+    FitNesse fitnesse = new FitNesse(FitNesseUtil.makeTestContext(rootPage), false);
+    RecentChanges.updateRecentChanges(page1.getData());
+    fitnesse.stop();
+    assertTrue(rootPage.hasChildPage("RecentChanges"));
+  }
+
+  public void testFeedHasChangesBeforeTheyAreWritten() throws Exception {
+    RecentChanges.updateRecentChanges(page1.getData());
+    RecentChanges.updateRecentChanges(page2.getData());
+    List<RecentChanges.Change> changes = RecentChanges.forPage(rootPage).getChanges();
+    assertEquals(2, changes.size());
+    assertEquals("PageTwo", changes.get(0).getResource());
+    assertEquals("", changes.get(0).getUser());
+    assertEquals("PageOne", changes.get(1).getResource());
+  }
+
+  public void testFeedIsReadFromThePage() throws Exception {
+    rootPage.addChildPage("RecentChanges");
+    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
+    PageData data = recentChanges.getData();
+    data.setContent("|PageOne|Aladdin|10:00:00 Mon, Jan 05, 2009|\n|PageTwo||10:00:00 Mon, Jan 05, 2009|\n");
+    recentChanges.commit(data);
+
+    RecentChanges.updateRecentChanges(page2.getData());
+    List<String> lines = flushedLines();
+    assertEquals(2, lines.size());
+    assertHasRegexp("PageTwo", lines.get(0));
+    assertEquals("|PageOne|Aladdin|10:00:00 Mon, Jan 05, 2009|", lines.get(1));
+  }
+
+  public void testWritingChangesMakesNoVersions() throws Exception {
+    RecentChanges.updateRecentChanges(page1.getData());
+    flushedLines();
+    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
+    int versions = recentChanges.getData().getVersions().size();
+    RecentChanges.updateRecentChanges(page2.getData());
+    assertEquals(2, flushedLines().size());
+    assertEquals(versions, recentChanges.getData().getVersions().size());
+  }
+
+  public void testConcurrentChangesAreAllKept() throws Exception {
+    final int threads = 8;
+    final int pagesPerThread = 10;
+    final WikiPage[][] pages = new WikiPage[threads][pagesPerThread];
+    for (int t = 0; t < threads; t++)
+      for (int p = 0; p < pagesPerThread; p++)
+        pages[t][p] = rootPage.addChildPage("ThreadPage" + t + "x" + p);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      workers[t] = new Thread() {
+        public void run() {
+          try {
+            for (WikiPage page : pages[thread])
+              RecentChanges.updateRecentChanges(page.getData());
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      workers[t].start();
+    }
+    for (Thread worker : workers)
+      worker.join();
+    assertEquals(threads * pagesPerThread, flushedLines().size());
+  }
+
+  private List<String> flushedLines() throws Exception {
+    RecentChanges.forPage(rootPage).flush();
+    WikiPage recentChanges = rootPage.getChildPage("RecentChanges");
+    return RecentChanges.getRecentChangesLines(recentChanges.getData());
+  }
 }
@@ -2,7 +2,11 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.components;
 
+import java.util.Set;
+import java.util.TreeSet;
+
 import fitnesse.wiki.PageData;
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.WikiPage;
 import fitnesse.wikitext.WidgetBuilder;
 import fitnesse.wikitext.WidgetVisitor;
@@ -24,8 +28,36 @@ public abstract class ReferenceRenamer implements TraversalListener, WidgetVisit
     this.root = root;
   }
 
+  /**
+   * The page whose references are renamed.  Only the pages that name it, and
+   * the page itself and its descendants, which may refer to it relatively,
+   * are looked at.
+   */
+  protected abstract WikiPage getReferencedPage();
+
+  /**
+   * Pages that were changed on disk since the last refresh of the search
+   * index are reread first, so that no reference is left pointing at the
+   * old name.
+   */
   public void renameReferences() throws Exception {
-    root.getPageCrawler().traverse(root, this);
+    PageSearchIndex index = PageSearchIndex.forPage(root);
+    if (index == null) {
+      root.getPageCrawler().traverse(root, this);
+      return;
+    }
+    index.refresh();
+    WikiPage referencedPage = getReferencedPage();
+    Set<String> candidates = new TreeSet<String>();
+    for (PageSearchIndex.Document document : index.findReferences(referencedPage.getName(), PageSearchIndex.pathOf(root)))
+      candidates.add(document.getPath());
+    for (PageSearchIndex.Document document : index.getDocuments(PageSearchIndex.pathOf(referencedPage)))
+      candidates.add(document.getPath());
+    for (String path : candidates) {
+      WikiPage page = index.getPage(path);
+      if (page != null)
+        processPage(page);
+    }
   }
 
   public void processPage(WikiPage currentPage) throws Exception {
@@ -2,9 +2,11 @@ package fitnesse.components;
 
 import static java.util.regex.Pattern.*;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.WikiPage;
 
 public class RegularExpressionWikiPageFinder extends WikiPageFinder {
@@ -28,4 +30,9 @@ public class RegularExpressionWikiPageFinder extends WikiPageFinder {
     return matcher.find();
   }
 
+  @Override
+  protected List<PageSearchIndex.Document> findCandidates(PageSearchIndex index, String path) throws Exception {
+    return index.findPattern(regularExpression, path);
+  }
+
 }
@@ -1,7 +1,11 @@
 package fitnesse.components;
 
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.WikiPage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TitleWikiPageFinder extends WikiPageFinder {
 
   private String searchString;
@@ -19,4 +23,19 @@ public class TitleWikiPageFinder extends WikiPageFinder {
     return matches;
   }
 
+  @Override
+  protected List<PageSearchIndex.Document> findCandidates(PageSearchIndex index, String path) throws Exception {
+    List<PageSearchIndex.Document> candidates = new ArrayList<PageSearchIndex.Document>();
+    for (PageSearchIndex.Document document : index.getDocuments(path)) {
+      if (document.getName().toLowerCase().indexOf(searchString) != -1)
+        candidates.add(document);
+    }
+    return candidates;
+  }
+
+  @Override
+  protected boolean candidateMatches(WikiPage page) {
+    return true;
+  }
+
 }
@@ -3,6 +3,7 @@ package fitnesse.components;
 import java.util.ArrayList;
 import java.util.List;
 
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.WikiPage;
 import fitnesse.wikitext.WidgetBuilder;
 import fitnesse.wikitext.WidgetVisitor;
@@ -56,7 +57,17 @@ public class WhereUsedPageFinder implements TraversalListener, SearchObserver, W
 
   public List<WikiPage> search(WikiPage page) throws Exception {
     hits.clear();
-    subjectPage.getPageCrawler().traverse(page, this);
+    PageSearchIndex index = PageSearchIndex.forPage(page);
+    if (index == null)
+      subjectPage.getPageCrawler().traverse(page, this);
+    else {
+      index.refreshIfStale();
+      for (PageSearchIndex.Document candidate : index.findReferences(subjectPage.getName(), PageSearchIndex.pathOf(page))) {
+        WikiPage candidatePage = index.getPage(candidate);
+        if (candidatePage != null)
+          processPage(candidatePage);
+      }
+    }
     return hits;
   }
 
@@ -1,5 +1,6 @@
 package fitnesse.components;
 
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.WikiPage;
 
 import java.util.ArrayList;
@@ -16,6 +17,22 @@ public abstract class WikiPageFinder implements TraversalListener, PageFinder {
 
   protected abstract boolean pageMatches(WikiPage page) throws Exception;
 
+  /**
+   * The pages at or below the given path that may match, found with the
+   * search index, or null to look at every page.
+   */
+  protected List<PageSearchIndex.Document> findCandidates(PageSearchIndex index, String path) throws Exception {
+    return null;
+  }
+
+  /**
+   * Whether a page found by findCandidates matches.  Finders whose candidates
+   * all match need not look at the page again.
+   */
+  protected boolean candidateMatches(WikiPage page) throws Exception {
+    return pageMatches(page);
+  }
+
   public void processPage(WikiPage page) throws Exception {
     if (pageMatches(page)) {
       observer.hit(page);
@@ -24,7 +41,21 @@ public abstract class WikiPageFinder implements TraversalListener, PageFinder {
 
   public List<WikiPage> search(WikiPage page) throws Exception {
     hits = new ArrayList<WikiPage>();
-    page.getPageCrawler().traverse(page, this);
+    PageSearchIndex index = PageSearchIndex.forPage(page);
+    List<PageSearchIndex.Document> candidates = index == null ? null :
+      findCandidates(index, PageSearchIndex.pathOf(page));
+    if (candidates == null)
+      page.getPageCrawler().traverse(page, this);
+    else
+      searchCandidates(index, candidates);
     return hits;
   }
-}
\ No newline at end of file
+
+  private void searchCandidates(PageSearchIndex index, List<PageSearchIndex.Document> candidates) throws Exception {
+    for (PageSearchIndex.Document candidate : candidates) {
+      WikiPage page = index.getPage(candidate);
+      if (page != null && candidateMatches(page))
+        observer.hit(page);
+    }
+  }
+}
@@ -2,13 +2,58 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.http;
 
-import java.nio.ByteBuffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * A response whose content is sent while it is made.  What is added is
+ * collected until bufferSize bytes are waiting, then sent as one chunk; what
+ * is waiting is also sent when flush() is called, when the chunks are
+ * closed, and at most flushDelay milliseconds after it was added, so that
+ * progress still shows.  When the client accepts it (see
+ * compressIfAccepted()) the content is sent gzip compressed, flushed at the
+ * same moments.
+ * <p/>
+ * getContentSize() is the size of the content as it was added;
+ * getBytesSent() is what was sent for it, headers and chunk sizes included.
+ */
 public class ChunkedResponse extends Response {
+  public static int bufferSize = 8192;
+  public static long flushDelay = 100;
+  public static boolean compressionEnabled = true;
+
+  private static final Timer flushTimer = new Timer("ChunkedResponse flush timer", true);
+  private static final ExecutorService flushThreads = Executors.newCachedThreadPool(new ThreadFactory() {
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ChunkedResponse flush");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+  private static final Constructor<GZIPOutputStream> syncFlushGzip = findSyncFlushGzipConstructor();
+  private static final byte[] CRLF_BYTES = CRLF.getBytes();
+
   private ResponseSender sender;
   private int bytesSent = 0;
+  private long bytesOnWire = 0;
   private boolean isReadyToSend = false;
   private boolean dontChunk = false;
+  private boolean compressionAccepted = false;
+  private boolean compress = false;
+
+  private final ChunkBuffer buffer = new ChunkBuffer();
+  private OutputStream content = buffer;
+  private int pending = 0;
+  private long pendingSince;
+  private boolean flushScheduled = false;
 
   public ChunkedResponse(String format) {
     super(format);
@@ -17,9 +62,14 @@ public class ChunkedResponse extends Response {
   }
 
   public void readyToSend(ResponseSender sender) throws Exception {
-    this.sender = sender;
+    synchronized (this) {
+      this.sender = sender;
+      compress = compressionAccepted && !dontChunk;
+      if (compress)
+        content = syncFlushGzip.newInstance(buffer, bufferSize, true);
+    }
     addStandardHeaders();
-    sender.send(makeHttpHeaders().getBytes());
+    send(makeHttpHeaders().getBytes());
     setReadyToSend(true);
     synchronized (this) {
       notifyAll();
@@ -34,6 +84,34 @@ public class ChunkedResponse extends Response {
   protected void addSpecificHeaders() {
     if (!dontChunk)
       addHeader("Transfer-Encoding", "chunked");
+    if (compress) {
+      addHeader("Content-Encoding", "gzip");
+      addHeader("Vary", "Accept-Encoding");
+    }
+  }
+
+  public boolean isSelfDelimiting() {
+    return !dontChunk;
+  }
+
+  /**
+   * Compress the content with gzip if the request says the client accepts
+   * that.  Must be called before the response is ready to send.
+   */
+  public void compressIfAccepted(Request request) {
+    compressionAccepted = compressionEnabled && syncFlushGzip != null && request.acceptsEncoding("gzip");
+  }
+
+  private static Constructor<GZIPOutputStream> findSyncFlushGzipConstructor() {
+    try {
+      return GZIPOutputStream.class.getConstructor(OutputStream.class, int.class, boolean.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  public boolean isCompressed() {
+    return compress;
   }
 
   public static String asHex(int value) {
@@ -45,34 +123,86 @@ public class ChunkedResponse extends Response {
       add(getEncodedBytes(text));
   }
 
-  public void add(byte[] bytes) throws Exception {
+  public synchronized void add(byte[] bytes) throws Exception {
     if (bytes == null || bytes.length == 0)
       return;
-    if (dontChunk) {
-      sender.send(bytes);
-    } else {
-      String sizeLine = asHex(bytes.length) + CRLF;
-      ByteBuffer chunk = ByteBuffer.allocate(sizeLine.length() + bytes.length + 2);
-      chunk.put(sizeLine.getBytes()).put(bytes).put(CRLF.getBytes());
-      sender.send(chunk.array());
-    }
+    long now = System.currentTimeMillis();
+    if (pending == 0)
+      pendingSince = now;
+    content.write(bytes);
+    pending += bytes.length;
     bytesSent += bytes.length;
+    if (pending >= bufferSize || (flushDelay > 0 && now - pendingSince >= flushDelay))
+      sendPending(false);
+    else
+      scheduleFlush();
+  }
+
+  /**
+   * Sends what was added and not sent yet now.
+   */
+  public synchronized void flush() throws Exception {
+    sendPending(false);
+  }
+
+  private void sendPending(boolean finish) throws Exception {
+    if (compress) {
+      if (finish)
+        ((GZIPOutputStream) content).finish();
+      else if (pending > 0)
+        content.flush();
+    }
+    pending = 0;
+    if (buffer.size() == 0)
+      return;
+    if (dontChunk)
+      send(buffer.toByteArray());
+    else
+      send(buffer.toChunk());
+    buffer.reset();
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled || flushDelay <= 0)
+      return;
+    flushScheduled = true;
+    flushTimer.schedule(new TimerTask() {
+      public void run() {
+        flushThreads.execute(new Runnable() {
+          public void run() {
+            flushWaitingContent();
+          }
+        });
+      }
+    }, flushDelay);
+  }
+
+  private synchronized void flushWaitingContent() {
+    flushScheduled = false;
+    try {
+      if (pending > 0)
+        sendPending(false);
+    } catch (Exception e) {
+      // the response was closed, or the client went away.
+    }
   }
 
   public void addTrailingHeader(String key, String value) throws Exception {
     String header = key + ": " + value + CRLF;
-    sender.send(header.getBytes());
+    send(header.getBytes());
   }
 
-  public void closeChunks() throws Exception {
-    sender.send(("0" + CRLF).getBytes());
+  public synchronized void closeChunks() throws Exception {
+    sendPending(true);
+    send(("0" + CRLF).getBytes());
   }
 
   public void closeTrailer() throws Exception {
-    sender.send(CRLF.getBytes());
+    send(CRLF.getBytes());
   }
 
-  public void close() throws Exception {
+  public synchronized void close() throws Exception {
+    sendPending(true);
     sender.close();
   }
 
@@ -86,6 +216,15 @@ public class ChunkedResponse extends Response {
     return bytesSent;
   }
 
+  public synchronized long getBytesSent() {
+    return bytesOnWire;
+  }
+
+  private synchronized void send(byte[] bytes) throws Exception {
+    sender.send(bytes);
+    bytesOnWire += bytes.length;
+  }
+
   private synchronized void setReadyToSend(boolean isReadyToSend) {
     this.isReadyToSend = isReadyToSend;
   }
@@ -97,4 +236,22 @@ public class ChunkedResponse extends Response {
   public boolean isChunkingTurnedOff() {
     return dontChunk;
   }
+
+  private static class ChunkBuffer extends ByteArrayOutputStream {
+    ChunkBuffer() {
+      super(bufferSize + 64);
+    }
+
+    byte[] toChunk() {
+      byte[] sizeLine = (asHex(count) + CRLF).getBytes();
+      byte[] chunk = new byte[sizeLine.length + count + CRLF_BYTES.length];
+      System.arraycopy(sizeLine, 0, chunk, 0, sizeLine.length);
+      System.arraycopy(buf, 0, chunk, sizeLine.length, count);
+      System.arraycopy(CRLF_BYTES, 0, chunk, sizeLine.length + count, CRLF_BYTES.length);
+      return chunk;
+    }
+
+    public void close() throws IOException {
+    }
+  }
 }
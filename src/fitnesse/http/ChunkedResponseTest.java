@@ -9,7 +9,12 @@ import static org.junit.Assert.assertTrue;
 import static util.RegexTestCase.assertHasRegexp;
 import static util.RegexTestCase.assertSubString;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -20,9 +25,11 @@ public class ChunkedResponseTest implements ResponseSender {
   private boolean closed = false;
 
   public StringBuffer buffer;
+  private ByteArrayOutputStream sentBytes = new ByteArrayOutputStream();
 
   public void send(byte[] bytes) throws Exception {
     buffer.append(new String(bytes, "UTF-8"));
+    sentBytes.write(bytes);
   }
 
   public void close() {
@@ -71,6 +78,7 @@ public class ChunkedResponseTest implements ResponseSender {
   public void testOneChunk() throws Exception {
     buffer = new StringBuffer();
     response.add("some more text");
+    response.flush();
 
     String text = buffer.toString();
     assertEquals("e\r\nsome more text\r\n", text);
@@ -80,12 +88,158 @@ public class ChunkedResponseTest implements ResponseSender {
   public void testTwoChunks() throws Exception {
     buffer = new StringBuffer();
     response.add("one");
+    response.flush();
     response.add("two");
+    response.flush();
 
     String text = buffer.toString();
     assertEquals("3\r\none\r\n3\r\ntwo\r\n", text);
   }
 
+  @Test
+  public void smallAdditionsAreSentAsOneChunk() throws Exception {
+    buffer = new StringBuffer();
+    response.add("one");
+    response.add("two");
+    assertEquals("", buffer.toString());
+    response.closeChunks();
+    assertEquals("6\r\nonetwo\r\n0\r\n", buffer.toString());
+  }
+
+  @Test
+  public void chunkIsSentWhenTheBufferIsFull() throws Exception {
+    buffer = new StringBuffer();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < ChunkedResponse.bufferSize; i++)
+      text.append('x');
+    response.add("one");
+    response.add(text.toString());
+    assertEquals(ChunkedResponse.asHex(ChunkedResponse.bufferSize + 3) + "\r\none" + text + "\r\n", buffer.toString());
+  }
+
+  @Test
+  public void waitingAdditionsAreSentAfterTheFlushDelay() throws Exception {
+    buffer = new StringBuffer();
+    response.add("one");
+    for (int i = 0; i < 100 && buffer.length() == 0; i++)
+      Thread.sleep(ChunkedResponse.flushDelay / 5);
+    assertEquals("3\r\none\r\n", buffer.toString());
+  }
+
+  @Test
+  public void slowClientDoesNotHoldUpTheFlushesOfOtherResponses() throws Exception {
+    final Object stuck = new Object();
+    ChunkedResponse slow = new ChunkedResponse("html");
+    slow.readyToSend(new ResponseSender() {
+      private boolean headersSent = false;
+
+      public void send(byte[] bytes) throws Exception {
+        if (!headersSent) {
+          headersSent = true;
+          return;
+        }
+        synchronized (stuck) {
+          stuck.wait();
+        }
+      }
+
+      public void close() {
+      }
+
+      public Socket getSocket() {
+        return null;
+      }
+    });
+    try {
+      slow.add("never arrives");
+      Thread.sleep(ChunkedResponse.flushDelay * 2);
+      buffer = new StringBuffer();
+      response.add("one");
+      for (int i = 0; i < 100 && buffer.length() == 0; i++)
+        Thread.sleep(ChunkedResponse.flushDelay / 5);
+      assertEquals("3\r\none\r\n", buffer.toString());
+    } finally {
+      synchronized (stuck) {
+        stuck.notifyAll();
+      }
+    }
+  }
+
+  @Test
+  public void bytesSentIncludesHeadersAndChunkSizes() throws Exception {
+    int headerSize = buffer.length();
+    response.add("12345");
+    response.closeAll();
+    assertEquals(headerSize + "5\r\n12345\r\n0\r\n\r\n".length(), response.getBytesSent());
+    assertEquals(5, response.getContentSize());
+  }
+
+  @Test
+  public void contentIsCompressedWhenTheClientAcceptsGzip() throws Exception {
+    MockRequest request = new MockRequest();
+    request.addHeader("Accept-Encoding", "gzip, deflate");
+    response = new ChunkedResponse("html");
+    response.compressIfAccepted(request);
+    buffer = new StringBuffer();
+    sentBytes.reset();
+    response.readyToSend(this);
+    assertTrue(response.isCompressed());
+    assertHasRegexp("Content-Encoding: gzip", buffer.toString());
+    int headerSize = sentBytes.size();
+
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      text.append("<tr><td>row ").append(i).append("</td></tr>\n");
+    response.add("first");
+    response.flush();
+    byte[] flushed = gunzipChunks(headerSize, false);
+    assertEquals("first", new String(flushed, "UTF-8"));
+    response.add(text.toString());
+    response.closeAll();
+
+    byte[] content = gunzipChunks(headerSize, true);
+    assertEquals("first" + text, new String(content, "UTF-8"));
+    assertEquals(5 + text.length(), response.getContentSize());
+    assertTrue(response.getBytesSent() < headerSize + text.length() / 4);
+  }
+
+  @Test
+  public void contentIsNotCompressedWithoutAcceptEncoding() throws Exception {
+    response = new ChunkedResponse("html");
+    response.compressIfAccepted(new MockRequest());
+    buffer = new StringBuffer();
+    response.readyToSend(this);
+    assertFalse(response.isCompressed());
+    assertFalse(buffer.toString().contains("Content-Encoding"));
+  }
+
+  private byte[] gunzipChunks(int offset, boolean complete) throws Exception {
+    byte[] sent = sentBytes.toByteArray();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    int position = offset;
+    while (position < sent.length) {
+      int lineEnd = position;
+      while (sent[lineEnd] != '\r')
+        lineEnd++;
+      int size = Integer.parseInt(new String(sent, position, lineEnd - position), 16);
+      if (size == 0)
+        break;
+      body.write(sent, lineEnd + 2, size);
+      position = lineEnd + 2 + size + 2;
+    }
+    InputStream input = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] bytes = new byte[1024];
+    int read;
+    try {
+      while ((read = input.read(bytes)) != -1)
+        content.write(bytes, 0, read);
+    } catch (EOFException e) {
+      assertFalse(complete);
+    }
+    return content.toByteArray();
+  }
+
   @Test
   public void testSimpleClosing() throws Exception {
     assertFalse(closed);
@@ -0,0 +1,80 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sends a file, or a range of its bytes.  Senders that are
+ * FileResponseSenders are handed the file channel, so the server can send it
+ * with FileChannel.transferTo; others are sent the file in blocks.
+ */
+public class FileResponse extends Response {
+  private static final int BLOCK_SIZE = 65536;
+
+  private File file;
+  private long position;
+  private long count;
+
+  public FileResponse() {
+    super("html");
+  }
+
+  public void setBody(File file) {
+    setBody(file, 0, file.length());
+  }
+
+  public void setBody(File file, long position, long count) {
+    this.file = file;
+    this.position = position;
+    this.count = count;
+  }
+
+  public void readyToSend(ResponseSender sender) throws Exception {
+    FileInputStream input = new FileInputStream(file);
+    try {
+      addStandardHeaders();
+      sender.send(makeHttpHeaders().getBytes());
+      FileChannel channel = input.getChannel();
+      if (sender instanceof FileResponseSender)
+        ((FileResponseSender) sender).sendFile(channel, position, count);
+      else
+        sendInBlocks(channel, sender);
+    } finally {
+      input.close();
+      sender.close();
+    }
+  }
+
+  private void sendInBlocks(FileChannel channel, ResponseSender sender) throws Exception {
+    ByteBuffer block = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, Math.max(count, 1)));
+    long sent = 0;
+    while (sent < count) {
+      block.clear();
+      block.limit((int) Math.min(block.capacity(), count - sent));
+      int read = channel.read(block, position + sent);
+      if (read < 0)
+        break;
+      byte[] bytes = new byte[read];
+      block.flip();
+      block.get(bytes);
+      sender.send(bytes);
+      sent += read;
+    }
+  }
+
+  public boolean isSelfDelimiting() {
+    return true;
+  }
+
+  protected void addSpecificHeaders() {
+    addHeader("Content-Length", String.valueOf(count));
+  }
+
+  public int getContentSize() {
+    return (int) count;
+  }
+}
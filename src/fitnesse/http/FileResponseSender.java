@@ -0,0 +1,13 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.http;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * A ResponseSender that can send part of a file without reading it into
+ * memory first, as FileResponse does for large files.
+ */
+public interface FileResponseSender extends ResponseSender {
+  public void sendFile(FileChannel file, long position, long count) throws Exception;
+}
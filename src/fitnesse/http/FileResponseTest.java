@@ -0,0 +1,83 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import util.FileUtil;
+import util.RegexTestCase;
+
+public class FileResponseTest extends RegexTestCase implements FileResponseSender {
+  private FileResponse response;
+  private boolean closed = false;
+  private ByteArrayOutputStream output;
+  private File testFile = new File("testFile.test");
+  private int filesSent = 0;
+
+  public void setUp() throws Exception {
+    response = new FileResponse();
+    output = new ByteArrayOutputStream();
+  }
+
+  public void tearDown() throws Exception {
+    FileUtil.deleteFile(testFile);
+  }
+
+  public void testFileIsHandedToTheSender() throws Exception {
+    FileUtil.createFile(testFile, "some content");
+    response.setBody(testFile);
+    response.readyToSend(this);
+    assertTrue(closed);
+    assertEquals(1, filesSent);
+
+    ResponseParser result = new ResponseParser(new ByteArrayInputStream(output.toByteArray()));
+    assertEquals(200, result.getStatus());
+    assertEquals("12", result.getHeader("Content-Length"));
+    assertEquals("some content", result.getBody());
+  }
+
+  public void testPartOfAFile() throws Exception {
+    FileUtil.createFile(testFile, "some content");
+    response.setBody(testFile, 5, 4);
+    response.setStatus(206);
+    response.readyToSend(this);
+
+    ResponseParser result = new ResponseParser(new ByteArrayInputStream(output.toByteArray()));
+    assertEquals(206, result.getStatus());
+    assertEquals("4", result.getHeader("Content-Length"));
+    assertEquals("cont", result.getBody());
+  }
+
+  public void testLargeFileInBlocksToOtherSenders() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 20000; i++)
+      content.append("line ").append(i).append('\n');
+    FileUtil.createFile(testFile, content.toString());
+    response.setBody(testFile, 3, content.length() - 3);
+    MockResponseSender sender = new MockResponseSender();
+    sender.doSending(response);
+    assertTrue(sender.sentData().endsWith("\r\n\r\n" + content.substring(3)));
+  }
+
+  public void send(byte[] bytes) throws Exception {
+    output.write(bytes);
+  }
+
+  public void sendFile(FileChannel file, long position, long count) throws Exception {
+    file.transferTo(position, count, Channels.newChannel(output));
+    filesSent++;
+  }
+
+  public void close() throws Exception {
+    closed = true;
+  }
+
+  public Socket getSocket() throws Exception {
+    return null;
+  }
+}
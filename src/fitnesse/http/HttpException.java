@@ -4,9 +4,19 @@ package fitnesse.http;
 
 public class HttpException extends Exception {
   private static final long serialVersionUID = 1L;
+  private final int status;
 
   public HttpException(String message) {
+    this(400, message);
+  }
+
+  public HttpException(int status, String message) {
     super(message);
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
   }
 
 }
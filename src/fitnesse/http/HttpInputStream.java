@@ -0,0 +1,261 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A buffered input stream with what Request needs to parse HTTP: lines, and
+ * the bytes up to a boundary.  Both are found by scanning the buffer a block
+ * at a time; boundaries are searched with Boyer-Moore-Horspool, so most
+ * bytes of an upload are not even looked at.  Bytes that were read ahead
+ * stay in the buffer, so when a connection keeps one of these for all its
+ * requests, pipelined requests are not lost.
+ */
+public class HttpInputStream extends InputStream {
+  public static final int BUFFER_SIZE = 16384;
+
+  private final InputStream input;
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private volatile long bytesConsumed;
+  private volatile long bytesRead;
+  private int markPosition = -1;
+  private int markLimit;
+  private long markBytesConsumed;
+
+  public HttpInputStream(InputStream input) {
+    this.input = input;
+  }
+
+  public long getBytesConsumed() {
+    return bytesConsumed;
+  }
+
+  /**
+   * The bytes read from the underlying stream so far, including those that
+   * are buffered and not consumed yet.
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  public int read() throws IOException {
+    if (position == limit && !fill())
+      return -1;
+    bytesConsumed++;
+    return buffer[position++] & 0xff;
+  }
+
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0)
+      return 0;
+    if (position == limit) {
+      if (length >= buffer.length && markPosition < 0) {
+        int read = input.read(bytes, offset, length);
+        if (read > 0) {
+          bytesConsumed += read;
+          bytesRead += read;
+        }
+        return read;
+      }
+      if (!fill())
+        return -1;
+    }
+    int count = Math.min(length, limit - position);
+    System.arraycopy(buffer, position, bytes, offset, count);
+    consume(count);
+    return count;
+  }
+
+  public int available() throws IOException {
+    return (limit - position) + input.available();
+  }
+
+  public void close() throws IOException {
+    input.close();
+  }
+
+  public boolean markSupported() {
+    return true;
+  }
+
+  public void mark(int readLimit) {
+    markPosition = position;
+    markLimit = readLimit;
+    markBytesConsumed = bytesConsumed;
+  }
+
+  public void reset() throws IOException {
+    if (markPosition < 0)
+      throw new IOException("Resetting to invalid mark");
+    position = markPosition;
+    bytesConsumed = markBytesConsumed;
+  }
+
+  /**
+   * The next line, without its line end, or what is left of the stream if
+   * it ends first (null if nothing is).  Lines longer than maximumLength
+   * bytes are refused with an HttpException.
+   */
+  public String readLine(int maximumLength, String tooLongMessage) throws IOException, HttpException {
+    int scanned = position;
+    while (true) {
+      for (int i = scanned; i < limit; i++) {
+        if (buffer[i] == '\n') {
+          int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+          checkLength(end - position, maximumLength, tooLongMessage);
+          String line = new String(buffer, position, end - position, "UTF-8");
+          consume(i + 1 - position);
+          return line;
+        }
+      }
+      checkLength(limit - position, maximumLength + 1, tooLongMessage);
+      scanned = limit - position;
+      if (!fill()) {
+        if (position == limit)
+          return null;
+        String rest = new String(buffer, position, limit - position, "UTF-8");
+        consume(limit - position);
+        return rest;
+      }
+      scanned += position;
+    }
+  }
+
+  private static void checkLength(int length, int maximumLength, String message) throws HttpException {
+    if (length > maximumLength)
+      throw new HttpException(431, message);
+  }
+
+  /**
+   * Reads exactly count bytes, or fewer if the stream ends first.
+   */
+  public byte[] readBytes(int count) throws IOException {
+    byte[] bytes = new byte[count];
+    int read = 0;
+    while (read < count) {
+      int n = read(bytes, read, count - read);
+      if (n < 0) {
+        byte[] shorter = new byte[read];
+        System.arraycopy(bytes, 0, shorter, 0, read);
+        return shorter;
+      }
+      read += n;
+    }
+    return bytes;
+  }
+
+  /**
+   * Skips up to count bytes; returns how many were skipped.
+   */
+  public long skip(long count) throws IOException {
+    long skipped = 0;
+    while (skipped < count) {
+      if (position == limit && !fill())
+        break;
+      int n = (int) Math.min(count - skipped, limit - position);
+      consume(n);
+      skipped += n;
+    }
+    return skipped;
+  }
+
+  /**
+   * Copies the bytes up to the boundary to output, and consumes the boundary
+   * too.  At most maximumLength bytes are looked at, boundary included; if
+   * the boundary is not among them, or the stream ends first, what was
+   * looked at is copied and false is answered.
+   */
+  public boolean copyUpTo(byte[] boundary, OutputStream output, long maximumLength) throws IOException {
+    int[] skipTable = makeSkipTable(boundary);
+    long remaining = maximumLength;
+    while (true) {
+      int available = (int) Math.min(limit - position, remaining);
+      int found = indexOf(boundary, skipTable, position, position + available);
+      if (found >= 0) {
+        write(output, found - position);
+        consume(boundary.length);
+        return true;
+      }
+      if (available == remaining) {
+        write(output, available);
+        return false;
+      }
+      int copied = available - Math.min(available, boundary.length - 1);
+      write(output, copied);
+      remaining -= copied;
+      if (!fill()) {
+        write(output, (int) Math.min(limit - position, remaining));
+        return false;
+      }
+    }
+  }
+
+  private void write(OutputStream output, int count) throws IOException {
+    if (output != null && count > 0)
+      output.write(buffer, position, count);
+    consume(count);
+  }
+
+  private void consume(int count) {
+    position += count;
+    bytesConsumed += count;
+  }
+
+  private static int[] makeSkipTable(byte[] pattern) {
+    int[] skip = new int[256];
+    for (int i = 0; i < skip.length; i++)
+      skip[i] = pattern.length;
+    for (int i = 0; i < pattern.length - 1; i++)
+      skip[pattern[i] & 0xff] = pattern.length - 1 - i;
+    return skip;
+  }
+
+  private int indexOf(byte[] pattern, int[] skip, int from, int to) {
+    int last = pattern.length - 1;
+    int i = from;
+    while (i + last < to) {
+      int j = last;
+      while (buffer[i + j] == pattern[j]) {
+        if (j == 0)
+          return i;
+        j--;
+      }
+      i += skip[buffer[i + last] & 0xff];
+    }
+    return -1;
+  }
+
+  /**
+   * Reads more bytes into the buffer, keeping those that were not consumed
+   * yet, and those after the mark while it is valid; answers false at the
+   * end of the stream.
+   */
+  private boolean fill() throws IOException {
+    if (markPosition >= 0 && position - markPosition > markLimit)
+      markPosition = -1;
+    int keep = markPosition >= 0 ? markPosition : position;
+    if (keep > 0) {
+      System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+      limit -= keep;
+      position -= keep;
+      if (markPosition >= 0)
+        markPosition -= keep;
+    }
+    if (limit == buffer.length) {
+      byte[] larger = new byte[buffer.length * 2];
+      System.arraycopy(buffer, 0, larger, 0, limit);
+      buffer = larger;
+    }
+    int read = input.read(buffer, limit, buffer.length - limit);
+    if (read <= 0)
+      return false;
+    limit += read;
+    bytesRead += read;
+    return true;
+  }
+}
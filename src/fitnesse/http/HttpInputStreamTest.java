@@ -0,0 +1,163 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class HttpInputStreamTest extends TestCase {
+  private HttpInputStream input;
+
+  private void prepare(String content) throws Exception {
+    input = new HttpInputStream(new ByteArrayInputStream(content.getBytes("UTF-8")));
+  }
+
+  public void testReadLine() throws Exception {
+    prepare("first line\r\nsecond line\nlast");
+    assertEquals("first line", input.readLine(100, "too long"));
+    assertEquals("second line", input.readLine(100, "too long"));
+    assertEquals("last", input.readLine(100, "too long"));
+    assertNull(input.readLine(100, "too long"));
+    assertEquals(28, input.getBytesConsumed());
+  }
+
+  public void testEmptyLines() throws Exception {
+    prepare("\r\n\nx\r\n");
+    assertEquals("", input.readLine(100, "too long"));
+    assertEquals("", input.readLine(100, "too long"));
+    assertEquals("x", input.readLine(100, "too long"));
+  }
+
+  public void testLinesArrivingOneByteAtATime() throws Exception {
+    input = new HttpInputStream(new OneByteAtATime("GET / HTTP/1.1\r\nHost: here\r\n\r\n"));
+    assertEquals("GET / HTTP/1.1", input.readLine(100, "too long"));
+    assertEquals("Host: here", input.readLine(100, "too long"));
+    assertEquals("", input.readLine(100, "too long"));
+    assertNull(input.readLine(100, "too long"));
+  }
+
+  public void testLineLongerThanTheBuffer() throws Exception {
+    String line = makeString(HttpInputStream.BUFFER_SIZE * 3);
+    prepare(line + "\r\nnext\r\n");
+    assertEquals(line, input.readLine(line.length(), "too long"));
+    assertEquals("next", input.readLine(100, "too long"));
+  }
+
+  public void testTooLongLineIsRefused() throws Exception {
+    prepare("0123456789\r\n");
+    try {
+      input.readLine(9, "The line is too long");
+      fail("should have thrown");
+    } catch (HttpException e) {
+      assertEquals(431, e.getStatus());
+      assertEquals("The line is too long", e.getMessage());
+    }
+  }
+
+  public void testLineOfExactlyTheMaximumLength() throws Exception {
+    prepare("0123456789\r\n");
+    assertEquals("0123456789", input.readLine(10, "too long"));
+  }
+
+  public void testCopyUpToBoundary() throws Exception {
+    prepare("some content\r\n--boundary\r\nrest");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertTrue(input.copyUpTo("\r\n--boundary".getBytes(), output, 1000));
+    assertEquals("some content", output.toString());
+    assertEquals("", input.readLine(100, "too long"));
+    assertEquals("rest", input.readLine(100, "too long"));
+  }
+
+  public void testCopyUpToBoundarySpanningRefills() throws Exception {
+    String boundary = "\r\n--boundary";
+    for (int offset = -boundary.length(); offset <= 1; offset++) {
+      String content = makeString(HttpInputStream.BUFFER_SIZE + offset);
+      prepare(content + boundary + "after");
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      assertTrue(input.copyUpTo(boundary.getBytes(), output, Long.MAX_VALUE));
+      assertEquals(content, output.toString());
+      assertEquals("after", input.readLine(100, "too long"));
+    }
+  }
+
+  public void testCopyUpToBoundaryArrivingOneByteAtATime() throws Exception {
+    input = new HttpInputStream(new OneByteAtATime("abc\r\n-\r\n--b\r\n--bob--"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertTrue(input.copyUpTo("\r\n--bob".getBytes(), output, 1000));
+    assertEquals("abc\r\n-\r\n--b", output.toString());
+    assertEquals("--", input.readLine(100, "too long"));
+  }
+
+  public void testCopyUpToMissingBoundary() throws Exception {
+    prepare("no boundary here");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertFalse(input.copyUpTo("--bob".getBytes(), output, 1000));
+    assertEquals("no boundary here", output.toString());
+  }
+
+  public void testCopyUpToStopsAtTheMaximumLength() throws Exception {
+    prepare("0123456789--bob");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertFalse(input.copyUpTo("--bob".getBytes(), output, 8));
+    assertEquals("01234567", output.toString());
+    assertEquals(8, input.getBytesConsumed());
+  }
+
+  public void testReadBytesAndSkip() throws Exception {
+    prepare("0123456789");
+    assertEquals("012", new String(input.readBytes(3)));
+    assertEquals(4, input.skip(4));
+    assertEquals("789", new String(input.readBytes(5)));
+    assertEquals(0, input.skip(1));
+    assertEquals(-1, input.read());
+  }
+
+  public void testMarkAndReset() throws Exception {
+    prepare("abc");
+    input.mark(1);
+    assertEquals('a', input.read());
+    input.reset();
+    assertEquals("abc", input.readLine(100, "too long"));
+  }
+
+  public void testReadAheadIsKeptForTheNextReader() throws Exception {
+    prepare("one\r\ntwo\r\n");
+    assertEquals("one", input.readLine(100, "too long"));
+    assertTrue(input.available() > 0);
+    assertEquals("two", input.readLine(100, "too long"));
+    assertEquals(10, input.getBytesRead());
+  }
+
+  private static String makeString(int length) {
+    StringBuffer buffer = new StringBuffer(length);
+    for (int i = 0; i < length; i++)
+      buffer.append((char) ('a' + i % 26));
+    return buffer.toString();
+  }
+
+  private static class OneByteAtATime extends InputStream {
+    private final byte[] bytes;
+    private int position;
+
+    OneByteAtATime(String content) {
+      bytes = content.getBytes();
+    }
+
+    public int read() throws IOException {
+      return position < bytes.length ? bytes[position++] & 0xff : -1;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (position == bytes.length)
+        return -1;
+      if (length == 0)
+        return 0;
+      buffer[offset] = bytes[position++];
+      return 1;
+    }
+  }
+}
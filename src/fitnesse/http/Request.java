@@ -3,7 +3,6 @@
 package fitnesse.http;
 
 import fitnesse.components.Base64;
-import util.StreamReader;
 
 import java.io.*;
 import java.net.URLDecoder;
@@ -27,7 +26,12 @@ public class Request {
 
   private static Collection<String> allowedMethods = buildAllowedMethodList();
 
-  protected StreamReader input;
+  public static int maximumLineLength = 8192;
+  public static int maximumHeaderSize = 65536;
+  public static int maximumBodySize = 64 * 1024 * 1024;
+  public static long maximumUploadSize = 1024L * 1024 * 1024;
+
+  protected HttpInputStream input;
   protected String requestURI;
   private String resource;
   protected String queryString;
@@ -38,7 +42,8 @@ public class Request {
   protected String authorizationUsername;
   protected String authorizationPassword;
   private volatile boolean hasBeenParsed;
-  private long bytesParsed = 0;
+  private long firstByte;
+  private long firstByteRead;
 
   public static Set<String> buildAllowedMethodList() {
     Set<String> methods = new HashSet<String>(20);
@@ -51,101 +56,140 @@ public class Request {
   }
 
   public Request(InputStream input) throws Exception {
-    this.input = new StreamReader(new BufferedInputStream(input));
+    if (input instanceof HttpInputStream)
+      this.input = (HttpInputStream) input;
+    else
+      this.input = new HttpInputStream(input);
+    firstByte = this.input.getBytesConsumed();
+    firstByteRead = this.input.getBytesRead();
   }
 
   public void parse() throws Exception {
     readAndParseRequestLine();
-    headers = parseHeaders(input);
+    headers = parseHeaders();
     parseEntityBody();
     hasBeenParsed = true;
   }
 
   private void readAndParseRequestLine() throws Exception {
-    requestLine = input.readLine();
+    requestLine = input.readLine(maximumLineLength, "The request line is too long");
+    if (requestLine == null)
+      requestLine = "";
     Matcher match = requestLinePattern.matcher(requestLine);
     checkRequestLine(match);
     requestURI = match.group(2);
     parseRequestUri(requestURI);
   }
 
-  private Map<String, Object> parseHeaders(StreamReader reader)
-  throws Exception {
+  private Map<String, Object> parseHeaders() throws Exception {
     HashMap<String, Object> headers = new HashMap<String, Object>();
-    String line = reader.readLine();
-    while (!"".equals(line)) {
+    int headerSize = 0;
+    String line = input.readLine(maximumLineLength, "A header line is too long");
+    while (line != null && !"".equals(line)) {
+      headerSize += line.length() + 2;
+      if (headerSize > maximumHeaderSize)
+        throw new HttpException(431, "The request headers are too large");
       Matcher match = headerPattern.matcher(line);
       if (match.find()) {
         String key = match.group(1);
         String value = match.group(2);
         headers.put(key.toLowerCase(), value);
       }
-      line = reader.readLine();
+      line = input.readLine(maximumLineLength, "A header line is too long");
     }
     return headers;
   }
 
   private void parseEntityBody() throws Exception {
     if (hasHeader("Content-Length")) {
+      long contentLength = parseContentLength();
       String contentType = (String) getHeader("Content-Type");
       if (contentType != null && contentType.startsWith("multipart/form-data")) {
+        if (contentLength > maximumUploadSize)
+          throw new HttpException(413, "The upload is larger than " + maximumUploadSize + " bytes");
         Matcher match = boundaryPattern.matcher(contentType);
         match.find();
-        parseMultiPartContent(match.group(1));
+        parseMultiPartContent(match.group(1), contentLength);
       } else {
-        entityBody = input.read(getContentLength());
+        if (contentLength > maximumBodySize)
+          throw new HttpException(413, "The request body is larger than " + maximumBodySize + " bytes");
+        entityBody = new String(input.readBytes((int) contentLength), "UTF-8");
         parseQueryString(entityBody);
       }
     }
   }
 
+  private long parseContentLength() throws HttpException {
+    try {
+      long contentLength = Long.parseLong(((String) getHeader("Content-Length")).trim());
+      if (contentLength >= 0)
+        return contentLength;
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new HttpException("The Content-Length is not valid");
+  }
+
   public int getContentLength() {
     return Integer.parseInt((String) getHeader("Content-Length"));
   }
 
-  private void parseMultiPartContent(String boundary) throws Exception {
-    boundary = "--" + boundary;
-
-    int numberOfBytesToRead = getContentLength();
-    accumulateBytesReadAndReset();
-    input.readUpTo(boundary);
-    while (numberOfBytesToRead - input.numberOfBytesConsumed() > 10) {
-      input.readLine();
-      Map<String, Object> headers = parseHeaders(input);
+  private void parseMultiPartContent(String boundary, long contentLength) throws Exception {
+    long end = input.getBytesConsumed() + contentLength;
+    byte[] delimiter = ("\r\n--" + boundary).getBytes("UTF-8");
+    input.copyUpTo(("--" + boundary).getBytes("UTF-8"), null, contentLength);
+    while (input.getBytesConsumed() < end) {
+      String rest = input.readLine(maximumLineLength, "A multipart boundary line is too long");
+      if (rest == null || rest.startsWith("--"))
+        break;
+      Map<String, Object> headers = parseHeaders();
       String contentDisposition = (String) headers.get("content-disposition");
+      if (contentDisposition == null)
+        throw new HttpException("A part of the multipart request has no Content-Disposition");
       Matcher matcher = multipartHeaderPattern.matcher(contentDisposition);
       while (matcher.find())
         headers.put(matcher.group(1), matcher.group(2));
 
       String name = (String) headers.get("name");
+      long remaining = Math.max(0, end - input.getBytesConsumed());
       Object value;
       if (headers.containsKey("filename"))
-        value = createUploadedFile(headers, input, boundary);
+        value = createUploadedFile(headers, delimiter, remaining);
       else
-        value = input.readUpTo("\r\n" + boundary);
+        value = readPart(delimiter, remaining);
 
       inputs.put(name, value);
     }
+    input.skip(end - input.getBytesConsumed());
   }
 
-  private void accumulateBytesReadAndReset() {
-    bytesParsed += input.numberOfBytesConsumed();
-    input.resetNumberOfBytesConsumed();
+  private String readPart(byte[] delimiter, long remaining) throws Exception {
+    ByteArrayOutputStream value = new ByteArrayOutputStream();
+    long maximumLength = Math.min(remaining, (long) maximumBodySize + delimiter.length);
+    if (!input.copyUpTo(delimiter, value, maximumLength)) {
+      if (maximumLength < remaining)
+        throw new HttpException(413, "A form field is larger than " + maximumBodySize + " bytes");
+      throw new HttpException("The multipart request ends inside a form field");
+    }
+    return value.toString("UTF-8");
   }
 
   private Object createUploadedFile(Map<String, Object> headers,
-      StreamReader reader, String boundary) throws Exception {
+      byte[] delimiter, long remaining) throws Exception {
     String filename = (String) headers.get("filename");
     String contentType = (String) headers.get("content-type");
     File tempFile = File.createTempFile("FitNesse", ".uploadedFile");
-    OutputStream output = null;
+    OutputStream output = new FileOutputStream(tempFile);
     try {
-      output = new BufferedOutputStream(new FileOutputStream(tempFile));
-      reader.copyBytesUpTo("\r\n" + boundary, output);
+      if (!input.copyUpTo(delimiter, output, remaining))
+        throw new HttpException("The multipart request ends inside the uploaded file " + filename);
       return new UploadedFile(filename, contentType, tempFile);
+    } catch (Exception e) {
+      output.close();
+      tempFile.delete();
+      throw e;
     } finally {
-      if (output != null)
-        output.close();
+      output.close();
     }
   }
 
@@ -281,6 +325,32 @@ public class Request {
     }
   }
 
+  public boolean isKeepAlive() {
+    String connection = (String) getHeader("Connection");
+    if (connection != null && connection.toLowerCase().indexOf("close") >= 0)
+      return false;
+    if (requestLine != null && requestLine.endsWith("HTTP/1.1"))
+      return true;
+    return connection != null && connection.toLowerCase().indexOf("keep-alive") >= 0;
+  }
+
+  public boolean acceptsEncoding(String encoding) {
+    String accepted = (String) getHeader("Accept-Encoding");
+    if (accepted == null)
+      return false;
+    Boolean wildcard = null;
+    for (String coding : accepted.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      boolean acceptable = parts.length < 2 || !parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+      if (name.equalsIgnoreCase(encoding))
+        return acceptable;
+      if (name.equals("*"))
+        wildcard = acceptable;
+    }
+    return wildcard != null && wildcard;
+  }
+
   public boolean hasBeenParsed() {
     return hasBeenParsed;
   }
@@ -313,7 +383,15 @@ public class Request {
   }
 
   public long numberOfBytesParsed() {
-    return bytesParsed + input.numberOfBytesConsumed();
+    return input == null ? 0 : input.getBytesConsumed() - firstByte;
+  }
+
+  /**
+   * How many bytes were read from the client so far; unlike
+   * numberOfBytesParsed() this grows while a line is still arriving.
+   */
+  public long numberOfBytesReceived() {
+    return input == null ? 0 : input.getBytesRead() - firstByteRead;
   }
 
   public void setCredentials(String username, String password) {
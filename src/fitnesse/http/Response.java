@@ -76,6 +76,10 @@ public abstract class Response {
 
   public abstract int getContentSize();
 
+  public boolean isSelfDelimiting() {
+    return false;
+  }
+
   public int getStatus() {
     return status;
   }
@@ -187,6 +191,7 @@ public abstract class Response {
       put(415, "Unsupported Media Type");
       put(416, "Requested range not satisfiable");
       put(417, "Expectation Failed");
+      put(431, "Request Header Fields Too Large");
       put(500, "Internal Server Error");
       put(501, "Not Implemented");
       put(502, "Bad Gateway");
@@ -62,6 +62,11 @@ public class SimpleResponse extends Response {
     return content.length;
   }
 
+  @Override
+  public boolean isSelfDelimiting() {
+    return true;
+  }
+
   @Override
   protected void addSpecificHeaders() {
     addHeader("Content-Length", String.valueOf(getContentSize()));
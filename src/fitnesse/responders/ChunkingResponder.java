@@ -31,6 +31,7 @@ public abstract class ChunkingResponder implements Responder {
     response = new ChunkedResponse(format);
     if (dontChunk || context.doNotChunk || request.hasInput("nochunk"))
       response.turnOffChunking();
+    response.compressIfAccepted(request);
     getRequestedPage(request);
     if (page == null && shouldRespondWith404())
       return pageNotFoundResponse(context, request);
@@ -0,0 +1,38 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders;
+
+import fitnesse.FitNesseContext;
+import fitnesse.html.HtmlPage;
+import fitnesse.html.HtmlTableListingBuilder;
+import fitnesse.html.HtmlTag;
+import fitnesse.html.HtmlUtil;
+import fitnesse.html.RawHtml;
+import fitnesse.http.Request;
+import fitnesse.http.Response;
+import fitnesse.wiki.PageDataCache;
+
+public class PageDataCacheResponder extends BasicResponder {
+  public Response makeResponse(FitNesseContext context, Request request) throws Exception {
+    HtmlPage html = context.htmlPageFactory.newPage();
+    HtmlUtil.addTitles(html, "Page Data Cache");
+    html.main.add(makeCounterTable(PageDataCache.getInstance()));
+    return responseWith(html.html());
+  }
+
+  private HtmlTag makeCounterTable(PageDataCache cache) {
+    HtmlTableListingBuilder table = new HtmlTableListingBuilder();
+    addRow(table, "Pages cached", cache.size());
+    addRow(table, "Estimated bytes", cache.getBytes());
+    addRow(table, "Maximum bytes", PageDataCache.maximumBytes);
+    addRow(table, "Hits", cache.getHits());
+    addRow(table, "Misses", cache.getMisses());
+    addRow(table, "Invalidations", cache.getInvalidations());
+    addRow(table, "Evictions", cache.getEvictions());
+    return table.getTable();
+  }
+
+  private void addRow(HtmlTableListingBuilder table, String name, long value) {
+    table.addRow(new RawHtml[]{new RawHtml(name), new RawHtml(Long.toString(value))});
+  }
+}
@@ -0,0 +1,31 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders;
+
+import util.RegexTestCase;
+import fitnesse.FitNesseContext;
+import fitnesse.http.MockRequest;
+import fitnesse.http.SimpleResponse;
+import fitnesse.testutil.SimpleCachinePage;
+import fitnesse.wiki.CachingPage;
+import fitnesse.wiki.PageDataCache;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+
+public class PageDataCacheResponderTest extends RegexTestCase {
+  public void testShowsCounters() throws Exception {
+    CachingPage.cacheTime = 10000;
+    WikiPage root = new SimpleCachinePage("RooT", null);
+    root.getPageCrawler().addPage(root, PathParser.parse("SomePage"), "some content");
+    PageDataCache.getInstance().clear();
+
+    SimpleResponse response = (SimpleResponse) new PageDataCacheResponder().makeResponse(new FitNesseContext(root), new MockRequest());
+    String body = response.getContent();
+
+    assertEquals(200, response.getStatus());
+    assertHasRegexp("Page Data Cache", body);
+    assertHasRegexp("Pages cached</td>\\s*<td[^>]*>0</td>", body);
+    assertHasRegexp("Hits</td>\\s*<td[^>]*>\\d+</td>", body);
+    assertHasRegexp("Evictions</td>\\s*<td[^>]*>\\d+</td>", body);
+  }
+}
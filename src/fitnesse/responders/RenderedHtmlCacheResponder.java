@@ -0,0 +1,40 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders;
+
+import fitnesse.FitNesseContext;
+import fitnesse.html.HtmlPage;
+import fitnesse.html.HtmlTableListingBuilder;
+import fitnesse.html.HtmlTag;
+import fitnesse.html.HtmlUtil;
+import fitnesse.html.RawHtml;
+import fitnesse.http.Request;
+import fitnesse.http.Response;
+import fitnesse.wiki.RenderedHtmlCache;
+
+public class RenderedHtmlCacheResponder extends BasicResponder {
+  public Response makeResponse(FitNesseContext context, Request request) throws Exception {
+    RenderedHtmlCache cache = RenderedHtmlCache.forPage(context.root);
+    HtmlPage html = context.htmlPageFactory.newPage();
+    HtmlUtil.addTitles(html, "Rendered Page Cache");
+    if (cache == null)
+      html.main.add("This wiki does not cache rendered pages.");
+    else
+      html.main.add(makeCounterTable(cache));
+    return responseWith(html.html());
+  }
+
+  private HtmlTag makeCounterTable(RenderedHtmlCache cache) {
+    HtmlTableListingBuilder table = new HtmlTableListingBuilder();
+    addRow(table, "Pages cached", cache.size());
+    addRow(table, "Hits", cache.getHits());
+    addRow(table, "Misses", cache.getMisses());
+    addRow(table, "Invalidations", cache.getInvalidations());
+    addRow(table, "Evictions", cache.getEvictions());
+    return table.getTable();
+  }
+
+  private void addRow(HtmlTableListingBuilder table, String name, long value) {
+    table.addRow(new RawHtml[]{new RawHtml(name), new RawHtml(Long.toString(value))});
+  }
+}
@@ -0,0 +1,28 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders;
+
+import util.RegexTestCase;
+import fitnesse.FitNesseContext;
+import fitnesse.http.MockRequest;
+import fitnesse.http.SimpleResponse;
+import fitnesse.wiki.InMemoryPage;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.WikiPage;
+
+public class RenderedHtmlCacheResponderTest extends RegexTestCase {
+  public void testShowsCounters() throws Exception {
+    WikiPage root = InMemoryPage.makeRoot("RooT");
+    WikiPage page = root.getPageCrawler().addPage(root, PathParser.parse("SomePage"), "some content");
+    page.getData().getHtml();
+    page.getData().getHtml();
+
+    SimpleResponse response = (SimpleResponse) new RenderedHtmlCacheResponder().makeResponse(new FitNesseContext(root), new MockRequest());
+    String body = response.getContent();
+
+    assertEquals(200, response.getStatus());
+    assertHasRegexp("Hits</td>\\s*<td[^>]*>1</td>", body);
+    assertHasRegexp("Misses</td>\\s*<td[^>]*>1</td>", body);
+    assertHasRegexp("Pages cached</td>\\s*<td[^>]*>1</td>", body);
+  }
+}
@@ -92,6 +92,8 @@ public class ResponderFactory {
     addResponder("purgeHistory", PurgeHistoryResponder.class);
     addResponder("compareHistory", HistoryComparerResponder.class);
     addResponder("replace", SearchReplaceResponder.class);
+    addResponder("renderCache", RenderedHtmlCacheResponder.class);
+    addResponder("pageDataCache", PageDataCacheResponder.class);
   }
 
   public void addResponder(String key, String responderClassName) throws ClassNotFoundException {
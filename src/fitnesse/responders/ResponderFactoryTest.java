@@ -325,4 +325,14 @@ public class ResponderFactoryTest {
   public void testHistoryComparerResponder() throws Exception {
     assertResponderTypeMatchesInput("compareHistory", HistoryComparerResponder.class);
   }
+
+  @Test
+  public void testRenderedHtmlCacheResponder() throws Exception {
+    assertResponderTypeMatchesInput("renderCache", RenderedHtmlCacheResponder.class);
+  }
+
+  @Test
+  public void testPageDataCacheResponder() throws Exception {
+    assertResponderTypeMatchesInput("pageDataCache", PageDataCacheResponder.class);
+  }
 }
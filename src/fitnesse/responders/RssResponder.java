@@ -6,6 +6,7 @@ import fitnesse.FitNesseContext;
 import fitnesse.authentication.SecureOperation;
 import fitnesse.authentication.SecureReadOperation;
 import fitnesse.authentication.SecureResponder;
+import fitnesse.components.RecentChanges;
 import fitnesse.http.Request;
 import fitnesse.http.Response;
 import fitnesse.http.SimpleResponse;
@@ -31,8 +32,7 @@ public class RssResponder implements SecureResponder {
     XmlUtil.addTextNode(rssDocument, channelElement, "title", "FitNesse:");
 
     contextPage = getContextPage(request, context);
-    WikiPage recentChangesPage = context.root.getChildPage("RecentChanges");
-    buildItemReportIfRecentChangesExists(recentChangesPage, rssDocument, request.getResource());
+    buildItemReport(RecentChanges.forPage(context.root), request.getResource(), rssDocument);
     SimpleResponse response = responseFrom(rssDocument);
     return response;
   }
@@ -45,39 +45,22 @@ public class RssResponder implements SecureResponder {
     return pageCrawler.getPage(context.root, resourcePath);
   }
 
-  protected void buildItemReportIfRecentChangesExists(WikiPage recentChangesPage, Document rssDocument, String resource) throws Exception {
-    if (recentChangesPage != null)
-      buildItemReport(recentChangesPage, resource, rssDocument);
+  private void buildItemReport(RecentChanges recentChanges, String resource, Document rssDocument) throws Exception {
+    for (RecentChanges.Change change : recentChanges.getChanges())
+      reportRecentChangeItem(change, resource, rssDocument);
   }
 
-  private void buildItemReport(WikiPage recentChangesPage, String resource, Document rssDocument) throws Exception {
-    String[] lines = convertPageToArrayOfLines(recentChangesPage);
-    for (String line : lines)
-      reportRecentChangeItem(line, resource, rssDocument);
-  }
-
-  private void reportRecentChangeItem(String line, String resource, Document rssDocument) throws Exception {
-    String[] fields = convertTableLineToStrings(line);
-    String path = fields[1];
-    String author = fields[2];
-    String pubDate = fields[3];
-    pubDate = convertDateFormat(pubDate);
+  private void reportRecentChangeItem(RecentChanges.Change change, String resource, Document rssDocument) throws Exception {
+    String path = change.getResource();
+    if (path == null)
+      return;
+    String author = change.getUser();
+    String pubDate = convertDateFormat(change.getDate());
 
     if (shouldReportItem(resource, path))
       buildItem(rssDocument, path, author, pubDate);
   }
 
-  private String[] convertTableLineToStrings(String line) {
-    return line.split("\\|");
-  }
-
-  protected String[] convertPageToArrayOfLines(WikiPage page) throws Exception {
-    PageData data = page.getData();
-    String recentChanges = data.getContent();
-    String[] lines = recentChanges.split("\n");
-    return lines;
-  }
-
   protected boolean shouldReportItem(String resource, String title) {
     boolean blank = isNeitherNullNorBlank(resource);
     return !blank || title.startsWith(resource);
@@ -0,0 +1,142 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import fitnesse.http.Response;
+import util.FileUtil;
+
+/**
+ * The contents of the files that FileResponder served recently, for those of
+ * at most maximumFileSize bytes, up to maximumSize bytes in all; the least
+ * recently served are dropped first.  Text files are also kept gzip
+ * compressed when that makes them smaller.  A file is read again when its
+ * size or modification time has changed.
+ * <p/>
+ * get() answers an Entry for larger files as well, with their validators but
+ * without contents.
+ */
+public class FileCache {
+  public static long maximumSize = 8 * 1024 * 1024;
+  public static int maximumFileSize = 256 * 1024;
+
+  private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<File, Entry>(64, 0.75f, true);
+  private long size;
+
+  public Entry get(File file) throws Exception {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    synchronized (this) {
+      Entry entry = entries.get(file);
+      if (entry != null && entry.length == length && entry.lastModified == lastModified)
+        return entry;
+      if (entry != null)
+        remove(file);
+    }
+    if (length > maximumFileSize)
+      return new Entry(file, length, lastModified, null);
+    byte[] bytes = FileUtil.getFileBytes(file);
+    if (bytes.length != length || file.lastModified() != lastModified)
+      return new Entry(file, file.length(), file.lastModified(), null);
+    Entry entry = new Entry(file, length, lastModified, bytes);
+    if (isCompressible(file))
+      entry.compress();
+    put(entry);
+    return entry;
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized int getFileCount() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  private synchronized void put(Entry entry) {
+    remove(entry.file);
+    entries.put(entry.file, entry);
+    size += entry.getCachedSize();
+    Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+    while (size > maximumSize && leastRecentlyUsed.hasNext()) {
+      size -= leastRecentlyUsed.next().getCachedSize();
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  private void remove(File file) {
+    Entry removed = entries.remove(file);
+    if (removed != null)
+      size -= removed.getCachedSize();
+  }
+
+  private static boolean isCompressible(File file) {
+    String contentType = FileResponder.getContentType(file.getName());
+    return contentType.startsWith("text/") || contentType.contains("javascript")
+      || contentType.contains("xml") || contentType.contains("json");
+  }
+
+  public static class Entry {
+    public final File file;
+    public final long length;
+    public final long lastModified;
+    public final Date lastModifiedDate;
+    public final String lastModifiedString;
+    public final String etag;
+    private final byte[] bytes;
+    private byte[] gzippedBytes;
+
+    Entry(File file, long length, long lastModified, byte[] bytes) {
+      this.file = file;
+      this.length = length;
+      this.lastModified = lastModified;
+      this.lastModifiedDate = new Date(lastModified / 1000 * 1000);
+      this.lastModifiedString = Response.makeStandardHttpDateFormat().format(lastModifiedDate);
+      this.etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+      this.bytes = bytes;
+    }
+
+    /**
+     * The contents of the file, or null if it is too large to cache.
+     */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /**
+     * The contents compressed with gzip, or null if they are not kept that way.
+     */
+    public byte[] getGzippedBytes() {
+      return gzippedBytes;
+    }
+
+    public String getGzippedEtag() {
+      return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    private void compress() throws IOException {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 32);
+      GZIPOutputStream output = new GZIPOutputStream(compressed);
+      output.write(bytes);
+      output.close();
+      if (compressed.size() < bytes.length)
+        gzippedBytes = compressed.toByteArray();
+    }
+
+    private long getCachedSize() {
+      return bytes.length + (gzippedBytes == null ? 0 : gzippedBytes.length);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.files;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import util.FileUtil;
+
+public class FileCacheTest {
+  private File directory = new File("testFileCache");
+  private FileCache cache;
+  private long saveMaximumSize;
+
+  @Before
+  public void setUp() throws Exception {
+    directory.mkdir();
+    cache = new FileCache();
+    saveMaximumSize = FileCache.maximumSize;
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileCache.maximumSize = saveMaximumSize;
+    FileUtil.deleteFileSystemDirectory(directory);
+  }
+
+  @Test
+  public void smallFilesAreKept() throws Exception {
+    File file = FileUtil.createFile(new File(directory, "small.txt"), "content");
+    FileCache.Entry entry = cache.get(file);
+    assertEquals("content", new String(entry.getBytes()));
+    assertSame(entry, cache.get(file));
+    assertEquals(1, cache.getFileCount());
+    assertEquals(7, cache.getSize());
+  }
+
+  @Test
+  public void leastRecentlyUsedFilesAreDropped() throws Exception {
+    FileCache.maximumSize = 20;
+    File a = FileUtil.createFile(new File(directory, "a.bin"), "aaaaaaaa");
+    File b = FileUtil.createFile(new File(directory, "b.bin"), "bbbbbbbb");
+    File c = FileUtil.createFile(new File(directory, "c.bin"), "cccccccc");
+    FileCache.Entry first = cache.get(a);
+    cache.get(b);
+    assertSame(first, cache.get(a));
+    cache.get(c);
+    assertEquals(2, cache.getFileCount());
+    assertEquals(16, cache.getSize());
+    assertSame(first, cache.get(a));
+  }
+
+  @Test
+  public void largeFilesHaveValidatorsButNoContents() throws Exception {
+    int saveMaximumFileSize = FileCache.maximumFileSize;
+    FileCache.maximumFileSize = 4;
+    try {
+      File file = FileUtil.createFile(new File(directory, "large.txt"), "content");
+      FileCache.Entry entry = cache.get(file);
+      assertNull(entry.getBytes());
+      assertEquals(7, entry.length);
+      assertNotNull(entry.etag);
+      assertEquals(0, cache.getFileCount());
+    } finally {
+      FileCache.maximumFileSize = saveMaximumFileSize;
+    }
+  }
+}
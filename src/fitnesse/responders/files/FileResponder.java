@@ -11,7 +11,7 @@ import java.util.Date;
 
 import fitnesse.FitNesseContext;
 import fitnesse.Responder;
-import fitnesse.http.InputStreamResponse;
+import fitnesse.http.FileResponse;
 import fitnesse.http.Request;
 import fitnesse.http.Response;
 import fitnesse.http.SimpleResponse;
@@ -19,6 +19,7 @@ import fitnesse.responders.NotFoundResponder;
 
 public class FileResponder implements Responder {
   private static FileNameMap fileNameMap = URLConnection.getFileNameMap();
+  static FileCache cache = new FileCache();
   public String resource;
   public File requestedFile;
   public Date lastModifiedDate;
@@ -46,16 +47,38 @@ public class FileResponder implements Responder {
   }
 
   public Response makeResponse(FitNesseContext context, Request request) throws Exception {
-    InputStreamResponse response = new InputStreamResponse();
-    determineLastModifiedInfo();
-
-    if (isNotModified(request))
-      return createNotModifiedResponse();
-    else {
-      response.setBody(requestedFile);
-      setContentType(requestedFile, response);
-      response.setLastModifiedHeader(lastModifiedDateString);
+    FileCache.Entry entry = cache.get(requestedFile);
+    lastModifiedDate = entry.lastModifiedDate;
+    lastModifiedDateString = entry.lastModifiedString;
+
+    long[] range = requestedRange(request, entry);
+    boolean gzip = range == null && entry.getGzippedBytes() != null && request.acceptsEncoding("gzip");
+    String etag = gzip ? entry.getGzippedEtag() : entry.etag;
+    if (isNotModified(request, etag))
+      return createNotModifiedResponse(etag);
+    if (range != null && range.length == 0)
+      return createRangeNotSatisfiableResponse(entry);
+
+    Response response;
+    if (range != null)
+      response = createPartialResponse(entry, range[0], range[1]);
+    else if (gzip) {
+      response = new SimpleResponse();
+      ((SimpleResponse) response).setContent(entry.getGzippedBytes());
+      response.addHeader("Content-Encoding", "gzip");
+    } else if (entry.getBytes() != null) {
+      response = new SimpleResponse();
+      ((SimpleResponse) response).setContent(entry.getBytes());
+    } else {
+      response = new FileResponse();
+      ((FileResponse) response).setBody(requestedFile, 0, entry.length);
     }
+    if (entry.getGzippedBytes() != null)
+      response.addHeader("Vary", "Accept-Encoding");
+    setContentType(requestedFile, response);
+    response.setLastModifiedHeader(lastModifiedDateString);
+    response.addHeader("ETag", etag);
+    response.addHeader("Accept-Ranges", "bytes");
     return response;
   }
 
@@ -71,9 +94,13 @@ public class FileResponder implements Responder {
     return resource;
   }
 
-  private boolean isNotModified(Request request) {
+  private boolean isNotModified(Request request, String etag) {
+    if (request.hasHeader("If-None-Match"))
+      return matchesEtag((String) request.getHeader("If-None-Match"), etag);
     if (request.hasHeader("If-Modified-Since")) {
       String queryDateString = (String) request.getHeader("If-Modified-Since");
+      if (queryDateString.equals(lastModifiedDateString))
+        return true;
       try {
         Date queryDate = SimpleResponse.makeStandardHttpDateFormat().parse(queryDateString);
         if (!queryDate.before(lastModifiedDate))
@@ -87,28 +114,97 @@ public class FileResponder implements Responder {
     return false;
   }
 
-  private Response createNotModifiedResponse() {
+  private static boolean matchesEtag(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * The first and last byte of the single range the request asks for, an
+   * empty array if that range is not in the file, or null to send the whole
+   * file: when there is no Range header, more than one range, a range that
+   * can't be parsed, or an If-Range that does not match the file.
+   */
+  private long[] requestedRange(Request request, FileCache.Entry entry) {
+    String rangeHeader = (String) request.getHeader("Range");
+    if (rangeHeader == null || !rangeHeader.startsWith("bytes=") || rangeHeader.indexOf(',') >= 0)
+      return null;
+    String ifRange = (String) request.getHeader("If-Range");
+    if (ifRange != null && !ifRange.equals(entry.etag) && !ifRange.equals(entry.lastModifiedString))
+      return null;
+    String range = rangeHeader.substring("bytes=".length()).trim();
+    int dash = range.indexOf('-');
+    if (dash < 0)
+      return null;
+    try {
+      long first;
+      long last;
+      if (dash == 0) {
+        long suffixLength = Long.parseLong(range.substring(1).trim());
+        if (suffixLength < 0)
+          return null;
+        if (suffixLength == 0)
+          return new long[0];
+        first = Math.max(0, entry.length - suffixLength);
+        last = entry.length - 1;
+      } else {
+        first = Long.parseLong(range.substring(0, dash).trim());
+        String lastString = range.substring(dash + 1).trim();
+        if (lastString.length() == 0)
+          last = entry.length - 1;
+        else {
+          last = Long.parseLong(lastString);
+          if (last < first)
+            return null;
+          last = Math.min(last, entry.length - 1);
+        }
+      }
+      if (first >= entry.length)
+        return new long[0];
+      return new long[]{first, last};
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private Response createPartialResponse(FileCache.Entry entry, long first, long last) throws Exception {
+    Response response;
+    long count = last - first + 1;
+    if (entry.getBytes() != null) {
+      byte[] part = new byte[(int) count];
+      System.arraycopy(entry.getBytes(), (int) first, part, 0, (int) count);
+      response = new SimpleResponse(206);
+      ((SimpleResponse) response).setContent(part);
+    } else {
+      response = new FileResponse();
+      ((FileResponse) response).setBody(requestedFile, first, count);
+      response.setStatus(206);
+    }
+    response.addHeader("Content-Range", "bytes " + first + "-" + last + "/" + entry.length);
+    return response;
+  }
+
+  private Response createRangeNotSatisfiableResponse(FileCache.Entry entry) {
+    Response response = new SimpleResponse(416);
+    response.addHeader("Content-Range", "bytes */" + entry.length);
+    return response;
+  }
+
+  private Response createNotModifiedResponse(String etag) {
     Response response = new SimpleResponse();
     response.setStatus(304);
     response.addHeader("Date", SimpleResponse.makeStandardHttpDateFormat().format(new Date()));
     response.addHeader("Cache-Control", "private");
     response.setLastModifiedHeader(lastModifiedDateString);
+    response.addHeader("ETag", etag);
     return response;
   }
 
-  private void determineLastModifiedInfo() {
-    lastModifiedDate = new Date(requestedFile.lastModified());
-    lastModifiedDateString = SimpleResponse.makeStandardHttpDateFormat().format(lastModifiedDate);
-
-    try  // remove milliseconds
-    {
-      lastModifiedDate = SimpleResponse.makeStandardHttpDateFormat().parse(lastModifiedDateString);
-    }
-    catch (java.text.ParseException jtpe) {
-      jtpe.printStackTrace();
-    }
-  }
-
   private void setContentType(File file, Response response) {
     String contentType = getContentType(file.getName());
     response.setContentType(contentType);
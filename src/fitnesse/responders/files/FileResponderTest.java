@@ -4,22 +4,28 @@ package fitnesse.responders.files;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static util.RegexTestCase.assertHasRegexp;
 import static util.RegexTestCase.assertMatches;
 import static util.RegexTestCase.assertSubString;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Locale;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import util.FileUtil;
 import util.RegexTestCase;
 import fitnesse.FitNesseContext;
 import fitnesse.Responder;
-import fitnesse.http.InputStreamResponse;
+import fitnesse.http.FileResponse;
 import fitnesse.http.MockRequest;
 import fitnesse.http.MockResponseSender;
 import fitnesse.http.Response;
@@ -56,7 +62,7 @@ public class FileResponderTest {
     request.setResource("files/testFile1");
     responder = (FileResponder) FileResponder.makeResponder(request, SampleFileUtility.base);
     response = responder.makeResponse(context, request);
-    RegexTestCase.assertEquals(InputStreamResponse.class, response.getClass());
+    RegexTestCase.assertEquals(SimpleResponse.class, response.getClass());
     MockResponseSender sender = new MockResponseSender();
     sender.doSending(response);
     assertSubString("file1 content", sender.sentData());
@@ -125,6 +131,121 @@ public class FileResponderTest {
     assertHasRegexp("files/something/that/aint/there", response.getContent());
   }
 
+  @Test
+  public void test304IfEtagMatches() throws Exception {
+    Response first = respondTo("files/testFile1");
+    String etag = first.getHeader("ETag");
+    assertMatches("^\"[0-9a-f]+-[0-9a-f]+\"$", etag);
+    assertEquals("bytes", first.getHeader("Accept-Ranges"));
+
+    request.addHeader("If-None-Match", "\"other\", " + etag);
+    Response notModified = respondTo("files/testFile1");
+    assertEquals(304, notModified.getStatus());
+    assertEquals(etag, notModified.getHeader("ETag"));
+
+    request.addHeader("If-None-Match", "\"other\"");
+    request.addHeader("If-Modified-Since", first.getHeader("Last-Modified"));
+    assertEquals(200, respondTo("files/testFile1").getStatus());
+  }
+
+  @Test
+  public void testSameLastModifiedDateIsNotModified() throws Exception {
+    String lastModified = respondTo("files/testFile1").getHeader("Last-Modified");
+    request.addHeader("If-Modified-Since", lastModified);
+    assertEquals(304, respondTo("files/testFile1").getStatus());
+  }
+
+  @Test
+  public void testRanges() throws Exception {
+    request.addHeader("Range", "bytes=0-4");
+    SimpleResponse part = (SimpleResponse) respondTo("files/testFile1");
+    assertEquals(206, part.getStatus());
+    assertEquals("file1", part.getContent());
+    assertEquals("bytes 0-4/13", part.getHeader("Content-Range"));
+
+    request.addHeader("Range", "bytes=6-");
+    assertEquals("content", ((SimpleResponse) respondTo("files/testFile1")).getContent());
+    request.addHeader("Range", "bytes=-7");
+    assertEquals("content", ((SimpleResponse) respondTo("files/testFile1")).getContent());
+    request.addHeader("Range", "bytes=10-100");
+    assertEquals("ent", ((SimpleResponse) respondTo("files/testFile1")).getContent());
+
+    request.addHeader("Range", "bytes=13-");
+    Response unsatisfiable = respondTo("files/testFile1");
+    assertEquals(416, unsatisfiable.getStatus());
+    assertEquals("bytes */13", unsatisfiable.getHeader("Content-Range"));
+
+    request.addHeader("Range", "bytes=0-1,4-5");
+    assertEquals(200, respondTo("files/testFile1").getStatus());
+    request.addHeader("Range", "bytes=5-1");
+    assertEquals(200, respondTo("files/testFile1").getStatus());
+    request.addHeader("Range", "bytes=0-4");
+    request.addHeader("If-Range", "\"old\"");
+    assertEquals(200, respondTo("files/testFile1").getStatus());
+  }
+
+  @Test
+  public void testTextFilesAreSentCompressedWhenAccepted() throws Exception {
+    StringBuilder css = new StringBuilder();
+    for (int i = 0; i < 100; i++)
+      css.append(".class").append(i).append(" { color: red; }\n");
+    SampleFileUtility.addFile("/files/big.css", css.toString());
+    SimpleResponse plain = (SimpleResponse) respondTo("files/big.css");
+    assertNull(plain.getHeader("Content-Encoding"));
+    assertEquals(css.toString(), plain.getContent());
+    assertEquals("Accept-Encoding", plain.getHeader("Vary"));
+
+    request.addHeader("Accept-Encoding", "gzip");
+    SimpleResponse compressed = (SimpleResponse) respondTo("files/big.css");
+    assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+    assertTrue(compressed.getContentSize() < css.length());
+    assertTrue(!compressed.getHeader("ETag").equals(plain.getHeader("ETag")));
+    assertEquals(css.toString(), gunzip(compressed.getContentBytes()));
+  }
+
+  @Test
+  public void testLargeFilesAreSentFromTheFile() throws Exception {
+    int saveMaximumFileSize = FileCache.maximumFileSize;
+    FileCache.maximumFileSize = 5;
+    try {
+      FileResponse whole = (FileResponse) respondTo("files/testFile1");
+      assertEquals(13, whole.getContentSize());
+      MockResponseSender sender = new MockResponseSender();
+      sender.doSending(whole);
+      assertSubString("\r\n\r\nfile1 content", sender.sentData());
+
+      request.addHeader("Range", "bytes=6-");
+      FileResponse part = (FileResponse) respondTo("files/testFile1");
+      assertEquals(206, part.getStatus());
+      sender = new MockResponseSender();
+      sender.doSending(part);
+      assertSubString("Content-Range: bytes 6-12/13", sender.sentData());
+      assertTrue(sender.sentData().endsWith("\r\n\r\ncontent"));
+    } finally {
+      FileCache.maximumFileSize = saveMaximumFileSize;
+    }
+  }
+
+  @Test
+  public void testChangedFilesAreReadAgain() throws Exception {
+    assertEquals("file1 content", ((SimpleResponse) respondTo("files/testFile1")).getContent());
+    FileUtil.createFile(SampleFileUtility.testFile1, "changed content");
+    assertEquals("changed content", ((SimpleResponse) respondTo("files/testFile1")).getContent());
+  }
+
+  private Response respondTo(String resource) throws Exception {
+    request.setResource(resource);
+    responder = (FileResponder) FileResponder.makeResponder(request, SampleFileUtility.base);
+    return responder.makeResponse(context, request);
+  }
+
+  private String gunzip(byte[] bytes) throws Exception {
+    GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    FileUtil.copyBytes(input, output);
+    return output.toString("UTF-8");
+  }
+
   @Test
   public void testCssMimeType() throws Exception {
     SampleFileUtility.addFile("/files/fitnesse.css", "body{color: red;}");
@@ -10,8 +10,15 @@ import fitnesse.wiki.PageData;
 import fitnesse.wiki.WikiPage;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MultipleTestsRunner implements TestSystemListener, Stoppable {
+  public static final String PARALLEL_TEST_SYSTEMS = "PARALLEL_TEST_SYSTEMS";
+  public static final String RUN_SERIALLY = "RUN_SERIALLY";
 
   private final ResultsListener resultsListener;
   private final FitNesseContext fitNesseContext;
@@ -72,14 +79,112 @@ public class MultipleTestsRunner implements TestSystemListener, Stoppable {
     testSystemGroup.setFastTest(isFastTest);
 
     resultsListener.setExecutionLogAndTrackingId(stopId, testSystemGroup.getExecutionLog());
-    PagesByTestSystem pagesByTestSystem = makeMapOfPagesByTestSystem();
-    announceTotalTestsToRun(pagesByTestSystem);
-    for (TestSystem.Descriptor descriptor : pagesByTestSystem.keySet()) {
-      executePagesInTestSystem(descriptor, pagesByTestSystem);
+    int workers = getNumberOfParallelTestSystems();
+    if (workers > 1) {
+      executeShardsInParallel(makeShards(workers), workers);
+    } else {
+      PagesByTestSystem pagesByTestSystem = makeMapOfPagesByTestSystem();
+      announceTotalTestsToRun(pagesByTestSystem);
+      for (TestSystem.Descriptor descriptor : pagesByTestSystem.keySet()) {
+        executePagesInTestSystem(descriptor, pagesByTestSystem);
+      }
     }
     fitNesseContext.runningTestingTracker.removeEndedProcess(stopId);
   }
 
+  int getNumberOfParallelTestSystems() {
+    try {
+      String workers = page.getData().getVariable(PARALLEL_TEST_SYSTEMS);
+      if (workers != null)
+        return Math.max(1, Integer.parseInt(workers.trim()));
+    } catch (Exception e) {
+    }
+    return 1;
+  }
+
+  /**
+   * Splits the pages of each test system into shards.  Pages that define
+   * RUN_SERIALLY (or whose suite does) make up one shard per test system,
+   * which runs on its own before any other shard.  The rest are cut, in
+   * order, into at most workers shards that run side by side.  Each shard
+   * gets its own SuiteSetUp and SuiteTearDown, since each runs in its own
+   * process.
+   */
+  List<TestShard> makeShards(int workers) throws Exception {
+    List<TestShard> serialShards = new ArrayList<TestShard>();
+    List<TestShard> parallelShards = new ArrayList<TestShard>();
+    PagesByTestSystem pagesByTestSystem = mapWithAllPagesButSuiteSetUpAndTearDown();
+    for (TestSystem.Descriptor descriptor : pagesByTestSystem.keySet()) {
+      LinkedList<WikiPage> serialPages = new LinkedList<WikiPage>();
+      List<WikiPage> parallelPages = new ArrayList<WikiPage>();
+      for (WikiPage testPage : pagesByTestSystem.get(descriptor)) {
+        if (isRunSerially(testPage))
+          serialPages.add(testPage);
+        else
+          parallelPages.add(testPage);
+      }
+      if (serialPages.size() > 0)
+        serialShards.add(makeShard(descriptor, serialPages, false));
+
+      int shards = Math.min(workers, parallelPages.size());
+      for (int shard = 0; shard < shards; shard++) {
+        int first = shard * parallelPages.size() / shards;
+        int last = (shard + 1) * parallelPages.size() / shards;
+        parallelShards.add(makeShard(descriptor, new LinkedList<WikiPage>(parallelPages.subList(first, last)), true));
+      }
+    }
+    List<TestShard> shards = new ArrayList<TestShard>(serialShards);
+    shards.addAll(parallelShards);
+    for (int index = 0; index < shards.size(); index++)
+      shards.get(index).index = index;
+    return shards;
+  }
+
+  private boolean isRunSerially(WikiPage testPage) throws Exception {
+    String runSerially = testPage.getData().getVariable(RUN_SERIALLY);
+    return runSerially != null && !runSerially.trim().equalsIgnoreCase("false");
+  }
+
+  private TestShard makeShard(TestSystem.Descriptor descriptor, LinkedList<WikiPage> pages, boolean parallel) throws Exception {
+    surrounder.surroundGroupsOfTestPagesWithRespectiveSetUpAndTearDowns(pages);
+    return new TestShard(descriptor, pages, parallel);
+  }
+
+  private void executeShardsInParallel(List<TestShard> shards, int workers) throws Exception {
+    int tests = 0;
+    for (TestShard shard : shards)
+      tests += shard.pages.size();
+    resultsListener.announceNumberTestsToRun(tests);
+
+    OrderedResultsMerger merger = new OrderedResultsMerger(resultsListener, shards.size());
+    String classPath = buildClassPath();
+    List<Future<Object>> results = new ArrayList<Future<Object>>();
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      for (TestShard shard : shards) {
+        shard.prepare(merger, classPath);
+        if (shard.parallel)
+          results.add(executor.submit(shard));
+        else
+          shard.call();
+      }
+      for (Future<Object> result : results)
+        waitFor(result);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void waitFor(Future<Object> result) throws Exception {
+    try {
+      result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception)
+        throw (Exception) e.getCause();
+      throw e;
+    }
+  }
+
   private void executePagesInTestSystem(TestSystem.Descriptor descriptor,
                                         PagesByTestSystem pagesByTestSystem) throws Exception {
     List<WikiPage> pagesInTestSystem = pagesByTestSystem.get(descriptor);
@@ -240,4 +345,104 @@ public class MultipleTestsRunner implements TestSystemListener, Stoppable {
       testSystemGroup.kill();
     }
   }
+
+  /**
+   * A list of pages run in a test system of its own, with its own queue of
+   * pages waiting for results.
+   */
+  class TestShard implements TestSystemListener, Callable<Object> {
+    private final TestSystem.Descriptor descriptor;
+    private final LinkedList<WikiPage> pages;
+    private final boolean parallel;
+    private final LinkedList<WikiPage> processingQueue = new LinkedList<WikiPage>();
+    private WikiPage currentTest = null;
+    private int index;
+    private OrderedResultsMerger merger;
+    private ResultsListener shardResultsListener;
+    private String classPath;
+
+    TestShard(TestSystem.Descriptor descriptor, LinkedList<WikiPage> pages, boolean parallel) {
+      this.descriptor = descriptor;
+      this.pages = pages;
+      this.parallel = parallel;
+    }
+
+    List<WikiPage> getPages() {
+      return pages;
+    }
+
+    boolean isParallel() {
+      return parallel;
+    }
+
+    void prepare(OrderedResultsMerger merger, String classPath) {
+      this.merger = merger;
+      this.shardResultsListener = merger.getSourceListener(index);
+      this.classPath = classPath;
+    }
+
+    public Object call() throws Exception {
+      try {
+        if (isNotStopped())
+          execute();
+      } finally {
+        merger.sourceComplete(index);
+      }
+      return null;
+    }
+
+    private void execute() throws Exception {
+      TestSystem testSystem = testSystemGroup.makeWorkerTestSystem(descriptor, classPath, this, index);
+      shardResultsListener.testSystemStarted(testSystem, descriptor.testSystemName, descriptor.testRunner);
+      testSystem.start();
+      if (!testSystem.isSuccessfullyStarted())
+        throw new Exception("Test system not started");
+
+      for (WikiPage testPage : pages) {
+        if (!isNotStopped())
+          break;
+        synchronized (this) {
+          processingQueue.addLast(testPage);
+        }
+        PageData pageData = testPage.getData();
+        SetupTeardownIncluder.includeInto(pageData);
+        testSystem.runTestsAndGenerateHtml(pageData);
+      }
+      while (hasPagesWaitingForResults() && isNotStopped())
+        Thread.sleep(50);
+      if (isNotStopped())
+        testSystem.bye();
+    }
+
+    private synchronized boolean hasPagesWaitingForResults() {
+      return processingQueue.size() > 0;
+    }
+
+    public synchronized void acceptOutputFirst(String output) throws Exception {
+      WikiPage firstInQueue = processingQueue.isEmpty() ? null : processingQueue.getFirst();
+      boolean isNewTest = firstInQueue != null && firstInQueue != currentTest;
+      if (isNewTest) {
+        currentTest = firstInQueue;
+        shardResultsListener.newTestStarted(currentTest, System.currentTimeMillis());
+      }
+      shardResultsListener.testOutputChunk(output);
+    }
+
+    public synchronized void testComplete(TestSummary testSummary) throws Exception {
+      WikiPage testPage = processingQueue.removeFirst();
+      shardResultsListener.testComplete(testPage, testSummary);
+    }
+
+    public void exceptionOccurred(Throwable e) {
+      try {
+        shardResultsListener.errorOccured();
+        stop();
+      }
+      catch (Exception e1) {
+        if (isNotStopped()) {
+          e1.printStackTrace();
+        }
+      }
+    }
+  }
 }
@@ -6,10 +6,13 @@ import fitnesse.FitNesseContext;
 import fitnesse.testutil.FitNesseUtil;
 import fitnesse.wiki.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import static util.RegexTestCase.assertSubString;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -101,6 +104,121 @@ public class MultipleTestsRunnerTest {
   }
 
   
+  @Test
+  public void parallelTestSystemsDefaultsToOne() throws Exception {
+    MultipleTestsRunner runner = new MultipleTestsRunner(testPages, context, suite, null);
+    assertEquals(1, runner.getNumberOfParallelTestSystems());
+
+    setSuiteContent("!define PARALLEL_TEST_SYSTEMS {3}\n");
+    assertEquals(3, runner.getNumberOfParallelTestSystems());
+
+    setSuiteContent("!define PARALLEL_TEST_SYSTEMS {lots}\n");
+    assertEquals(1, runner.getNumberOfParallelTestSystems());
+  }
+
+  @Test
+  public void pagesAreShardedInOrderAndEachShardIsSurroundedBySuiteSetupAndTeardown() throws Exception {
+    WikiPage setUp = crawler.addPage(suite, PathParser.parse("SuiteSetUp"), "suite set up");
+    WikiPage tearDown = crawler.addPage(suite, PathParser.parse("SuiteTearDown"), "suite tear down");
+    WikiPage testTwo = addTestPage(suite, "TestTwo", "My test");
+    WikiPage testThree = addTestPage(suite, "TestThree", "My test");
+
+    MultipleTestsRunner runner = new MultipleTestsRunner(testPages, context, suite, null);
+    List<MultipleTestsRunner.TestShard> shards = runner.makeShards(2);
+
+    assertEquals(2, shards.size());
+    assertShardPages(shards.get(0), setUp, testPage, tearDown);
+    assertShardPages(shards.get(1), setUp, testTwo, testThree, tearDown);
+    assertTrue(shards.get(0).isParallel());
+    assertTrue(shards.get(1).isParallel());
+  }
+
+  @Test
+  public void pagesThatRunSeriallyGetAShardOfTheirOwnThatComesFirst() throws Exception {
+    WikiPage serialSuite = crawler.addPage(suite, PathParser.parse("SerialSuite"), "!define RUN_SERIALLY {true}\n");
+    WikiPage serialTest = addTestPage(serialSuite, "SerialTest", "My test");
+    WikiPage testTwo = addTestPage(suite, "TestTwo", "My test");
+
+    MultipleTestsRunner runner = new MultipleTestsRunner(testPages, context, suite, null);
+    List<MultipleTestsRunner.TestShard> shards = runner.makeShards(4);
+
+    assertEquals(3, shards.size());
+    assertShardPages(shards.get(0), serialTest);
+    assertFalse(shards.get(0).isParallel());
+    assertShardPages(shards.get(1), testPage);
+    assertShardPages(shards.get(2), testTwo);
+  }
+
+  @Test
+  public void parallelResultsArriveInShardOrder() throws Exception {
+    setSuiteContent("!define PARALLEL_TEST_SYSTEMS {2}\n");
+    testPages.clear();
+    List<WikiPage> expectedPages = new ArrayList<WikiPage>();
+    for (int i = 0; i < 4; i++)
+      expectedPages.add(addTestPage(suite, "SlimTest" + i, simpleSlimDecisionTable));
+
+    RecordingResultsListener listener = new RecordingResultsListener();
+    MultipleTestsRunner runner = new MultipleTestsRunner(testPages, context, suite, listener);
+    runner.setFastTest(true);
+    runner.executeTestPages();
+
+    assertEquals(4, listener.testsToRun);
+    assertEquals(expectedPages, listener.startedPages);
+    assertEquals(expectedPages, listener.completedPages);
+    assertEquals(8, listener.right);
+    assertTrue(listener.allTestingComplete);
+  }
+
+  private void assertShardPages(MultipleTestsRunner.TestShard shard, WikiPage... pages) {
+    List<WikiPage> expected = new ArrayList<WikiPage>();
+    for (WikiPage page : pages)
+      expected.add(page);
+    assertEquals(expected, shard.getPages());
+  }
+
+  private void setSuiteContent(String content) throws Exception {
+    PageData data = suite.getData();
+    data.setContent(content);
+    suite.commit(data);
+  }
+
+  private static class RecordingResultsListener implements ResultsListener {
+    int testsToRun;
+    int right;
+    boolean allTestingComplete;
+    List<WikiPage> startedPages = new ArrayList<WikiPage>();
+    List<WikiPage> completedPages = new ArrayList<WikiPage>();
+
+    public void allTestingComplete() throws Exception {
+      allTestingComplete = true;
+    }
+
+    public void setExecutionLogAndTrackingId(String stopResponderId, CompositeExecutionLog log) throws Exception {
+    }
+
+    public void announceNumberTestsToRun(int testsToRun) {
+      this.testsToRun = testsToRun;
+    }
+
+    public void testSystemStarted(TestSystem testSystem, String testSystemName, String testRunner) throws Exception {
+    }
+
+    public void newTestStarted(WikiPage test, long time) throws Exception {
+      startedPages.add(test);
+    }
+
+    public void testOutputChunk(String output) throws Exception {
+    }
+
+    public void testComplete(WikiPage test, TestSummary testSummary) throws Exception {
+      completedPages.add(test);
+      right += testSummary.getRight();
+    }
+
+    public void errorOccured() {
+    }
+  }
+
   private WikiPage addTestPage(WikiPage page, String name, String content) throws Exception {
     WikiPage testPage = crawler.addPage(page, PathParser.parse(name), content);
     PageData data = testPage.getData();
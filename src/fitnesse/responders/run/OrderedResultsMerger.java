@@ -0,0 +1,142 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run;
+
+import fitnesse.wiki.WikiPage;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Merges the results of several concurrently running sources into one
+ * ResultsListener, in source order.  The results of the first unfinished
+ * source are passed on as they arrive; the results of the sources after it
+ * are held back until every source before them is complete.  Whatever the
+ * timing, the listener sees the same sequence of calls as if the sources had
+ * run one after another.  Test summaries are copied, since a test system
+ * reuses its summary for the next test.
+ */
+public class OrderedResultsMerger {
+  private final ResultsListener resultsListener;
+  private final List<Source> sources = new ArrayList<Source>();
+  private int current = 0;
+
+  public OrderedResultsMerger(ResultsListener resultsListener, int numberOfSources) {
+    this.resultsListener = resultsListener;
+    for (int i = 0; i < numberOfSources; i++)
+      sources.add(new Source(i));
+  }
+
+  public ResultsListener getSourceListener(int source) {
+    return sources.get(source);
+  }
+
+  public synchronized void sourceComplete(int source) throws Exception {
+    sources.get(source).complete = true;
+    while (current < sources.size() && sources.get(current).complete) {
+      current++;
+      if (current < sources.size())
+        sources.get(current).flush();
+    }
+  }
+
+  private synchronized void deliver(Source source, Event event) throws Exception {
+    if (source.index == current)
+      event.sendTo(resultsListener);
+    else
+      source.pending.add(event);
+  }
+
+  private interface Event {
+    void sendTo(ResultsListener listener) throws Exception;
+  }
+
+  private class Source implements ResultsListener {
+    private final int index;
+    private final LinkedList<Event> pending = new LinkedList<Event>();
+    private boolean complete = false;
+
+    Source(int index) {
+      this.index = index;
+    }
+
+    void flush() throws Exception {
+      while (!pending.isEmpty())
+        pending.removeFirst().sendTo(resultsListener);
+    }
+
+    public void allTestingComplete() throws Exception {
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.allTestingComplete();
+        }
+      });
+    }
+
+    public void setExecutionLogAndTrackingId(final String stopResponderId, final CompositeExecutionLog log) throws Exception {
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.setExecutionLogAndTrackingId(stopResponderId, log);
+        }
+      });
+    }
+
+    public void announceNumberTestsToRun(final int testsToRun) {
+      try {
+        deliver(this, new Event() {
+          public void sendTo(ResultsListener listener) throws Exception {
+            listener.announceNumberTestsToRun(testsToRun);
+          }
+        });
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+
+    public void testSystemStarted(final TestSystem testSystem, final String testSystemName, final String testRunner) throws Exception {
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.testSystemStarted(testSystem, testSystemName, testRunner);
+        }
+      });
+    }
+
+    public void newTestStarted(final WikiPage test, final long time) throws Exception {
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.newTestStarted(test, time);
+        }
+      });
+    }
+
+    public void testOutputChunk(final String output) throws Exception {
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.testOutputChunk(output);
+        }
+      });
+    }
+
+    public void testComplete(final WikiPage test, TestSummary testSummary) throws Exception {
+      final TestSummary summaryWhenComplete = new TestSummary(testSummary);
+      deliver(this, new Event() {
+        public void sendTo(ResultsListener listener) throws Exception {
+          listener.testComplete(test, summaryWhenComplete);
+        }
+      });
+    }
+
+    public void errorOccured() {
+      try {
+        deliver(this, new Event() {
+          public void sendTo(ResultsListener listener) throws Exception {
+            listener.errorOccured();
+          }
+        });
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run;
+
+import fitnesse.wiki.WikiPage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderedResultsMergerTest {
+  private List<String> output;
+  private OrderedResultsMerger merger;
+
+  @Before
+  public void setUp() {
+    output = new ArrayList<String>();
+    merger = new OrderedResultsMerger(new OutputCollector(), 3);
+  }
+
+  @Test
+  public void firstSourcePassesStraightThrough() throws Exception {
+    merger.getSourceListener(0).testOutputChunk("a");
+    assertEquals("[a]", output.toString());
+  }
+
+  @Test
+  public void laterSourcesAreHeldBackUntilEarlierSourcesComplete() throws Exception {
+    merger.getSourceListener(2).testOutputChunk("c");
+    merger.getSourceListener(1).testOutputChunk("b1");
+    merger.getSourceListener(0).testOutputChunk("a");
+    assertEquals("[a]", output.toString());
+
+    merger.sourceComplete(0);
+    assertEquals("[a, b1]", output.toString());
+
+    merger.getSourceListener(1).testOutputChunk("b2");
+    assertEquals("[a, b1, b2]", output.toString());
+
+    merger.sourceComplete(1);
+    assertEquals("[a, b1, b2, c]", output.toString());
+  }
+
+  @Test
+  public void sourcesThatCompleteEarlyAreFlushedInOrder() throws Exception {
+    merger.getSourceListener(2).testOutputChunk("c");
+    merger.sourceComplete(2);
+    merger.getSourceListener(1).testOutputChunk("b");
+    merger.sourceComplete(1);
+    assertEquals("[]", output.toString());
+
+    merger.sourceComplete(0);
+    assertEquals("[b, c]", output.toString());
+  }
+
+  private class OutputCollector implements ResultsListener {
+    public void allTestingComplete() throws Exception {
+    }
+
+    public void setExecutionLogAndTrackingId(String stopResponderId, CompositeExecutionLog log) throws Exception {
+    }
+
+    public void announceNumberTestsToRun(int testsToRun) {
+    }
+
+    public void testSystemStarted(TestSystem testSystem, String testSystemName, String testRunner) throws Exception {
+    }
+
+    public void newTestStarted(WikiPage test, long time) throws Exception {
+    }
+
+    public void testOutputChunk(String chunk) throws Exception {
+      output.add(chunk);
+    }
+
+    public void testComplete(WikiPage test, TestSummary testSummary) throws Exception {
+    }
+
+    public void errorOccured() {
+    }
+  }
+}
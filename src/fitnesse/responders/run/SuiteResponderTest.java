@@ -9,21 +9,24 @@ import fitnesse.http.Response;
 import static fitnesse.responders.run.TestResponderTest.XmlTestUtilities.assertCounts;
 import static fitnesse.responders.run.TestResponderTest.XmlTestUtilities.getXmlDocumentFromResults;
 import fitnesse.responders.run.formatters.XmlFormatter;
+import fitnesse.responders.testHistory.HistoryStore;
 import fitnesse.testutil.FitNesseUtil;
 import fitnesse.testutil.FitSocketReceiver;
 import fitnesse.wiki.*;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.*;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
+import util.FileUtil;
 import static util.RegexTestCase.*;
 import util.XmlUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
 
 public class SuiteResponderTest {
   private MockRequest request;
@@ -358,30 +361,30 @@ public class SuiteResponderTest {
   public void normalSuiteRunWithThreePassingTestsProducesSuiteResultFile() throws Exception {
     File xmlResultsFile = expectedXmlResultsFile();
 
-    if (xmlResultsFile.exists())
-      xmlResultsFile.delete();
+    if (xmlResultsFile.getParentFile().exists())
+      FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
 
     addTestToSuite("SlimTestOne", simpleSlimDecisionTable);
     addTestToSuite("SlimTestTwo", simpleSlimDecisionTable);
     runSuite();
 
-    FileInputStream xmlResultsStream = new FileInputStream(xmlResultsFile);
-    XmlUtil.newDocument(xmlResultsStream);
-    xmlResultsStream.close();
-    xmlResultsFile.delete();
+    String xmlResults = HistoryStore.readResultFile(xmlResultsFile);
+    assertNotNull(xmlResults);
+    XmlUtil.newDocument(xmlResults);
+    FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
   }
   @Test
   public void NoHistory_avoidsProducingSuiteResultFile() throws Exception {
     File xmlResultsFile = expectedXmlResultsFile();
 
-    if (xmlResultsFile.exists())
-      xmlResultsFile.delete();
+    if (xmlResultsFile.getParentFile().exists())
+      FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
 
     request.addInput("nohistory", "true");
     addTestToSuite("SlimTestOne", simpleSlimDecisionTable);
     addTestToSuite("SlimTestTwo", simpleSlimDecisionTable);
     runSuite();
-    assertFalse(xmlResultsFile.exists());
+    assertNull(HistoryStore.readResultFile(xmlResultsFile));
   }
 
   @Test
@@ -411,17 +414,16 @@ public class SuiteResponderTest {
       context.getTestHistoryDirectory(), counts.getRight(), counts.getWrong(), counts.getIgnores(), counts.getExceptions());
     File xmlResultsFile = new File(resultsFileName);
 
-    if (xmlResultsFile.exists())
-      xmlResultsFile.delete();
+    if (xmlResultsFile.getParentFile().exists())
+      FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
 
     addTestToSuite("SlimTest", simpleSlimDecisionTable);
     runSuite();
 
-    assertTrue(resultsFileName, xmlResultsFile.exists());
-    FileInputStream xmlResultsStream = new FileInputStream(xmlResultsFile);
-    XmlUtil.newDocument(xmlResultsStream);
-    xmlResultsStream.close();
-    xmlResultsFile.delete();
+    String xmlResults = HistoryStore.readResultFile(xmlResultsFile);
+    assertNotNull(resultsFileName, xmlResults);
+    XmlUtil.newDocument(xmlResults);
+    FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
   }
 
   @Test
@@ -38,4 +38,9 @@ public class SuiteXmlFormatter extends XmlFormatter {
     addFinalCounts();
     super.allTestingComplete();
   }
+
+  @Override
+  protected boolean writesEachResultWhenComplete() {
+    return false;
+  }
 }
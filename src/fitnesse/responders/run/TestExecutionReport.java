@@ -41,6 +41,12 @@ public class TestExecutionReport extends ExecutionReport {
     return this;
   }
 
+  public TestExecutionReport read(String xml) throws Exception {
+    xmlDoc = XmlUtil.newDocument(xml);
+    unpackXml();
+    return this;
+  }
+
   protected void unpackResults(Element testResults) throws Exception {
     NodeList xmlResults = testResults.getElementsByTagName("result");
     for (int resultIndex = 0; resultIndex < xmlResults.getLength(); resultIndex++) {
@@ -9,13 +9,11 @@ import fitnesse.authentication.SecureTestOperation;
 import fitnesse.http.Response;
 import fitnesse.responders.ChunkingResponder;
 import fitnesse.responders.run.formatters.*;
-import fitnesse.responders.testHistory.PageHistory;
+import fitnesse.responders.testHistory.HistoryStore;
 import fitnesse.wiki.PageData;
 import fitnesse.wiki.WikiPage;
 import fitnesse.wiki.WikiPagePath;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.LinkedList;
@@ -210,11 +208,8 @@ public class TestResponder extends ChunkingResponder implements SecureResponder
 
   public static class HistoryWriterFactory implements XmlFormatter.WriterFactory {
     public Writer getWriter(FitNesseContext context, WikiPage page, TestSummary counts, long time) throws Exception {
-      File resultPath = new File(PageHistory.makePageHistoryFileName(context, page, counts, time));
-      File resultDirectory = new File(resultPath.getParent());
-      resultDirectory.mkdirs();
-      File resultFile = new File(resultDirectory, resultPath.getName());
-      return new FileWriter(resultFile);
+      HistoryStore store = new HistoryStore(context.getTestHistoryDirectory());
+      return store.openWriter(page.getPageCrawler().getFullPath(page).toString(), counts, time);
     }
   }
 }
@@ -13,6 +13,7 @@ import fitnesse.http.Response;
 import static fitnesse.responders.run.TestResponderTest.XmlTestUtilities.assertCounts;
 import static fitnesse.responders.run.TestResponderTest.XmlTestUtilities.getXmlDocumentFromResults;
 import fitnesse.responders.run.formatters.XmlFormatter;
+import fitnesse.responders.testHistory.HistoryStore;
 import fitnesse.testutil.FitNesseUtil;
 import fitnesse.testutil.FitSocketReceiver;
 import fitnesse.wiki.*;
@@ -33,7 +34,6 @@ import util.XmlUtil;
 import static util.XmlUtil.getElementByTagName;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -249,7 +249,7 @@ public class TestResponderTest {
     ensureXmlResultFileDoesNotExist(new TestSummary(2, 0, 0, 0));
     request.addInput("nohistory", "true");
     doSimpleRun(simpleSlimDecisionTable());
-    assertFalse(xmlResultsFile.exists());
+    assertNull(HistoryStore.readResultFile(xmlResultsFile));
   }
   private String slimDecisionTable() {
     return "!define TEST_SYSTEM {slim}\n" +
@@ -278,16 +278,15 @@ public class TestResponderTest {
       context.getTestHistoryDirectory(), counts.getRight(), counts.getWrong(), counts.getIgnores(), counts.getExceptions());
     xmlResultsFile = new File(resultsFileName);
 
-    if (xmlResultsFile.exists())
-      FileUtil.deleteFile(xmlResultsFile);
+    if (xmlResultsFile.getParentFile().exists())
+      FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
   }
 
   private Document getXmlFromFileAndDeleteFile() throws Exception {
-    assertTrue(xmlResultsFile.exists());
-    FileInputStream xmlResultsStream = new FileInputStream(xmlResultsFile);
-    Document xmlDoc = XmlUtil.newDocument(xmlResultsStream);
-    xmlResultsStream.close();
-    FileUtil.deleteFile(xmlResultsFile);
+    String xmlResults = HistoryStore.readResultFile(xmlResultsFile);
+    assertNotNull(xmlResults);
+    Document xmlDoc = XmlUtil.newDocument(xmlResults);
+    FileUtil.deleteFileSystemDirectory(xmlResultsFile.getParentFile());
     return xmlDoc;
   }
 
@@ -2,7 +2,9 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.responders.run;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import fitnesse.FitNesseContext;
@@ -11,6 +13,7 @@ import fitnesse.wiki.WikiPage;
 
 public class TestSystemGroup {
   private Map<TestSystem.Descriptor, TestSystem> testSystems = new HashMap<TestSystem.Descriptor, TestSystem>();
+  private List<TestSystem> workerTestSystems = new ArrayList<TestSystem>();
   private FitNesseContext context;
   private WikiPage page;
   private TestSystemListener testSystemListener;
@@ -34,27 +37,33 @@ public class TestSystemGroup {
     }
   }
 
-  public void kill() throws Exception {
+  public synchronized void kill() throws Exception {
     for (TestSystem testSystem : testSystems.values()) {
       testSystem.kill();
     }
+    for (TestSystem testSystem : workerTestSystems) {
+      testSystem.kill();
+    }
   }
 
   public void setFastTest(boolean fastTest) {
     this.fastTest = fastTest;
   }
 
-  public boolean isSuccessfullyStarted() {
+  public synchronized boolean isSuccessfullyStarted() {
     for (TestSystem testSystem : testSystems.values())
       if (testSystem.isSuccessfullyStarted() == false)
         return false;
+    for (TestSystem testSystem : workerTestSystems)
+      if (testSystem.isSuccessfullyStarted() == false)
+        return false;
     return true;
   }
 
   TestSystem startTestSystem(TestSystem.Descriptor descriptor, String classPath) throws Exception {
     TestSystem testSystem = null;
     if (!testSystems.containsKey(descriptor)) {
-      testSystem = makeTestSystem(descriptor);
+      testSystem = makeTestSystem(descriptor, testSystemListener);
       testSystem.setFastTest(fastTest);
       testSystems.put(descriptor, testSystem);
       log.add(descriptor.testSystemName, testSystem.getExecutionLog(classPath, descriptor));
@@ -63,11 +72,25 @@ public class TestSystemGroup {
     return testSystem;
   }
 
-  private TestSystem makeTestSystem(TestSystem.Descriptor descriptor) throws Exception {
+  /**
+   * Makes one of several test systems for the same descriptor, each with its
+   * own listener, for running pages in parallel.  The caller starts it, says
+   * bye to it and waits for it; the group only kills it.
+   */
+  synchronized TestSystem makeWorkerTestSystem(TestSystem.Descriptor descriptor, String classPath,
+                                               TestSystemListener listener, int worker) throws Exception {
+    TestSystem testSystem = makeTestSystem(descriptor, listener);
+    testSystem.setFastTest(fastTest);
+    workerTestSystems.add(testSystem);
+    log.add(String.format("%s #%d", descriptor.testSystemName, worker), testSystem.getExecutionLog(classPath, descriptor));
+    return testSystem;
+  }
+
+  private TestSystem makeTestSystem(TestSystem.Descriptor descriptor, TestSystemListener listener) throws Exception {
     if ("slim".equalsIgnoreCase(TestSystem.getTestSystemType(descriptor.testSystemName)))
-      return new HtmlSlimTestSystem(page, testSystemListener);
+      return new HtmlSlimTestSystem(page, listener);
     else
-      return new FitTestSystem(context, page, testSystemListener);
+      return new FitTestSystem(context, page, listener);
   }
 
 }
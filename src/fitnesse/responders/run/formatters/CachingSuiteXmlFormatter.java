@@ -55,7 +55,7 @@ public class CachingSuiteXmlFormatter extends SuiteExecutionReportFormatter {
     if(record == null) { //todo get rid of this when we get rid of XMLFormatter.setTestTime().
       throw new RuntimeException("Did you forget to call XmlFormatter.clearTestTime?");
     }
-    return makeTestExecutionReport().read(record.getFile());
+    return makeTestExecutionReport().read(record.getContent());
   }
 
   TestExecutionReport makeTestExecutionReport() {
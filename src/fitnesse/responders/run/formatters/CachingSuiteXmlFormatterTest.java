@@ -21,7 +21,6 @@ import fitnesse.testutil.FitNesseUtil;
 import util.DateTimeUtil;
 
 import java.io.Writer;
-import java.io.File;
 import java.util.Date;
 
 public class CachingSuiteXmlFormatterTest {
@@ -79,7 +78,6 @@ public class CachingSuiteXmlFormatterTest {
     TestHistory testHistory = mock(TestHistory.class);
     PageHistory pageHistory = mock(PageHistory.class);
     PageHistory.TestResultRecord expectedRecord = mock(PageHistory.TestResultRecord.class);
-    File file = mock(File.class);
     final TestExecutionReport expectedReport = mock(TestExecutionReport.class);
     CachingSuiteXmlFormatter formatter = new CachingSuiteXmlFormatter(context, testPage, null) {
       @Override
@@ -91,9 +89,9 @@ public class CachingSuiteXmlFormatterTest {
     
     formatter.setTestHistoryForTests(testHistory);
     when(testHistory.getPageHistory("TestPage")).thenReturn(pageHistory);
-    when(expectedRecord.getFile()).thenReturn(file);
+    when(expectedRecord.getContent()).thenReturn("<testResults/>");
     when(pageHistory.get(referenceDate)).thenReturn(expectedRecord);
-    when(expectedReport.read(file)).thenReturn(expectedReport);
+    when(expectedReport.read("<testResults/>")).thenReturn(expectedReport);
     SuiteExecutionReport.PageHistoryReference reference;
     reference = new SuiteExecutionReport.PageHistoryReference("TestPage", referenceDate.getTime());
     TestExecutionReport actualReport = formatter.getTestExecutionReport(reference);
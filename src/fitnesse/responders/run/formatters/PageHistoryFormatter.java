@@ -30,6 +30,11 @@ public class PageHistoryFormatter extends XmlFormatter {
    public void allTestingComplete() throws Exception {
   }
 
+  @Override
+  protected boolean writesEachResultWhenComplete() {
+    return false;
+  }
+
   @Override
   protected WikiPage getPageForHistory() {
     return historyPage;
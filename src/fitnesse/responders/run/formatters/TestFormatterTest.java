@@ -13,6 +13,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -34,7 +36,11 @@ public class TestFormatterTest {
     FitNesseContext context = FitNesseUtil.makeTestContext(root);
     ChunkedResponse response = mock(ChunkedResponse.class);
     WikiPageDummy page = new WikiPageDummy("testPage", "testContent");
-    XmlFormatter.WriterFactory writerFactory = mock(XmlFormatter.WriterFactory.class);
+    XmlFormatter.WriterFactory writerFactory = new XmlFormatter.WriterFactory() {
+      public Writer getWriter(FitNesseContext context, WikiPage page, TestSummary counts, long time) {
+        return new StringWriter();
+      }
+    };
 
     TestTextFormatter testTextFormatter = new TestTextFormatter(response);
     XmlFormatter xmlFormatter = new XmlFormatter(context, page, writerFactory) {
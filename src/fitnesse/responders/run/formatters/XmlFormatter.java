@@ -18,13 +18,27 @@ import fitnesse.wiki.WikiPage;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 
+import java.io.BufferedWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.regex.Pattern;
+
+/**
+ * Reports test results as a testResults XML document.  Each result is
+ * written with testResultsEntry.vm as soon as its test completes, and then
+ * dropped; testResultsHeader.vm and testResultsFooter.vm write the rest.
+ * Subclasses that write whole documents at other times (one per test, or
+ * with final counts that the writer depends on) keep the results in
+ * testResponse instead and render testResults.vm, which is made of the
+ * same three templates.
+ */
 public class XmlFormatter extends BaseFormatter {
   private WriterFactory writerFactory;
   private long currentTestStartTime;
+  private Writer resultsWriter;
 
   public interface WriterFactory {
     Writer getWriter(FitNesseContext context, WikiPage page, TestSummary counts, long time) throws Exception;
@@ -76,6 +90,32 @@ public class XmlFormatter extends BaseFormatter {
       SlimTestSystem slimSystem = (SlimTestSystem) testSystem;
       new SlimTestXmlFormatter(currentResult, slimSystem).invoke();
     }
+
+    if (writesEachResultWhenComplete()) {
+      VelocityContext velocityContext = new VelocityContext();
+      velocityContext.put("result", currentResult);
+      merge("testResultsEntry.vm", velocityContext, getResultsWriter());
+      resultsWriter.flush();
+      testResponse.results.remove(currentResult);
+      currentResult = null;
+    }
+  }
+
+  /**
+   * Whether each result is written as soon as its test completes.  The
+   * writer is then asked for when the first test completes, before the
+   * final counts of a run of several tests are known.
+   */
+  protected boolean writesEachResultWhenComplete() {
+    return true;
+  }
+
+  private Writer getResultsWriter() throws Exception {
+    if (resultsWriter == null) {
+      resultsWriter = new BufferedWriter(writerFactory.getWriter(context, getPageForHistory(), finalSummary, getTime()));
+      merge("testResultsHeader.vm", new VelocityContext(), resultsWriter);
+    }
+    return resultsWriter;
   }
 
   public void setExecutionLogAndTrackingId(String stopResponderId,
@@ -97,7 +137,14 @@ public class XmlFormatter extends BaseFormatter {
   }
 
   protected void writeResults() throws Exception {
-    writeResults(writerFactory.getWriter(context, getPageForHistory(), finalSummary, getTime()));
+    if (writesEachResultWhenComplete()) {
+      Writer writer = getResultsWriter();
+      resultsWriter = null;
+      merge("testResultsFooter.vm", new VelocityContext(), writer);
+      writer.close();
+    } else {
+      writeResults(writerFactory.getWriter(context, getPageForHistory(), finalSummary, getTime()));
+    }
   }
 
   protected WikiPage getPageForHistory() {
@@ -110,11 +157,14 @@ public class XmlFormatter extends BaseFormatter {
   }
 
   protected void writeResults(Writer writer) throws Exception {
-    VelocityContext velocityContext = new VelocityContext();
+    merge("testResults.vm", new VelocityContext(), writer);
+    writer.close();
+  }
+
+  private void merge(String templateName, VelocityContext velocityContext, Writer writer) throws Exception {
     velocityContext.put("response", testResponse);
-    Template template = VelocityFactory.getVelocityEngine().getTemplate("testResults.vm");
+    Template template = VelocityFactory.getVelocityEngine().getTemplate(templateName);
     template.merge(velocityContext, writer);
-    writer.close();
   }
 
   protected TestSummary getFinalSummary() {
@@ -144,20 +194,37 @@ public class XmlFormatter extends BaseFormatter {
   }
 
   private static class SlimTestXmlFormatter {
+    private static final Pattern PASS = Pattern.compile(".*pass(.*)");
+    private static final Pattern FAIL = Pattern.compile(".*fail(.*)");
+    private static final Pattern EXCEPTION = Pattern.compile(".*__EXCEPTION__:<");
+
     private TestExecutionReport.TestResult testResult;
     private List<Object> instructions;
     private Map<String, Object> results;
-    private List<SlimTable.Expectation> expectations;
+    private Map<String, List<SlimTable.Expectation>> expectationsByInstruction;
     private List<SlimTable> slimTables;
 
     public SlimTestXmlFormatter(TestExecutionReport.TestResult testResult, SlimTestSystem slimSystem) {
       this.testResult = testResult;
       instructions = slimSystem.getInstructions();
       results = slimSystem.getInstructionResults();
-      expectations = slimSystem.getExpectations();
+      expectationsByInstruction = indexByInstruction(slimSystem.getExpectations());
       slimTables = slimSystem.getTestTables();
     }
 
+    private static Map<String, List<SlimTable.Expectation>> indexByInstruction(List<SlimTable.Expectation> expectations) {
+      Map<String, List<SlimTable.Expectation>> index = new LinkedHashMap<String, List<SlimTable.Expectation>>();
+      for (SlimTable.Expectation expectation : expectations) {
+        List<SlimTable.Expectation> instructionExpectations = index.get(expectation.getInstructionTag());
+        if (instructionExpectations == null) {
+          instructionExpectations = new ArrayList<SlimTable.Expectation>(1);
+          index.put(expectation.getInstructionTag(), instructionExpectations);
+        }
+        instructionExpectations.add(expectation);
+      }
+      return index;
+    }
+
     public void invoke() {
       addTables();
       addInstructionResults();
@@ -248,34 +315,35 @@ public class XmlFormatter extends BaseFormatter {
 
       instructionResult.instruction = instruction.toString();
       instructionResult.slimResult = (result != null) ? result.toString() : "";
-      for (SlimTable.Expectation expectation : expectations) {
-        if (expectation.getInstructionTag().equals(id)) {
-          try {
-            TestExecutionReport.Expectation expectationResult = new TestExecutionReport.Expectation();
-            instructionResult.addExpectation(expectationResult);
-            expectationResult.instructionId = expectation.getInstructionTag();
-            expectationResult.col = Integer.toString(expectation.getCol());
-            expectationResult.row = Integer.toString(expectation.getRow());
-            expectationResult.type = expectation.getClass().getSimpleName();
-            expectationResult.actual = expectation.getActual();
-            expectationResult.expected = expectation.getExpected();
-            String message = expectation.getEvaluationMessage();
-            expectationResult.evaluationMessage = message;
-            expectationResult.status = expectationStatus(message);
-          } catch (Throwable e) {
-            e.printStackTrace();
-          }
+      List<SlimTable.Expectation> instructionExpectations = expectationsByInstruction.get(id);
+      if (instructionExpectations == null)
+        return;
+      for (SlimTable.Expectation expectation : instructionExpectations) {
+        try {
+          TestExecutionReport.Expectation expectationResult = new TestExecutionReport.Expectation();
+          instructionResult.addExpectation(expectationResult);
+          expectationResult.instructionId = expectation.getInstructionTag();
+          expectationResult.col = Integer.toString(expectation.getCol());
+          expectationResult.row = Integer.toString(expectation.getRow());
+          expectationResult.type = expectation.getClass().getSimpleName();
+          expectationResult.actual = expectation.getActual();
+          expectationResult.expected = expectation.getExpected();
+          String message = expectation.getEvaluationMessage();
+          expectationResult.evaluationMessage = message;
+          expectationResult.status = expectationStatus(message);
+        } catch (Throwable e) {
+          e.printStackTrace();
         }
       }
     }
 
     private String expectationStatus(String message) {
       String status = "TILT";
-      if (message.matches(".*pass(.*)"))
+      if (PASS.matcher(message).matches())
         status = "right";
-      else if (message.matches(".*fail(.*)"))
+      else if (FAIL.matcher(message).matches())
         status = "wrong";
-      else if (message.matches(".*__EXCEPTION__:<"))
+      else if (EXCEPTION.matcher(message).matches())
         status = "exception";
       else
         status = "ignored";
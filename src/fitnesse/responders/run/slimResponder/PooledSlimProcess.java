@@ -0,0 +1,134 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run.slimResponder;
+
+import fitnesse.components.CommandRunner;
+import fitnesse.slim.SlimClient;
+
+import java.util.Map;
+
+/**
+ * A Slim process started ahead of time by the SlimProcessPool, together with
+ * its connected client.  Processes are interchangeable when their keys are
+ * equal: same command, flags, host and environment.
+ */
+public class PooledSlimProcess {
+  private final String commandPrefix;
+  private final String slimFlags;
+  private final String host;
+  private final int portBase;
+  private final Map<String, String> environment;
+  private final int maximumIdleMillis;
+  private final int recycleAfter;
+  private final SlimPortAllocator portAllocator;
+  private CommandRunner runner;
+  private SlimClient client;
+  private String command;
+  private int port;
+  private int uses = 0;
+  private long idleSince;
+
+  public PooledSlimProcess(String commandPrefix, String slimFlags, String host, int portBase,
+                           Map<String, String> environment, int maximumIdleMillis, int recycleAfter,
+                           SlimPortAllocator portAllocator) {
+    this.commandPrefix = commandPrefix;
+    this.slimFlags = slimFlags;
+    this.host = host;
+    this.portBase = portBase;
+    this.environment = environment;
+    this.maximumIdleMillis = maximumIdleMillis;
+    this.recycleAfter = recycleAfter;
+    this.portAllocator = portAllocator;
+  }
+
+  public String getKey() {
+    return String.format("%s|%s|%s|%d|%s", commandPrefix, slimFlags, host, portBase, environment);
+  }
+
+  /**
+   * A new process with the same key and settings, not yet started.
+   */
+  public PooledSlimProcess copy() {
+    return new PooledSlimProcess(commandPrefix, slimFlags, host, portBase, environment, maximumIdleMillis, recycleAfter,
+      portAllocator);
+  }
+
+  public void start() throws Exception {
+    port = portAllocator.lease(portBase);
+    command = String.format("%s %s %d", commandPrefix, slimFlags, port);
+    runner = new CommandRunner(command, "", environment);
+    try {
+      runner.asynchronousStart();
+      client = new SlimClient(host, port);
+      client.connect();
+    } catch (Exception e) {
+      kill();
+      throw e;
+    }
+  }
+
+  public boolean isHealthy() {
+    return client != null && client.ping();
+  }
+
+  public CommandRunner getRunner() {
+    return runner;
+  }
+
+  public SlimClient getClient() {
+    return client;
+  }
+
+  public String getCommand() {
+    return command;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public int getUses() {
+    return uses;
+  }
+
+  void used() {
+    uses++;
+  }
+
+  boolean canBeReused() {
+    return uses < recycleAfter;
+  }
+
+  void becameIdle(long now) {
+    idleSince = now;
+  }
+
+  boolean idleTooLong(long now) {
+    return now - idleSince > maximumIdleMillis;
+  }
+
+  public void shutDown() {
+    try {
+      client.sendBye();
+      runner.join();
+    } catch (Exception e) {
+      kill();
+    } finally {
+      portAllocator.release(port);
+    }
+  }
+
+  public void kill() {
+    try {
+      if (runner != null)
+        runner.kill();
+    } catch (Exception e) {
+    }
+    try {
+      if (client != null)
+        client.close();
+    } catch (Exception e) {
+    }
+    portAllocator.release(port);
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run.slimResponder;
+
+import fitnesse.slim.SlimError;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hands out the ports that Slim services listen on.  A port is leased from
+ * the range above a base port (SLIM_PORT) and stays leased until it is
+ * released, so concurrent test systems never share a port.  Ports that are
+ * bound by something else -- a Slim service that has not shut down yet, or
+ * another program -- are skipped.  Leases start where the previous one left
+ * off, so a port that was just released is the last to be reused.
+ */
+public class SlimPortAllocator {
+  public static final int DEFAULT_RANGE = 1000;
+  private static final int MAXIMUM_PORT = 65535;
+
+  private final int range;
+  private final Set<Integer> leasedPorts = new HashSet<Integer>();
+  private int offset = 0;
+
+  public SlimPortAllocator() {
+    this(DEFAULT_RANGE);
+  }
+
+  public SlimPortAllocator(int range) {
+    this.range = range;
+  }
+
+  public synchronized int lease(int base) {
+    int ports = Math.min(range, MAXIMUM_PORT - base);
+    for (int tries = 0; tries < ports; tries++) {
+      offset = (offset % ports) + 1;
+      int port = base + offset;
+      if (!leasedPorts.contains(port) && isFree(port)) {
+        leasedPorts.add(port);
+        return port;
+      }
+    }
+    throw new SlimError(String.format("No free Slim port in %d..%d", base + 1, base + ports));
+  }
+
+  public synchronized void release(int port) {
+    leasedPorts.remove(port);
+  }
+
+  public synchronized boolean isLeased(int port) {
+    return leasedPorts.contains(port);
+  }
+
+  public synchronized void clear() {
+    leasedPorts.clear();
+    offset = 0;
+  }
+
+  static boolean isFree(int port) {
+    ServerSocket socket = null;
+    try {
+      socket = new ServerSocket();
+      socket.setReuseAddress(true);
+      socket.bind(new InetSocketAddress(port));
+      return true;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException e) {
+        }
+      }
+    }
+  }
+}
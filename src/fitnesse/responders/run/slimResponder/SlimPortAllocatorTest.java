@@ -0,0 +1,64 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run.slimResponder;
+
+import fitnesse.slim.SlimError;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlimPortAllocatorTest {
+  private static final int BASE = 41200;
+  private SlimPortAllocator allocator;
+
+  @Before
+  public void setUp() {
+    allocator = new SlimPortAllocator(10);
+  }
+
+  @Test
+  public void leasesDoNotWrapWhileHeld() throws Exception {
+    for (int i = 1; i <= 10; i++)
+      assertEquals(BASE + i, allocator.lease(BASE));
+  }
+
+  @Test(expected = SlimError.class)
+  public void failsWhenEveryPortIsLeased() throws Exception {
+    for (int i = 0; i <= 10; i++)
+      allocator.lease(BASE);
+  }
+
+  @Test
+  public void releasedPortsAreReusedLast() throws Exception {
+    int first = allocator.lease(BASE);
+    allocator.release(first);
+    assertFalse(allocator.isLeased(first));
+    for (int i = 2; i <= 10; i++)
+      assertEquals(BASE + i, allocator.lease(BASE));
+    assertEquals(first, allocator.lease(BASE));
+  }
+
+  @Test
+  public void boundPortsAreSkipped() throws Exception {
+    ServerSocket socket = new ServerSocket(BASE + 1);
+    try {
+      int port = allocator.lease(BASE);
+      assertEquals(BASE + 2, port);
+      assertTrue(allocator.isLeased(port));
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void clearForgetsAllLeases() throws Exception {
+    allocator.lease(BASE);
+    allocator.clear();
+    assertEquals(BASE + 1, allocator.lease(BASE));
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run.slimResponder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Keeps Slim processes started and connected ahead of the test runs that
+ * will use them, so that a run does not wait for a JVM to start.
+ * <p/>
+ * fill() starts processes in the background until the requested number are
+ * idle (or starting) for a key.  acquire() hands out an idle process after
+ * checking that it still answers, or null when there is none, in which case
+ * the caller starts a process itself.  release() returns a process to the
+ * pool if it may run more tests, and shuts it down otherwise.  Processes
+ * that stay idle too long are shut down by a background timer.  shutDown()
+ * shuts down the idle processes; from then on the pool starts no more, and
+ * processes that finish starting or are released are shut down instead of
+ * kept.
+ */
+public class SlimProcessPool {
+  private static final long EVICTION_PERIOD = 1000;
+
+  private final Map<String, LinkedList<PooledSlimProcess>> idleProcesses = new HashMap<String, LinkedList<PooledSlimProcess>>();
+  private final Map<String, Integer> startingProcesses = new HashMap<String, Integer>();
+  private Timer evictionTimer;
+  private boolean shutDown;
+
+  public PooledSlimProcess acquire(String key) {
+    PooledSlimProcess process;
+    while ((process = takeIdleProcess(key)) != null) {
+      if (process.isHealthy())
+        return process;
+      process.kill();
+    }
+    return null;
+  }
+
+  public void fill(final PooledSlimProcess prototype, int size) {
+    final String key = prototype.getKey();
+    int processesToStart;
+    synchronized (this) {
+      if (shutDown)
+        return;
+      processesToStart = size - idleCount(key) - startingCount(key);
+      if (processesToStart <= 0)
+        return;
+      startingProcesses.put(key, startingCount(key) + processesToStart);
+    }
+    for (int i = 0; i < processesToStart; i++) {
+      Thread starter = new Thread(new Runnable() {
+        public void run() {
+          startProcess(key, prototype.copy());
+        }
+      }, "Slim process pool");
+      starter.setDaemon(true);
+      starter.start();
+    }
+  }
+
+  public void release(PooledSlimProcess process) {
+    process.used();
+    if (!process.canBeReused() || !process.isHealthy() || !addIdleProcess(process.getKey(), process))
+      process.shutDown();
+  }
+
+  public synchronized int idleCount(String key) {
+    List<PooledSlimProcess> processes = idleProcesses.get(key);
+    return processes == null ? 0 : processes.size();
+  }
+
+  public synchronized int idleCount() {
+    int count = 0;
+    for (List<PooledSlimProcess> processes : idleProcesses.values())
+      count += processes.size();
+    return count;
+  }
+
+  public synchronized int startingCount(String key) {
+    Integer count = startingProcesses.get(key);
+    return count == null ? 0 : count;
+  }
+
+  public void shutDown() {
+    synchronized (this) {
+      shutDown = true;
+    }
+    for (PooledSlimProcess process : removeProcesses(false))
+      process.shutDown();
+  }
+
+  void evictIdleProcesses() {
+    for (PooledSlimProcess process : removeProcesses(true))
+      process.shutDown();
+  }
+
+  private void startProcess(String key, PooledSlimProcess process) {
+    try {
+      process.start();
+    } catch (Exception e) {
+      process = null;
+    }
+    synchronized (this) {
+      startingProcesses.put(key, startingCount(key) - 1);
+      if (startingCount(key) == 0)
+        startingProcesses.remove(key);
+    }
+    if (process != null && !addIdleProcess(key, process))
+      process.shutDown();
+  }
+
+  private synchronized PooledSlimProcess takeIdleProcess(String key) {
+    LinkedList<PooledSlimProcess> processes = idleProcesses.get(key);
+    if (processes == null)
+      return null;
+    PooledSlimProcess process = processes.removeFirst();
+    if (processes.isEmpty())
+      idleProcesses.remove(key);
+    return process;
+  }
+
+  private synchronized boolean addIdleProcess(String key, PooledSlimProcess process) {
+    if (shutDown)
+      return false;
+    LinkedList<PooledSlimProcess> processes = idleProcesses.get(key);
+    if (processes == null) {
+      processes = new LinkedList<PooledSlimProcess>();
+      idleProcesses.put(key, processes);
+    }
+    process.becameIdle(System.currentTimeMillis());
+    processes.addLast(process);
+    startEvictionTimer();
+    return true;
+  }
+
+  private synchronized List<PooledSlimProcess> removeProcesses(boolean onlyIdleTooLong) {
+    long now = System.currentTimeMillis();
+    List<PooledSlimProcess> removed = new ArrayList<PooledSlimProcess>();
+    for (Iterator<LinkedList<PooledSlimProcess>> lists = idleProcesses.values().iterator(); lists.hasNext();) {
+      LinkedList<PooledSlimProcess> processes = lists.next();
+      for (Iterator<PooledSlimProcess> i = processes.iterator(); i.hasNext();) {
+        PooledSlimProcess process = i.next();
+        if (!onlyIdleTooLong || process.idleTooLong(now)) {
+          i.remove();
+          removed.add(process);
+        }
+      }
+      if (processes.isEmpty())
+        lists.remove();
+    }
+    if (idleProcesses.isEmpty())
+      stopEvictionTimer();
+    return removed;
+  }
+
+  private void startEvictionTimer() {
+    if (evictionTimer != null)
+      return;
+    evictionTimer = new Timer("Slim process pool eviction", true);
+    evictionTimer.schedule(new TimerTask() {
+      public void run() {
+        evictIdleProcesses();
+      }
+    }, EVICTION_PERIOD, EVICTION_PERIOD);
+  }
+
+  private void stopEvictionTimer() {
+    if (evictionTimer != null) {
+      evictionTimer.cancel();
+      evictionTimer = null;
+    }
+  }
+}
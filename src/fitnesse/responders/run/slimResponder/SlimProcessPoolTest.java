@@ -0,0 +1,133 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.run.slimResponder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlimProcessPoolTest {
+  private static final String SLIM_COMMAND = "java -cp classes fitnesse.slim.SlimService";
+  private SlimPortAllocator portAllocator;
+  private SlimProcessPool pool;
+
+  @Before
+  public void setUp() {
+    portAllocator = new SlimPortAllocator();
+    pool = new SlimProcessPool();
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutDown();
+  }
+
+  private PooledSlimProcess prototype(int maximumIdleMillis, int recycleAfter) {
+    return new PooledSlimProcess(SLIM_COMMAND, "", "localhost", 41300, null, maximumIdleMillis, recycleAfter, portAllocator);
+  }
+
+  private void waitForIdleProcesses(String key, int count) throws Exception {
+    for (int tries = 0; pool.idleCount(key) < count; tries++) {
+      assertTrue("pool did not fill", tries < 400);
+      Thread.sleep(50);
+    }
+  }
+
+  @Test
+  public void emptyPoolHandsOutNothing() throws Exception {
+    assertNull(pool.acquire(prototype(60000, 1).getKey()));
+  }
+
+  @Test
+  public void fillStartsConnectedProcesses() throws Exception {
+    PooledSlimProcess prototype = prototype(60000, 1);
+    pool.fill(prototype, 2);
+    waitForIdleProcesses(prototype.getKey(), 2);
+    assertEquals(0, pool.startingCount(prototype.getKey()));
+
+    PooledSlimProcess process = pool.acquire(prototype.getKey());
+    assertNotNull(process);
+    assertTrue(process.getClient().isConnected());
+    assertTrue(portAllocator.isLeased(process.getPort()));
+    assertEquals(1, pool.idleCount(prototype.getKey()));
+
+    pool.release(process);
+    assertEquals(0, process.getRunner().getExitCode());
+    assertFalse(portAllocator.isLeased(process.getPort()));
+    assertEquals(1, pool.idleCount(prototype.getKey()));
+  }
+
+  @Test
+  public void processesAreRecycledAfterTheConfiguredNumberOfRuns() throws Exception {
+    PooledSlimProcess prototype = prototype(60000, 2);
+    pool.fill(prototype, 1);
+    waitForIdleProcesses(prototype.getKey(), 1);
+
+    PooledSlimProcess process = pool.acquire(prototype.getKey());
+    pool.release(process);
+    assertSame(process, pool.acquire(prototype.getKey()));
+    pool.release(process);
+    assertEquals(0, process.getRunner().getExitCode());
+    assertNull(pool.acquire(prototype.getKey()));
+  }
+
+  @Test
+  public void deadProcessesAreNotHandedOut() throws Exception {
+    PooledSlimProcess prototype = prototype(60000, 2);
+    pool.fill(prototype, 1);
+    waitForIdleProcesses(prototype.getKey(), 1);
+
+    PooledSlimProcess process = pool.acquire(prototype.getKey());
+    pool.release(process);
+    process.getRunner().kill();
+    assertFalse(process.isHealthy());
+    assertNull(pool.acquire(prototype.getKey()));
+  }
+
+  @Test
+  public void processesIdleTooLongAreEvicted() throws Exception {
+    PooledSlimProcess prototype = prototype(0, 1);
+    pool.fill(prototype, 1);
+    waitForIdleProcesses(prototype.getKey(), 1);
+
+    Thread.sleep(5);
+    pool.evictIdleProcesses();
+    assertEquals(0, pool.idleCount(prototype.getKey()));
+  }
+
+  @Test
+  public void processesStartingWhenThePoolIsShutDownAreNotKept() throws Exception {
+    PooledSlimProcess prototype = prototype(60000, 1);
+    pool.fill(prototype, 1);
+    pool.shutDown();
+    for (int tries = 0; pool.startingCount(prototype.getKey()) > 0; tries++) {
+      assertTrue("process did not start", tries < 400);
+      Thread.sleep(50);
+    }
+    assertEquals(0, pool.idleCount(prototype.getKey()));
+    assertFalse(portAllocator.isLeased(41300));
+  }
+
+  @Test
+  public void shutDownPoolStartsNothingAndKeepsNothing() throws Exception {
+    PooledSlimProcess prototype = prototype(60000, 2);
+    pool.fill(prototype, 1);
+    waitForIdleProcesses(prototype.getKey(), 1);
+    PooledSlimProcess process = pool.acquire(prototype.getKey());
+
+    pool.shutDown();
+    pool.fill(prototype, 1);
+    assertEquals(0, pool.startingCount(prototype.getKey()));
+    pool.release(process);
+    assertEquals(0, process.getRunner().getExitCode());
+    assertFalse(portAllocator.isLeased(process.getPort()));
+    assertEquals(0, pool.idleCount(prototype.getKey()));
+  }
+}
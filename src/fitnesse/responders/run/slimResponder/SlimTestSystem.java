@@ -20,7 +20,6 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.SocketException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,6 +28,10 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   public static final String MESSAGE_FAIL = "!fail:";
   public static final SlimTable START_OF_TEST = null;
   public static final SlimTable END_OF_TEST = null;
+  public static final String SLIM_TABLES_PER_BATCH = "SLIM_TABLES_PER_BATCH";
+  public static final String SLIM_POOL_SIZE = "SLIM_POOL_SIZE";
+  public static final String SLIM_POOL_MAX_IDLE = "SLIM_POOL_MAX_IDLE";
+  public static final String SLIM_POOL_RECYCLE_AFTER = "SLIM_POOL_RECYCLE_AFTER";
   
   private CommandRunner slimRunner;
   private String slimCommand;
@@ -49,8 +52,11 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   protected ExceptionList exceptions = new ExceptionList();
   private Map<String, String> symbols = new HashMap<String, String>();
   protected TestSummary testSummary;
-  private static AtomicInteger slimSocketOffset = new AtomicInteger(0);
+  private static SlimPortAllocator slimPortAllocator = new SlimPortAllocator();
+  private static volatile SlimProcessPool slimProcessPool = new SlimProcessPool();
   private int slimSocket;
+  private PooledSlimProcess pooledSlim;
+  private SlimProcessPool pooledSlimPool;
   protected final Pattern exceptionMessagePattern = Pattern.compile("message:<<(.*)>>");
   private Map<String, ScenarioTable> scenarios = new HashMap<String, ScenarioTable>();
   protected List<SlimTable.Expectation> expectations = new ArrayList<SlimTable.Expectation>();
@@ -86,10 +92,16 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
 
   public void kill() throws Exception {
+    if (pooledSlim != null) {
+      pooledSlim.kill();
+      pooledSlim = null;
+      return;
+    }
     if (slimRunner != null)
       slimRunner.kill();
     if (slimClient != null)
       slimClient.close();
+    releaseSlimSocket();
   }
 
   String getSlimFlags() throws Exception {
@@ -101,9 +113,17 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
 
   protected ExecutionLog createExecutionLog(String classPath, Descriptor descriptor) throws Exception {
     String slimFlags = getSlimFlags();
+    String slimCommandPrefix = buildCommand(descriptor, classPath);
+    if (!fastTest && getSlimPoolSize() > 0)
+      pooledSlim = acquirePooledSlim(slimCommandPrefix, slimFlags, classPath);
+    if (pooledSlim != null) {
+      slimCommand = pooledSlim.getCommand();
+      slimRunner = pooledSlim.getRunner();
+      return new ExecutionLog(page, slimRunner);
+    }
+
     slimSocket = getNextSlimSocket();
     String slimArguments = String.format("%s %d", slimFlags, slimSocket);
-    String slimCommandPrefix = buildCommand(descriptor, classPath);
     slimCommand = String.format("%s %s", slimCommandPrefix, slimArguments);
     if (fastTest) {
       slimRunner = new MockCommandRunner();
@@ -114,13 +134,64 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
     return new ExecutionLog(page, slimRunner);
   }
 
+  /**
+   * Takes a started Slim process for this command from the pool, if one is
+   * idle, and asks the pool to start more so that SLIM_POOL_SIZE are ready
+   * for the next run.  Idle processes are shut down after SLIM_POOL_MAX_IDLE
+   * seconds (default 300).  A process runs SLIM_POOL_RECYCLE_AFTER tests or
+   * suites (default 1) before it is shut down; fixtures and symbols left by
+   * one run are seen by the next, so raise it only for suites that allow
+   * that.
+   */
+  private PooledSlimProcess acquirePooledSlim(String slimCommandPrefix, String slimFlags, String classPath) throws Exception {
+    PooledSlimProcess prototype = new PooledSlimProcess(slimCommandPrefix, slimFlags, determineSlimHost(),
+      getSlimPortBase(), createClasspathEnvironment(classPath),
+      getIntegerVariable(SLIM_POOL_MAX_IDLE, 300) * 1000, getIntegerVariable(SLIM_POOL_RECYCLE_AFTER, 1),
+      slimPortAllocator);
+    SlimProcessPool pool = slimProcessPool;
+    PooledSlimProcess process = pool.acquire(prototype.getKey());
+    pool.fill(prototype, getSlimPoolSize());
+    if (process != null)
+      pooledSlimPool = pool;
+    return process;
+  }
+
+  int getSlimPoolSize() {
+    return getIntegerVariable(SLIM_POOL_SIZE, 0);
+  }
+
+  private int getIntegerVariable(String name, int defaultValue) {
+    try {
+      String value = page.getData().getVariable(name);
+      if (value != null)
+        return Integer.parseInt(value.trim());
+    } catch (Exception e) {
+    }
+    return defaultValue;
+  }
+
+  static SlimProcessPool getSlimProcessPool() {
+    return slimProcessPool;
+  }
+
+  /**
+   * Shuts down the warm Slim processes, which would otherwise outlive
+   * FitNesse.  Test systems started afterwards get a new pool.
+   */
+  public static synchronized void shutDownSlimProcessPool() {
+    SlimProcessPool pool = slimProcessPool;
+    slimProcessPool = new SlimProcessPool();
+    pool.shutDown();
+  }
+
   public int getNextSlimSocket() {
-    int base = getSlimPortBase();
-    synchronized (slimSocketOffset) {
-      int offset = slimSocketOffset.get();
-      offset = (offset+1)%10;
-      slimSocketOffset.set(offset);
-      return offset + base;
+    return slimPortAllocator.lease(getSlimPortBase());
+  }
+
+  private void releaseSlimSocket() {
+    if (slimSocket != 0) {
+      slimPortAllocator.release(slimSocket);
+      slimSocket = 0;
     }
   }
 
@@ -138,6 +209,11 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
 
   public void start() throws Exception {
+    if (pooledSlim != null) {
+      slimClient = pooledSlim.getClient();
+      started = true;
+      return;
+    }
     slimRunner.asynchronousStart();
 
     slimClient = new SlimClient(determineSlimHost(), slimSocket);
@@ -159,9 +235,21 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
 
   public void bye() throws Exception {
-    slimClient.sendBye();
-    if (!fastTest)
-      slimRunner.join();
+    if (pooledSlim != null) {
+      // the process may go on to serve another run; it is no longer ours to kill
+      pooledSlimPool.release(pooledSlim);
+      pooledSlim = null;
+      slimRunner = null;
+      slimClient = null;
+      return;
+    }
+    try {
+      slimClient.sendBye();
+      if (!fastTest)
+        slimRunner.join();
+    } finally {
+      releaseSlimSocket();
+    }
   }
 
   //For testing only.  Makes responder faster.
@@ -182,8 +270,11 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
 
   void waitForConnection() throws Exception {
-    while (!isConnected())
-      Thread.sleep(50);
+    long wait = 1;
+    while (!isConnected()) {
+      Thread.sleep(wait);
+      wait = Math.min(wait * 2, 50);
+    }
   }
 
   private boolean isConnected() throws Exception {
@@ -228,25 +319,36 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
     tableScanner = scanTheTables(pageData);
     allTables = createSlimTables(tableScanner);
     testResults = pageData;
-    
-    boolean runAllTablesAtOnce = false;
-    String htmlResults = "";
-    if (runAllTablesAtOnce || (allTables.size() == 0) ) {
-      htmlResults = processTablesAndGetHtml(allTables, START_OF_TEST, END_OF_TEST);
+
+    if (allTables.size() == 0)
+      return processTablesAndGetHtml(allTables, START_OF_TEST, END_OF_TEST);
+
+    int tablesPerBatch = getTablesPerBatch(pageData);
+    StringBuilder htmlResults = new StringBuilder();
+    for (int first = 0; first < allTables.size(); first += tablesPerBatch) {
+      int last = Math.min(first + tablesPerBatch, allTables.size());
+      htmlResults.append(processBatchAndGetHtml(first, last));
     }
-    else {
-      List<SlimTable> oneTableList = new ArrayList<SlimTable>(1);
-      for (int index = 0; index < allTables.size(); index++) {
-        SlimTable theTable = allTables.get(index);
-        SlimTable startWithTable = (index == 0) ? START_OF_TEST : theTable;
-        SlimTable nextTable = (index + 1 < allTables.size()) ? allTables.get(index + 1) : END_OF_TEST;
-
-        oneTableList.add(theTable);
-        htmlResults += processTablesAndGetHtml(oneTableList, startWithTable, nextTable);
-        oneTableList.clear();
-      }
+    return htmlResults.toString();
+  }
+
+  /**
+   * The number of tables whose instructions are sent to Slim in one round
+   * trip, set with the SLIM_TABLES_PER_BATCH variable.  "all" sends the whole
+   * page at once.  The default, and the fallback for a bad value, is one.
+   */
+  int getTablesPerBatch(PageData pageData) throws Exception {
+    String tablesPerBatch = pageData.getVariable(SLIM_TABLES_PER_BATCH);
+    if (tablesPerBatch == null)
+      return 1;
+    tablesPerBatch = tablesPerBatch.trim();
+    if (tablesPerBatch.equalsIgnoreCase("all"))
+      return Integer.MAX_VALUE;
+    try {
+      return Math.max(1, Integer.parseInt(tablesPerBatch));
+    } catch (NumberFormatException e) {
+      return 1;
     }
-    return htmlResults;
   }
 
   protected abstract TableScanner scanTheTables(PageData pageData) throws Exception;
@@ -269,7 +371,65 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
     
     return html;
   }
-  
+
+  /**
+   * Sends the instructions of tables first to last (exclusive) in one round
+   * trip, then writes the results of the tables one at a time, just as if
+   * each had been sent on its own.  Once a table stops the test the tables
+   * after it get no results.
+   */
+  private String processBatchAndGetHtml(int first, int last) throws Exception {
+    List<Object> batchInstructions = new ArrayList<Object>();
+    List<SlimTable.Expectation> batchExpectations = new ArrayList<SlimTable.Expectation>();
+    int[] instructionEnds = new int[last - first];
+    int[] expectationEnds = new int[last - first];
+    for (int index = first; index < last; index++) {
+      expectations.clear();
+      allTables.get(index).appendInstructions(batchInstructions);
+      batchExpectations.addAll(expectations);
+      instructionEnds[index - first] = batchInstructions.size();
+      expectationEnds[index - first] = batchExpectations.size();
+    }
+
+    Map<String, Object> batchResults = new HashMap<String, Object>();
+    if (!exceptions.stopTestCalled())
+      batchResults = slimClient.invokeAndGetResponse(batchInstructions);
+
+    StringBuilder html = new StringBuilder();
+    for (int index = first; index < last; index++) {
+      int i = index - first;
+      SlimTable theTable = allTables.get(index);
+      SlimTable startWithTable = (index == 0) ? START_OF_TEST : theTable;
+      SlimTable nextTable = (index + 1 < allTables.size()) ? allTables.get(index + 1) : END_OF_TEST;
+
+      testTables = Collections.singletonList(theTable);
+      instructions = batchInstructions.subList(i == 0 ? 0 : instructionEnds[i - 1], instructionEnds[i]);
+      expectations.clear();
+      expectations.addAll(batchExpectations.subList(i == 0 ? 0 : expectationEnds[i - 1], expectationEnds[i]));
+      instructionResults = exceptions.stopTestCalled() ?
+        new HashMap<String, Object>() : resultsOf(instructions, batchResults);
+
+      String tableHtml = createHtmlResults(startWithTable, nextTable);
+      acceptOutputFirst(tableHtml);
+      html.append(tableHtml);
+
+      allExpectations.addAll(expectations);
+      allInstructions.addAll(instructions);
+      allInstructionResults.putAll(instructionResults);
+    }
+    return html.toString();
+  }
+
+  private Map<String, Object> resultsOf(List<Object> instructions, Map<String, Object> batchResults) {
+    Map<String, Object> results = new HashMap<String, Object>();
+    for (Object instruction : instructions) {
+      String id = (String) ((List<?>) instruction).get(0);
+      if (batchResults.containsKey(id))
+        results.put(id, batchResults.get(id));
+    }
+    return results;
+  }
+
   private List<Object> createInstructions(List<SlimTable> tables) {
     List<Object> instructions = new ArrayList<Object>();
     for (SlimTable table : tables) {
@@ -279,7 +439,7 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
   
   private List<SlimTable> createSlimTables(TableScanner tableScanner) {
-    List<SlimTable> allTables = new LinkedList<SlimTable>();
+    List<SlimTable> allTables = new ArrayList<SlimTable>();
     for (Table table : tableScanner) {
       String tableId = "" + allTables.size();
       SlimTable slimTable = slimTableFactory.makeSlimTable(table, tableId, this);
@@ -406,7 +566,7 @@ public abstract class SlimTestSystem extends TestSystem implements SlimTestConte
   }
 
   public static void clearSlimPortOffset() {
-    slimSocketOffset.set(0);
+    slimPortAllocator.clear();
   }
 
   public List<SlimTable> getTestTables() {
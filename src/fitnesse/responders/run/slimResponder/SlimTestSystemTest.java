@@ -19,6 +19,8 @@ import org.junit.Test;
 
 import java.net.ServerSocket;
 import java.net.SocketException;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -70,26 +72,32 @@ public class SlimTestSystemTest {
   }
 
   @Test
-  public void portRotates() throws Exception {
+  public void portsAreLeasedAboveTheDefaultBase() throws Exception {
     SlimTestSystem sys = new HtmlSlimTestSystem(root, dummyListener);
-    for (int i = 1; i < 15; i++)
-      assertEquals(8085 + (i % 10), sys.getNextSlimSocket());
+    assertPortsAreLeasedAbove(8085, sys);
   }
 
   @Test
   public void portStartsAtSlimPortVariable() throws Exception {
     WikiPage pageWithSlimPortDefined = crawler.addPage(root, PathParser.parse("PageWithSlimPortDefined"), "!define SLIM_PORT {9000}\n");
     SlimTestSystem sys = new HtmlSlimTestSystem(pageWithSlimPortDefined, dummyListener);
-    for (int i = 1; i < 15; i++)
-      assertEquals(9000 + (i % 10), sys.getNextSlimSocket());
+    assertPortsAreLeasedAbove(9000, sys);
   }
 
   @Test
   public void badSlimPortVariableDefaults() throws Exception {
     WikiPage pageWithBadSlimPortDefined = crawler.addPage(root, PathParser.parse("PageWithBadSlimPortDefined"), "!define SLIM_PORT {BOB}\n");
     SlimTestSystem sys = new HtmlSlimTestSystem(pageWithBadSlimPortDefined, dummyListener);
-    for (int i = 1; i < 15; i++)
-      assertEquals(8085 + (i % 10), sys.getNextSlimSocket());
+    assertPortsAreLeasedAbove(8085, sys);
+  }
+
+  private void assertPortsAreLeasedAbove(int base, SlimTestSystem sys) {
+    Set<Integer> ports = new HashSet<Integer>();
+    for (int i = 1; i < 15; i++) {
+      int port = sys.getNextSlimSocket();
+      assertTrue(port > base);
+      assertTrue(ports.add(port));
+    }
   }
 
   @Test
@@ -114,6 +122,35 @@ public class SlimTestSystemTest {
     assertTrue(!responder.slimOpen());
   }
 
+  @Test
+  public void pooledSlimProcessesServeLaterRuns() throws Exception {
+    SlimProcessPool pool = SlimTestSystem.getSlimProcessPool();
+    try {
+      responder.setFastTest(false);
+      getResultsForPageContents("!define SLIM_POOL_SIZE {1}\n" +
+        "!|DT:fitnesse.slim.test.TestSlim|\n" +
+        "|returnInt?|\n" +
+        "|7|\n");
+      assertTestResultsContain("<span class=\"pass\">7</span>");
+      waitForIdleSlimProcess(pool);
+
+      response = (SimpleResponse) responder.makeResponse(context, request);
+      testResults = response.getContent();
+      assertTestResultsContain("<span class=\"pass\">7</span>");
+      assertTrue(!responder.slimOpen());
+      waitForIdleSlimProcess(pool);
+    } finally {
+      pool.shutDown();
+    }
+  }
+
+  private void waitForIdleSlimProcess(SlimProcessPool pool) throws Exception {
+    for (int tries = 0; pool.idleCount() == 0; tries++) {
+      assertTrue("pool did not fill", tries < 400);
+      Thread.sleep(50);
+    }
+  }
+
   @Test
   public void verboseOutputIfSlimFlagSet() throws Exception {
     getResultsForPageContents("!define SLIM_FLAGS {-v}\n");
@@ -292,6 +329,65 @@ public class SlimTestSystemTest {
     assertTestResultsContain("<td>twice <span class=\"ignore\">Test not run</span>");
   }
 
+  @Test
+  public void tablesPerBatchDefaultsToOne() throws Exception {
+    SlimTestSystem sys = new HtmlSlimTestSystem(root, dummyListener);
+    assertEquals(1, sys.getTablesPerBatch(root.getData()));
+  }
+
+  @Test
+  public void tablesPerBatchVariableSetsTheBatchSize() throws Exception {
+    WikiPage page = crawler.addPage(root, PathParser.parse("BatchedPage"), "!define SLIM_TABLES_PER_BATCH {5}\n");
+    WikiPage allPage = crawler.addPage(root, PathParser.parse("AllBatchedPage"), "!define SLIM_TABLES_PER_BATCH {all}\n");
+    WikiPage badPage = crawler.addPage(root, PathParser.parse("BadBatchedPage"), "!define SLIM_TABLES_PER_BATCH {BOB}\n");
+    SlimTestSystem sys = new HtmlSlimTestSystem(root, dummyListener);
+    assertEquals(5, sys.getTablesPerBatch(page.getData()));
+    assertEquals(Integer.MAX_VALUE, sys.getTablesPerBatch(allPage.getData()));
+    assertEquals(1, sys.getTablesPerBatch(badPage.getData()));
+  }
+
+  @Test
+  public void batchedTablesAreEvaluatedOneByOne() throws Exception {
+    getResultsForPageContents("!define SLIM_TABLES_PER_BATCH {2}\n" +
+      "!|DT:fitnesse.slim.test.TestSlim|\n" +
+      "|string|getStringArg?|\n" +
+      "|Bob|$V=|\n" +
+      "\n\n" +
+      "!|DT:fitnesse.slim.test.TestSlim|\n" +
+      "|string|getStringArg?|\n" +
+      "|$V|Bob|\n" +
+      "\n\n" +
+      "!|DT:fitnesse.slim.test.TestSlim|\n" +
+      "|returnInt?|\n" +
+      "|7|\n");
+    assertTestResultsContain("<span class=\"pass\">Bob</span>");
+    assertTestResultsContain("<span class=\"pass\">7</span>");
+    assertTestResultsContain("$V<-[Bob]");
+    assertTestResultsContain("$V->[Bob]");
+  }
+
+  @Test
+  public void stopTestExceptionStopsTheRestOfTheBatch() throws Exception {
+    getResultsForPageContents("!define SLIM_TABLES_PER_BATCH {all}\n" +
+      "!|DT:fitnesse.slim.test.TestSlim|\n" +
+      "|throwNormal?| throwStopping? |\n" +
+      "| first | second  |\n" +
+      "| should fail1| true           |\n" +
+      "\n\n" +
+      "!|DT:fitnesse.slim.test.ThrowException|\n" +
+      "|throwNormal?|\n" +
+      "| should fail2|\n" +
+      "\n\n" +
+      "!|DT:fitnesse.slim.test.TestSlim|\n" +
+      "|returnInt?|\n" +
+      "|7|\n"
+    );
+    assertTestResultsContain("<td>should fail1 <span class=\"ignore\">Test not run</span></td>");
+    assertTestResultsContain("<td>should fail2 <span class=\"ignore\">Test not run</span></td>");
+    assertTestResultsContain("<td>7 <span class=\"ignore\">Test not run</span></td>");
+    assertTestResultsDoNotContain("<span class=\"pass\">7</span>");
+  }
+
   @Test
   public void tableWithMessageException() throws Exception {
     getResultsForPageContents("!|DT:fitnesse.slim.test.TestSlim|\n" +
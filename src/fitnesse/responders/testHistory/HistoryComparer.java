@@ -59,7 +59,10 @@ public class HistoryComparer {
   public String getFileContent(String filePath) {
     TestExecutionReport report;
     try {
-      report = new TestExecutionReport().read(new File(filePath));
+      String document = HistoryStore.readResultFile(new File(filePath));
+      if (document == null)
+        return null;
+      report = new TestExecutionReport().read(document);
       if (report.getResults().size() != 1)
         return null;
       return report.getResults().get(0).getContent();
@@ -71,9 +71,12 @@ public class HistoryComparerResponder implements Responder {
     }
   }
 
-  private boolean filesExist() {
-    return ((new File(firstFilePath)).exists())
-        || ((new File(secondFilePath)).exists());
+  private boolean filesExist() throws Exception {
+    return resultExists(firstFilePath) || resultExists(secondFilePath);
+  }
+
+  private boolean resultExists(String filePath) throws Exception {
+    return new File(filePath).exists() || HistoryStore.readResultFile(new File(filePath)) != null;
   }
 
   private void initializeReponseComponents(Request request) throws IOException {
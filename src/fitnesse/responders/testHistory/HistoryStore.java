@@ -0,0 +1,331 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.testHistory;
+
+import fitnesse.responders.run.TestSummary;
+import fitnesse.wiki.blobs.BlobStore;
+import fitnesse.wikitext.widgets.WikiWordWidget;
+import util.FileUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the test history in the test results directory without a file per
+ * run.  Each page directory has a history.idx file with one line per run:
+ * the time, the right, wrong, ignores and exceptions counts, the duration
+ * and the hash of the results document.  The documents themselves are kept,
+ * compressed and delta encoded against the previous run of the same page,
+ * in a BlobStore in the .blobs directory.  Reading the history of a page is
+ * a single small read, and no file names or dates have to be parsed.
+ * <p/>
+ * The index is only ever appended to, except by purge, which rewrites it
+ * through a temporary file and a rename.  Result files written by earlier
+ * versions stay readable next to the index; TestHistoryImporter moves them
+ * into the store.
+ */
+public class HistoryStore {
+  public static final String INDEX_FILE = "history.idx";
+  public static final String BLOB_DIRECTORY = ".blobs";
+
+  private static final Object lock = new Object();
+
+  private final File historyDirectory;
+  private final BlobStore blobs;
+
+  public HistoryStore(File historyDirectory) {
+    this.historyDirectory = historyDirectory;
+    blobs = new BlobStore(new File(historyDirectory, BLOB_DIRECTORY), true);
+  }
+
+  public File getHistoryDirectory() {
+    return historyDirectory;
+  }
+
+  /**
+   * A writer for the results document of a run of the page.  The document
+   * goes to a temporary file, hashed as it is written, and is moved into the
+   * store when the writer is closed, so it is never held in memory in full.
+   * The run is added to the history then; its duration is the time from the
+   * start of the run until then.
+   */
+  public Writer openWriter(final String pageName, final TestSummary counts, final long time) throws IOException {
+    File directory = new File(historyDirectory, BLOB_DIRECTORY);
+    directory.mkdirs();
+    final File document = File.createTempFile("document", ".tmp", directory);
+    final DigestOutputStream output;
+    try {
+      output = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(document)), BlobStore.newDigest());
+    } catch (IOException e) {
+      document.delete();
+      throw e;
+    }
+    return new OutputStreamWriter(output, "UTF-8") {
+      private boolean closed;
+
+      public void close() throws IOException {
+        if (closed)
+          return;
+        closed = true;
+        try {
+          super.close();
+          long duration = Math.max(0, System.currentTimeMillis() - time);
+          String hash = BlobStore.toHex(output.getMessageDigest().digest());
+          synchronized (lock) {
+            Entry previous = lastEntryIn(indexFileOf(pageName));
+            String stored = blobs.put(document, hash, previous == null ? null : previous.hash);
+            addEntry(pageName, new Entry(wholeSeconds(time), counts, duration, stored));
+          }
+        } finally {
+          document.delete();
+        }
+      }
+    };
+  }
+
+  public Entry add(String pageName, long time, TestSummary counts, long duration, byte[] document) throws IOException {
+    synchronized (lock) {
+      return add(pageName, time, counts, duration, document, lastEntryIn(indexFileOf(pageName)));
+    }
+  }
+
+  /**
+   * Adds a run whose document is delta encoded against that of previous,
+   * which should be the last run of the page.
+   */
+  Entry add(String pageName, long time, TestSummary counts, long duration, byte[] document, Entry previous) throws IOException {
+    synchronized (lock) {
+      String hash = blobs.put(document, previous == null ? null : previous.hash);
+      return addEntry(pageName, new Entry(wholeSeconds(time), counts, duration, hash));
+    }
+  }
+
+  private Entry addEntry(String pageName, Entry entry) throws IOException {
+    File indexFile = indexFileOf(pageName);
+    indexFile.getParentFile().mkdirs();
+    OutputStream output = new FileOutputStream(indexFile, true);
+    try {
+      output.write(entry.toLine().getBytes("UTF-8"));
+    } finally {
+      output.close();
+    }
+    return entry;
+  }
+
+  /**
+   * The runs of the page, in the order they were added.
+   */
+  public List<Entry> getEntries(String pageName) throws IOException {
+    return read(indexFileOf(pageName));
+  }
+
+  /**
+   * The runs of the page from from up to and including to, in the order
+   * they were added.  Either bound may be null.
+   */
+  public List<Entry> getEntries(String pageName, Date from, Date to) throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    for (Entry entry : getEntries(pageName)) {
+      if ((from == null || entry.time >= from.getTime()) && (to == null || entry.time <= to.getTime()))
+        entries.add(entry);
+    }
+    return entries;
+  }
+
+  public Entry find(String pageName, long time) throws IOException {
+    List<Entry> entries = getEntries(pageName, new Date(wholeSeconds(time)), new Date(wholeSeconds(time)));
+    return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+  }
+
+  public String getDocument(Entry entry) throws IOException {
+    return new String(blobs.get(entry.hash), "UTF-8");
+  }
+
+  /**
+   * The results document that a result file of the given name in the page
+   * directory of the given page holds, or would have held if it had been
+   * written by an earlier version, or null if there is no such run.
+   */
+  public String getDocument(String pageName, String resultFileName) throws Exception {
+    File file = new File(new File(historyDirectory, pageName), resultFileName);
+    if (file.isFile())
+      return FileUtil.getFileContent(file);
+    if (resultFileName.length() < 14)
+      return null;
+    Date date;
+    try {
+      date = new SimpleDateFormat(TestHistory.TEST_RESULT_FILE_DATE_PATTERN).parse(resultFileName.substring(0, 14));
+    } catch (ParseException e) {
+      return null;
+    }
+    Entry entry = find(pageName, date.getTime());
+    return entry == null ? null : getDocument(entry);
+  }
+
+  /**
+   * The results document of a result file in a page directory of a test
+   * results directory, as getDocument(pageName, resultFileName), or null.
+   */
+  public static String readResultFile(File resultFile) throws Exception {
+    File pageDirectory = resultFile.getAbsoluteFile().getParentFile();
+    return new HistoryStore(pageDirectory.getParentFile()).getDocument(pageDirectory.getName(), resultFile.getName());
+  }
+
+  public Set<String> getPageNames() {
+    Set<String> pageNames = new TreeSet<String>();
+    for (File directory : FileUtil.getDirectoryListing(historyDirectory)) {
+      if (directory.isDirectory() && WikiWordWidget.isWikiWord(directory.getName()) &&
+        new File(directory, INDEX_FILE).exists())
+        pageNames.add(directory.getName());
+    }
+    return pageNames;
+  }
+
+  /**
+   * Removes the runs of the page from before the given date.  Their
+   * documents stay in the store until the next collect.
+   */
+  public int purge(String pageName, Date olderThan) throws IOException {
+    synchronized (lock) {
+      File indexFile = indexFileOf(pageName);
+      List<Entry> kept = new ArrayList<Entry>();
+      List<Entry> entries = read(indexFile);
+      for (Entry entry : entries) {
+        if (entry.time >= olderThan.getTime())
+          kept.add(entry);
+      }
+      if (kept.size() < entries.size())
+        write(indexFile, kept);
+      return entries.size() - kept.size();
+    }
+  }
+
+  /**
+   * Removes the documents that no run refers to any more.
+   */
+  public int collect() throws IOException {
+    synchronized (lock) {
+      Set<String> used = new HashSet<String>();
+      for (String pageName : getPageNames()) {
+        for (Entry entry : getEntries(pageName)) {
+          String hash = entry.hash;
+          while (hash != null && used.add(hash))
+            hash = blobs.getBase(hash);
+        }
+      }
+      int removed = 0;
+      for (String hash : blobs.list()) {
+        if (!used.contains(hash)) {
+          blobs.remove(hash);
+          removed++;
+        }
+      }
+      return removed;
+    }
+  }
+
+  private File indexFileOf(String pageName) {
+    return new File(new File(historyDirectory, pageName), INDEX_FILE);
+  }
+
+  private Entry lastEntryIn(File indexFile) throws IOException {
+    List<Entry> entries = read(indexFile);
+    return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+  }
+
+  private static List<Entry> read(File indexFile) throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    if (!indexFile.exists())
+      return entries;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Entry entry = Entry.fromLine(line);
+        if (entry != null)
+          entries.add(entry);
+      }
+    } finally {
+      reader.close();
+    }
+    return entries;
+  }
+
+  private static void write(File indexFile, List<Entry> entries) throws IOException {
+    if (entries.isEmpty()) {
+      indexFile.delete();
+      return;
+    }
+    File temporary = new File(indexFile.getParentFile(), INDEX_FILE + ".tmp");
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+    try {
+      for (Entry entry : entries)
+        writer.write(entry.toLine());
+    } finally {
+      writer.close();
+    }
+    if (!temporary.renameTo(indexFile)) {
+      indexFile.delete();
+      if (!temporary.renameTo(indexFile))
+        throw new IOException("Could not write " + indexFile);
+    }
+  }
+
+  static long wholeSeconds(long time) {
+    return time / 1000 * 1000;
+  }
+
+  public static class Entry {
+    public final long time;
+    public final TestSummary counts;
+    public final long duration;
+    public final String hash;
+
+    public Entry(long time, TestSummary counts, long duration, String hash) {
+      this.time = time;
+      this.counts = counts;
+      this.duration = duration;
+      this.hash = hash;
+    }
+
+    public String getResultFileName() {
+      return TestHistory.makeResultFileName(counts, time);
+    }
+
+    String toLine() {
+      return String.format("%d\t%d\t%d\t%d\t%d\t%d\t%s\n", time, counts.getRight(), counts.getWrong(),
+        counts.getIgnores(), counts.getExceptions(), duration, hash);
+    }
+
+    static Entry fromLine(String line) {
+      String[] fields = line.split("\t");
+      if (fields.length != 7)
+        return null;
+      try {
+        TestSummary counts = new TestSummary(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+          Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+        return new Entry(Long.parseLong(fields[0]), counts, Long.parseLong(fields[5]), fields[6]);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package fitnesse.responders.testHistory;
+
+import fitnesse.responders.run.TestSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import util.FileUtil;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+public class HistoryStoreTest {
+  private File resultsDirectory;
+  private HistoryStore store;
+
+  @Before
+  public void setup() throws Exception {
+    resultsDirectory = new File("testHistoryDirectory");
+    removeResultsDirectory();
+    resultsDirectory.mkdir();
+    store = new HistoryStore(resultsDirectory);
+  }
+
+  @After
+  public void teardown() {
+    removeResultsDirectory();
+  }
+
+  private void removeResultsDirectory() {
+    if (resultsDirectory.exists())
+      FileUtil.deleteFileSystemDirectory(resultsDirectory);
+  }
+
+  @Test
+  public void runsAreReadBackWithTheirCountsAndDocuments() throws Exception {
+    store.add("SomePage", time("20090614000000"), new TestSummary(1, 2, 3, 4), 1500, bytes("<testResults/>"));
+    List<HistoryStore.Entry> entries = store.getEntries("SomePage");
+    assertEquals(1, entries.size());
+    HistoryStore.Entry entry = entries.get(0);
+    assertEquals(time("20090614000000"), entry.time);
+    assertEquals(new TestSummary(1, 2, 3, 4), entry.counts);
+    assertEquals(1500, entry.duration);
+    assertEquals("<testResults/>", store.getDocument(entry));
+    assertEquals("20090614000000_1_2_3_4.xml", entry.getResultFileName());
+    assertTrue(store.getPageNames().contains("SomePage"));
+  }
+
+  @Test
+  public void writerAddsTheRunWhenItIsClosed() throws Exception {
+    Writer writer = store.openWriter("SomePage", new TestSummary(1, 0, 0, 0), time("20090614000000"));
+    writer.write("<testResults>");
+    writer.write("</testResults>");
+    assertTrue(store.getEntries("SomePage").isEmpty());
+    writer.close();
+    writer.close();
+    List<HistoryStore.Entry> entries = store.getEntries("SomePage");
+    assertEquals(1, entries.size());
+    assertEquals("<testResults></testResults>", store.getDocument(entries.get(0)));
+  }
+
+  @Test
+  public void writerLeavesNoTemporaryFileBehind() throws Exception {
+    Writer writer = store.openWriter("SomePage", new TestSummary(1, 0, 0, 0), time("20090614000000"));
+    writer.write("<testResults/>");
+    writer.close();
+    for (String name : new File(resultsDirectory, HistoryStore.BLOB_DIRECTORY).list())
+      assertFalse(name, name.endsWith(".tmp"));
+  }
+
+  @Test
+  public void runsCanBeSelectedByDate() throws Exception {
+    addRun("SomePage", "20090614000000");
+    addRun("SomePage", "20090615000000");
+    addRun("SomePage", "20090616000000");
+    addRun("OtherPage", "20090615000000");
+    List<HistoryStore.Entry> entries = store.getEntries("SomePage", date("20090615000000"), null);
+    assertEquals(2, entries.size());
+    assertEquals(time("20090615000000"), entries.get(0).time);
+    assertEquals(1, store.getEntries("SomePage", date("20090614120000"), date("20090615000000")).size());
+    assertNotNull(store.find("SomePage", time("20090616000000") + 999));
+    assertNull(store.find("SomePage", time("20090616000001")));
+  }
+
+  @Test
+  public void resultFileNamesFindStoredRunsAndOldResultFiles() throws Exception {
+    addRun("SomePage", "20090614000000");
+    File pageDirectory = new File(resultsDirectory, "SomePage");
+    FileUtil.createFile(new File(pageDirectory, "20090615000000_1_0_0_0.xml"), "<testResults>old</testResults>");
+    assertEquals("<testResults>20090614000000</testResults>",
+      HistoryStore.readResultFile(new File(pageDirectory, "20090614000000_1_0_0_0.xml")));
+    assertEquals("<testResults>old</testResults>",
+      HistoryStore.readResultFile(new File(pageDirectory, "20090615000000_1_0_0_0.xml")));
+    assertNull(HistoryStore.readResultFile(new File(pageDirectory, "20090616000000_1_0_0_0.xml")));
+  }
+
+  @Test
+  public void pageHistoryHasStoredRunsAndOldResultFiles() throws Exception {
+    addRun("SomePage", "20090614000000");
+    File pageDirectory = new File(resultsDirectory, "SomePage");
+    FileUtil.createFile(new File(pageDirectory, "20090615000000_0_1_0_0.xml"), "<testResults>old</testResults>");
+    PageHistory pageHistory = new PageHistory(pageDirectory);
+    assertEquals(2, pageHistory.size());
+    assertEquals(1, pageHistory.getPasses());
+    assertEquals(1, pageHistory.getFailures());
+    assertEquals("20090614000000_1_0_0_0.xml", pageHistory.getPageFileName(date("20090614000000")));
+    assertEquals("<testResults>20090614000000</testResults>", pageHistory.get(date("20090614000000")).getContent());
+    assertEquals("<testResults>old</testResults>", pageHistory.get(date("20090615000000")).getContent());
+  }
+
+  @Test
+  public void purgeRemovesOldRunsAndCollectRemovesTheirDocuments() throws Exception {
+    addRun("SomePage", "20090614000000");
+    addRun("SomePage", "20090615000000");
+    assertEquals(1, store.purge("SomePage", date("20090615000000")));
+    assertEquals(1, store.getEntries("SomePage").size());
+    store.collect();
+    HistoryStore.Entry kept = store.getEntries("SomePage").get(0);
+    assertEquals("<testResults>20090615000000</testResults>", store.getDocument(kept));
+
+    assertEquals(1, store.purge("SomePage", date("20090616000000")));
+    assertTrue(store.getPageNames().isEmpty());
+    assertTrue(store.collect() > 0);
+  }
+
+  @Test
+  public void importerMovesResultFilesIntoTheStore() throws Exception {
+    addRun("SomePage", "20090616000000");
+    File pageDirectory = new File(resultsDirectory, "SomePage");
+    FileUtil.createFile(new File(pageDirectory, "20090614000000_1_0_0_0.xml"), "<testResults>first</testResults>");
+    FileUtil.createFile(new File(pageDirectory, "20090615000000_0_1_0_0.xml"), "<testResults>second</testResults>");
+    FileUtil.createFile(new File(pageDirectory, "20090616000000_1_0_0_0.xml"), "<testResults>again</testResults>");
+
+    TestHistoryImporter importer = new TestHistoryImporter(store);
+    importer.importAll(false);
+
+    assertEquals(1, importer.getPages());
+    assertEquals(2, importer.getRuns());
+    assertEquals(1, pageDirectory.list().length);
+    List<HistoryStore.Entry> entries = store.getEntries("SomePage");
+    assertEquals(3, entries.size());
+    assertEquals(new TestSummary(0, 1, 0, 0), entries.get(2).counts);
+    assertEquals(-1, entries.get(2).duration);
+    assertEquals("<testResults>second</testResults>", store.getDocument(entries.get(2)));
+    assertEquals("<testResults>20090616000000</testResults>",
+      HistoryStore.readResultFile(new File(pageDirectory, "20090616000000_1_0_0_0.xml")));
+  }
+
+  private void addRun(String pageName, String date) throws Exception {
+    store.add(pageName, time(date), new TestSummary(1, 0, 0, 0), 0, bytes("<testResults>" + date + "</testResults>"));
+  }
+
+  private byte[] bytes(String s) throws Exception {
+    return s.getBytes("UTF-8");
+  }
+
+  private long time(String date) throws ParseException {
+    return date(date).getTime();
+  }
+
+  private Date date(String date) throws ParseException {
+    return new SimpleDateFormat(TestHistory.TEST_RESULT_FILE_DATE_PATTERN).parse(date);
+  }
+}
@@ -21,7 +21,6 @@ public class PageHistory {
   private BarGraph barGraph;
   private String fullPageName;
   private final HashMap<Date, TestResultRecord> testResultMap = new HashMap<Date, TestResultRecord>();
-  private HashMap<Date, File> pageFiles = new HashMap<Date,File>();
 
   public PageHistory(File pageDirectory) {
     fullPageName = pageDirectory.getName();
@@ -32,12 +31,15 @@ public class PageHistory {
     }
   }
 
-  private void compileHistoryFromPageDirectory(File pageDirectory) throws ParseException {
-    File[] resultDir = FileUtil.getDirectoryListing(pageDirectory);
+  private void compileHistoryFromPageDirectory(File pageDirectory) throws Exception {
+    HistoryStore store = new HistoryStore(pageDirectory.getParentFile());
+    for (HistoryStore.Entry entry : store.getEntries(fullPageName))
+      compileResultIntoHistory(new TestResultRecord(store, entry));
 
+    File[] resultDir = FileUtil.getDirectoryListing(pageDirectory);
     for (File file : resultDir)
       if (fileIsNotADirectoryAndIsValid(file))
-        compileResultFileIntoHistory(file);
+        compileResultIntoHistory(buildTestResultRecord(file));
     compileBarGraph();
   }
 
@@ -73,14 +75,12 @@ public class PageHistory {
     };
   }
 
-  private void compileResultFileIntoHistory(File file) throws ParseException {
-    TestResultRecord record = buildTestResultRecord(file);
+  private void compileResultIntoHistory(TestResultRecord record) {
     Date date = record.getDate();
     addTestResult(record, date);
     countResult(record);
     setMinMaxDate(date);
     setMaxAssertions(record);
-    pageFiles.put(date, file);
   }
 
   private void addTestResult(TestResultRecord record, Date date) {
@@ -95,9 +95,8 @@ public class PageHistory {
   }
 
   public String getPageFileName(Date date){
-    if(pageFiles.get(date) != null)
-    return pageFiles.get(date).getName();
-    return null;
+    TestResultRecord record = testResultMap.get(date);
+    return record == null ? null : record.getFileName();
   }
 
 
@@ -214,6 +213,8 @@ public class PageHistory {
   public static class TestResultRecord extends TestSummary {
     private File file;
     private Date date;
+    private HistoryStore store;
+    private HistoryStore.Entry entry;
 
     TestResultRecord(File file, Date date, int right, int wrong, int ignores, int exceptions) {
       super(right, wrong, ignores, exceptions);
@@ -221,13 +222,39 @@ public class PageHistory {
       this.date = date;
     }
 
+    TestResultRecord(HistoryStore store, HistoryStore.Entry entry) {
+      super(entry.counts);
+      this.store = store;
+      this.entry = entry;
+      this.date = new Date(entry.time);
+    }
+
     public Date getDate() {
       return date;
     }
 
+    /**
+     * The result file of a run kept by an earlier version, or null for a
+     * run kept in the HistoryStore.
+     */
     public File getFile() {
       return file;
     }
+
+    public String getFileName() {
+      return file != null ? file.getName() : entry.getResultFileName();
+    }
+
+    /**
+     * How long the run took, or -1 when that is not known.
+     */
+    public long getDuration() {
+      return entry != null ? entry.duration : -1;
+    }
+
+    public String getContent() throws Exception {
+      return file != null ? FileUtil.getFileContent(file) : store.getDocument(entry);
+    }
   }
 
   public static String formatDate(String format, Date date) {
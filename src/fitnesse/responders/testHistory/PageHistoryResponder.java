@@ -16,7 +16,6 @@ import fitnesse.responders.templateUtilities.PageTitle;
 import fitnesse.wiki.PathParser;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import util.FileUtil;
 
 import java.io.File;
 import java.io.StringWriter;
@@ -81,11 +80,11 @@ public class PageHistoryResponder implements SecureResponder {
   }
 
   private Response makeTestExecutionReportResponse(Request request, Date resultDate, PageHistory.TestResultRecord testResultRecord) throws Exception {
+    String content = testResultRecord.getContent();
     if (formatIsXML(request))
-      return generateXMLResponse(testResultRecord.getFile());
+      return generateXMLResponse(content);
     ExecutionReport report;
 
-    String content = FileUtil.getFileContent(testResultRecord.getFile());
     report = ExecutionReport.makeReport(content);
     if (report instanceof TestExecutionReport) {
       report.setDate(resultDate);
@@ -109,8 +108,8 @@ public class PageHistoryResponder implements SecureResponder {
     return makeResponseFromTemplate(template);
   }
 
-  private Response generateXMLResponse(File file) throws Exception {
-    response.setContent(FileUtil.getFileContent(file));
+  private Response generateXMLResponse(String content) throws Exception {
+    response.setContent(content);
     response.setContentType("text/xml");
     return response;
   }
@@ -11,6 +11,7 @@ import fitnesse.responders.ErrorResponder;
 import util.FileUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -42,7 +43,7 @@ public class PurgeHistoryResponder implements SecureResponder {
     return response;
   }
 
-  private void purgeHistory(Request request) throws ParseException {
+  private void purgeHistory(Request request) throws ParseException, IOException {
     int days = getDaysInput(request);
     deleteTestHistoryOlderThanDays(days);
   }
@@ -78,12 +79,17 @@ public class PurgeHistoryResponder implements SecureResponder {
     todaysDate = date;
   }
 
-  public void deleteTestHistoryOlderThanDays(int days) throws ParseException {
+  public void deleteTestHistoryOlderThanDays(int days) throws ParseException, IOException {
     Date purgeOlder = getDateDaysEarlier(days);
+    HistoryStore store = new HistoryStore(resultsDirectory);
+    for (String pageName : store.getPageNames())
+      store.purge(pageName, purgeOlder);
     File[] files = FileUtil.getDirectoryListing(resultsDirectory);
     for (File file : files) {
-      deleteFileIfAppropriate(purgeOlder, file);
+      if (!file.getName().equals(HistoryStore.BLOB_DIRECTORY))
+        deleteFileIfAppropriate(purgeOlder, file);
     }
+    store.collect();
   }
 
   public Date getDateDaysEarlier(int days) {
@@ -106,6 +112,8 @@ public class PurgeHistoryResponder implements SecureResponder {
 
   private void deleteFileIfItIsTooOld(Date purgeOlder, File file) {
     String name = file.getName();
+    if (name.equals(HistoryStore.INDEX_FILE))
+      return;
     Date date = getDateFromPageHistoryFileName(name);
     if (date.getTime() < purgeOlder.getTime())
       FileUtil.deleteFile(file);
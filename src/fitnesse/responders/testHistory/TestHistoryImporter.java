@@ -0,0 +1,106 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.responders.testHistory;
+
+import fitnesse.responders.run.TestSummary;
+import fitnesse.wikitext.widgets.WikiWordWidget;
+import util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the result files that earlier versions wrote, one per run, into the
+ * HistoryStore of the test results directory, and deletes them (unless -k
+ * is given).  Runs that are in the store already are skipped, so an import
+ * that was interrupted can be run again.  The duration of imported runs is
+ * not known.
+ * <p/>
+ * usage: TestHistoryImporter testResultsDirectory [-k]
+ */
+public class TestHistoryImporter {
+  private final HistoryStore store;
+  private int pages;
+  private int runs;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("usage: TestHistoryImporter testResultsDirectory [-k]");
+      System.exit(1);
+    }
+    boolean keepFiles = args.length > 1 && args[1].equals("-k");
+    TestHistoryImporter importer = new TestHistoryImporter(new HistoryStore(new File(args[0])));
+    importer.importAll(keepFiles);
+    System.out.println(String.format("Imported %d runs of %d pages", importer.runs, importer.pages));
+  }
+
+  public TestHistoryImporter(HistoryStore store) {
+    this.store = store;
+  }
+
+  public void importAll(boolean keepFiles) throws Exception {
+    for (File pageDirectory : FileUtil.getDirectoryListing(store.getHistoryDirectory())) {
+      if (pageDirectory.isDirectory() && WikiWordWidget.isWikiWord(pageDirectory.getName()))
+        importPage(pageDirectory, keepFiles);
+    }
+  }
+
+  public int getPages() {
+    return pages;
+  }
+
+  public int getRuns() {
+    return runs;
+  }
+
+  private void importPage(File pageDirectory, boolean keepFiles) throws Exception {
+    List<String> resultFiles = new ArrayList<String>();
+    for (String name : pageDirectory.list()) {
+      if (PageHistory.matchesPageHistoryFileFormat(name))
+        resultFiles.add(name);
+    }
+    if (resultFiles.isEmpty())
+      return;
+    Collections.sort(resultFiles);
+    String pageName = pageDirectory.getName();
+    Set<Long> stored = new HashSet<Long>();
+    HistoryStore.Entry last = null;
+    for (HistoryStore.Entry entry : store.getEntries(pageName)) {
+      stored.add(entry.time);
+      last = entry;
+    }
+    SimpleDateFormat dateFormat = new SimpleDateFormat(TestHistory.TEST_RESULT_FILE_DATE_PATTERN);
+    for (String name : resultFiles) {
+      File file = new File(pageDirectory, name);
+      long time = timeOf(name, dateFormat);
+      if (stored.add(time)) {
+        last = store.add(pageName, time, countsOf(name), -1, FileUtil.getFileBytes(file), last);
+        runs++;
+      }
+      if (!keepFiles)
+        file.delete();
+    }
+    pages++;
+  }
+
+  private static long timeOf(String resultFileName, SimpleDateFormat dateFormat) throws IOException {
+    try {
+      return dateFormat.parse(resultFileName.substring(0, 14)).getTime();
+    } catch (ParseException e) {
+      throw new IOException("Not a result file: " + resultFileName);
+    }
+  }
+
+  private static TestSummary countsOf(String resultFileName) {
+    String[] parts = resultFileName.split("_|\\.");
+    return new TestSummary(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+      Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+  }
+}
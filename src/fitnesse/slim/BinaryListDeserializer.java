@@ -0,0 +1,114 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads values in the binary Slim format from a stream.  See
+ * BinaryListSerializer for details.  The stream is read ahead, so one
+ * deserializer must be used for all the messages on a stream.
+ */
+public class BinaryListDeserializer {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int BUFFER_SIZE = 8192;
+
+  private final InputStream input;
+  private final Object nullValue;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  public BinaryListDeserializer(InputStream input) {
+    this(input, null);
+  }
+
+  /**
+   * @param nullValue what a null item reads as.
+   */
+  public BinaryListDeserializer(InputStream input, Object nullValue) {
+    this.input = input;
+    this.nullValue = nullValue;
+  }
+
+  public Object deserialize() throws IOException {
+    int tag = readByte();
+    switch (tag) {
+      case BinaryListSerializer.LIST:
+        return readList();
+      case BinaryListSerializer.STRING:
+        return readString();
+      case BinaryListSerializer.NULL:
+        return nullValue;
+      default:
+        throw new SlimError(String.format("Unknown tag %d in binary Slim message.", tag));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<Object> deserializeList() throws IOException {
+    Object value = deserialize();
+    if (!(value instanceof List))
+      throw new SlimError("Binary Slim message is not a list.");
+    return (List<Object>) value;
+  }
+
+  private List<Object> readList() throws IOException {
+    int count = readVarint();
+    List<Object> list = new ArrayList<Object>(Math.min(count, BUFFER_SIZE));
+    for (int i = 0; i < count; i++)
+      list.add(deserialize());
+    return list;
+  }
+
+  private String readString() throws IOException {
+    int length = readVarint();
+    if (length <= limit - position) {
+      String s = new String(buffer, position, length, UTF8);
+      position += length;
+      return s;
+    }
+    byte[] bytes = new byte[length];
+    int read = limit - position;
+    System.arraycopy(buffer, position, bytes, 0, read);
+    position = limit;
+    while (read < length) {
+      int n = input.read(bytes, read, length - read);
+      if (n < 0)
+        throw new EOFException("Binary Slim message ended in the middle of a string.");
+      read += n;
+    }
+    return new String(bytes, UTF8);
+  }
+
+  private int readVarint() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0)
+          break;
+        return value;
+      }
+    }
+    throw new SlimError("Malformed length in binary Slim message.");
+  }
+
+  private int readByte() throws IOException {
+    if (position == limit) {
+      limit = input.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        throw new EOFException("Binary Slim message ended unexpectedly.");
+      }
+    }
+    return buffer[position++] & 0xFF;
+  }
+}
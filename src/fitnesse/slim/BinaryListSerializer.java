@@ -0,0 +1,130 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes values in the binary Slim format straight to a stream.  Every value
+ * starts with a one byte tag:
+ * <p/>
+ * L count item... -- a list of count items<br/>
+ * S length byte... -- a string of length UTF-8 bytes<br/>
+ * N -- null
+ * <p/>
+ * Counts and lengths are unsigned varints: seven bits per byte, low order
+ * group first, with the high bit set on every byte but the last.  Values that
+ * are neither lists nor strings are written as their toString().  Unlike the
+ * text format there is no limit on the size of a message, and a value does
+ * not need to be built in memory before it is written.
+ */
+public class BinaryListSerializer {
+  public static final byte LIST = 'L';
+  public static final byte STRING = 'S';
+  public static final byte NULL = 'N';
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream output;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+
+  public BinaryListSerializer(OutputStream output) {
+    this.output = output;
+  }
+
+  /**
+   * Writes one value and hands it to the underlying stream.  The underlying
+   * stream is not flushed.
+   */
+  public void serialize(Object value) throws IOException {
+    writeValue(value);
+    drain();
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value == null)
+      writeByte(NULL);
+    else if (value instanceof List)
+      writeList((List<?>) value);
+    else
+      writeString(value.toString());
+  }
+
+  private void writeList(List<?> list) throws IOException {
+    writeByte(LIST);
+    writeVarint(list.size());
+    for (Object item : list)
+      writeValue(item);
+  }
+
+  private void writeString(String s) throws IOException {
+    writeByte(STRING);
+    writeVarint(utf8Length(s));
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        writeByte(c);
+      } else if (c < 0x800) {
+        writeByte(0xC0 | (c >> 6));
+        writeByte(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        writeByte(0xF0 | (codePoint >> 18));
+        writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+        writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+        writeByte(0x80 | (codePoint & 0x3F));
+      } else if (isSurrogate(c)) {
+        writeByte('?');
+      } else {
+        writeByte(0xE0 | (c >> 12));
+        writeByte(0x80 | ((c >> 6) & 0x3F));
+        writeByte(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  static int utf8Length(String s) {
+    int length = s.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80)
+        continue;
+      if (c < 0x800)
+        bytes += 1;
+      else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+        bytes += 2;
+        i++;
+      } else if (!isSurrogate(c))
+        bytes += 2;
+    }
+    return bytes;
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  private void writeVarint(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    writeByte(value);
+  }
+
+  private void writeByte(int b) throws IOException {
+    if (position == buffer.length)
+      drain();
+    buffer[position++] = (byte) b;
+  }
+
+  private void drain() throws IOException {
+    output.write(buffer, 0, position);
+    position = 0;
+  }
+}
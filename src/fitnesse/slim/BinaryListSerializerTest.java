@@ -0,0 +1,132 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static util.ListUtility.list;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryListSerializerTest {
+  private ByteArrayOutputStream output;
+  private BinaryListSerializer serializer;
+
+  @Before
+  public void setUp() {
+    output = new ByteArrayOutputStream();
+    serializer = new BinaryListSerializer(output);
+  }
+
+  @Test
+  public void emptyList() throws Exception {
+    serializer.serialize(list());
+    assertArrayEquals(new byte[]{'L', 0}, output.toByteArray());
+  }
+
+  @Test
+  public void listOfStringAndNull() throws Exception {
+    List<Object> list = list((Object) "hi");
+    list.add(null);
+    serializer.serialize(list);
+    assertArrayEquals(new byte[]{'L', 2, 'S', 2, 'h', 'i', 'N'}, output.toByteArray());
+  }
+
+  @Test
+  public void lengthsAreVarints() throws Exception {
+    serializer.serialize(repeat('x', 300));
+    byte[] bytes = output.toByteArray();
+    assertEquals(303, bytes.length);
+    assertEquals((byte) 0xAC, bytes[1]);
+    assertEquals(0x02, bytes[2]);
+  }
+
+  @Test
+  public void stringsAreUtf8() throws Exception {
+    String s = "aé€𝄞";
+    serializer.serialize(s);
+    byte[] expected = s.getBytes("UTF-8");
+    byte[] bytes = output.toByteArray();
+    assertEquals(expected.length, bytes[1]);
+    assertEquals(expected.length + 2, bytes.length);
+    assertEquals(s, roundTrip(s));
+  }
+
+  @Test
+  public void nonStringsAreWrittenAsText() throws Exception {
+    assertEquals(list("1", "true"), roundTrip(list(1, true)));
+  }
+
+  @Test
+  public void nestedLists() throws Exception {
+    List<Object> list = list("a", list("b", list()), "c");
+    assertEquals(list, roundTrip(list));
+  }
+
+  @Test
+  public void stringThatLooksLikeAListStaysAString() throws Exception {
+    assertEquals(list("[000000:]"), roundTrip(list("[000000:]")));
+  }
+
+  @Test
+  public void nullCanBeReadAsAnotherValue() throws Exception {
+    List<Object> list = list();
+    list.add(null);
+    serializer.serialize(list);
+    assertNull(reader().deserializeList().get(0));
+    assertEquals("null", new BinaryListDeserializer(new ByteArrayInputStream(output.toByteArray()), "null").deserializeList().get(0));
+  }
+
+  @Test
+  public void messagesLargerThanTheTextFormatAllows() throws Exception {
+    String big = repeat('y', 2000000);
+    assertEquals(list(big, "end"), roundTrip(list(big, "end")));
+  }
+
+  @Test
+  public void severalMessagesOnOneStream() throws Exception {
+    serializer.serialize(list("one"));
+    serializer.serialize("bye");
+    BinaryListDeserializer reader = reader();
+    assertEquals(list("one"), reader.deserializeList());
+    assertEquals("bye", reader.deserialize());
+  }
+
+  @Test(expected = EOFException.class)
+  public void truncatedMessage() throws Exception {
+    serializer.serialize(list("hello"));
+    byte[] bytes = output.toByteArray();
+    byte[] truncated = new byte[bytes.length - 2];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    new BinaryListDeserializer(new ByteArrayInputStream(truncated)).deserialize();
+  }
+
+  @Test(expected = SlimError.class)
+  public void unknownTag() throws Exception {
+    new BinaryListDeserializer(new ByteArrayInputStream(new byte[]{'X'})).deserialize();
+  }
+
+  private Object roundTrip(Object value) throws Exception {
+    output.reset();
+    serializer.serialize(value);
+    return reader().deserialize();
+  }
+
+  private BinaryListDeserializer reader() {
+    return new BinaryListDeserializer(new ByteArrayInputStream(output.toByteArray()));
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; i++)
+      builder.append(c);
+    return builder.toString();
+  }
+}
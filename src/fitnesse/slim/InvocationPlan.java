@@ -0,0 +1,87 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * A method or constructor resolved for a name and number of arguments,
+ * together with the converters for its arguments and return value, so that
+ * repeated calls skip the reflective lookups.  NONE records that nothing
+ * matched.  Arguments that are not strings, such as lists or the values of
+ * symbols, are passed as they are when they fit the parameter type.
+ */
+class InvocationPlan {
+  static final InvocationPlan NONE = new InvocationPlan(null, null, new Class<?>[0], void.class);
+
+  private final Method method;
+  private final Constructor<?> constructor;
+  private final Class<?>[] argumentTypes;
+  private final Converter[] argumentConverters;
+  private final Class<?> returnType;
+  private final Converter returnConverter;
+
+  static InvocationPlan forMethod(Method method) {
+    return new InvocationPlan(method, null, method.getParameterTypes(), method.getReturnType());
+  }
+
+  static InvocationPlan forConstructor(Constructor<?> constructor) {
+    return new InvocationPlan(null, constructor, constructor.getParameterTypes(), void.class);
+  }
+
+  private InvocationPlan(Method method, Constructor<?> constructor, Class<?>[] argumentTypes, Class<?> returnType) {
+    this.method = method;
+    this.constructor = constructor;
+    this.argumentTypes = argumentTypes;
+    this.returnType = returnType;
+    argumentConverters = new Converter[argumentTypes.length];
+    for (int i = 0; i < argumentTypes.length; i++)
+      argumentConverters[i] = ConverterSupport.getConverter(argumentTypes[i]);
+    returnConverter = ConverterSupport.getConverter(returnType);
+  }
+
+  boolean isEmpty() {
+    return method == null && constructor == null;
+  }
+
+  Object invoke(Object instance, Object[] args) throws Throwable {
+    Object retval;
+    try {
+      retval = method.invoke(instance, convertArgs(args));
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+    if (returnType == List.class && retval instanceof List)
+      return retval;
+    if (returnConverter != null)
+      return returnConverter.toString(retval);
+    return retval == null ? "null" : retval.toString();
+  }
+
+  Object newInstance(Object[] args) throws Exception {
+    return constructor.newInstance(convertArgs(args));
+  }
+
+  private Object[] convertArgs(Object[] args) {
+    Object[] convertedArgs = new Object[args.length];
+    for (int i = 0; i < argumentTypes.length; i++) {
+      Class<?> argumentType = argumentTypes[i];
+      if (!(args[i] instanceof String) && argumentType.isInstance(args[i])) {
+        convertedArgs[i] = args[i];
+      } else {
+        Converter converter = argumentConverters[i];
+        if (converter == null)
+          converter = ConverterSupport.getConverter(argumentType);
+        if (converter != null)
+          convertedArgs[i] = converter.fromString(args[i] == null ? null : args[i].toString());
+        else
+          throw new SlimError(String.format("message:<<NO_CONVERTER_FOR_ARGUMENT_NUMBER %s.>>",
+              argumentType.getName()));
+      }
+    }
+    return convertedArgs;
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Invocation plans by class, method name and number of arguments.  The
+ * plans hold converters, so the cache is emptied whenever a converter is
+ * added to Slim.  Each StatementExecutor has its own plans, since a
+ * converter made from a PropertyEditor must not be shared between threads.
+ */
+class InvocationPlanCache {
+  private final Map<Key, InvocationPlan> plans = new HashMap<Key, InvocationPlan>();
+  private int converterVersion = Slim.getConverterVersion();
+
+  InvocationPlan get(Class<?> k, String name, int nArgs) {
+    if (converterVersion != Slim.getConverterVersion()) {
+      plans.clear();
+      converterVersion = Slim.getConverterVersion();
+    }
+    return plans.get(new Key(k, name, nArgs));
+  }
+
+  void put(Class<?> k, String name, int nArgs, InvocationPlan plan) {
+    plans.put(new Key(k, name, nArgs), plan);
+  }
+
+  private static class Key {
+    private final Class<?> k;
+    private final String name;
+    private final int nArgs;
+
+    Key(Class<?> k, String name, int nArgs) {
+      this.k = k;
+      this.name = name;
+      this.nArgs = nArgs;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return k == other.k && nArgs == other.nArgs && name.equals(other.name);
+    }
+
+    public int hashCode() {
+      return (k.hashCode() * 31 + name.hashCode()) * 31 + nArgs;
+    }
+  }
+}
@@ -74,6 +74,10 @@ public class ListDeserializer {
   private void deserializeItem() {
     int itemLength = getLength();
     String item = getString(itemLength);
+    if (!looksLikeList(item)) {
+      result.add(item);
+      return;
+    }
     try {
       List<Object> sublist = ListDeserializer.deserialize(item);
       result.add(sublist);
@@ -82,6 +86,10 @@ public class ListDeserializer {
     }
   }
 
+  private static boolean looksLikeList(String item) {
+    return item.length() > 1 && item.charAt(0) == '[' && item.charAt(item.length() - 1) == ']';
+  }
+
   private String getString(int length) {
     String result = serialized.substring(index, index + length);
     index += length;
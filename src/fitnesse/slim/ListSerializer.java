@@ -16,12 +16,14 @@ import util.ListUtility;
  * of the item followed by a :.
  */
 public class ListSerializer {
-  private StringBuffer result;
+  private static final String LENGTH_PLACEHOLDER = "000000";
+
+  private StringBuilder result;
   private List<Object> list;
 
   public ListSerializer(List<Object> list) {
     this.list = list;
-    result = new StringBuffer();
+    result = new StringBuilder();
   }
 
   public static String serialize(List<Object> list) {
@@ -29,37 +31,43 @@ public class ListSerializer {
   }
 
   public String serialize() {
+    appendList(list);
+    return result.toString();
+  }
+
+  private void appendList(List<Object> list) {
     result.append('[');
     appendLength(list.size());
 
-    for (Object o : list) {
-      String s = marshalObjectToString(o);
-      appendLength(s.length());
-      appendString(s);
-    }
+    for (Object o : list)
+      appendItem(o);
     result.append(']');
-    return result.toString();
   }
 
-  @SuppressWarnings("unchecked")
-  private String marshalObjectToString(Object o) {
-    String s;
-    if (o == null)
-      s = "null";
-    else if (o instanceof String)
-      s = (String) o;
-    else if (o instanceof List)
-      s = ListSerializer.serialize(ListUtility.uncheckedCast(Object.class, o));
-    else
-      s = o.toString();
-    return s;
+  private void appendItem(Object o) {
+    if (o instanceof List) {
+      int lengthStart = result.length();
+      result.append(LENGTH_PLACEHOLDER).append(':');
+      int itemStart = result.length();
+      appendList(ListUtility.uncheckedCast(Object.class, o));
+      String length = formatLength(result.length() - itemStart);
+      result.replace(lengthStart, lengthStart + LENGTH_PLACEHOLDER.length(), length);
+      result.append(':');
+    } else {
+      String s = o == null ? "null" : o.toString();
+      appendLength(s.length());
+      result.append(s).append(':');
+    }
   }
 
-  private void appendString(String s) {
-    result.append(s).append(':');
+  private void appendLength(int size) {
+    result.append(formatLength(size)).append(':');
   }
 
-  private void appendLength(int size) {
-    result.append(String.format("%06d:", size));
+  private static String formatLength(int size) {
+    String digits = Integer.toString(size);
+    if (digits.length() >= LENGTH_PLACEHOLDER.length())
+      return digits;
+    return LENGTH_PLACEHOLDER.substring(digits.length()) + digits;
   }
 }
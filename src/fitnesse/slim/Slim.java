@@ -7,8 +7,14 @@ import java.util.Map;
 
 public class Slim {
   static Map<Class<?>, Converter> converters = new HashMap<Class<?>, Converter>();
+  private static volatile int converterVersion = 0;
 
   public static void addConverter(Class<?> k, Converter converter) {
     converters.put(k, converter);
+    converterVersion++;
+  }
+
+  static int getConverterVersion() {
+    return converterVersion;
   }
 }
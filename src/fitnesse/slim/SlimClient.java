@@ -7,17 +7,24 @@ import util.StreamReader;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class SlimClient {
   public static double MINIMUM_REQUIRED_SLIM_VERSION = 0.1; 
+  public static boolean useBinaryProtocol = true;
+  private static final long CONNECT_TIMEOUT = 5000;
   private Socket client;
   private StreamReader reader;
   private BufferedWriter writer;
+  private OutputStream output;
+  private BinaryListDeserializer binaryReader;
+  private BinaryListSerializer binaryWriter;
   private String slimServerVersionMessage;
   private double slimServerVersion;
   private String hostName;
@@ -35,15 +42,30 @@ public class SlimClient {
   }
 
   public void connect() throws Exception {
-    for (int tries = 0; tryConnect() == false; tries++) {
-      if (tries > 100)
+    long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+    for (long wait = 1; tryConnect() == false; wait = Math.min(wait * 2, 50)) {
+      if (System.currentTimeMillis() > deadline)
         throw new SlimError("Could not start Slim.");
-      Thread.sleep(50);
+      Thread.sleep(wait);
     }
+    output = client.getOutputStream();
     reader = new StreamReader(client.getInputStream());
-    writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), "UTF-8"));
+    writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
     slimServerVersionMessage = reader.readLine();
     slimServerVersion = isConnected() ? Double.parseDouble(slimServerVersionMessage.replace("Slim -- V", "")) : -1;
+    if (useBinaryProtocol && slimServerVersion >= SlimVersion.BINARY_PROTOCOL_VERSION)
+      switchToBinaryProtocol();
+  }
+
+  private void switchToBinaryProtocol() throws Exception {
+    writeString(SlimVersion.BINARY_PROTOCOL_REQUEST);
+    // the text protocol reports a null result as "null", and the tables expect that
+    binaryReader = new BinaryListDeserializer(client.getInputStream(), "null");
+    binaryWriter = new BinaryListSerializer(output);
+  }
+
+  public boolean isUsingBinaryProtocol() {
+    return binaryWriter != null;
   }
 
   private boolean tryConnect() {
@@ -70,14 +92,37 @@ public class SlimClient {
   public Map<String, Object> invokeAndGetResponse(List<Object> statements) throws Exception {
     if (statements.size() == 0)
       return new HashMap<String, Object>();
+    return resultToMap(invoke(statements));
+  }
+
+  /**
+   * Sends an empty list of instructions, which a live Slim server answers
+   * with an empty list.
+   */
+  public boolean ping() {
+    try {
+      return invoke(new ArrayList<Object>()).size() == 0;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private List<Object> invoke(List<Object> statements) throws Exception {
+    if (isUsingBinaryProtocol())
+      return invokeOverBinaryProtocol(statements);
     String instructions = ListSerializer.serialize(statements);
     writeString(instructions);
     String resultLength = reader.read(6);
     reader.read(1);
     String results = null;
     results = reader.read(Integer.parseInt(resultLength));
-    List<Object> resultList = ListDeserializer.deserialize(results);
-    return resultToMap(resultList);
+    return ListDeserializer.deserialize(results);
+  }
+
+  private List<Object> invokeOverBinaryProtocol(List<Object> statements) throws IOException {
+    binaryWriter.serialize(statements);
+    output.flush();
+    return binaryReader.deserializeList();
   }
 
   private void writeString(String string) throws IOException {
@@ -87,7 +132,11 @@ public class SlimClient {
   }
 
   public void sendBye() throws IOException {
-    writeString("bye");
+    if (isUsingBinaryProtocol()) {
+      binaryWriter.serialize("bye");
+      output.flush();
+    } else
+      writeString("bye");
   }
 
   public static Map<String, Object> resultToMap(List<Object> slimResults) {
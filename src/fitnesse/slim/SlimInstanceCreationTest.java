@@ -2,9 +2,11 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.slim;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
+import org.junit.Test;
 
 import fitnesse.slim.test.TestSlim;
 
@@ -26,4 +28,21 @@ public class SlimInstanceCreationTest extends SlimInstanceCreationTestBase {
     return "fitnesse.slim.test";
   }
 
+  @Test
+  public void canCreateInstanceAfterAddingPathForAClassNotFoundBefore() {
+    caller.create("x", testClass, new Object[0]);
+    caller.addPath(getTestClassPath());
+    assertEquals("OK", caller.create("x", testClass, new Object[0]));
+    assertInstanceOfTestSlim(caller.getInstance("x"));
+  }
+
+  @Test
+  public void canCreateInstancesRepeatedlyWithDifferentConstructors() {
+    caller.addPath(getTestClassPath());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("OK", caller.create("x", testClass, new Object[0]));
+      assertEquals("OK", caller.create("y", testClass, new Object[]{"" + i}));
+      assertEquals("" + i, caller.call("y", "returnConstructorArg"));
+    }
+  }
 }
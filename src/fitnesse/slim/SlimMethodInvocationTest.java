@@ -3,10 +3,15 @@
 package fitnesse.slim;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static util.ListUtility.list;
+
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import fitnesse.slim.converters.IntConverter;
 import fitnesse.slim.test.TestSlim;
 import fitnesse.slim.test.Zork;
 
@@ -31,4 +36,36 @@ public class SlimMethodInvocationTest extends SlimMethodInvocationTestBase {
     assertEquals(new Zork(42), testSlim.getZork());
     assertEquals("zork_42", retval);
   }
+
+  @Test
+  public void convertersAddedAfterAMethodWasCalledAreUsed() throws Exception {
+    assertEquals("7", caller.call("testSlim", "returnInt"));
+    Slim.addConverter(int.class, new IntConverter() {
+      public String toString(Object o) {
+        return "int " + o;
+      }
+    });
+    try {
+      assertEquals("int 7", caller.call("testSlim", "returnInt"));
+    } finally {
+      Slim.addConverter(int.class, new IntConverter());
+    }
+    assertEquals("7", caller.call("testSlim", "returnInt"));
+  }
+
+  @Test
+  public void missingMethodIsReportedOnEveryCall() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      String response = (String) caller.call("testSlim", "noSuchMethod", "x");
+      assertTrue(response, response.contains("message:<<NO_METHOD_IN_CLASS noSuchMethod[1] " + getTestClassName() + ".>>"));
+    }
+  }
+
+  @Test
+  public void symbolHoldingAListIsPassedAsTheList() throws Exception {
+    List<Object> l = list((Object) "one", "two");
+    caller.setVariable("l", l);
+    assertEquals(l, caller.call("testSlim", "echoList", "$l"));
+    assertEquals("[one, two] and more", caller.call("testSlim", "echoString", "$l and more"));
+  }
 }
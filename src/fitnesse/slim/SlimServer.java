@@ -3,10 +3,12 @@
 package fitnesse.slim;
 
 import fitnesse.socketservice.SocketServer;
+import util.ListUtility;
 import util.StreamReader;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.util.List;
@@ -14,11 +16,16 @@ import java.util.List;
 public class SlimServer implements SocketServer {
   private StreamReader reader;
   private BufferedWriter writer;
+  private Socket socket;
+  private OutputStream output;
+  private BinaryListDeserializer binaryReader;
+  private BinaryListSerializer binaryWriter;
   private ListExecutor executor;
   public static final String EXCEPTION_TAG = "__EXCEPTION__:";
   public static final String EXCEPTION_STOP_TEST_TAG = "__EXCEPTION__:ABORT_SLIM_TEST:";
   private boolean verbose;
   private SlimFactory slimFactory;
+  private volatile SlimService service;
 
   public SlimServer(boolean verbose, SlimFactory slimFactory) {
     this.verbose = verbose;
@@ -36,11 +43,16 @@ public class SlimServer implements SocketServer {
     }
   }
 
+  void setService(SlimService service) {
+    this.service = service;
+  }
+
   private void closeEnclosingServiceInSeperateThread() {
+    final SlimService enclosingService = (service != null) ? service : SlimService.instance;
     new Thread(new Runnable() {
       public void run() {
         try {
-          SlimService.instance.close();
+          enclosingService.close();
         } catch (Exception e) {
         }
       }
@@ -57,13 +69,19 @@ public class SlimServer implements SocketServer {
 
   private void initialize(Socket s) throws Exception {
     executor = slimFactory.getListExecutor(verbose);
+    socket = s;
+    output = s.getOutputStream();
+    binaryReader = null;
+    binaryWriter = null;
     reader = new StreamReader(s.getInputStream());
-    writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), "UTF-8"));
+    writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
     writer.write(String.format("Slim -- V%s\n", SlimVersion.VERSION));
     writer.flush();
   }
 
   private boolean processOneSetOfInstructions() throws Exception {
+    if (binaryReader != null)
+      return processBinaryInstructions();
     String instructions = getInstructionsFromClient();
     if (instructions != null) {
       return processTheInstructions(instructions);
@@ -74,6 +92,9 @@ public class SlimServer implements SocketServer {
   private boolean processTheInstructions(String instructions) throws IOException {
     if (instructions.equalsIgnoreCase("bye")) {
       return false;
+    } else if (instructions.equals(SlimVersion.BINARY_PROTOCOL_REQUEST)) {
+      switchToBinaryProtocol();
+      return true;
     } else {
       List<Object> results = executeInstructions(instructions);
       sendResultsToClient(results);
@@ -81,6 +102,21 @@ public class SlimServer implements SocketServer {
     }
   }
 
+  private void switchToBinaryProtocol() throws IOException {
+    binaryReader = new BinaryListDeserializer(socket.getInputStream());
+    binaryWriter = new BinaryListSerializer(output);
+  }
+
+  private boolean processBinaryInstructions() throws IOException {
+    Object instructions = binaryReader.deserialize();
+    if ("bye".equals(instructions))
+      return false;
+    List<Object> statements = ListUtility.uncheckedCast(Object.class, instructions);
+    binaryWriter.serialize(executor.execute(statements));
+    output.flush();
+    return true;
+  }
+
   private String getInstructionsFromClient() throws Exception {
     int instructionLength = Integer.parseInt(reader.read(6));
     reader.read(1);
@@ -41,6 +41,7 @@ public class SlimService extends SocketService {
 
   public SlimService(int port, SlimServer slimServer) throws Exception {
     super(port, slimServer);
+    slimServer.setService(this);
     instance = this;
   }
 }
@@ -2,8 +2,17 @@
 // Released under the terms of the CPL Common Public License version 1.0.
 package fitnesse.slim;
 
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
 public class SlimServiceTest extends SlimServiceTestBase {
 
+  @Test
+  public void binaryProtocolIsNegotiated() throws Exception {
+    assertTrue(slimClient.isUsingBinaryProtocol());
+  }
+
   protected String getImport() {
     return "fitnesse.slim.test";
   }
@@ -3,5 +3,8 @@
 package fitnesse.slim;
 
 public class SlimVersion {
-  public static String VERSION = "0.1";
+  public static String VERSION = "0.2";
+  // servers at this version or above accept a request to switch to BinaryListSerializer framing
+  public static final double BINARY_PROTOCOL_VERSION = 0.2;
+  public static final String BINARY_PROTOCOL_REQUEST = "binary";
 }
@@ -24,6 +24,8 @@ public class StatementExecutor implements StatementExecutorInterface {
 
   private VariableStore variables = new VariableStore();
   private List<String> paths = new ArrayList<String>();
+  private Map<String, Class<?>> classesByName = new HashMap<String, Class<?>>();
+  private InvocationPlanCache constructorPlans = new InvocationPlanCache();
 
   private boolean stopRequested = false;
 
@@ -59,6 +61,7 @@ public class StatementExecutor implements StatementExecutorInterface {
 
   public Object addPath(String path) {
     paths.add(path);
+    classesByName.clear();
     return "OK";
   }
 
@@ -109,15 +112,33 @@ public class StatementExecutor implements StatementExecutorInterface {
 
   private Object createInstanceOfConstructor(String className, Object[] args) throws Exception {
     Class<?> k = searchPathsForClass(className);
-    Constructor<?> constructor = getConstructor(k.getConstructors(), args);
-    if (constructor == null)
+    InvocationPlan plan = constructorPlans.get(k, "<init>", args.length);
+    if (plan == null) {
+      Constructor<?> constructor = getConstructor(k.getConstructors(), args);
+      plan = constructor == null ? InvocationPlan.NONE : InvocationPlan.forConstructor(constructor);
+      constructorPlans.put(k, "<init>", args.length, plan);
+    }
+    if (plan.isEmpty())
       throw new SlimError(String.format("message:<<NO_CONSTRUCTOR %s>>", className));
 
-    return constructor.newInstance(ConverterSupport.convertArgs(args, constructor
-        .getParameterTypes()));
+    return plan.newInstance(args);
   }
 
   private Class<?> searchPathsForClass(String className) {
+    if (classesByName.containsKey(className)) {
+      Class<?> k = classesByName.get(className);
+      if (k == null)
+        throw new SlimError(String.format("message:<<NO_CLASS %s>>", className));
+      return k;
+    }
+    Class<?> k = findClass(className);
+    classesByName.put(className, k);
+    if (k == null)
+      throw new SlimError(String.format("message:<<NO_CLASS %s>>", className));
+    return k;
+  }
+
+  private Class<?> findClass(String className) {
     Class<?> k = getClass(className);
     if (k != null)
       return k;
@@ -128,7 +149,7 @@ public class StatementExecutor implements StatementExecutorInterface {
       if (k != null)
         return k;
     }
-    throw new SlimError(String.format("message:<<NO_CLASS %s>>", className));
+    return null;
   }
 
   private Class<?> getClass(String className) {
@@ -151,9 +172,10 @@ public class StatementExecutor implements StatementExecutorInterface {
   public Object call(String instanceName, String methodName, Object... args) {
     try {
       MethodExecutionResults results = new MethodExecutionResults();
+      Object[] replacedArgs = replaceSymbols(args);
       for (int i = 0; i < executorChain.size(); i++) {
         MethodExecutionResult result = executorChain.get(i).execute(instanceName, methodName,
-            replaceSymbols(args));
+            replacedArgs);
         if (result.hasResult()) {
           return result.returnValue();
         }
@@ -0,0 +1,70 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+/**
+ * Replaces the symbols in a string in a single pass.  A symbol is a '$'
+ * followed by a name: a letter, then letters, digits and underscores.
+ * Subclasses decide what a symbol is replaced with; a symbol they do not
+ * know is left as it is.  Replacement values are not scanned again.
+ * <p/>
+ * Strings without a '$' are returned as they are.  The builder is reused
+ * from one string to the next, so a replacer must not be shared between
+ * threads.
+ */
+public abstract class SymbolReplacer {
+  private final StringBuilder replaced = new StringBuilder();
+
+  public String replace(String s) {
+    if (s == null)
+      return null;
+    int dollar = s.indexOf('$');
+    if (dollar < 0)
+      return s;
+
+    replaced.setLength(0);
+    int copied = 0;
+    while (dollar >= 0) {
+      int nameEnd = endOfName(s, dollar + 1);
+      if (nameEnd > dollar + 1) {
+        int length = replaced.length();
+        replaced.append(s, copied, dollar);
+        if (appendValue(replaced, s.substring(dollar + 1, nameEnd)))
+          copied = nameEnd;
+        else
+          replaced.setLength(length);
+      }
+      dollar = s.indexOf('$', nameEnd);
+    }
+    if (copied == 0)
+      return s;
+    return replaced.append(s, copied, s.length()).toString();
+  }
+
+  /**
+   * Appends the value of the named symbol and answers true, or answers
+   * false without appending anything when there is no such symbol.
+   */
+  protected abstract boolean appendValue(StringBuilder out, String name);
+
+  public static boolean isSymbolName(String name) {
+    return name.length() > 0 && endOfName(name, 0) == name.length();
+  }
+
+  private static int endOfName(String s, int start) {
+    if (start >= s.length() || !isLetter(s.charAt(start)))
+      return start;
+    int end = start + 1;
+    while (end < s.length() && isWordCharacter(s.charAt(end)))
+      end++;
+    return end;
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isWordCharacter(char c) {
+    return isLetter(c) || (c >= '0' && c <= '9') || c == '_';
+  }
+}
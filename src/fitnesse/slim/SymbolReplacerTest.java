@@ -0,0 +1,85 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SymbolReplacerTest {
+  private Map<String, Object> symbols;
+  private SymbolReplacer replacer;
+
+  @Before
+  public void setUp() {
+    symbols = new HashMap<String, Object>();
+    replacer = new SymbolReplacer() {
+      protected boolean appendValue(StringBuilder out, String name) {
+        if (!symbols.containsKey(name))
+          return false;
+        out.append(symbols.get(name));
+        return true;
+      }
+    };
+  }
+
+  @Test
+  public void stringsWithoutSymbolsAreReturnedAsTheyAre() throws Exception {
+    String s = "no symbols here";
+    assertSame(s, replacer.replace(s));
+    String unknown = "an $unknown symbol";
+    assertSame(unknown, replacer.replace(unknown));
+    assertEquals(null, replacer.replace(null));
+  }
+
+  @Test
+  public void replacesEverySymbolOnce() throws Exception {
+    symbols.put("x", "a");
+    symbols.put("y", "b");
+    assertEquals("a and b and a", replacer.replace("$x and $y and $x"));
+    assertEquals("ab", replacer.replace("$x$y"));
+  }
+
+  @Test
+  public void replacesTheWholeName() throws Exception {
+    symbols.put("V", "v");
+    symbols.put("V_1", "x");
+    assertEquals("v x $V_2", replacer.replace("$V $V_1 $V_2"));
+  }
+
+  @Test
+  public void namesStartWithALetter() throws Exception {
+    symbols.put("x", "a");
+    assertEquals("$ $1 $_x $a", replacer.replace("$ $1 $_x $$x"));
+    assertEquals("costs $", replacer.replace("costs $"));
+  }
+
+  @Test
+  public void valuesAreNotScannedAgain() throws Exception {
+    symbols.put("x", "$y");
+    symbols.put("y", "b");
+    assertEquals("$y b", replacer.replace("$x $y"));
+  }
+
+  @Test
+  public void valuesOfAnyTypeAreAppended() throws Exception {
+    symbols.put("n", 42);
+    symbols.put("nothing", null);
+    assertEquals("42 null", replacer.replace("$n $nothing"));
+  }
+
+  @Test
+  public void symbolNames() throws Exception {
+    assertTrue(SymbolReplacer.isSymbolName("x1_y"));
+    assertFalse(SymbolReplacer.isSymbolName(""));
+    assertFalse(SymbolReplacer.isSymbolName("1x"));
+    assertFalse(SymbolReplacer.isSymbolName("x y"));
+  }
+}
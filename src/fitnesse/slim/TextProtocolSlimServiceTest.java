@@ -0,0 +1,34 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.slim;
+
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TextProtocolSlimServiceTest extends SlimServiceTest {
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    SlimClient.useBinaryProtocol = false;
+    super.setUp();
+  }
+
+  @After
+  @Override
+  public void after() throws Exception {
+    try {
+      super.after();
+    } finally {
+      SlimClient.useBinaryProtocol = true;
+    }
+  }
+
+  @Test
+  @Override
+  public void binaryProtocolIsNegotiated() throws Exception {
+    assertFalse(slimClient.isUsingBinaryProtocol());
+  }
+}
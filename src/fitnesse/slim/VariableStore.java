@@ -4,12 +4,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class VariableStore {
   private Map<String, Object> variables = new HashMap<String, Object>();
-  private Matcher symbolMatcher;
+  private final SymbolReplacer replacer = new SymbolReplacer() {
+    protected boolean appendValue(StringBuilder out, String name) {
+      if (!variables.containsKey(name))
+        return false;
+      out.append(variables.get(name));
+      return true;
+    }
+  };
 
   public void setSymbol(String name, Object value) {
     variables.put(name, value);
@@ -35,40 +40,22 @@ public class VariableStore {
   private Object replaceSymbol(Object object) {
     if (object instanceof List)
       return (replaceSymbolsInList((List<Object>) object));
-    else
+    else if (object instanceof String)
       return (replaceSymbolsInString((String) object));
+    else
+      return object;
   }
 
-  private String replaceSymbolsInString(String arg) {
-    Pattern symbolPattern = Pattern.compile("\\$([a-zA-Z]\\w*)");
-    int startingPosition = 0;
-    while (true) {
-      if ("".equals(arg) || null == arg) {
-        break;
-      }
-      symbolMatcher = symbolPattern.matcher(arg);
-      if (symbolMatcher.find(startingPosition)) {
-        String symbolName = symbolMatcher.group(1);
-        arg = replaceSymbolInArg(arg, symbolName);
-        startingPosition = symbolMatcher.start(1);
-      } else {
-        break;
-      }
-    }
-    return arg;
-  }
-
-  private boolean isDoubleDollar(String arg) {
-    return symbolMatcher.start() > 0 && arg.charAt(symbolMatcher.start() - 1) == '$';
-  }
-
-  private String replaceSymbolInArg(String arg, String symbolName) {
-    if (variables.containsKey(symbolName)) {
-      String replacement = (String) variables.get(symbolName);
-      if (replacement == null)
-        replacement = "null";
-      arg = arg.substring(0, symbolMatcher.start()) + replacement + arg.substring(symbolMatcher.end());
+  /**
+   * An argument that is nothing but a symbol whose value is not a string
+   * (a list, say) is replaced by the value itself.
+   */
+  private Object replaceSymbolsInString(String arg) {
+    if (arg.length() > 1 && arg.charAt(0) == '$') {
+      Object value = variables.get(arg.substring(1));
+      if (value != null && !(value instanceof String) && SymbolReplacer.isSymbolName(arg.substring(1)))
+        return value;
     }
-    return arg;
+    return replacer.replace(arg);
   }
 }
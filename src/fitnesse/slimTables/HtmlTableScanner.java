@@ -11,12 +11,16 @@ import org.htmlparser.util.NodeList;
 import org.htmlparser.util.ParserException;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public class HtmlTableScanner implements TableScanner {
   private List<Table> tables = new ArrayList<Table>();
+  private Map<Table, Integer> tableIndexes = new IdentityHashMap<Table, Integer>();
+  private List<String> textBetweenTables;
   private NodeList htmlTree;
 
   public HtmlTableScanner(String page) throws ParserException {
@@ -26,6 +30,7 @@ public class HtmlTableScanner implements TableScanner {
     Parser parser = new Parser(new Lexer(new Page(page)));
     htmlTree = parser.parse(null);
     scanForTables(htmlTree);
+    splitAroundTables();
   }
 
   private void scanForTables(NodeList nodes) {
@@ -34,7 +39,9 @@ public class HtmlTableScanner implements TableScanner {
       if (node instanceof TableTag) {
         TableTag tableTag = (TableTag) node;
         guaranteeThatAllTablesAreUnique(tableTag);
-        tables.add(new HtmlTable(tableTag));
+        HtmlTable table = new HtmlTable(tableTag);
+        tableIndexes.put(table, tables.size());
+        tables.add(table);
       } else {
         NodeList children = node.getChildren();
         if (children != null)
@@ -43,6 +50,28 @@ public class HtmlTableScanner implements TableScanner {
     }
   }
 
+  /**
+   * Cuts the page into the text before, between and after the tables.  Only
+   * the tables change while a test runs, so this text can be written out as
+   * is, and toHtml() renders only the tables it is asked for.
+   */
+  private void splitAroundTables() {
+    String allHtml = htmlTree.toHtml();
+    textBetweenTables = new ArrayList<String>(tables.size() + 1);
+    int position = 0;
+    for (Table table : tables) {
+      String tableHtml = table.toHtml();
+      int tableStart = allHtml.indexOf(tableHtml, position);
+      if (tableStart < 0) {
+        textBetweenTables = null;
+        return;
+      }
+      textBetweenTables.add(allHtml.substring(position, tableStart));
+      position = tableStart + tableHtml.length();
+    }
+    textBetweenTables.add(allHtml.substring(position));
+  }
+
   private void guaranteeThatAllTablesAreUnique(TableTag tagTable) {
     tagTable.setAttribute("_TABLENUMBER", ""+ Math.abs((new Random()).nextLong()));
   }
@@ -78,6 +107,22 @@ public class HtmlTableScanner implements TableScanner {
   }
 
   public String toHtml(Table startTable, Table endBeforeTable) {
+    Integer first = (startTable == null) ? Integer.valueOf(0) : tableIndexes.get(startTable);
+    Integer last = (endBeforeTable == null) ? Integer.valueOf(tables.size()) : tableIndexes.get(endBeforeTable);
+    if (textBetweenTables == null || first == null || last == null)
+      return searchForHtml(startTable, endBeforeTable);
+
+    StringBuilder html = new StringBuilder();
+    if (startTable == null)
+      html.append(textBetweenTables.get(0));
+    for (int i = first; i < last; i++) {
+      html.append(tables.get(i).toHtml());
+      html.append(textBetweenTables.get(i + 1));
+    }
+    return html.toString();
+  }
+
+  private String searchForHtml(Table startTable, Table endBeforeTable) {
     String allHtml = htmlTree.toHtml();
     
     int startIndex = 0;
@@ -97,7 +142,7 @@ public class HtmlTableScanner implements TableScanner {
         endIndex = nodeIndex;
       }
     }
-    return htmlTree.toHtml().substring(startIndex, endIndex);
+    return allHtml.substring(startIndex, endIndex);
   }
   
   public String toHtml() {
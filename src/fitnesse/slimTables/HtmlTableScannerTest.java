@@ -208,4 +208,18 @@ public class HtmlTableScannerTest {
     assertHasRegexp(expected_pattern2, ts.toHtml(ts.getTable(1), ts.getTable(2)));
     assertHasRegexp(expected_pattern3, ts.toHtml(ts.getTable(2), null));
   }
+
+  @Test
+  public void extractedHtmlShowsChangesToTablesInsideOtherTags() throws Exception {
+    scan("<div>before<table><tr><td>a</td></tr></table>between" +
+      "<div><table><tr><td>b</td></tr></table></div>after</div>");
+    ts.getTable(0).setCell(0, 0, "changed a");
+    ts.getTable(1).setCell(0, 0, "changed b");
+
+    String first = ts.toHtml(null, ts.getTable(1));
+    String second = ts.toHtml(ts.getTable(1), null);
+    assertHasRegexp("^<div>before<table[^>]*><tr><td>changed a</td></tr></table>between<div>$", first);
+    assertHasRegexp("^<table[^>]*><tr><td>changed b</td></tr></table></div>after</div>$", second);
+    assertEquals(ts.toHtml(), first + second);
+  }
 }
@@ -132,16 +132,27 @@ public class QueryTable extends SlimTable {
     pass(col, tableRow);
   }
 
+  /**
+   * The rows returned by the query.  Rows are indexed by the value of their
+   * first field and by the values of all their fields, so an expected row
+   * is matched by hash lookups instead of by comparing it with every
+   * unmatched row.  The match is the same as comparing field by field: the
+   * first unmatched row that matches the most leading fields.
+   */
   class QueryResults {
+    private static final char KEY_SEPARATOR = '\u0000';
+
     private List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
-    private List<Integer> unmatchedRows = new ArrayList<Integer>();
+    private boolean[] matched;
+    private Map<String, LinkedList<Integer>> rowsByFirstField = new HashMap<String, LinkedList<Integer>>();
+    private Map<String, LinkedList<Integer>> rowsByAllFields = new HashMap<String, LinkedList<Integer>>();
 
     public QueryResults(List<Object> queryResultTable) {
-      int rowNumber = 0;
-      for (Object row : queryResultTable) {
+      for (Object row : queryResultTable)
         rows.add(makeRowMap(row));
-        unmatchedRows.add(rowNumber++);
-      }
+      matched = new boolean[rows.size()];
+      if (!fieldNames.isEmpty())
+        indexRows();
     }
 
     @SuppressWarnings("unchecked")
@@ -155,8 +166,42 @@ public class QueryTable extends SlimTable {
       return rowMap;
     }
 
+    private void indexRows() {
+      for (int row = 0; row < rows.size(); row++) {
+        String firstField = rows.get(row).get(fieldNames.get(0));
+        if (firstField != null)
+          addToIndex(rowsByFirstField, firstField, row);
+        String allFields = makeKey(rows.get(row));
+        if (allFields != null)
+          addToIndex(rowsByAllFields, allFields, row);
+      }
+    }
+
+    private void addToIndex(Map<String, LinkedList<Integer>> index, String key, int row) {
+      LinkedList<Integer> indexedRows = index.get(key);
+      if (indexedRows == null) {
+        indexedRows = new LinkedList<Integer>();
+        index.put(key, indexedRows);
+      }
+      indexedRows.add(row);
+    }
+
+    private String makeKey(Map<String, String> row) {
+      StringBuilder key = new StringBuilder();
+      for (String fieldName : fieldNames) {
+        String value = row.get(fieldName);
+        if (value == null)
+          return null;
+        key.append(value).append(KEY_SEPARATOR);
+      }
+      return key.toString();
+    }
+
     public int findBestMatch(int tableRow) {
-      return new QueryMatcher().findBestMatch(tableRow);
+      int bestMatch = new QueryMatcher(tableRow).findBestMatch();
+      if (bestMatch >= 0)
+        matched[bestMatch] = true;
+      return bestMatch;
     }
 
     public List<String> getList(List<String> fieldNames, int row) {
@@ -172,62 +217,98 @@ public class QueryTable extends SlimTable {
     }
 
     public List<Integer> getUnmatchedRows() {
+      List<Integer> unmatchedRows = new ArrayList<Integer>();
+      for (int row = 0; row < rows.size(); row++)
+        if (!matched[row])
+          unmatchedRows.add(row);
       return unmatchedRows;
     }
 
     private class QueryMatcher {
-      private int matchDepth;
-      private int deepestRow;
-      private List<Integer> matchCandidates;
-
-      private QueryMatcher() {
-        matchDepth = -1;
-        deepestRow = -1;
-        matchCandidates = new ArrayList<Integer>(unmatchedRows);
+      private final int tableRow;
+      private final String[] expectedValues;
+
+      private QueryMatcher(int tableRow) {
+        this.tableRow = tableRow;
+        expectedValues = new String[fieldNames.size()];
       }
 
-      public int findBestMatch(int tableRow) {
-        for (int fieldIndex = 0; fieldIndex < fieldNames.size(); fieldIndex++)
-          new FieldMatcher(fieldIndex, tableRow).eliminateRowsThatDontMatchField();
+      public int findBestMatch() {
+        if (fieldNames.isEmpty())
+          return -1;
+        int fullMatch = findFullMatch();
+        if (fullMatch >= 0)
+          return fullMatch;
+        return findDeepestMatch();
+      }
 
-        if (deepestRow >= 0)
-          unmatchedRows.remove(unmatchedRows.indexOf(deepestRow));
-        return deepestRow;
+      private int findFullMatch() {
+        if (table.getColumnCountInRow(tableRow) < fieldNames.size())
+          return -1;
+        StringBuilder key = new StringBuilder();
+        for (int fieldIndex = 0; fieldIndex < fieldNames.size(); fieldIndex++) {
+          if (expectedValue(fieldIndex) == null)
+            return -1;
+          key.append(expectedValue(fieldIndex)).append(KEY_SEPARATOR);
+        }
+        int row = firstUnmatchedRow(rowsByAllFields.get(key.toString()));
+        return (row >= 0 && matchesAllFields(row)) ? row : -1;
       }
 
-      class FieldMatcher {
-        private int fieldIndex;
-        private int tableRow;
+      private boolean matchesAllFields(int row) {
+        for (int fieldIndex = 0; fieldIndex < fieldNames.size(); fieldIndex++)
+          if (!expectedValue(fieldIndex).equals(rows.get(row).get(fieldNames.get(fieldIndex))))
+            return false;
+        return true;
+      }
 
-        FieldMatcher(int fieldIndex, int tableRow) {
-          this.fieldIndex = fieldIndex;
-          this.tableRow = tableRow;
-        }
+      private int firstUnmatchedRow(LinkedList<Integer> indexedRows) {
+        if (indexedRows == null)
+          return -1;
+        while (!indexedRows.isEmpty() && matched[indexedRows.getFirst()])
+          indexedRows.removeFirst();
+        return indexedRows.isEmpty() ? -1 : indexedRows.getFirst();
+      }
 
-        private void eliminateRowsThatDontMatchField() {
-          String fieldName = fieldNames.get(fieldIndex);
-          Iterator<Integer> rowIterator = matchCandidates.iterator();
-          while (rowIterator.hasNext())
-            eliminateUnmatchingRow(rowIterator, fieldName);
+      private int findDeepestMatch() {
+        List<Integer> candidates = unmatchedRows(rowsByFirstField.get(expectedValue(0)));
+        if (candidates.isEmpty())
+          return -1;
+        int deepestRow = candidates.get(0);
+        for (int fieldIndex = 1; fieldIndex < fieldNames.size(); fieldIndex++) {
+          candidates = rowsMatchingField(candidates, fieldIndex);
+          if (candidates.isEmpty())
+            break;
+          deepestRow = candidates.get(0);
         }
+        return deepestRow;
+      }
+
+      private List<Integer> unmatchedRows(List<Integer> indexedRows) {
+        List<Integer> unmatchedRows = new ArrayList<Integer>();
+        if (indexedRows != null)
+          for (int row : indexedRows)
+            if (!matched[row])
+              unmatchedRows.add(row);
+        return unmatchedRows;
+      }
 
-        private void eliminateUnmatchingRow(Iterator<Integer> rowIterator, String fieldName) {
-          int row = rowIterator.next();
+      private List<Integer> rowsMatchingField(List<Integer> candidates, int fieldIndex) {
+        String fieldName = fieldNames.get(fieldIndex);
+        String expectedValue = expectedValue(fieldIndex);
+        List<Integer> matchingRows = new ArrayList<Integer>();
+        for (int row : candidates) {
           String actualValue = rows.get(row).get(fieldName);
-          String expectedValue = table.getCellContents(fieldIndex, tableRow);
-          if (actualValue != null && actualValue.equals(replaceSymbols(expectedValue))) {
-            recordMatch(row);
-          } else {
-            rowIterator.remove();
-          }
+          if (actualValue != null && actualValue.equals(expectedValue))
+            matchingRows.add(row);
         }
+        return matchingRows;
+      }
 
-        private void recordMatch(int row) {
-          if (matchDepth < fieldIndex) {
-            matchDepth = fieldIndex;
-            deepestRow = row;
-          }
-        }
+      private String expectedValue(int fieldIndex) {
+        if (expectedValues[fieldIndex] == null)
+          expectedValues[fieldIndex] = replaceSymbols(table.getCellContents(fieldIndex, tableRow));
+        return expectedValues[fieldIndex];
       }
     }
   }
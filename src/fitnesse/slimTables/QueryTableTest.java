@@ -31,4 +31,46 @@ public class QueryTableTest extends QueryTableBaseTest {
         "]"
     );
   }
+
+  @Test
+  public void rowMatchingAllFieldsIsPreferredOverEarlierPartialMatch() throws Exception {
+    assertQueryResults(
+      "|2|5|\n" +
+        "|2|9|\n",
+      util.ListUtility.list(
+        util.ListUtility.list(util.ListUtility.list("n", "2"), util.ListUtility.list("2n", "4")),
+        util.ListUtility.list(util.ListUtility.list("n", "2"), util.ListUtility.list("2n", "5")),
+        util.ListUtility.list(util.ListUtility.list("n", "2"), util.ListUtility.list("2n", "6"))
+      ),
+      "[" +
+        headRow +
+        "[n, 2n], " +
+        "[pass(2), pass(5)], " +
+        "[pass(2), [4] fail(expected [9])], " +
+        "[[2] fail(surplus), 6]" +
+        "]"
+    );
+  }
+
+  @Test
+  public void duplicateRowsAreMatchedInOrder() throws Exception {
+    assertQueryResults(
+      "|2|4|\n" +
+        "|2|4|\n" +
+        "|2|4|\n",
+      util.ListUtility.list(
+        util.ListUtility.list(util.ListUtility.list("n", "2"), util.ListUtility.list("2n", "4")),
+        util.ListUtility.list(util.ListUtility.list("n", "3"), util.ListUtility.list("2n", "6")),
+        util.ListUtility.list(util.ListUtility.list("n", "2"), util.ListUtility.list("2n", "4"))
+      ),
+      "[" +
+        headRow +
+        "[n, 2n], " +
+        "[pass(2), pass(4)], " +
+        "[pass(2), pass(4)], " +
+        "[[2] fail(missing), 4], " +
+        "[[3] fail(surplus), 6]" +
+        "]"
+    );
+  }
 }
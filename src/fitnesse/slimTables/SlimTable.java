@@ -5,6 +5,7 @@ package fitnesse.slimTables;
 import fitnesse.responders.run.TestSummary;
 import fitnesse.responders.run.slimResponder.SlimTestContext;
 import fitnesse.responders.run.slimResponder.SlimTestSystem;
+import fitnesse.slim.SymbolReplacer;
 import fitnesse.wikitext.Utils;
 
 import java.util.ArrayList;
@@ -28,6 +29,8 @@ public abstract class SlimTable {
   private TestSummary testSummary = new TestSummary();
   private SlimTable parent = null;
   private List<SlimTable> children = new ArrayList<SlimTable>();
+  private final SymbolReplacer symbolReplacer = new TableSymbolReplacer();
+  private final SymbolReplacer fullExpansionSymbolReplacer = new FullExpansionSymbolReplacer();
 
   public SlimTable(Table table, String id, SlimTestContext testContext) {
     this.id = id;
@@ -67,11 +70,11 @@ public abstract class SlimTable {
   }
 
   public String replaceSymbols(String s) {
-    return new SymbolReplacer(s).replace();
+    return symbolReplacer.replace(s);
   }
 
   public String replaceSymbolsWithFullExpansion(String s) {
-    return new FullExpansionSymbolReplacer(s).replace();
+    return fullExpansionSymbolReplacer.replace(s);
   }
 
 
@@ -487,71 +490,32 @@ public abstract class SlimTable {
     }
   }
 
-  class SymbolReplacer {
-    protected String replacedString;
-    private Matcher symbolMatcher;
-    private final Pattern symbolPattern = Pattern.compile("\\$([a-zA-Z]\\w*)");
-    private int startingPosition;
-
-    SymbolReplacer(String s) {
-      this.replacedString = s;
-      symbolMatcher = symbolPattern.matcher(s);
-    }
-
-    String replace() {
-      replaceAllSymbols();
-      return replacedString;
-    }
-
-    private void replaceAllSymbols() {
-      startingPosition = 0;
-      while (symbolFound())
-        replaceSymbol();
-    }
-
-    private void replaceSymbol() {
-      String symbolName = symbolMatcher.group(1);
-      String value = formatSymbol(symbolName);
-      String prefix = replacedString.substring(0, symbolMatcher.start());
-      String suffix = replacedString.substring(symbolMatcher.end());
-      replacedString = prefix + value + suffix;
-      int replacementEnd = symbolMatcher.start() + value.length();
-      startingPosition = Math.min(replacementEnd, replacedString.length());
-    }
-
-    private String formatSymbol(String symbolName) {
-      String value = getSymbol(symbolName);
-      if (value == null) {
-        for (int i=symbolName.length()-1;i>0;i--) {
-          String str = symbolName.substring(0, i);
-          if ((value=getSymbol(str))!=null)
-            return  formatSymbolValue(str, value) + symbolName.substring(i, symbolName.length());
+  class TableSymbolReplacer extends SymbolReplacer {
+    protected boolean appendValue(StringBuilder out, String name) {
+      String value = getSymbol(name);
+      if (value != null) {
+        appendSymbolValue(out, name, value);
+        return true;
+      }
+      for (int i = name.length() - 1; i > 0; i--) {
+        String prefix = name.substring(0, i);
+        if ((value = getSymbol(prefix)) != null) {
+          appendSymbolValue(out, prefix, value);
+          out.append(name, i, name.length());
+          return true;
         }
-
-        return "$" + symbolName;
       }
-      else
-        return formatSymbolValue(symbolName, value);
-    }
-
-
-    private boolean symbolFound() {
-      symbolMatcher = symbolPattern.matcher(replacedString);
-      return symbolMatcher.find(startingPosition);
+      return false;
     }
 
-    protected String formatSymbolValue(String name, String value) {
-      return value;
+    protected void appendSymbolValue(StringBuilder out, String name, String value) {
+      out.append(value);
     }
   }
 
-  class FullExpansionSymbolReplacer extends SymbolReplacer {
-    FullExpansionSymbolReplacer(String s) {
-      super(s);
-    }
-
-    protected String formatSymbolValue(String name, String value) {
-        return String.format("$%s->[%s]", name, value);
+  class FullExpansionSymbolReplacer extends TableSymbolReplacer {
+    protected void appendSymbolValue(StringBuilder out, String name, String value) {
+      out.append('$').append(name).append("->[").append(value).append(']');
     }
   }
 
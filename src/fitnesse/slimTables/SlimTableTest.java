@@ -110,6 +110,22 @@ public class SlimTableTest {
     assertEquals("v x", actual);
   }
 
+  @Test
+  public void replaceSymbolsShouldReplaceLongestDefinedPrefix() throws Exception {
+    SlimTable table = new MockTable();
+    table.setSymbol("x", "a");
+    assertEquals("this is ay and $z", table.replaceSymbols("this is $xy and $z"));
+    assertEquals("this is $x->[a]y", table.replaceSymbolsWithFullExpansion("this is $xy"));
+  }
+
+  @Test
+  public void replaceSymbolsShouldNotReplaceSymbolsInValues() throws Exception {
+    SlimTable table = new MockTable();
+    table.setSymbol("x", "$y");
+    table.setSymbol("y", "b");
+    assertEquals("$y b", table.replaceSymbols("$x $y"));
+  }
+
   @Test
   public void replaceSymbolsFullExpansion_ShouldReplaceSimpleSymbol() throws Exception {
     SlimTable table = new MockTable();
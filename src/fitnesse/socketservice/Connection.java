@@ -0,0 +1,79 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.socketservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+import fitnesse.http.HttpInputStream;
+
+/**
+ * A persistent client connection owned by a SocketService.  The input stream
+ * is buffered once per connection, so pipelined requests that were read ahead
+ * are not lost between requests.  When a request has been answered the
+ * connection is either released back to the service, which waits for the next
+ * request without tying up a worker thread, or closed.
+ */
+public class Connection {
+  private final SocketService service;
+  private final Socket socket;
+  private HttpInputStream input;
+  private volatile long idleSince;
+  private volatile boolean closed;
+
+  Connection(SocketService service, Socket socket) {
+    this.service = service;
+    this.socket = socket;
+    idleSince = System.currentTimeMillis();
+  }
+
+  public Socket getSocket() {
+    return socket;
+  }
+
+  public synchronized InputStream getInputStream() throws IOException {
+    if (input == null)
+      input = new HttpInputStream(socket.getInputStream());
+    return input;
+  }
+
+  public void release() {
+    if (closed)
+      return;
+    idleSince = System.currentTimeMillis();
+    service.release(this);
+  }
+
+  public void close() {
+    closed = true;
+    try {
+      socket.close();
+    }
+    catch (IOException e) {
+      // already gone
+    }
+  }
+
+  public boolean isClosed() {
+    return closed || socket.isClosed();
+  }
+
+  boolean hasBufferedInput() {
+    try {
+      return input != null && input.available() > 0;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  long getIdleSince() {
+    return idleSince;
+  }
+
+  SocketChannel getChannel() {
+    return socket.getChannel();
+  }
+}
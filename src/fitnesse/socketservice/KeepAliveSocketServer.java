@@ -0,0 +1,12 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.socketservice;
+
+/**
+ * A SocketServer that answers one request at a time on a persistent
+ * connection.  Once the response is complete the server must either
+ * release() or close() the connection.
+ */
+public interface KeepAliveSocketServer extends SocketServer {
+  public void serve(Connection connection);
+}
@@ -3,103 +3,272 @@
 package fitnesse.socketservice;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Accepts connections on a single selector thread and hands them to a bounded
+ * pool of worker threads.  Connections served by a KeepAliveSocketServer are
+ * only handed to a worker once a request has arrived, and are parked on the
+ * selector again between requests, so idle persistent connections cost no
+ * threads.
+ */
 public class SocketService {
-  private ServerSocket serverSocket = null;
-  private Thread serviceThread = null;
-  private volatile boolean running = false;
-  private SocketServer server = null;
-  private LinkedList<Thread> threads = new LinkedList<Thread>();
-  private volatile boolean everRan=false;
+  public static final int DEFAULT_WORKER_THREADS = 64;
+  public static final long DEFAULT_KEEP_ALIVE_TIMEOUT = 15000;
+
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final ThreadPoolExecutor workers;
+  private final Thread serviceThread;
+  private final SocketServer server;
+  private final Queue<Connection> releasedConnections = new ConcurrentLinkedQueue<Connection>();
+  private long keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+  private volatile boolean running = true;
+
   public SocketService(int port, SocketServer server) throws Exception {
+    this(port, server, DEFAULT_WORKER_THREADS);
+  }
+
+  public SocketService(int port, SocketServer server, int workerThreads) throws Exception {
     this.server = server;
-    serverSocket = new ServerSocket(port);
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.socket().setReuseAddress(true);
+    serverChannel.socket().bind(new InetSocketAddress(port));
+    serverChannel.configureBlocking(false);
+    selector = Selector.open();
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory(port));
+    workers.allowCoreThreadTimeOut(true);
     serviceThread = new Thread(
       new Runnable() {
         public void run() {
           serviceThread();
         }
-      }
+      }, "SocketService:" + port
     );
     serviceThread.start();
   }
 
+  public void setKeepAliveTimeout(long millis) {
+    keepAliveTimeout = millis;
+  }
+
+  public int getWorkerThreadCount() {
+    return workers.getPoolSize();
+  }
+
   public void close() throws Exception {
-    waitForServiceThreadToStart();
     running = false;
-    serverSocket.close();
+    selector.wakeup();
     serviceThread.join();
-    waitForServerThreads();
-  }
-
-  private void waitForServiceThreadToStart() {
-    if (everRan) return;
-    while (running == false) Thread.yield();
+    serverChannel.close();
+    workers.shutdown();
+    workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    closeReleasedConnections();
   }
 
   private void serviceThread() {
-    running = true;
-    everRan=true;
-    while (running) {
-      try {
-        Socket s = serverSocket.accept();
-        startServerThread(s);
+    try {
+      while (running) {
+        selector.select(keepAliveTimeout);
+        if (!running)
+          break;
+        parkReleasedConnections();
+        handleSelectedKeys();
+        closeIdleConnections();
       }
-      catch (java.lang.OutOfMemoryError e) {
-        System.err.println("Can't create new thread.  Out of Memory.  Aborting");
-        e.printStackTrace();
-        System.exit(99);
+    }
+    catch (java.lang.OutOfMemoryError e) {
+      System.err.println("Can't create new thread.  Out of Memory.  Aborting");
+      e.printStackTrace();
+      System.exit(99);
+    }
+    catch (ClosedSelectorException e) {
+      // shutting down
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    finally {
+      closeParkedConnections();
+    }
+  }
+
+  private void handleSelectedKeys() throws IOException {
+    List<Connection> readyConnections = new ArrayList<Connection>();
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      if (!key.isValid())
+        continue;
+      if (key.isAcceptable())
+        acceptConnections();
+      else if (key.isReadable()) {
+        key.cancel();
+        readyConnections.add((Connection) key.attachment());
       }
-      catch (SocketException sox){
-        running=false;// do nothing
+    }
+    if (readyConnections.isEmpty())
+      return;
+    selector.selectNow();
+    for (Connection connection : readyConnections) {
+      try {
+        connection.getChannel().configureBlocking(true);
+        dispatch(connection);
       }
       catch (IOException e) {
-        throw new RuntimeException(e);
+        connection.close();
       }
     }
   }
 
-  private void startServerThread(Socket s) {
-    Thread serverThread = new Thread(new ServerRunner(s));
-    synchronized (threads) {
-      threads.add(serverThread);
+  private void acceptConnections() throws IOException {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept()) != null) {
+      Connection connection = new Connection(this, channel.socket());
+      if (server instanceof KeepAliveSocketServer)
+        park(connection);
+      else
+        dispatch(connection);
+    }
+  }
+
+  private void dispatch(final Connection connection) {
+    try {
+      workers.execute(new ServerRunner(connection));
+    }
+    catch (RejectedExecutionException e) {
+      connection.close();
+    }
+  }
+
+  void release(Connection connection) {
+    if (!running) {
+      connection.close();
+    } else if (connection.hasBufferedInput()) {
+      dispatch(connection);
+    } else {
+      releasedConnections.add(connection);
+      selector.wakeup();
+    }
+  }
+
+  private void parkReleasedConnections() {
+    Connection connection;
+    while ((connection = releasedConnections.poll()) != null)
+      park(connection);
+  }
+
+  private void park(Connection connection) {
+    try {
+      SocketChannel channel = connection.getChannel();
+      channel.configureBlocking(false);
+      channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+    catch (ClosedChannelException e) {
+      connection.close();
+    }
+    catch (IOException e) {
+      connection.close();
+    }
+  }
+
+  private void closeIdleConnections() {
+    long now = System.currentTimeMillis();
+    for (SelectionKey key : selector.keys()) {
+      Connection connection = (Connection) key.attachment();
+      if (connection != null && now - connection.getIdleSince() > keepAliveTimeout) {
+        key.cancel();
+        connection.close();
+      }
     }
-    serverThread.start();
   }
 
-  private void waitForServerThreads() throws InterruptedException {
-    while (threads.size() > 0) {
-      Thread t;
-      synchronized (threads) {
-        if (threads.size() < 1)
-          return;
-        t = threads.getFirst();
+  private void closeParkedConnections() {
+    try {
+      for (SelectionKey key : selector.keys()) {
+        Connection connection = (Connection) key.attachment();
+        if (connection != null)
+          connection.close();
       }
-      t.join();
+      selector.close();
     }
+    catch (IOException e) {
+      // shutting down anyway
+    }
+  }
+
+  private void closeReleasedConnections() {
+    Connection connection;
+    while ((connection = releasedConnections.poll()) != null)
+      connection.close();
   }
 
   private class ServerRunner implements Runnable {
-    private Socket socket;
+    private Connection connection;
 
-    ServerRunner(Socket s) {
-      socket = s;
+    ServerRunner(Connection connection) {
+      this.connection = connection;
     }
 
     public void run() {
       try {
-        server.serve(socket);
-        synchronized (threads) {
-          threads.remove(Thread.currentThread());
-        }
+        if (server instanceof KeepAliveSocketServer)
+          serveRequest((KeepAliveSocketServer) server);
+        else
+          server.serve(connection.getSocket());
       }
       catch (Exception e) {
       }
     }
+
+    private void serveRequest(KeepAliveSocketServer keepAliveServer) throws IOException {
+      if (isEndOfInput())
+        connection.close();
+      else
+        keepAliveServer.serve(connection);
+    }
+
+    private boolean isEndOfInput() throws IOException {
+      InputStream input = connection.getInputStream();
+      input.mark(1);
+      if (input.read() == -1)
+        return true;
+      input.reset();
+      return false;
+    }
   }
 
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+    private final int port;
+
+    WorkerThreadFactory(int port) {
+      this.port = port;
+    }
+
+    public Thread newThread(Runnable runnable) {
+      return new Thread(runnable, "SocketService:" + port + "-worker-" + count.incrementAndGet());
+    }
+  }
 }
@@ -11,6 +11,7 @@ import java.io.PrintStream;
 import java.net.Socket;
 
 import junit.framework.TestCase;
+import util.StreamReader;
 
 public class SocketServiceTest extends TestCase {
   private int connections = 0;
@@ -100,6 +101,60 @@ public class SocketServiceTest extends TestCase {
     assertEquals("MyMessage1", answer);
   }
 
+  public void testKeepAliveConnectionIsServedRepeatedly() throws Exception {
+    ss = new SocketService(portNumber, new KeepAliveEchoService());
+    Socket s = new Socket("localhost", portNumber);
+    BufferedReader br = GetBufferedReader(s);
+    PrintStream ps = GetPrintStream(s);
+
+    ps.println("MyMessage1");
+    String answer1 = br.readLine();
+    ps.println("MyMessage2");
+    String answer2 = br.readLine();
+    s.close();
+    ss.close();
+    assertEquals("MyMessage1", answer1);
+    assertEquals("MyMessage2", answer2);
+  }
+
+  public void testPipelinedRequestsAreAllServed() throws Exception {
+    ss = new SocketService(portNumber, new KeepAliveEchoService());
+    Socket s = new Socket("localhost", portNumber);
+    BufferedReader br = GetBufferedReader(s);
+    PrintStream ps = GetPrintStream(s);
+
+    ps.print("One\nTwo\nThree\n");
+    ps.flush();
+    assertEquals("One", br.readLine());
+    assertEquals("Two", br.readLine());
+    assertEquals("Three", br.readLine());
+    s.close();
+    ss.close();
+  }
+
+  public void testIdleKeepAliveConnectionsAreClosed() throws Exception {
+    ss = new SocketService(portNumber, new KeepAliveEchoService());
+    ss.setKeepAliveTimeout(100);
+    Socket s = new Socket("localhost", portNumber);
+    BufferedReader br = GetBufferedReader(s);
+    PrintStream ps = GetPrintStream(s);
+
+    ps.println("MyMessage");
+    assertEquals("MyMessage", br.readLine());
+    assertNull(br.readLine());
+    s.close();
+    ss.close();
+  }
+
+  public void testWorkerThreadsAreBounded() throws Exception {
+    ss = new SocketService(portNumber, connectionCounter, 2);
+    for (int i = 0; i < 10; i++)
+      connect(portNumber);
+    assertTrue(ss.getWorkerThreadCount() <= 2);
+    ss.close();
+    assertEquals(10, connections);
+  }
+
   private void connect(int port) {
     try {
       Socket s = new Socket("localhost", port);
@@ -139,3 +194,20 @@ class EchoService implements SocketServer {
     }
   }
 }
+
+class KeepAliveEchoService implements KeepAliveSocketServer {
+  public void serve(Socket s) {
+  }
+
+  public void serve(Connection connection) {
+    try {
+      StreamReader reader = new StreamReader(connection.getInputStream());
+      PrintStream ps = GetPrintStream(connection.getSocket());
+      ps.println(reader.readLine());
+      connection.release();
+    }
+    catch (Exception e) {
+      connection.close();
+    }
+  }
+}
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import util.FileUtil;
+import fitnesse.components.RecentChanges;
 
 public abstract class BaseWikiPage implements WikiPage {
   private static final long serialVersionUID = 1L;
@@ -14,6 +15,9 @@ public abstract class BaseWikiPage implements WikiPage {
   protected String name;
   protected WikiPage parent;
   protected WikiPage parentForVariables;
+  private transient RenderedHtmlCache renderedHtmlCache;
+  private transient PageSearchIndex searchIndex;
+  private transient RecentChanges recentChanges;
 
   protected BaseWikiPage(String name, WikiPage parent) {
     this.name = name;
@@ -95,12 +99,31 @@ public abstract class BaseWikiPage implements WikiPage {
   protected abstract WikiPage getNormalChildPage(String name) throws Exception;
 
   public WikiPage getChildPage(String name) throws Exception {
+    RenderedHtmlCache.childLookedUp(this, name);
     WikiPage page = getNormalChildPage(name);
     if (page == null)
       page = createSymbolicPage(getData().getProperties().getProperty(SymbolicPage.PROPERTY_NAME), name);
     return page;
   }
 
+  public synchronized RenderedHtmlCache getRenderedHtmlCache() {
+    if (renderedHtmlCache == null)
+      renderedHtmlCache = new RenderedHtmlCache();
+    return renderedHtmlCache;
+  }
+
+  public synchronized PageSearchIndex getSearchIndex() {
+    if (searchIndex == null)
+      searchIndex = new PageSearchIndex(this);
+    return searchIndex;
+  }
+
+  public synchronized RecentChanges getRecentChanges() {
+    if (recentChanges == null)
+      recentChanges = new RecentChanges(this);
+    return recentChanges;
+  }
+
   public WikiPage getHeaderPage() throws Exception {
     return PageCrawlerImpl.getClosestInheritedPage("PageHeader", this);
   }
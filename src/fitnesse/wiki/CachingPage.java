@@ -3,7 +3,6 @@
 
 package fitnesse.wiki;
 
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,8 +14,7 @@ public abstract class CachingPage extends CommitingPage {
   public static int cacheTime = 3000;
 
   protected Map<String, WikiPage> children = new HashMap<String, WikiPage>();
-  private transient SoftReference<PageData> cachedData;
-  private transient long cachedDataCreationTime = 0;
+  private transient volatile PageDataCache.Entry cachedData;
 
   public CachingPage(String name, WikiPage parent) throws Exception {
     super(name, parent);
@@ -34,6 +32,8 @@ public abstract class CachingPage extends CommitingPage {
   public WikiPage addChildPage(String name) throws Exception {
     WikiPage page = createChildPage(name);
     children.put(name, page);
+    RenderedHtmlCache.childrenChanged(this, name);
+    PageSearchIndex.childAdded(this, name);
     return page;
   }
 
@@ -50,6 +50,8 @@ public abstract class CachingPage extends CommitingPage {
   public void removeChildPage(String name) throws Exception {
     if (hasCachedSubpage(name))
       children.remove(name);
+    RenderedHtmlCache.childrenChanged(this, name);
+    PageSearchIndex.childRemoved(this, name);
   }
 
   @Override
@@ -65,16 +67,41 @@ public abstract class CachingPage extends CommitingPage {
   }
 
   public PageData getData() throws Exception {
-    if (cachedDataExpired()) {
-      PageData data = makePageData();
-      setCachedData(data);
+    RenderedHtmlCache.pageRead(this);
+    PageDataCache cache = PageDataCache.getInstance();
+    PageDataCache.Entry entry = cachedData;
+    long now = System.currentTimeMillis();
+    PageData data = cache.getRecentlyValidated(entry, now);
+    if (data == null) {
+      Object stamp = getDataStamp();
+      data = cache.get(entry, stamp, now);
+      if (data == null) {
+        data = makePageData();
+        setCachedData(stamp, data);
+        if (entry != null && entry.stamp != null && !entry.stamp.equals(stamp))
+          reportChangedOutsideFitNesse(data);
+      }
     }
-    return new PageData(getCachedData());
+    return new PageData(data);
+  }
+
+  private void reportChangedOutsideFitNesse(PageData data) throws Exception {
+    RenderedHtmlCache.pageChanged(this);
+    PageSearchIndex.pageChanged(this, data);
+  }
+
+  /**
+   * Describes the state of whatever the page data is read from, for instance
+   * the modification times and sizes of its files.  Cached data is used for
+   * as long as the stamp is unchanged.  Pages that cannot tell return null,
+   * and their data is cached for cacheTime.
+   */
+  protected Object getDataStamp() throws Exception {
+    return null;
   }
 
   private boolean cachedDataExpired() throws Exception {
-    long now = System.currentTimeMillis();
-    return getCachedData() == null || now >= cachedDataCreationTime + cacheTime;
+    return !PageDataCache.getInstance().isCurrent(cachedData, getDataStamp(), System.currentTimeMillis());
   }
 
   public void dumpExpiredCachedData() throws Exception {
@@ -83,28 +110,22 @@ public abstract class CachingPage extends CommitingPage {
   }
 
   @Override
-  public VersionInfo commit(PageData data) throws Exception {
-    VersionInfo versionInfo = super.commit(data);
-    setCachedData(makePageData());
-    return versionInfo;
+  public void commitWithoutVersion(PageData data) throws Exception {
+    super.commitWithoutVersion(data);
+    Object stamp = getDataStamp();
+    setCachedData(stamp, makePageData());
   }
 
-  private void setCachedData(PageData data) throws Exception {
-    if (cachedData != null)
-      cachedData.clear();
-    cachedData = new SoftReference<PageData>(data);
-    cachedDataCreationTime = System.currentTimeMillis();
+  private void setCachedData(Object stamp, PageData data) throws Exception {
+    cachedData = PageDataCache.getInstance().put(cachedData, data, stamp, System.currentTimeMillis());
   }
 
   public PageData getCachedData() throws Exception {
-    if (cachedData != null)
-      return cachedData.get();
-    else
-      return null;
+    return PageDataCache.getInstance().peek(cachedData);
   }
 
   public void clearCache() {
-    cachedData.clear();
+    PageDataCache.getInstance().remove(cachedData);
     cachedData = null;
   }
 }
@@ -15,8 +15,18 @@ public abstract class CommitingPage extends ExtendableWikiPage {
 
   public VersionInfo commit(PageData data) throws Exception {
     VersionInfo previousVersion = makeVersion();
-    doCommit(data);
+    commitWithoutVersion(data);
     return previousVersion;
   }
 
+  /**
+   * Saves the data without keeping the current data as a version, for pages
+   * that are rewritten by FitNesse itself, such as RecentChanges.
+   */
+  public void commitWithoutVersion(PageData data) throws Exception {
+    doCommit(data);
+    RenderedHtmlCache.pageChanged(this);
+    PageSearchIndex.pageChanged(this, data);
+  }
+
 }
@@ -35,6 +35,13 @@ public class ExternalSuitePage extends CachingPage {
         }
     }
 
+    @Override
+    public PageData getData() throws Exception {
+        // children come and go on disk without a commit
+        RenderedHtmlCache.uncacheable();
+        return super.getData();
+    }
+
     protected PageData makePageData() throws Exception {
         PageData pageData = new PageData(this);
         pageData.setContent("!contents");
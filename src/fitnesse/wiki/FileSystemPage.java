@@ -11,6 +11,7 @@ import util.FileUtil;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Date;
 
 public class FileSystemPage extends CachingPage {
@@ -19,8 +20,15 @@ public class FileSystemPage extends CachingPage {
   public static final String contentFilename = "/content.txt";
   public static final String propertiesFilename = "/properties.xml";
 
+  /**
+   * Files changed less than this long ago may change again without their
+   * modification time changing, so they are not trusted to stamp page data.
+   */
+  static final long TIMESTAMP_RESOLUTION = 2000;
+
   private final String path;
   private final VersionsController versionsController;
+  private final PageTreeIndex pageTreeIndex;
   private CmSystem cmSystem = new CmSystem();
 
   public FileSystemPage(final String path, final String name, final FileSystem fileSystem, final ComponentFactory componentFactory) throws Exception {
@@ -29,6 +37,7 @@ public class FileSystemPage extends CachingPage {
 
     versionsController = createVersionsController(componentFactory);
     createDirectoryIfNewPage(fileSystem);
+    pageTreeIndex = createPageTreeIndex(componentFactory);
   }
 
   public FileSystemPage(final String path, final String name) throws Exception {
@@ -39,6 +48,7 @@ public class FileSystemPage extends CachingPage {
         super(name, parent);
         path = parent.getFileSystemPath();
         versionsController = parent.versionsController;
+        pageTreeIndex = parent.pageTreeIndex;
         createDirectoryIfNewPage(fileSystem);
     }
 
@@ -47,6 +57,25 @@ public class FileSystemPage extends CachingPage {
       ZipFileVersionsController.class);
   }
 
+  private PageTreeIndex createPageTreeIndex(ComponentFactory factory) throws Exception {
+    String rescanInterval = factory.getProperty(ComponentFactory.PAGE_TREE_INDEX_RESCAN_INTERVAL);
+    PageTreeIndex index = rescanInterval == null ? new PageTreeIndex() : new PageTreeIndex(Integer.parseInt(rescanInterval));
+    String threads = factory.getProperty(ComponentFactory.PAGE_TREE_INDEX_THREADS);
+    String indexFile = factory.getProperty(ComponentFactory.PAGE_TREE_INDEX_FILE);
+    if (indexFile != null && new File(indexFile).exists())
+      index.load(new File(indexFile));
+    else if (threads != null) {
+      index.build(getFileSystemPath(), Integer.parseInt(threads));
+      if (indexFile != null)
+        index.save(new File(indexFile));
+    }
+    return index;
+  }
+
+  public PageTreeIndex getPageTreeIndex() {
+    return pageTreeIndex;
+  }
+
   @Override
   public void removeChildPage(final String name) throws Exception {
     super.removeChildPage(name);
@@ -54,19 +83,37 @@ public class FileSystemPage extends CachingPage {
     final File fileToBeDeleted = new File(pathToDelete);
     cmSystem.preDelete(pathToDelete);
     FileUtil.deleteFileSystemDirectory(fileToBeDeleted);
+    pageTreeIndex.childRemoved(getFileSystemPath(), name);
     cmSystem.delete(pathToDelete);
   }
 
   @Override
   public boolean hasChildPage(final String pageName) throws Exception {
-    final File f = new File(getFileSystemPath() + "/" + pageName);
-    if (f.exists()) {
+    if (isIndexedChild(pageName) || isOtherChildFile(pageName)) {
       addChildPage(pageName);
       return true;
     }
     return false;
   }
 
+  /**
+   * Whether the page tree index lists the child and its directory is still
+   * there.  A child whose directory was deleted behind the index's back is
+   * dropped from the index rather than created again as an empty page.
+   */
+  private boolean isIndexedChild(String pageName) {
+    if (!pageTreeIndex.hasChild(getFileSystemPath(), pageName))
+      return false;
+    if (new File(getFileSystemPath(), pageName).isDirectory())
+      return true;
+    pageTreeIndex.childRemoved(getFileSystemPath(), pageName);
+    return false;
+  }
+
+  private boolean isOtherChildFile(String pageName) {
+    return !WikiWordWidget.isWikiWord(pageName) && new File(getFileSystemPath() + "/" + pageName).exists();
+  }
+
   protected synchronized void saveContent(String content) throws Exception {
     if (content == null) {
       return;
@@ -145,13 +192,9 @@ public class FileSystemPage extends CachingPage {
 
   @Override
   protected void loadChildren() throws Exception {
-    final File thisDir = new File(getFileSystemPath());
-    if (thisDir.exists()) {
-      final String[] subFiles = thisDir.list();
-      for (final String subFile : subFiles) {
-        if (fileIsValid(subFile, thisDir) && !this.children.containsKey(subFile)) {
-          this.children.put(subFile, getChildPage(subFile));
-        }
+    for (final String childName : pageTreeIndex.getChildNames(getFileSystemPath())) {
+      if (!this.children.containsKey(childName) && isIndexedChild(childName)) {
+        this.children.put(childName, getChildPage(childName));
       }
     }
   }
@@ -170,16 +213,6 @@ public class FileSystemPage extends CachingPage {
     }
   }
 
-  private boolean fileIsValid(final String filename, final File dir) {
-    if (WikiWordWidget.isWikiWord(filename)) {
-      final File f = new File(dir, filename);
-      if (f.isDirectory()) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   private String getParentFileSystemPath() {
     return this.parent != null ? ((FileSystemPage) this.parent).getFileSystemPath() : this.path;
   }
@@ -248,6 +281,28 @@ public class FileSystemPage extends CachingPage {
     return pagedata;
   }
 
+  /**
+   * The modification times and sizes of the content and properties files,
+   * and the modification time of the page directory, which changes when
+   * versions are added or removed.
+   */
+  @Override
+  protected Object getDataStamp() throws Exception {
+    final String pagePath = getFileSystemPath();
+    final File directory = new File(pagePath);
+    final File content = new File(pagePath + contentFilename);
+    final File properties = new File(pagePath + propertiesFilename);
+    final long[] stamp = {
+      directory.lastModified(),
+      content.lastModified(), content.length(),
+      properties.lastModified(), properties.length()
+    };
+    final long settled = System.currentTimeMillis() - TIMESTAMP_RESOLUTION;
+    if (stamp[0] > settled || stamp[1] > settled || stamp[3] > settled)
+      return null;
+    return new DataStamp(stamp);
+  }
+
   public PageData getDataVersion(final String versionName) throws Exception {
     return this.versionsController.getRevisionData(this, versionName);
   }
@@ -256,6 +311,8 @@ public class FileSystemPage extends CachingPage {
     String pagePath = getFileSystemPath();
     if (!fileSystem.exists(pagePath)) {
       fileSystem.makeDirectory(pagePath);
+      if (parent != null)
+        pageTreeIndex.childAdded(getParentFileSystemPath(), getName());
       cmSystem.update(pagePath);
     }
   }
@@ -283,6 +340,26 @@ public class FileSystemPage extends CachingPage {
     }
   }
 
+  private static class DataStamp implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long[] values;
+
+    DataStamp(long[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof DataStamp && Arrays.equals(values, ((DataStamp) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(values);
+    }
+  }
+
   class CmSystem {
     public void update(String fileName) throws Exception {
       invokeCmMethod("cmUpdate", fileName);
@@ -8,12 +8,15 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import util.DiskFileSystem;
 import util.FileUtil;
+import fitnesse.ComponentFactory;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Properties;
 
 public class FileSystemPageTest {
   private static final String defaultPath = "./teststorage";
@@ -274,4 +277,104 @@ public class FileSystemPageTest {
     assertEquals("preDelete " + defaultPath + "/RooT/TestPage/CreatedPage|fitnesse.wiki.FileSystemPageTest xxx", cmMethodCalls.get(0));
     assertEquals("delete " + defaultPath + "/RooT/TestPage/CreatedPage|fitnesse.wiki.FileSystemPageTest xxx", cmMethodCalls.get(1));
   }
+
+  @Test
+  public void testDataIsReusedWhileFilesAreUnchanged() throws Exception {
+    FileSystemPage page = (FileSystemPage) crawler.addPage(root, PathParser.parse("PageOne"), "some content");
+    ageFiles(page, 10000);
+    page.getData();
+    PageData cached = page.getCachedData();
+    page.getData();
+    assertSame(cached, page.getCachedData());
+  }
+
+  @Test
+  public void testDataIsReloadedWhenContentFileChanges() throws Exception {
+    FileSystemPage page = (FileSystemPage) crawler.addPage(root, PathParser.parse("PageOne"), "some content");
+    ageFiles(page, 10000);
+    page.getData();
+
+    File content = new File(page.getFileSystemPath() + FileSystemPage.contentFilename);
+    FileUtil.createFile(content, "other content");
+    content.setLastModified(System.currentTimeMillis() - 5000);
+
+    int validationInterval = PageDataCache.validationInterval;
+    PageDataCache.validationInterval = 0;
+    try {
+      assertEquals("other content", page.getData().getContent());
+    } finally {
+      PageDataCache.validationInterval = validationInterval;
+    }
+  }
+
+  @Test
+  public void testPagesIncludingAPageChangedOnDiskAreRenderedAgain() throws Exception {
+    FileSystemPage included = (FileSystemPage) crawler.addPage(root, PathParser.parse("IncludedPage"), "first");
+    WikiPage page = crawler.addPage(root, PathParser.parse("SomePage"), "!include -seamless IncludedPage");
+    ageFiles(included, 10000);
+    assertTrue(page.getData().getHtml().contains("first"));
+
+    File content = new File(included.getFileSystemPath() + FileSystemPage.contentFilename);
+    FileUtil.createFile(content, "second edit");
+    content.setLastModified(System.currentTimeMillis() - 5000);
+
+    int validationInterval = PageDataCache.validationInterval;
+    PageDataCache.validationInterval = 0;
+    try {
+      assertTrue(page.getData().getHtml().contains("second edit"));
+    } finally {
+      PageDataCache.validationInterval = validationInterval;
+    }
+  }
+
+  @Test
+  public void testChildrenComeFromThePageTreeIndex() throws Exception {
+    crawler.addPage(root, PathParser.parse("PageOne"), "page one");
+    assertEquals(1, root.getChildren().size());
+    new File(root.getFileSystemPath() + "/PageTwo").mkdir();
+    assertEquals(1, root.getChildren().size());
+
+    root.getPageTreeIndex().clear();
+    assertEquals(2, root.getChildren().size());
+  }
+
+  @Test
+  public void testPagesDeletedOnDiskAreNotCreatedAgain() throws Exception {
+    crawler.addPage(root, PathParser.parse("PageOne"), "page one");
+    crawler.addPage(root, PathParser.parse("PageTwo"), "page two");
+    FileSystemPage freshRoot = new FileSystemPage(defaultPath, "RooT");
+    assertTrue(freshRoot.hasChildPage("PageOne"));
+    FileUtil.deleteFileSystemDirectory(freshRoot.getFileSystemPath() + "/PageTwo");
+
+    assertEquals(1, freshRoot.getChildren().size());
+    assertFalse(new File(freshRoot.getFileSystemPath() + "/PageTwo").exists());
+    assertFalse(freshRoot.hasChildPage("PageTwo"));
+  }
+
+  @Test
+  public void testPagesDeletedWhileDownAreNotCreatedAgainFromTheSavedIndex() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(ComponentFactory.PAGE_TREE_INDEX_THREADS, "1");
+    properties.setProperty(ComponentFactory.PAGE_TREE_INDEX_FILE, defaultPath + "/pageTree.idx");
+    crawler.addPage(root, PathParser.parse("PageOne"), "page one");
+    crawler.addPage(root, PathParser.parse("PageTwo"), "page two");
+    ageFiles(root, 10000);
+    ageFiles((FileSystemPage) root.getChildPage("PageOne"), 10000);
+    ageFiles((FileSystemPage) root.getChildPage("PageTwo"), 10000);
+    new FileSystemPage(defaultPath, "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+    assertTrue(new File(defaultPath + "/pageTree.idx").exists());
+
+    FileUtil.deleteFileSystemDirectory(root.getFileSystemPath() + "/PageTwo");
+    FileSystemPage restarted = new FileSystemPage(defaultPath, "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+
+    assertEquals(1, restarted.getChildren().size());
+    assertFalse(new File(restarted.getFileSystemPath() + "/PageTwo").exists());
+  }
+
+  private void ageFiles(FileSystemPage page, long millis) {
+    long time = System.currentTimeMillis() - millis;
+    new File(page.getFileSystemPath() + FileSystemPage.contentFilename).setLastModified(time);
+    new File(page.getFileSystemPath() + FileSystemPage.propertiesFilename).setLastModified(time);
+    new File(page.getFileSystemPath()).setLastModified(time);
+  }
 }
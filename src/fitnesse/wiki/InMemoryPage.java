@@ -38,6 +38,8 @@ public class InMemoryPage extends CommitingPage {
   public WikiPage addChildPage(String name) throws Exception {
     WikiPage page = createChildPage(name);
     children.put(name, page);
+    RenderedHtmlCache.childrenChanged(this, name);
+    PageSearchIndex.childAdded(this, name);
     return page;
   }
 
@@ -53,6 +55,8 @@ public class InMemoryPage extends CommitingPage {
 
   public void removeChildPage(String name) throws Exception {
     children.remove(name);
+    RenderedHtmlCache.childrenChanged(this, name);
+    PageSearchIndex.childRemoved(this, name);
   }
 
   public boolean hasChildPage(String pageName) {
@@ -77,6 +81,7 @@ public class InMemoryPage extends CommitingPage {
   }
 
   public PageData getData() throws Exception {
+    RenderedHtmlCache.pageRead(this);
     return new PageData(getDataVersion(currentVersionName));
   }
 
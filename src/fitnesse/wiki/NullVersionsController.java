@@ -1,6 +1,7 @@
 package fitnesse.wiki;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Properties;
 
@@ -37,4 +38,20 @@ public class NullVersionsController implements VersionsController {
 
   public void removeVersion(final FileSystemPage page, final String versionName) {
   }
+
+  protected VersionInfo makeVersionInfo(final PageData data) {
+    try {
+      Date time;
+      time = data.getProperties().getLastModificationTime();
+      String versionName = VersionInfo.nextId() + "-" + VersionInfo.makeVersionTimeFormat().format(time);
+      final String user = data.getAttribute(PageData.LAST_MODIFYING_USER);
+      if (user != null && !"".equals(user)) {
+        versionName = user + "-" + versionName;
+      }
+
+      return new VersionInfo(versionName, user, time);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
 }
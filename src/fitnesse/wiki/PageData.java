@@ -11,6 +11,7 @@ import util.StringUtil;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 @SuppressWarnings("unchecked")
 public class PageData implements Serializable {
@@ -69,8 +70,9 @@ public class PageData implements Serializable {
 
   private transient WikiPage wikiPage;
   private String content;
-  private WikiPageProperties properties = new WikiPageProperties();
+  private WikiPageProperties properties;
   private Set<VersionInfo> versions;
+  private transient boolean sharesVersions = false;
   private ParentWidget variableRoot;
   private List<String> literals;
 
@@ -80,6 +82,7 @@ public class PageData implements Serializable {
 
   public PageData(WikiPage page) throws Exception {
     wikiPage = page;
+    properties = new WikiPageProperties();
     initializeAttributes();
     versions = new HashSet<VersionInfo>();
   }
@@ -89,10 +92,17 @@ public class PageData implements Serializable {
     setContent(content);
   }
 
+  /**
+   * A copy of the data that shares its properties and versions with the
+   * original until either is changed, so copies of cached data are cheap.
+   */
   public PageData(PageData data) throws Exception {
-    this(data.getWikiPage(), data.content);
+    wikiPage = data.wikiPage;
+    content = data.content;
     properties = new WikiPageProperties(data.properties);
-    versions.addAll(data.versions);
+    versions = data.versions;
+    sharesVersions = true;
+    data.sharesVersions = true;
     variableRoot = data.variableRoot;
   }
 
@@ -190,7 +200,15 @@ public class PageData implements Serializable {
   }
 
   public String getHtml() throws Exception {
-    return processHTMLWidgets(getContent(), wikiPage);
+    final String content = getContent();
+    RenderedHtmlCache cache = RenderedHtmlCache.forPage(wikiPage);
+    if (cache == null)
+      return processHTMLWidgets(content, wikiPage);
+    return cache.getHtml(wikiPage, content, new Callable<String>() {
+      public String call() throws Exception {
+        return processHTMLWidgets(content, wikiPage);
+      }
+    });
   }
 
   public String getHtml(WikiPage context) throws Exception {
@@ -272,13 +290,22 @@ public class PageData implements Serializable {
   }
 
   public Set<VersionInfo> getVersions() {
+    unshareVersions();
     return versions;
   }
 
   public void addVersions(Collection<VersionInfo> newVersions) {
+    unshareVersions();
     versions.addAll(newVersions);
   }
 
+  private void unshareVersions() {
+    if (sharesVersions) {
+      versions = new HashSet<VersionInfo>(versions);
+      sharesVersions = false;
+    }
+  }
+
   public boolean isEmpty() throws Exception {
     return getContent() == null || getContent().length() == 0;
   }
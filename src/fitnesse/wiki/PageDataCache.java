@@ -0,0 +1,163 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Holds the data of CachingPages, within a memory budget shared by every
+ * page of every wiki in the process.  Cached data is used for as long as the
+ * stamp of the page (see CachingPage.getDataStamp()) is unchanged; pages that
+ * have no stamp fall back to CachingPage.cacheTime.  A stamp is checked at
+ * most once every validationInterval, since reading it means going to the
+ * file system.  When the estimated size of the cached data exceeds
+ * maximumBytes the least recently used data is dropped.  The data is only
+ * softly reachable, so the garbage collector may drop it as well when memory
+ * runs low.
+ */
+public class PageDataCache {
+  public static long maximumBytes = 32 * 1024 * 1024;
+  public static int validationInterval = 1000;
+
+  private static final PageDataCache instance = new PageDataCache();
+
+  private final LinkedHashMap<Entry, Entry> entries = new LinkedHashMap<Entry, Entry>(16, 0.75f, true);
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long invalidations;
+  private long evictions;
+
+  public static PageDataCache getInstance() {
+    return instance;
+  }
+
+  synchronized PageData getRecentlyValidated(Entry entry, long now) {
+    if (entry == null || entry.stamp == null || now - entry.validated >= validationInterval)
+      return null;
+    PageData data = entry.data.get();
+    if (data == null || entries.get(entry) == null)
+      return null;
+    hits++;
+    return data;
+  }
+
+  synchronized PageData get(Entry entry, Object stamp, long now) {
+    PageData data = entry == null ? null : entry.data.get();
+    if (entry != null && entries.get(entry) != null) {
+      if (data != null && entry.isCurrent(stamp, now)) {
+        entry.validated = now;
+        hits++;
+        return data;
+      }
+      if (data != null)
+        invalidations++;
+      remove(entry);
+    }
+    misses++;
+    return null;
+  }
+
+  synchronized PageData peek(Entry entry) {
+    if (entry == null || !entries.containsKey(entry))
+      return null;
+    return entry.data.get();
+  }
+
+  synchronized boolean isCurrent(Entry entry, Object stamp, long now) {
+    return peek(entry) != null && entry.isCurrent(stamp, now);
+  }
+
+  synchronized Entry put(Entry previous, PageData data, Object stamp, long now) throws Exception {
+    if (previous != null)
+      remove(previous);
+    Entry entry = new Entry(data, stamp, now, estimateSize(data));
+    entries.put(entry, entry);
+    bytes += entry.bytes;
+    evictLeastRecentlyUsed();
+    return entry;
+  }
+
+  synchronized void remove(Entry entry) {
+    if (entry != null && entries.remove(entry) != null) {
+      bytes -= entry.bytes;
+      entry.data.clear();
+    }
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<Entry> eldest = entries.keySet().iterator();
+    while (bytes > maximumBytes && eldest.hasNext()) {
+      Entry entry = eldest.next();
+      eldest.remove();
+      bytes -= entry.bytes;
+      entry.data.clear();
+      evictions++;
+    }
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    for (Entry entry : entries.keySet())
+      entry.data.clear();
+    entries.clear();
+    bytes = 0;
+  }
+
+  static long estimateSize(PageData data) throws Exception {
+    String content = data.getContent();
+    long size = 256;
+    if (content != null)
+      size += 40 + 2L * content.length();
+    size += 128L * data.getProperties().keySet().size();
+    size += 128L * data.getVersions().size();
+    return size;
+  }
+
+  static class Entry {
+    final SoftReference<PageData> data;
+    final Object stamp;
+    final long loadTime;
+    final long bytes;
+    long validated;
+
+    Entry(PageData data, Object stamp, long loadTime, long bytes) {
+      this.data = new SoftReference<PageData>(data);
+      this.stamp = stamp;
+      this.loadTime = loadTime;
+      this.bytes = bytes;
+      this.validated = loadTime;
+    }
+
+    boolean isCurrent(Object currentStamp, long now) {
+      if (stamp == null && currentStamp == null)
+        return now < loadTime + CachingPage.cacheTime;
+      return stamp != null && stamp.equals(currentStamp);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import junit.framework.TestCase;
+import fitnesse.testutil.SimpleCachinePage;
+
+public class PageDataCacheTest extends TestCase {
+  private PageDataCache cache;
+  private WikiPage root;
+  private long maximumBytes;
+  private int validationInterval;
+  private int cacheTime;
+
+  public void setUp() throws Exception {
+    cache = PageDataCache.getInstance();
+    maximumBytes = PageDataCache.maximumBytes;
+    validationInterval = PageDataCache.validationInterval;
+    cacheTime = CachingPage.cacheTime;
+    root = new SimpleCachinePage("RooT", null);
+  }
+
+  public void tearDown() throws Exception {
+    PageDataCache.maximumBytes = maximumBytes;
+    PageDataCache.validationInterval = validationInterval;
+    CachingPage.cacheTime = cacheTime;
+    cache.clear();
+  }
+
+  public void testEntryWithUnchangedStampIsUsed() throws Exception {
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), "stamp", 0);
+    long hits = cache.getHits();
+    assertNotNull(cache.get(entry, "stamp", Long.MAX_VALUE));
+    assertEquals(hits + 1, cache.getHits());
+  }
+
+  public void testStampIsNotCheckedAgainWithinValidationInterval() throws Exception {
+    PageDataCache.validationInterval = 100;
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), "stamp", 1000);
+    assertNotNull(cache.getRecentlyValidated(entry, 1099));
+    assertNull(cache.getRecentlyValidated(entry, 1100));
+    assertNotNull(cache.get(entry, "stamp", 1100));
+    assertNotNull(cache.getRecentlyValidated(entry, 1199));
+  }
+
+  public void testEntryWithoutStampIsAlwaysChecked() throws Exception {
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), null, 1000);
+    assertNull(cache.getRecentlyValidated(entry, 1000));
+  }
+
+  public void testEntryWithChangedStampIsDropped() throws Exception {
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), "stamp", 0);
+    long invalidations = cache.getInvalidations();
+    assertNull(cache.get(entry, "other stamp", 0));
+    assertEquals(invalidations + 1, cache.getInvalidations());
+    assertNull(cache.peek(entry));
+  }
+
+  public void testEntryWithoutStampExpiresAfterCacheTime() throws Exception {
+    CachingPage.cacheTime = 100;
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), null, 1000);
+    assertNotNull(cache.get(entry, null, 1099));
+    assertNull(cache.get(entry, null, 1100));
+  }
+
+  public void testEntryLoadedWhileStampWasUnknownIsDroppedOnceItIsKnown() throws Exception {
+    CachingPage.cacheTime = 100;
+    PageDataCache.Entry entry = cache.put(null, new PageData(root), null, 1000);
+    assertNull(cache.get(entry, "stamp", 1000));
+  }
+
+  public void testLeastRecentlyUsedDataIsEvictedOverBudget() throws Exception {
+    PageData data = new PageData(root, "content");
+    PageDataCache.maximumBytes = 2 * PageDataCache.estimateSize(data);
+    long evictions = cache.getEvictions();
+    PageDataCache.Entry first = cache.put(null, new PageData(root, "content"), "1", 0);
+    PageDataCache.Entry second = cache.put(null, new PageData(root, "content"), "2", 0);
+    cache.get(first, "1", 0);
+    PageDataCache.Entry third = cache.put(null, new PageData(root, "content"), "3", 0);
+
+    assertNotNull(cache.peek(first));
+    assertNull(cache.peek(second));
+    assertNotNull(cache.peek(third));
+    assertEquals(evictions + 1, cache.getEvictions());
+    assertEquals(2, cache.size());
+    assertEquals(PageDataCache.maximumBytes, cache.getBytes());
+  }
+
+  public void testReplacedEntryIsRemoved() throws Exception {
+    PageDataCache.Entry first = cache.put(null, new PageData(root), "1", 0);
+    PageDataCache.Entry second = cache.put(first, new PageData(root), "2", 0);
+    assertNull(cache.peek(first));
+    assertNotNull(cache.peek(second));
+    assertEquals(1, cache.size());
+  }
+
+  public void testCopiesOfCachedDataDoNotChangeIt() throws Exception {
+    CachingPage.cacheTime = 10000;
+    CachingPage page = (CachingPage) root.getPageCrawler().addPage(root, PathParser.parse("SomePage"), "content");
+    PageData copy = page.getData();
+    copy.setContent("changed");
+    copy.setAttribute("Test");
+    copy.removeAttribute(PageData.PropertyEDIT);
+
+    PageData cached = page.getCachedData();
+    assertEquals("content", cached.getContent());
+    assertFalse(cached.hasAttribute("Test"));
+    assertTrue(cached.hasAttribute(PageData.PropertyEDIT));
+    assertFalse(page.getData().hasAttribute("Test"));
+  }
+}
@@ -0,0 +1,658 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index of the pages of one wiki: their names, the words of their
+ * content and their attributes, so that searches do not read every page.
+ * Content queries give candidates, a superset of the pages that match, which
+ * the caller checks against the page itself; name and attribute queries are
+ * answered from the index alone.
+ * <p/>
+ * The index is built by walking the wiki the first time it is queried (or
+ * ahead of time by buildInBackground()) and kept current by the pages, which
+ * report commits, new children and removed children.  Pages changed by other
+ * programs are picked up by a refresh at most every refreshInterval
+ * milliseconds, which rereads only the pages whose data stamp has changed.
+ * <p/>
+ * The index can be kept in a file (see setFile()), which is read before the
+ * first refresh and written after every refresh, so that a restarted server
+ * only rereads the pages that changed while it was down.
+ * <p/>
+ * There is one index per root page; see forPage().
+ */
+public class PageSearchIndex {
+  public static int refreshInterval = 10000;
+
+  private final WikiPage root;
+  private final Map<String, Document> documents = new TreeMap<String, Document>();
+  private final TreeMap<String, Set<String>> postings = new TreeMap<String, Set<String>>();
+  private final Set<String> pending = new LinkedHashSet<String>();
+  private final Object refreshLock = new Object();
+  private File file;
+  private boolean built;
+  private boolean refreshing;
+  private long refreshed;
+  private Set<String> changedDuringRefresh;
+  private Set<String> removedDuringRefresh;
+
+  public PageSearchIndex(WikiPage root) {
+    this.root = root;
+  }
+
+  public static PageSearchIndex forPage(WikiPage page) throws Exception {
+    if (page == null)
+      return null;
+    WikiPage root = page.getPageCrawler().getRoot(page);
+    if (root instanceof BaseWikiPage)
+      return ((BaseWikiPage) root).getSearchIndex();
+    return null;
+  }
+
+  public static void pageChanged(WikiPage page, PageData data) throws Exception {
+    PageSearchIndex index = forPage(page);
+    if (index != null && index.isMaintained())
+      index.update(new Document(pathOf(page), page.getName(), data, null));
+  }
+
+  public static void childAdded(WikiPage parent, String childName) throws Exception {
+    PageSearchIndex index = forPage(parent);
+    if (index != null && index.isMaintained())
+      index.added(childPath(pathOf(parent), childName));
+  }
+
+  public static void childRemoved(WikiPage parent, String childName) throws Exception {
+    PageSearchIndex index = forPage(parent);
+    if (index != null && index.isMaintained())
+      index.removed(childPath(pathOf(parent), childName));
+  }
+
+  public static String pathOf(WikiPage page) throws Exception {
+    return PathParser.render(page.getPageCrawler().getFullPath(page));
+  }
+
+  /**
+   * All pages at or below the given path, in path order.
+   */
+  public List<Document> getDocuments(String underPath) throws Exception {
+    prepare();
+    synchronized (this) {
+      return documentsUnder(underPath, null);
+    }
+  }
+
+  /**
+   * The pages at or below the given path whose content may contain the text,
+   * ignoring case.
+   */
+  public List<Document> findLiteral(String text, String underPath) throws Exception {
+    prepare();
+    synchronized (this) {
+      return documentsUnder(underPath, literalCandidates(text));
+    }
+  }
+
+  /**
+   * The pages at or below the given path whose content may match the
+   * pattern.  Patterns too involved to take apart yield every page.
+   */
+  public List<Document> findPattern(Pattern pattern, String underPath) throws Exception {
+    if ((pattern.flags() & Pattern.LITERAL) != 0)
+      return findLiteral(pattern.pattern(), underPath);
+    prepare();
+    synchronized (this) {
+      return documentsUnder(underPath, patternCandidates(pattern));
+    }
+  }
+
+  /**
+   * The pages at or below the given path whose content may refer to a page
+   * with the given name or to one of its descendants.  Every such reference
+   * names the page, except the relative references made by the page itself
+   * and its descendants.
+   */
+  public List<Document> findReferences(String pageName, String underPath) throws Exception {
+    prepare();
+    synchronized (this) {
+      return documentsUnder(underPath, pagesWithWord(fold(pageName), false, false));
+    }
+  }
+
+  public WikiPage getPage(Document document) throws Exception {
+    return getPage(document.path);
+  }
+
+  public WikiPage getPage(String path) throws Exception {
+    WikiPage page = root;
+    if (path.length() == 0)
+      return page;
+    for (String name : path.split("\\" + PathParser.PATH_SEPARATOR)) {
+      page = page.getChildPage(name);
+      if (page == null)
+        return null;
+    }
+    return page;
+  }
+
+  public synchronized int size() {
+    return documents.size();
+  }
+
+  public synchronized int getWordCount() {
+    return postings.size();
+  }
+
+  public synchronized boolean isBuilt() {
+    return built;
+  }
+
+  public synchronized void setFile(File file) {
+    this.file = file;
+  }
+
+  public void buildInBackground() {
+    synchronized (this) {
+      if (refreshing)
+        return;
+      refreshing = true;
+    }
+    refreshInBackground();
+  }
+
+  /**
+   * Walks the wiki, rereading the pages whose data stamp changed or cannot
+   * be told, and forgetting the pages that are gone.
+   */
+  public void refresh() throws Exception {
+    synchronized (refreshLock) {
+      File file = getFile();
+      if (file != null && !isBuilt() && file.exists())
+        load(file);
+      Map<String, Document> known;
+      synchronized (this) {
+        known = new HashMap<String, Document>(documents);
+        changedDuringRefresh = new HashSet<String>();
+        removedDuringRefresh = new HashSet<String>();
+      }
+      Map<String, Document> found = new HashMap<String, Document>();
+      long started = System.currentTimeMillis();
+      try {
+        walk(root, known, found);
+      } finally {
+        synchronized (this) {
+          for (Document document : found.values()) {
+            if (!changedDuringRefresh.contains(document.path) && !isRemovedDuringRefresh(document.path)
+              && known.get(document.path) != document)
+              put(document);
+          }
+          for (String path : known.keySet()) {
+            if (!found.containsKey(path) && !changedDuringRefresh.contains(path))
+              remove(path);
+          }
+          changedDuringRefresh = null;
+          removedDuringRefresh = null;
+        }
+      }
+      synchronized (this) {
+        built = true;
+        refreshed = started;
+      }
+      if (file != null)
+        save(file);
+    }
+  }
+
+  /**
+   * Refreshes now, rather than in the background, if the index has not been
+   * built or its last refresh is older than refreshInterval, for queries
+   * whose caller cannot make do with an index that is behind the pages.
+   */
+  public void refreshIfStale() throws Exception {
+    boolean stale;
+    synchronized (this) {
+      stale = !built || System.currentTimeMillis() - refreshed >= refreshInterval;
+    }
+    if (stale)
+      refresh();
+  }
+
+  private synchronized File getFile() {
+    return file;
+  }
+
+  private void load(File file) {
+    try {
+      ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        List<?> saved = (List<?>) input.readObject();
+        synchronized (this) {
+          for (Object document : saved)
+            put((Document) document);
+        }
+      } finally {
+        input.close();
+      }
+    } catch (Exception e) {
+      clear();
+    }
+  }
+
+  private void save(File file) throws IOException {
+    List<Document> saved = new ArrayList<Document>();
+    synchronized (this) {
+      for (Document document : documents.values())
+        saved.add(document.stamp instanceof Serializable ? document : document.withoutStamp());
+    }
+    File temporary = new File(file.getPath() + ".tmp");
+    ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+    try {
+      output.writeObject(saved);
+    } finally {
+      output.close();
+    }
+    if (!temporary.renameTo(file)) {
+      file.delete();
+      if (!temporary.renameTo(file))
+        throw new IOException("Could not write " + file);
+    }
+  }
+
+  public synchronized void clear() {
+    documents.clear();
+    postings.clear();
+    pending.clear();
+    built = false;
+  }
+
+  /**
+   * Builds the index if it has not been built, and starts a refresh in the
+   * background if it is stale.  Queries meanwhile use the index as it is.
+   */
+  private void prepare() throws Exception {
+    boolean stale = false;
+    synchronized (this) {
+      if (built && !refreshing && System.currentTimeMillis() - refreshed >= refreshInterval) {
+        stale = true;
+        refreshing = true;
+      }
+    }
+    if (!isBuilt())
+      refresh();
+    else if (stale)
+      refreshInBackground();
+    readPending();
+  }
+
+  private void refreshInBackground() {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          refresh();
+        } catch (Exception e) {
+          e.printStackTrace();
+        } finally {
+          synchronized (PageSearchIndex.this) {
+            refreshing = false;
+          }
+        }
+      }
+    }, "PageSearchIndex");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void readPending() throws Exception {
+    List<String> paths;
+    synchronized (this) {
+      if (pending.isEmpty())
+        return;
+      paths = new ArrayList<String>(pending);
+      pending.clear();
+    }
+    for (String path : paths) {
+      WikiPage page = getPage(path);
+      if (page != null && page.getClass() != SymbolicPage.class)
+        update(new Document(path, page.getName(), page.getData(), null));
+    }
+  }
+
+  private void walk(WikiPage page, Map<String, Document> known, Map<String, Document> found) throws Exception {
+    if (page.getClass() == SymbolicPage.class)
+      return;
+    String path = pathOf(page);
+    Object stamp = page instanceof CachingPage ? ((CachingPage) page).getDataStamp() : null;
+    Document document = known.get(path);
+    if (document == null || stamp == null || !stamp.equals(document.stamp))
+      document = new Document(path, page.getName(), page.getData(), stamp);
+    found.put(path, document);
+    List<WikiPage> children = page instanceof BaseWikiPage ?
+      ((BaseWikiPage) page).getNormalChildren() : page.getChildren();
+    for (WikiPage child : children)
+      walk(child, known, found);
+  }
+
+  private synchronized boolean isMaintained() {
+    return built || changedDuringRefresh != null;
+  }
+
+  private synchronized void update(Document document) {
+    if (changedDuringRefresh != null)
+      changedDuringRefresh.add(document.path);
+    pending.remove(document.path);
+    put(document);
+  }
+
+  private synchronized void added(String path) {
+    if (!documents.containsKey(path))
+      pending.add(path);
+  }
+
+  private synchronized void removed(String path) {
+    if (removedDuringRefresh != null)
+      removedDuringRefresh.add(path);
+    String descendantPrefix = path + PathParser.PATH_SEPARATOR;
+    for (Iterator<String> paths = pending.iterator(); paths.hasNext();) {
+      String pendingPath = paths.next();
+      if (pendingPath.equals(path) || pendingPath.startsWith(descendantPrefix))
+        paths.remove();
+    }
+    for (String documentPath : new ArrayList<String>(documents.keySet())) {
+      if (documentPath.equals(path) || documentPath.startsWith(descendantPrefix))
+        remove(documentPath);
+    }
+  }
+
+  private boolean isRemovedDuringRefresh(String path) {
+    for (String removed : removedDuringRefresh) {
+      if (path.equals(removed) || path.startsWith(removed + PathParser.PATH_SEPARATOR))
+        return true;
+    }
+    return false;
+  }
+
+  private void put(Document document) {
+    remove(document.path);
+    documents.put(document.path, document);
+    for (String word : document.words) {
+      Set<String> paths = postings.get(word);
+      if (paths == null) {
+        paths = new HashSet<String>();
+        postings.put(word, paths);
+      }
+      paths.add(document.path);
+    }
+  }
+
+  private void remove(String path) {
+    Document document = documents.remove(path);
+    if (document == null)
+      return;
+    for (String word : document.words) {
+      Set<String> paths = postings.get(word);
+      if (paths != null && paths.remove(path) && paths.isEmpty())
+        postings.remove(word);
+    }
+  }
+
+  private List<Document> documentsUnder(String path, Set<String> candidates) {
+    List<Document> result = new ArrayList<Document>();
+    if (candidates != null && candidates.size() < documents.size()) {
+      for (String candidate : sorted(candidates)) {
+        if (isAtOrBelow(candidate, path))
+          result.add(documents.get(candidate));
+      }
+      return result;
+    }
+    for (Document document : documents.values()) {
+      if (isAtOrBelow(document.path, path))
+        result.add(document);
+    }
+    return result;
+  }
+
+  private static List<String> sorted(Set<String> paths) {
+    List<String> sorted = new ArrayList<String>(paths);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static boolean isAtOrBelow(String path, String ancestor) {
+    return ancestor.length() == 0 || path.equals(ancestor) || path.startsWith(ancestor + PathParser.PATH_SEPARATOR);
+  }
+
+  private Set<String> literalCandidates(String text) {
+    String folded = fold(text);
+    Set<String> candidates = null;
+    int start = 0;
+    while (start < folded.length()) {
+      if (!Character.isLetterOrDigit(folded.charAt(start))) {
+        start++;
+        continue;
+      }
+      int end = start;
+      while (end < folded.length() && Character.isLetterOrDigit(folded.charAt(end)))
+        end++;
+      candidates = intersect(candidates, pagesWithWord(folded.substring(start, end), start == 0, end == folded.length()));
+      if (candidates.isEmpty())
+        return candidates;
+      start = end;
+    }
+    return candidates;
+  }
+
+  /**
+   * Takes the runs of letters and digits that any match of the pattern must
+   * contain.  Gives up (null, every page) on alternation, groups and escapes
+   * that are more than one character.
+   */
+  private Set<String> patternCandidates(Pattern pattern) {
+    if ((pattern.flags() & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0)
+      return null;
+    String regex = pattern.pattern();
+    if (regex.indexOf('|') >= 0 || regex.indexOf('(') >= 0)
+      return null;
+    List<String> runs = new ArrayList<String>();
+    StringBuilder run = new StringBuilder();
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        run.append(fold(c));
+        continue;
+      }
+      if ((c == '*' || c == '?' || c == '{') && run.length() > 0)
+        run.setLength(run.length() - 1);
+      endRun(run, runs);
+      if (c == '\\') {
+        if (i + 1 >= regex.length() || "xu0123456789pPckNQEg".indexOf(regex.charAt(i + 1)) >= 0)
+          return null;
+        i++;
+      } else if (c == '[') {
+        i = endOfCharacterClass(regex, i);
+        if (i < 0)
+          return null;
+      } else if (c == '{') {
+        i = regex.indexOf('}', i);
+        if (i < 0)
+          return null;
+      }
+    }
+    endRun(run, runs);
+    Set<String> candidates = null;
+    for (String word : runs) {
+      candidates = intersect(candidates, pagesWithWord(word, true, true));
+      if (candidates.isEmpty())
+        break;
+    }
+    return candidates;
+  }
+
+  private static void endRun(StringBuilder run, List<String> runs) {
+    if (run.length() > 0)
+      runs.add(run.toString());
+    run.setLength(0);
+  }
+
+  private static int endOfCharacterClass(String regex, int start) {
+    int depth = 0;
+    for (int i = start; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\')
+        i++;
+      else if (c == '[')
+        depth++;
+      else if (c == ']') {
+        if (i == start + 1 || (i == start + 2 && regex.charAt(start + 1) == '^'))
+          return -1;
+        if (--depth == 0)
+          return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The pages with a word that is the given word, or, where the given word
+   * may be cut off, that starts or ends with it or contains it.
+   */
+  private Set<String> pagesWithWord(String word, boolean openStart, boolean openEnd) {
+    Set<String> pages = new HashSet<String>();
+    if (!openStart && !openEnd) {
+      Set<String> paths = postings.get(word);
+      if (paths != null)
+        pages.addAll(paths);
+    } else if (!openStart) {
+      for (Set<String> paths : postings.subMap(word, word + Character.MAX_VALUE).values())
+        pages.addAll(paths);
+    } else {
+      for (Map.Entry<String, Set<String>> posting : postings.entrySet()) {
+        String candidate = posting.getKey();
+        if (openEnd ? candidate.contains(word) : candidate.endsWith(word))
+          pages.addAll(posting.getValue());
+      }
+    }
+    return pages;
+  }
+
+  private static Set<String> intersect(Set<String> candidates, Set<String> pages) {
+    if (candidates == null)
+      return pages;
+    candidates.retainAll(pages);
+    return candidates;
+  }
+
+  static Set<String> wordsIn(String text) {
+    Set<String> words = new HashSet<String>();
+    if (text == null)
+      return words;
+    int start = 0;
+    while (start < text.length()) {
+      if (!Character.isLetterOrDigit(text.charAt(start))) {
+        start++;
+        continue;
+      }
+      int end = start;
+      while (end < text.length() && Character.isLetterOrDigit(text.charAt(end)))
+        end++;
+      words.add(fold(text.substring(start, end)));
+      start = end;
+    }
+    return words;
+  }
+
+  private static String fold(String text) {
+    char[] chars = text.toCharArray();
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = fold(chars[i]);
+    return new String(chars);
+  }
+
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private static String childPath(String parentPath, String childName) {
+    return parentPath.length() == 0 ? childName : parentPath + PathParser.PATH_SEPARATOR + childName;
+  }
+
+  public static class Document implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final String name;
+    private final Set<String> words;
+    private final Map<String, String> attributes;
+    private final Object stamp;
+
+    Document(String path, String name, PageData data, Object stamp) throws Exception {
+      this.path = path;
+      this.name = name;
+      this.words = wordsIn(data.getContent());
+      this.attributes = new HashMap<String, String>();
+      WikiPageProperties properties = data.getProperties();
+      for (String attribute : properties.keySet())
+        attributes.put(attribute, properties.get(attribute));
+      this.stamp = stamp;
+    }
+
+    private Document(Document document) {
+      this.path = document.path;
+      this.name = document.name;
+      this.words = document.words;
+      this.attributes = document.attributes;
+      this.stamp = null;
+    }
+
+    private Document withoutStamp() {
+      return new Document(this);
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean hasAttribute(String attribute) {
+      return attributes.containsKey(attribute);
+    }
+
+    public String getAttribute(String attribute) {
+      return attributes.get(attribute);
+    }
+
+    public Set<String> getAttributeNames() {
+      return attributes.keySet();
+    }
+
+    public PageType getPageType() {
+      if (hasAttribute("Suite"))
+        return PageType.SUITE;
+      if (hasAttribute(PageType.TEST.toString()))
+        return PageType.TEST;
+      return PageType.NORMAL;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import util.DiskFileSystem;
+import util.FileUtil;
+import fitnesse.ComponentFactory;
+
+public class PageSearchIndexTest {
+  private int refreshInterval;
+  private int validationInterval;
+  private int cacheTime;
+  private WikiPage root;
+  private PageCrawler crawler;
+  private PageSearchIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    refreshInterval = PageSearchIndex.refreshInterval;
+    validationInterval = PageDataCache.validationInterval;
+    PageSearchIndex.refreshInterval = 60000;
+    PageDataCache.validationInterval = 0;
+    cacheTime = CachingPage.cacheTime;
+    CachingPage.cacheTime = 0;
+    root = InMemoryPage.makeRoot("RooT");
+    crawler = root.getPageCrawler();
+    crawler.addPage(root, PathParser.parse("PageOne"), "Some words about Apples, pears.");
+    crawler.addPage(root, PathParser.parse("PageOne.ChildOne"), "a table |of|Contents|");
+    crawler.addPage(root, PathParser.parse("PageTwo"), "other words entirely");
+    index = PageSearchIndex.forPage(root);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    PageSearchIndex.refreshInterval = refreshInterval;
+    PageDataCache.validationInterval = validationInterval;
+    CachingPage.cacheTime = cacheTime;
+    FileUtil.deleteFileSystemDirectory("testDir");
+  }
+
+  @Test
+  public void thereIsOneIndexPerWiki() throws Exception {
+    assertSame(index, PageSearchIndex.forPage(crawler.getPage(root, PathParser.parse("PageOne.ChildOne"))));
+    assertNotSame(index, PageSearchIndex.forPage(InMemoryPage.makeRoot("RooT")));
+  }
+
+  @Test
+  public void indexIsBuiltByTheFirstQuery() throws Exception {
+    assertFalse(index.isBuilt());
+    assertEquals(paths("", "PageOne", "PageOne.ChildOne", "PageTwo"), pathsOf(index.getDocuments("")));
+    assertTrue(index.isBuilt());
+    assertEquals(4, index.size());
+  }
+
+  @Test
+  public void literalTextIsLookedUpByItsWords() throws Exception {
+    assertEquals(paths("PageOne", "PageTwo"), pathsOf(index.findLiteral("words", "")));
+    assertEquals(paths("PageOne"), pathsOf(index.findLiteral("about APPLES", "")));
+    assertEquals(paths(), pathsOf(index.findLiteral("bananas", "")));
+  }
+
+  @Test
+  public void wordsAtTheEndsOfLiteralTextMayBeCutOff() throws Exception {
+    assertEquals(paths("PageOne"), pathsOf(index.findLiteral("ords ab", "")));
+    assertEquals(paths("PageOne.ChildOne"), pathsOf(index.findLiteral("ntent", "")));
+    assertEquals(paths(), pathsOf(index.findLiteral("w ords", "")));
+  }
+
+  @Test
+  public void literalTextWithoutWordsMatchesEveryPage() throws Exception {
+    assertEquals(4, index.findLiteral("|", "").size());
+  }
+
+  @Test
+  public void queriesCanBeLimitedToPartOfTheWiki() throws Exception {
+    assertEquals(paths("PageOne", "PageOne.ChildOne"), pathsOf(index.getDocuments("PageOne")));
+    assertEquals(paths(), pathsOf(index.findLiteral("words", "PageOne.ChildOne")));
+  }
+
+  @Test
+  public void patternsAreLookedUpByTheWordsTheyNeed() throws Exception {
+    assertEquals(paths("PageOne"), pathsOf(index.findPattern(Pattern.compile("Apple[sz], pe+ars"), "")));
+    assertEquals(paths("PageOne"), pathsOf(index.findPattern(Pattern.compile("about\\s+apples", Pattern.CASE_INSENSITIVE), "")));
+    assertEquals(paths("PageOne", "PageTwo"), pathsOf(index.findPattern(Pattern.compile("wordsX?"), "")));
+    assertEquals(paths("PageOne.ChildOne"), pathsOf(index.findPattern(Pattern.compile("|of|", Pattern.LITERAL), "")));
+  }
+
+  @Test
+  public void involvedPatternsMatchEveryPage() throws Exception {
+    assertEquals(4, index.findPattern(Pattern.compile("apples|bananas"), "").size());
+    assertEquals(4, index.findPattern(Pattern.compile("(apples)"), "").size());
+    assertEquals(4, index.findPattern(Pattern.compile("\\x41pples"), "").size());
+  }
+
+  @Test
+  public void commitsAreIndexed() throws Exception {
+    index.getDocuments("");
+    WikiPage pageTwo = crawler.getPage(root, PathParser.parse("PageTwo"));
+    PageData data = pageTwo.getData();
+    data.setContent("bananas");
+    data.setAttribute("Suites", "fruit");
+    pageTwo.commit(data);
+
+    assertEquals(paths("PageTwo"), pathsOf(index.findLiteral("bananas", "")));
+    assertEquals(paths("PageOne"), pathsOf(index.findLiteral("words", "")));
+    assertEquals("fruit", index.getDocuments("PageTwo").get(0).getAttribute("Suites"));
+  }
+
+  @Test
+  public void addedAndRemovedPagesAreIndexed() throws Exception {
+    index.getDocuments("");
+    crawler.addPage(root, PathParser.parse("PageTwo.TestChild"));
+    List<PageSearchIndex.Document> documents = index.getDocuments("PageTwo.TestChild");
+    assertEquals(1, documents.size());
+    assertEquals("TestChild", documents.get(0).getName());
+    assertEquals(PageType.TEST, documents.get(0).getPageType());
+
+    root.removeChildPage("PageOne");
+    assertEquals(paths("", "PageTwo", "PageTwo.TestChild"), pathsOf(index.getDocuments("")));
+    assertEquals(paths("PageTwo"), pathsOf(index.findLiteral("words", "")));
+  }
+
+  @Test
+  public void documentsLeadBackToTheirPages() throws Exception {
+    for (PageSearchIndex.Document document : index.getDocuments(""))
+      assertEquals(document.getPath(), PageSearchIndex.pathOf(index.getPage(document)));
+  }
+
+  @Test
+  public void refreshPicksUpFilesChangedOnDisk() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(ComponentFactory.PAGE_TREE_INDEX_RESCAN_INTERVAL, "0");
+    FileSystemPage fileSystemRoot = new FileSystemPage("testDir", "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+    fileSystemRoot.getPageCrawler().addPage(fileSystemRoot, PathParser.parse("PageOne"), "old content");
+    PageSearchIndex fileSystemIndex = PageSearchIndex.forPage(fileSystemRoot);
+    assertEquals(paths("PageOne"), pathsOf(fileSystemIndex.findLiteral("old", "")));
+
+    FileUtil.createFile("testDir/RooT/PageOne/content.txt", "new content");
+    FileUtil.createFile("testDir/RooT/PageTwo/content.txt", "new page");
+    fileSystemIndex.refresh();
+
+    assertEquals(paths("PageOne", "PageTwo"), pathsOf(fileSystemIndex.findLiteral("new", "")));
+    assertEquals(paths(), pathsOf(fileSystemIndex.findLiteral("old", "")));
+  }
+
+  @Test
+  public void staleIndexCanBeRefreshedBeforeAQuery() throws Exception {
+    FileSystemPage fileSystemRoot = new FileSystemPage("testDir", "RooT");
+    fileSystemRoot.getPageCrawler().addPage(fileSystemRoot, PathParser.parse("PageOne"), "old content");
+    PageSearchIndex fileSystemIndex = new PageSearchIndex(fileSystemRoot);
+    fileSystemIndex.refreshIfStale();
+    assertEquals(paths("PageOne"), pathsOf(fileSystemIndex.findLiteral("old", "")));
+
+    FileUtil.createFile("testDir/RooT/PageOne/content.txt", "new content");
+    fileSystemIndex.refreshIfStale();
+    assertEquals(paths(), pathsOf(fileSystemIndex.findLiteral("new", "")));
+
+    PageSearchIndex.refreshInterval = 0;
+    fileSystemIndex.refreshIfStale();
+    assertEquals(paths("PageOne"), pathsOf(fileSystemIndex.findLiteral("new", "")));
+  }
+
+  @Test
+  public void referencesAreLookedUpByPageName() throws Exception {
+    crawler.addPage(root, PathParser.parse("PageThree"), "see .PageOne.ChildOne and [[two][PageTwo]]");
+    assertEquals(paths("PageThree"), pathsOf(index.findReferences("ChildOne", "")));
+    assertEquals(paths("PageThree"), pathsOf(index.findReferences("PageTwo", "")));
+    assertEquals(paths(), pathsOf(index.findReferences("PageFour", "")));
+  }
+
+  @Test
+  public void indexIsKeptInItsFile() throws Exception {
+    File indexFile = new File("testDir/searchIndex");
+    FileSystemPage fileSystemRoot = new FileSystemPage("testDir", "RooT");
+    fileSystemRoot.getPageCrawler().addPage(fileSystemRoot, PathParser.parse("PageOne"), "old content");
+    long aged = System.currentTimeMillis() - 10000;
+    ageFiles(aged, "testDir/RooT", "testDir/RooT/PageOne");
+    PageSearchIndex saved = new PageSearchIndex(fileSystemRoot);
+    saved.setFile(indexFile);
+    saved.refresh();
+    assertTrue(indexFile.exists());
+
+    FileUtil.createFile("testDir/RooT/PageOne/content.txt", "new content");
+    ageFiles(aged, "testDir/RooT", "testDir/RooT/PageOne");
+    PageSearchIndex loaded = new PageSearchIndex(fileSystemRoot);
+    loaded.setFile(indexFile);
+
+    assertEquals(paths("PageOne"), pathsOf(loaded.findLiteral("old", "")));
+    assertEquals(paths(), pathsOf(loaded.findLiteral("new", "")));
+  }
+
+  private void ageFiles(long aged, String... directories) {
+    for (String directory : directories) {
+      for (File file : new File(directory).listFiles())
+        file.setLastModified(aged);
+      new File(directory).setLastModified(aged);
+    }
+  }
+
+  private List<String> paths(String... paths) {
+    List<String> list = new ArrayList<String>();
+    for (String path : paths)
+      list.add(path);
+    return list;
+  }
+
+  private List<String> pathsOf(List<PageSearchIndex.Document> documents) {
+    List<String> paths = new ArrayList<String>();
+    for (PageSearchIndex.Document document : documents)
+      paths.add(document.getPath());
+    return paths;
+  }
+}
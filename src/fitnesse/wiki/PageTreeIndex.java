@@ -0,0 +1,251 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import fitnesse.wikitext.widgets.WikiWordWidget;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Remembers which child pages the directories of a file system wiki hold, so
+ * that FileSystemPage does not list and stat a directory every time its
+ * children are asked for.  A directory is listed the first time it is asked
+ * about, or ahead of time by build(), and listed again once its listing is
+ * older than the rescan interval.  FileSystemPage reports the pages it adds
+ * and removes, so those are seen at once; pages added or removed by other
+ * programs are seen within the rescan interval.
+ * <p/>
+ * An index can be saved to a file and loaded at the next start instead of
+ * being built again.  Each listing is saved with the modification time its
+ * directory had when it was listed, and a loaded listing is only used while
+ * its directory still has that modification time, so pages added or removed
+ * while FitNesse was down are not missed.  Directories that had changed too
+ * recently to tell are listed again.
+ */
+public class PageTreeIndex {
+  public static final int DEFAULT_RESCAN_INTERVAL = 10000;
+
+  private static final long UNKNOWN = -1;
+
+  private final Map<String, Listing> listings = new ConcurrentHashMap<String, Listing>();
+  private final int rescanInterval;
+  private long changes = 0;
+
+  public PageTreeIndex() {
+    this(DEFAULT_RESCAN_INTERVAL);
+  }
+
+  public PageTreeIndex(int rescanInterval) {
+    this.rescanInterval = rescanInterval;
+  }
+
+  public Set<String> getChildNames(String directory) {
+    return getListing(directory).names;
+  }
+
+  public boolean hasChild(String directory, String name) {
+    return getListing(directory).names.contains(name);
+  }
+
+  public synchronized void childAdded(String directory, String name) {
+    changes++;
+    Listing listing = listings.get(directory);
+    if (listing != null && !listing.names.contains(name))
+      listings.put(directory, listing.with(name));
+    listings.put(childPath(directory, name), new Listing(new TreeSet<String>(), System.currentTimeMillis(), UNKNOWN, false));
+  }
+
+  public synchronized void childRemoved(String directory, String name) {
+    changes++;
+    Listing listing = listings.get(directory);
+    if (listing != null && listing.names.contains(name))
+      listings.put(directory, listing.without(name));
+    String childPath = childPath(directory, name);
+    String descendantPrefix = childPath + "/";
+    for (String path : new ArrayList<String>(listings.keySet())) {
+      if (path.equals(childPath) || path.startsWith(descendantPrefix))
+        listings.remove(path);
+    }
+  }
+
+  /**
+   * Lists the directory and every page directory below it, using the given
+   * number of threads.
+   */
+  public void build(String directory, int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      List<String> level = Collections.singletonList(directory);
+      while (!level.isEmpty())
+        level = scanLevel(executor, level);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private List<String> scanLevel(ExecutorService executor, List<String> directories) throws Exception {
+    List<Future<Listing>> scans = new ArrayList<Future<Listing>>();
+    for (final String directory : directories) {
+      scans.add(executor.submit(new Callable<Listing>() {
+        public Listing call() {
+          return scan(directory);
+        }
+      }));
+    }
+    List<String> nextLevel = new ArrayList<String>();
+    for (int i = 0; i < directories.size(); i++) {
+      String directory = directories.get(i);
+      for (String name : scans.get(i).get().names)
+        nextLevel.add(childPath(directory, name));
+    }
+    return nextLevel;
+  }
+
+  public void save(File file) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      for (Map.Entry<String, Listing> entry : listings.entrySet()) {
+        writer.write(entry.getKey());
+        writer.append('\t').write(Long.toString(entry.getValue().modified));
+        for (String name : entry.getValue().names)
+          writer.append('\t').write(name);
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  public void load(File file) throws IOException {
+    long now = System.currentTimeMillis();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t");
+        if (fields.length < 2)
+          continue;
+        long modified;
+        try {
+          modified = Long.parseLong(fields[1]);
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        Set<String> names = new TreeSet<String>();
+        for (int i = 2; i < fields.length; i++)
+          names.add(fields[i]);
+        listings.put(fields[0], new Listing(names, now, modified, true));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  public int size() {
+    return listings.size();
+  }
+
+  public synchronized void clear() {
+    changes++;
+    listings.clear();
+  }
+
+  private Listing getListing(String directory) {
+    Listing listing = listings.get(directory);
+    if (listing == null || System.currentTimeMillis() - listing.scanned >= rescanInterval)
+      listing = scan(directory);
+    else if (listing.loaded)
+      listing = verify(directory, listing);
+    return listing;
+  }
+
+  private Listing verify(String directory, Listing loaded) {
+    if (loaded.modified == UNKNOWN || new File(directory).lastModified() != loaded.modified)
+      return scan(directory);
+    Listing listing = new Listing(loaded.names, loaded.scanned, loaded.modified, false);
+    synchronized (this) {
+      if (listings.get(directory) == loaded)
+        listings.put(directory, listing);
+    }
+    return listing;
+  }
+
+  private Listing scan(String directory) {
+    long changesBefore;
+    synchronized (this) {
+      changesBefore = changes;
+    }
+    File file = new File(directory);
+    long modified = file.lastModified();
+    long scanned = System.currentTimeMillis();
+    if (modified > scanned - FileSystemPage.TIMESTAMP_RESOLUTION)
+      modified = UNKNOWN;
+    Listing listing = new Listing(listChildPages(file), scanned, modified, false);
+    synchronized (this) {
+      if (changes == changesBefore)
+        listings.put(directory, listing);
+    }
+    return listing;
+  }
+
+  static Set<String> listChildPages(File directory) {
+    Set<String> names = new TreeSet<String>();
+    String[] files = directory.list();
+    if (files != null) {
+      for (String file : files) {
+        if (WikiWordWidget.isWikiWord(file) && new File(directory, file).isDirectory())
+          names.add(file);
+      }
+    }
+    return names;
+  }
+
+  private static String childPath(String directory, String name) {
+    return directory + "/" + name;
+  }
+
+  private static class Listing {
+    final Set<String> names;
+    final long scanned;
+    final long modified;
+    final boolean loaded;
+
+    Listing(Set<String> names, long scanned, long modified, boolean loaded) {
+      this.names = Collections.unmodifiableSet(names);
+      this.scanned = scanned;
+      this.modified = modified;
+      this.loaded = loaded;
+    }
+
+    Listing with(String name) {
+      Set<String> newNames = new TreeSet<String>(names);
+      newNames.add(name);
+      return new Listing(newNames, scanned, UNKNOWN, false);
+    }
+
+    Listing without(String name) {
+      Set<String> newNames = new TreeSet<String>(names);
+      newNames.remove(name);
+      return new Listing(newNames, scanned, UNKNOWN, false);
+    }
+  }
+}
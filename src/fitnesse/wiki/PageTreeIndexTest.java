@@ -0,0 +1,112 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import util.FileUtil;
+
+public class PageTreeIndexTest {
+  private static final String base = "./teststorage";
+  private static final String rootPath = base + "/RooT";
+  private PageTreeIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    FileUtil.deleteFileSystemDirectory(base);
+    makeDirectory("");
+    makeDirectory("/PageOne");
+    makeDirectory("/PageOne/ChildOne");
+    makeDirectory("/PageTwo");
+    makeDirectory("/files");
+    FileUtil.createFile(rootPath + "/PageThree", "not a directory");
+    index = new PageTreeIndex(60000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtil.deleteFileSystemDirectory(base);
+  }
+
+  private void makeDirectory(String path) {
+    new File(rootPath + path).mkdirs();
+  }
+
+  @Test
+  public void listsWikiWordDirectoriesOnly() throws Exception {
+    assertEquals("[PageOne, PageTwo]", index.getChildNames(rootPath).toString());
+    assertTrue(index.hasChild(rootPath, "PageOne"));
+    assertFalse(index.hasChild(rootPath, "PageThree"));
+    assertFalse(index.hasChild(rootPath, "files"));
+  }
+
+  @Test
+  public void listingIsReusedUntilRescanInterval() throws Exception {
+    index.getChildNames(rootPath);
+    makeDirectory("/PageFour");
+    assertFalse(index.hasChild(rootPath, "PageFour"));
+
+    PageTreeIndex alwaysRescanning = new PageTreeIndex(0);
+    alwaysRescanning.getChildNames(rootPath);
+    assertTrue(alwaysRescanning.hasChild(rootPath, "PageFour"));
+  }
+
+  @Test
+  public void addedAndRemovedChildrenAreSeenAtOnce() throws Exception {
+    index.getChildNames(rootPath + "/PageOne");
+    makeDirectory("/PageFour");
+    index.childAdded(rootPath, "PageFour");
+    assertTrue(index.hasChild(rootPath, "PageFour"));
+    assertTrue(index.getChildNames(rootPath + "/PageFour").isEmpty());
+
+    index.childRemoved(rootPath, "PageOne");
+    assertFalse(index.hasChild(rootPath, "PageOne"));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  public void buildListsTheWholeTree() throws Exception {
+    index.build(rootPath, 3);
+    assertEquals(4, index.size());
+    assertEquals("[ChildOne]", index.getChildNames(rootPath + "/PageOne").toString());
+  }
+
+  @Test
+  public void savedIndexCanBeLoaded() throws Exception {
+    index.build(rootPath, 1);
+    File file = new File(base + "/pageTree.idx");
+    index.save(file);
+
+    PageTreeIndex loaded = new PageTreeIndex(60000);
+    loaded.load(file);
+    assertEquals(4, loaded.size());
+    assertEquals("[PageOne, PageTwo]", loaded.getChildNames(rootPath).toString());
+    assertTrue(loaded.getChildNames(rootPath + "/PageTwo").isEmpty());
+  }
+
+  @Test
+  public void loadedListingIsUsedWhileItsDirectoryIsUnchanged() throws Exception {
+    long aged = System.currentTimeMillis() - 10000;
+    new File(rootPath).setLastModified(aged);
+    index.build(rootPath, 1);
+    File file = new File(base + "/pageTree.idx");
+    index.save(file);
+
+    makeDirectory("/PageFour");
+    new File(rootPath).setLastModified(aged);
+    PageTreeIndex loaded = new PageTreeIndex(60000);
+    loaded.load(file);
+    assertFalse(loaded.hasChild(rootPath, "PageFour"));
+
+    new File(rootPath).setLastModified(aged + 1000);
+    PageTreeIndex reloaded = new PageTreeIndex(60000);
+    reloaded.load(file);
+    assertTrue(reloaded.hasChild(rootPath, "PageFour"));
+  }
+}
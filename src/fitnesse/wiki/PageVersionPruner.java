@@ -5,34 +5,41 @@ package fitnesse.wiki;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.Iterator;
 import java.util.List;
 
 public class PageVersionPruner {
   public static int daysTillVersionsExpire = 14;
 
   public static void pruneVersions(FileSystemPage page, Collection<VersionInfo> versions) throws Exception {
-    List<VersionInfo> versionsList = makeSortedVersionList(versions);
-    if (versions.size() > 0) {
-      VersionInfo lastVersion = versionsList.get(versionsList.size() - 1);
+    for (VersionInfo version : findExpiredVersions(versions))
+      page.removeVersion(version.getName());
+  }
+
+  public static List<VersionInfo> findExpiredVersions(Collection<VersionInfo> versions) {
+    List<VersionInfo> expired = new ArrayList<VersionInfo>();
+    VersionInfo lastVersion = findLastVersion(versions);
+    if (lastVersion != null) {
       GregorianCalendar expirationDate = makeVersionExpirationDate(lastVersion);
-      for (Iterator<VersionInfo> iterator = versionsList.iterator(); iterator.hasNext();) {
-        VersionInfo version = iterator.next();
-        removeVersionIfExpired(page, version, expirationDate);
+      for (VersionInfo version : versions) {
+        if (isExpired(version, expirationDate))
+          expired.add(version);
       }
     }
+    return expired;
   }
 
-  private static List<VersionInfo> makeSortedVersionList(Collection<VersionInfo> versions) throws Exception {
-    List<VersionInfo> versionsList = new ArrayList<VersionInfo>(versions);
-    Collections.sort(versionsList);
-    return versionsList;
+  private static VersionInfo findLastVersion(Collection<VersionInfo> versions) {
+    VersionInfo lastVersion = null;
+    for (VersionInfo version : versions) {
+      if (lastVersion == null || version.compareTo(lastVersion) >= 0)
+        lastVersion = version;
+    }
+    return lastVersion;
   }
 
-  private static GregorianCalendar makeVersionExpirationDate(VersionInfo lastVersion) throws Exception {
+  private static GregorianCalendar makeVersionExpirationDate(VersionInfo lastVersion) {
     Date dateOfLastVersion = lastVersion.getCreationTime();
     GregorianCalendar expirationDate = new GregorianCalendar();
     expirationDate.setTime(dateOfLastVersion);
@@ -40,10 +47,9 @@ public class PageVersionPruner {
     return expirationDate;
   }
 
-  private static void removeVersionIfExpired(FileSystemPage page, VersionInfo version, GregorianCalendar expirationDate) throws Exception {
+  private static boolean isExpired(VersionInfo version, GregorianCalendar expirationDate) {
     Calendar thisDate = new GregorianCalendar();
     thisDate.setTime(version.getCreationTime());
-    if (thisDate.before(expirationDate) || thisDate.equals(expirationDate))
-      page.removeVersion(version.getName());
+    return thisDate.before(expirationDate) || thisDate.equals(expirationDate);
   }
 }
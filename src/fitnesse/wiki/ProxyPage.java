@@ -150,6 +150,12 @@ public class ProxyPage extends CachingPage implements Serializable {
     }
   }
 
+  @Override
+  public PageData getData() throws Exception {
+    RenderedHtmlCache.uncacheable();
+    return super.getData();
+  }
+
   protected PageData makePageData() throws Exception {
     return getMeat();
   }
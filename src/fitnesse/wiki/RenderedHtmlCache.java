@@ -0,0 +1,280 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Remembers the HTML rendered for the pages of one wiki.  While a page is
+ * rendered every page it reads (included pages, ancestors that supply
+ * variables, children listed by a table of contents) and every child it looks
+ * up (WikiWords) is recorded, so that a cached rendering can be thrown away as
+ * soon as any of them is committed, added or removed.  Pages can also change
+ * on disk, outside FitNesse; so at most once every
+ * PageDataCache.validationInterval the pages a cached rendering read are read
+ * again before it is used, which lets CachingPage notice such changes and
+ * report them here.  Renderings that depend on the clock, the environment or
+ * another wiki are never cached.
+ * <p/>
+ * There is one cache per root page; see forPage().
+ */
+public class RenderedHtmlCache {
+  public static int maximumEntries = 1000;
+
+  private static final ThreadLocal<Render> currentRender = new ThreadLocal<Render>();
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+  private long generation;
+  private long hits;
+  private long misses;
+  private long invalidations;
+  private long evictions;
+
+  public static RenderedHtmlCache forPage(WikiPage page) throws Exception {
+    if (page == null)
+      return null;
+    WikiPage root = page.getPageCrawler().getRoot(page);
+    if (root instanceof BaseWikiPage)
+      return ((BaseWikiPage) root).getRenderedHtmlCache();
+    return null;
+  }
+
+  public String getHtml(WikiPage page, String content, Callable<String> renderer) throws Exception {
+    String key = keyFor(page);
+    Render outer = currentRender.get();
+    Entry entry = lookup(key, content);
+    if (entry != null && System.currentTimeMillis() - entry.validated >= PageDataCache.validationInterval) {
+      revalidate(page, entry);
+      entry = lookup(key, content);
+    }
+    if (entry != null) {
+      if (outer != null)
+        outer.include(this, entry.dependencies, true);
+      return entry.html;
+    }
+
+    Render render = new Render(this, startGeneration());
+    render.dependencies.add(pathOf(page));
+    currentRender.set(render);
+    String html;
+    try {
+      html = renderer.call();
+    }
+    finally {
+      currentRender.set(outer);
+    }
+    if (outer != null)
+      outer.include(render);
+    if (render.cacheable)
+      store(render, key, content, html);
+    return html;
+  }
+
+  private void revalidate(WikiPage page, Entry entry) throws Exception {
+    entry.validated = System.currentTimeMillis();
+    WikiPage root = page.getPageCrawler().getRoot(page);
+    for (String dependency : entry.dependencies) {
+      WikiPagePath path = PathParser.parse(dependency);
+      WikiPage dependencyPage = path == null ? null : root.getPageCrawler().getPage(root, path);
+      if (dependencyPage instanceof CachingPage)
+        dependencyPage.getData();
+    }
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    generation++;
+    entries.clear();
+    dependents.clear();
+  }
+
+  public static void pageRead(WikiPage page) throws Exception {
+    Render render = currentRender.get();
+    if (render != null)
+      render.dependsOn(page, null);
+  }
+
+  public static void childLookedUp(WikiPage parent, String childName) throws Exception {
+    Render render = currentRender.get();
+    if (render != null)
+      render.dependsOn(parent, childName);
+  }
+
+  public static void uncacheable() {
+    Render render = currentRender.get();
+    if (render != null)
+      render.cacheable = false;
+  }
+
+  public static void pageChanged(WikiPage page) throws Exception {
+    RenderedHtmlCache cache = forPage(page);
+    if (cache != null)
+      cache.invalidate(pathOf(page));
+  }
+
+  public static void childrenChanged(WikiPage parent, String childName) throws Exception {
+    RenderedHtmlCache cache = forPage(parent);
+    if (cache != null) {
+      String parentPath = pathOf(parent);
+      cache.invalidate(parentPath);
+      cache.invalidate(childPath(parentPath, childName));
+    }
+  }
+
+  private synchronized Entry lookup(String key, String content) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.content.equals(content)) {
+      hits++;
+      return entry;
+    }
+    misses++;
+    return null;
+  }
+
+  private synchronized long startGeneration() {
+    return generation;
+  }
+
+  private synchronized void store(Render render, String key, String content, String html) {
+    if (render.generation != generation)
+      return;
+    remove(key);
+    entries.put(key, new Entry(content, html, render.dependencies));
+    for (String dependency : render.dependencies) {
+      Set<String> keys = dependents.get(dependency);
+      if (keys == null) {
+        keys = new HashSet<String>();
+        dependents.put(dependency, keys);
+      }
+      keys.add(key);
+    }
+    evictLeastRecentlyUsed();
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (entries.size() > maximumEntries && eldest.hasNext()) {
+      Map.Entry<String, Entry> entry = eldest.next();
+      eldest.remove();
+      forgetDependencies(entry.getKey(), entry.getValue());
+      evictions++;
+    }
+  }
+
+  private synchronized void invalidate(String path) {
+    generation++;
+    Set<String> keys = dependents.remove(path);
+    if (keys == null)
+      return;
+    for (String key : keys) {
+      if (remove(key))
+        invalidations++;
+    }
+  }
+
+  private boolean remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry == null)
+      return false;
+    forgetDependencies(key, entry);
+    return true;
+  }
+
+  private void forgetDependencies(String key, Entry entry) {
+    for (String dependency : entry.dependencies) {
+      Set<String> keys = dependents.get(dependency);
+      if (keys != null && keys.remove(key) && keys.isEmpty())
+        dependents.remove(dependency);
+    }
+  }
+
+  static String keyFor(WikiPage page) throws Exception {
+    String key = pathOf(page);
+    WikiPage parentForVariables = page.getParentForVariables();
+    if (parentForVariables != page.getParent())
+      key += "<" + pathOf(parentForVariables);
+    return key;
+  }
+
+  static String pathOf(WikiPage page) throws Exception {
+    return PathParser.render(page.getPageCrawler().getFullPath(page));
+  }
+
+  private static String childPath(String parentPath, String childName) {
+    return parentPath.length() == 0 ? childName : parentPath + PathParser.PATH_SEPARATOR + childName;
+  }
+
+  private static class Entry {
+    final String content;
+    final String html;
+    final Set<String> dependencies;
+    volatile long validated;
+
+    Entry(String content, String html, Set<String> dependencies) {
+      this.content = content;
+      this.html = html;
+      this.dependencies = dependencies;
+      validated = System.currentTimeMillis();
+    }
+  }
+
+  private static class Render {
+    final RenderedHtmlCache cache;
+    final long generation;
+    final Set<String> dependencies = new HashSet<String>();
+    boolean cacheable = true;
+
+    Render(RenderedHtmlCache cache, long generation) {
+      this.cache = cache;
+      this.generation = generation;
+    }
+
+    void include(Render inner) {
+      include(inner.cache, inner.dependencies, inner.cacheable);
+    }
+
+    void include(RenderedHtmlCache innerCache, Set<String> innerDependencies, boolean innerCacheable) {
+      if (innerCache != cache || !innerCacheable)
+        cacheable = false;
+      else
+        dependencies.addAll(innerDependencies);
+    }
+
+    void dependsOn(WikiPage page, String childName) throws Exception {
+      if (!cacheable)
+        return;
+      if (forPage(page) != cache) {
+        cacheable = false;
+        return;
+      }
+      String path = pathOf(page);
+      dependencies.add(childName == null ? path : childPath(path, childName));
+    }
+  }
+}
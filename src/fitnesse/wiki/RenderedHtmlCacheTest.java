@@ -0,0 +1,139 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki;
+
+import util.RegexTestCase;
+
+public class RenderedHtmlCacheTest extends RegexTestCase {
+  private WikiPage root;
+  private PageCrawler crawler;
+  private RenderedHtmlCache cache;
+  private int maximumEntries;
+
+  public void setUp() throws Exception {
+    root = InMemoryPage.makeRoot("RooT");
+    crawler = root.getPageCrawler();
+    cache = RenderedHtmlCache.forPage(root);
+    maximumEntries = RenderedHtmlCache.maximumEntries;
+  }
+
+  public void tearDown() throws Exception {
+    RenderedHtmlCache.maximumEntries = maximumEntries;
+  }
+
+  public void testEachWikiHasItsOwnCache() throws Exception {
+    WikiPage page = addPage("SomePage", "content");
+    assertSame(cache, RenderedHtmlCache.forPage(page));
+    assertNotSame(cache, RenderedHtmlCache.forPage(InMemoryPage.makeRoot("RooT")));
+  }
+
+  public void testSecondRenderIsAHit() throws Exception {
+    WikiPage page = addPage("SomePage", "'''bold'''");
+    String html = render(page);
+    assertEquals(html, render(page));
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+  }
+
+  public void testChangedContentIsRenderedAgainEvenWithoutCommit() throws Exception {
+    WikiPage page = addPage("SomePage", "''one''");
+    render(page);
+    PageData data = page.getData();
+    data.setContent("''two''");
+    assertSubString("two", data.getHtml());
+    assertEquals(0, cache.getHits());
+  }
+
+  public void testCommittingAnIncludedPageInvalidates() throws Exception {
+    WikiPage included = addPage("IncludedPage", "first");
+    WikiPage page = addPage("SomePage", "!include -seamless IncludedPage");
+    assertSubString("first", render(page));
+
+    setContent(included, "second");
+    assertSubString("second", render(page));
+    assertEquals(1, cache.getInvalidations());
+  }
+
+  public void testCommittingAnAncestorDefiningAVariableInvalidates() throws Exception {
+    WikiPage parent = addPage("ParentPage", "!define X {one}");
+    WikiPage page = addPage("ParentPage.ChildPage", "${X}");
+    assertSubString("one", render(page));
+
+    setContent(parent, "!define X {two}");
+    assertSubString("two", render(page));
+  }
+
+  public void testAddingAPageTurnsAWikiWordIntoALink() throws Exception {
+    WikiPage page = addPage("SomePage", "NewPage");
+    assertSubString("[?]", render(page));
+
+    addPage("NewPage", "");
+    assertNotSubString("[?]", render(page));
+  }
+
+  public void testRemovingAChildChangesTheContentsList() throws Exception {
+    WikiPage page = addPage("SomePage", "!contents");
+    addPage("SomePage.ChildOne", "");
+    addPage("SomePage.ChildTwo", "");
+    assertSubString("ChildTwo", render(page));
+
+    page.removeChildPage("ChildTwo");
+    assertNotSubString("ChildTwo", render(page));
+  }
+
+  public void testUnrelatedCommitsKeepTheEntry() throws Exception {
+    WikiPage page = addPage("SomePage", "!include -seamless IncludedPage");
+    addPage("IncludedPage", "included");
+    WikiPage other = addPage("OtherPage", "other");
+    render(page);
+
+    setContent(other, "changed");
+    render(page);
+    assertEquals(1, cache.getHits());
+  }
+
+  public void testTodayIsNeverCached() throws Exception {
+    WikiPage page = addPage("SomePage", "!today");
+    render(page);
+    render(page);
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.size());
+  }
+
+  public void testIncludingAVolatilePageIsNeverCached() throws Exception {
+    addPage("IncludedPage", "!lastmodified");
+    WikiPage page = addPage("SomePage", "!include -seamless IncludedPage");
+    render(page);
+    assertEquals(0, cache.size());
+  }
+
+  public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+    RenderedHtmlCache.maximumEntries = 2;
+    WikiPage one = addPage("PageOne", "one");
+    WikiPage two = addPage("PageTwo", "two");
+    WikiPage three = addPage("PageThree", "three");
+    render(one);
+    render(two);
+    render(one);
+    render(three);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    render(one);
+    assertEquals(2, cache.getHits());
+  }
+
+  private WikiPage addPage(String path, String content) throws Exception {
+    return crawler.addPage(root, PathParser.parse(path), content);
+  }
+
+  private void setContent(WikiPage page, String content) throws Exception {
+    PageData data = page.getData();
+    data.setContent(content);
+    page.commit(data);
+  }
+
+  private String render(WikiPage page) throws Exception {
+    return page.getData().getHtml();
+  }
+}
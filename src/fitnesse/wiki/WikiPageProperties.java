@@ -28,6 +28,7 @@ public class WikiPageProperties extends WikiPageProperty implements Serializable
 
   public static final String VIRTUAL_WIKI_ATTRIBUTE = "VirtualWiki";
   private Map<?, ?> symbolicLinks;
+  private transient boolean sharesChildren = false;
 
   public WikiPageProperties() throws Exception {
     symbolicLinks = new HashMap<Object, Object>();
@@ -43,12 +44,28 @@ public class WikiPageProperties extends WikiPageProperty implements Serializable
     loadFromRootElement(rootElement);
   }
 
+  /**
+   * A copy that shares the properties of the original until either of them
+   * is changed.  Only the top level is copied; nested properties are shared,
+   * as they always were.
+   */
   public WikiPageProperties(WikiPageProperties that) throws Exception {
-    if (that != null && that.children != null)
-      children = new HashMap<String, WikiPageProperty>(that.children);
+    if (that != null && that.children != null) {
+      children = that.children;
+      sharesChildren = true;
+      that.sharesChildren = true;
+    }
     symbolicLinks = new HashMap<Object, Object>(that.symbolicLinks);
   }
 
+  @Override
+  protected void childrenWillChange() {
+    if (sharesChildren) {
+      children = new HashMap<String, WikiPageProperty>(children);
+      sharesChildren = false;
+    }
+  }
+
   public void loadFromXmlStream(InputStream inputStream) throws Exception {
     Document document = XmlUtil.newDocument(inputStream);
     Element root = document.getDocumentElement();
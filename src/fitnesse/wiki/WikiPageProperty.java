@@ -33,6 +33,7 @@ public class WikiPageProperty implements Serializable {
   }
 
   public void set(String name, WikiPageProperty child) {
+    childrenWillChange();
     if (children == null)
       children = new HashMap<String, WikiPageProperty>();
     children.put(name, child);
@@ -49,6 +50,7 @@ public class WikiPageProperty implements Serializable {
   }
 
   public void remove(String name) {
+    childrenWillChange();
     children.remove(name);
   }
 
@@ -95,6 +97,9 @@ public class WikiPageProperty implements Serializable {
     return buffer.toString();
   }
 
+  protected void childrenWillChange() {
+  }
+
   public boolean hasChildren() {
     return children != null && children.size() > 0;
   }
@@ -0,0 +1,280 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores blobs of bytes under the SHA-1 hash of their contents, so that a
+ * blob that is stored twice takes up space once.  Blobs are compressed.  When
+ * delta encoding is on, a blob that shares most of its bytes with a given
+ * base blob (the previous version of the same file, typically) is stored as
+ * the bytes that differ from the base: everything between their common prefix
+ * and common suffix.  Delta chains are at most MAXIMUM_DELTA_CHAIN long.
+ * <p/>
+ * A blob lives in objects/ab/cdef..., where abcdef... is its hash.  Blobs are
+ * written to a temporary file first and renamed, so a reader never sees half
+ * a blob.
+ * <p/>
+ * Large blobs can be stored from a file, see put(File, String, String); they
+ * are hashed while the file is written and then streamed into the store.
+ * Only files of at most maximumDeltaSize bytes are read into memory to be
+ * delta encoded, and only against a base that takes up at most that much.
+ */
+public class BlobStore {
+  public static final int MAXIMUM_DELTA_CHAIN = 16;
+  public static int maximumDeltaSize = 1024 * 1024;
+
+  private static final int FULL = 'F';
+  private static final int DELTA = 'D';
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final File objects;
+  private final boolean deltaEncoding;
+
+  public BlobStore(File directory, boolean deltaEncoding) {
+    this.objects = new File(directory, "objects");
+    this.deltaEncoding = deltaEncoding;
+  }
+
+  public String put(byte[] bytes, String base) throws IOException {
+    String hash = hash(bytes);
+    if (contains(hash))
+      return hash;
+    File file = fileFor(hash);
+    File temporary = temporaryFileFor(file);
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+    try {
+      if (!writeDelta(output, bytes, base))
+        writeFull(output, bytes);
+    } finally {
+      output.close();
+    }
+    install(temporary, file, hash);
+    return hash;
+  }
+
+  /**
+   * Stores the contents of source, whose hash is given: the hex digest of a
+   * newDigest() that saw every byte of it, as a DigestOutputStream does while
+   * the file is written.  Source is left alone.
+   */
+  public String put(File source, String hash, String base) throws IOException {
+    if (contains(hash))
+      return hash;
+    if (source.length() <= maximumDeltaSize)
+      return put(readFile(source), base);
+    File file = fileFor(hash);
+    File temporary = temporaryFileFor(file);
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+    InputStream input = new FileInputStream(source);
+    try {
+      output.write(FULL);
+      DeflaterOutputStream deflater = new DeflaterOutputStream(output);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1)
+        deflater.write(buffer, 0, read);
+      deflater.finish();
+    } finally {
+      input.close();
+      output.close();
+    }
+    install(temporary, file, hash);
+    return hash;
+  }
+
+  private File temporaryFileFor(File file) {
+    file.getParentFile().mkdirs();
+    return new File(file.getParentFile(), file.getName() + ".tmp" + Thread.currentThread().getId());
+  }
+
+  private void install(File temporary, File file, String hash) throws IOException {
+    if (!temporary.renameTo(file) && !file.exists())
+      throw new IOException("Could not store blob " + hash);
+    temporary.delete();
+  }
+
+  public byte[] get(String hash) throws IOException {
+    DataInputStream input = open(hash);
+    try {
+      int type = input.read();
+      if (type == FULL)
+        return inflate(input);
+      if (type != DELTA)
+        throw new IOException("Blob " + hash + " is damaged");
+      input.readByte();
+      byte[] base = get(input.readUTF());
+      int prefix = input.readInt();
+      int suffix = input.readInt();
+      byte[] middle = inflate(input);
+      byte[] bytes = new byte[prefix + middle.length + suffix];
+      System.arraycopy(base, 0, bytes, 0, prefix);
+      System.arraycopy(middle, 0, bytes, prefix, middle.length);
+      System.arraycopy(base, base.length - suffix, bytes, prefix + middle.length, suffix);
+      return bytes;
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * The blob a delta encoded blob is based on, or null for a blob stored in
+   * full.
+   */
+  public String getBase(String hash) throws IOException {
+    DataInputStream input = open(hash);
+    try {
+      if (input.read() != DELTA)
+        return null;
+      input.readByte();
+      return input.readUTF();
+    } finally {
+      input.close();
+    }
+  }
+
+  public boolean contains(String hash) {
+    return fileFor(hash).exists();
+  }
+
+  public void remove(String hash) {
+    fileFor(hash).delete();
+  }
+
+  public Set<String> list() {
+    Set<String> hashes = new HashSet<String>();
+    File[] directories = objects.listFiles();
+    if (directories != null) {
+      for (File directory : directories) {
+        String[] names = directory.list();
+        if (names == null)
+          continue;
+        for (String name : names) {
+          if (name.indexOf('.') < 0)
+            hashes.add(directory.getName() + name);
+        }
+      }
+    }
+    return hashes;
+  }
+
+  public static String hash(byte[] bytes) {
+    return toHex(newDigest().digest(bytes));
+  }
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static String toHex(byte[] digest) {
+    char[] hex = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private boolean writeDelta(DataOutputStream output, byte[] bytes, String base) throws IOException {
+    if (!deltaEncoding || base == null || !contains(base) || fileFor(base).length() > maximumDeltaSize)
+      return false;
+    int depth = deltaDepth(base);
+    if (depth >= MAXIMUM_DELTA_CHAIN)
+      return false;
+    byte[] baseBytes = get(base);
+    int limit = Math.min(bytes.length, baseBytes.length);
+    int prefix = 0;
+    while (prefix < limit && bytes[prefix] == baseBytes[prefix])
+      prefix++;
+    int suffix = 0;
+    while (suffix < limit - prefix && bytes[bytes.length - 1 - suffix] == baseBytes[baseBytes.length - 1 - suffix])
+      suffix++;
+    int middle = bytes.length - prefix - suffix;
+    if (middle > bytes.length / 2)
+      return false;
+    output.write(DELTA);
+    output.writeByte(depth + 1);
+    output.writeUTF(base);
+    output.writeInt(prefix);
+    output.writeInt(suffix);
+    deflate(output, bytes, prefix, middle);
+    return true;
+  }
+
+  private void writeFull(DataOutputStream output, byte[] bytes) throws IOException {
+    output.write(FULL);
+    deflate(output, bytes, 0, bytes.length);
+  }
+
+  private int deltaDepth(String hash) throws IOException {
+    DataInputStream input = open(hash);
+    try {
+      return input.read() == DELTA ? input.readByte() : 0;
+    } finally {
+      input.close();
+    }
+  }
+
+  private void deflate(DataOutputStream output, byte[] bytes, int offset, int length) throws IOException {
+    DeflaterOutputStream deflater = new DeflaterOutputStream(output);
+    deflater.write(bytes, offset, length);
+    deflater.finish();
+  }
+
+  private byte[] inflate(InputStream input) throws IOException {
+    InflaterInputStream inflater = new InflaterInputStream(input);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inflater.read(buffer)) != -1)
+      bytes.write(buffer, 0, read);
+    return bytes.toByteArray();
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    InputStream input = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1)
+        bytes.write(buffer, 0, read);
+      return bytes.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+
+  private DataInputStream open(String hash) throws IOException {
+    try {
+      return new DataInputStream(new BufferedInputStream(new FileInputStream(fileFor(hash))));
+    } catch (FileNotFoundException e) {
+      throw new IOException("There is no blob " + hash);
+    }
+  }
+
+  private File fileFor(String hash) {
+    return new File(new File(objects, hash.substring(0, 2)), hash.substring(2));
+  }
+}
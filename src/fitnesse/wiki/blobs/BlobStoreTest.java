@@ -0,0 +1,114 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import util.FileUtil;
+
+public class BlobStoreTest extends TestCase {
+  private File directory = new File("testDir");
+  private BlobStore store;
+
+  public void setUp() throws Exception {
+    directory.mkdirs();
+    store = new BlobStore(directory, true);
+  }
+
+  public void tearDown() throws Exception {
+    FileUtil.deleteFileSystemDirectory(directory);
+  }
+
+  public void testBlobIsStoredUnderItsHash() throws Exception {
+    String hash = store.put(bytes("some content"), null);
+    assertEquals(BlobStore.hash(bytes("some content")), hash);
+    assertEquals(40, hash.length());
+    assertTrue(store.contains(hash));
+    assertEquals("some content", string(store.get(hash)));
+  }
+
+  public void testSameContentIsStoredOnce() throws Exception {
+    String first = store.put(bytes("some content"), null);
+    String second = store.put(bytes("some content"), null);
+    assertEquals(first, second);
+    assertEquals(1, store.list().size());
+  }
+
+  public void testSmallChangeIsStoredAsDelta() throws Exception {
+    String base = store.put(bytes(longText("middle")), null);
+    String changed = store.put(bytes(longText("changed middle")), base);
+    assertEquals(base, store.getBase(changed));
+    assertNull(store.getBase(base));
+    assertEquals(longText("changed middle"), string(store.get(changed)));
+  }
+
+  public void testUnrelatedContentIsStoredInFull() throws Exception {
+    String base = store.put(bytes(longText("middle")), null);
+    String other = store.put(bytes("something else entirely"), base);
+    assertNull(store.getBase(other));
+  }
+
+  public void testDeltaChainsAreLimited() throws Exception {
+    String hash = store.put(bytes(longText("0")), null);
+    for (int i = 1; i <= BlobStore.MAXIMUM_DELTA_CHAIN + 1; i++)
+      hash = store.put(bytes(longText(Integer.toString(i))), hash);
+    assertNull(store.getBase(hash));
+    assertEquals(longText(Integer.toString(BlobStore.MAXIMUM_DELTA_CHAIN + 1)), string(store.get(hash)));
+  }
+
+  public void testDeltaEncodingCanBeTurnedOff() throws Exception {
+    BlobStore fullStore = new BlobStore(directory, false);
+    String base = fullStore.put(bytes(longText("middle")), null);
+    String changed = fullStore.put(bytes(longText("changed middle")), base);
+    assertNull(fullStore.getBase(changed));
+  }
+
+  public void testRemovedBlobIsGone() throws Exception {
+    String hash = store.put(bytes("some content"), null);
+    store.remove(hash);
+    assertFalse(store.contains(hash));
+    assertTrue(store.list().isEmpty());
+  }
+
+  public void testLargeFileIsStreamedIntoTheStore() throws Exception {
+    int maximumDeltaSize = BlobStore.maximumDeltaSize;
+    BlobStore.maximumDeltaSize = 100;
+    try {
+      File source = new File(directory, "source");
+      FileUtil.createFile(source, longText("middle"));
+      String base = store.put(bytes(longText("base")), null);
+      String hash = store.put(source, BlobStore.hash(bytes(longText("middle"))), base);
+      assertEquals(BlobStore.hash(bytes(longText("middle"))), hash);
+      assertNull(store.getBase(hash));
+      assertEquals(longText("middle"), string(store.get(hash)));
+      assertTrue(source.exists());
+    } finally {
+      BlobStore.maximumDeltaSize = maximumDeltaSize;
+    }
+  }
+
+  public void testSmallFileIsDeltaEncoded() throws Exception {
+    File source = new File(directory, "source");
+    FileUtil.createFile(source, longText("changed middle"));
+    String base = store.put(bytes(longText("middle")), null);
+    String hash = store.put(source, BlobStore.hash(bytes(longText("changed middle"))), base);
+    assertEquals(base, store.getBase(hash));
+    assertEquals(longText("changed middle"), string(store.get(hash)));
+  }
+
+  private String longText(String middle) {
+    char[] padding = new char[1000];
+    Arrays.fill(padding, 'x');
+    return new String(padding) + middle + new String(padding);
+  }
+
+  private byte[] bytes(String s) throws Exception {
+    return s.getBytes("UTF-8");
+  }
+
+  private String string(byte[] bytes) throws Exception {
+    return new String(bytes, "UTF-8");
+  }
+}
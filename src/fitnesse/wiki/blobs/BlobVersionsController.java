@@ -0,0 +1,200 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.NoSuchVersionException;
+import fitnesse.wiki.NullVersionsController;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PageVersionPruner;
+import fitnesse.wiki.VersionInfo;
+import fitnesse.wiki.WikiPage;
+import fitnesse.wiki.WikiPageProperties;
+import util.FileUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Keeps page versions in a BlobStore shared by the whole wiki instead of in
+ * a zip file per version.  Identical content is stored once, and with delta
+ * encoding (the default) a changed page is stored as its difference from
+ * the previous version.  Each page lists its versions in a VersionIndex, so
+ * reading the history of a page is a single small read.
+ * <p/>
+ * A version holds the content.txt and properties.xml of the page.  The store
+ * is the .versions directory of the root page unless VersionsStoreDirectory
+ * is set; VersionsDeltaEncoding=false turns delta encoding off.  Existing zip
+ * versions are moved into the store, and blobs no version refers to any
+ * more are deleted, by VersionStoreTool.
+ */
+public class BlobVersionsController extends NullVersionsController {
+  public static final String STORE_DIRECTORY = "VersionsStoreDirectory";
+  public static final String DELTA_ENCODING = "VersionsDeltaEncoding";
+  public static final String DEFAULT_STORE_DIRECTORY = ".versions";
+
+  private static final String CONTENT_FILE = "content.txt";
+  private static final String PROPERTIES_FILE = "properties.xml";
+
+  private final String storeDirectory;
+  private final boolean deltaEncoding;
+  private BlobStore store;
+
+  public BlobVersionsController() {
+    this(new Properties());
+  }
+
+  public BlobVersionsController(final Properties properties) {
+    storeDirectory = properties.getProperty(STORE_DIRECTORY);
+    deltaEncoding = !"false".equalsIgnoreCase(properties.getProperty(DELTA_ENCODING));
+  }
+
+  public PageData getRevisionData(final FileSystemPage page, final String label) {
+    try {
+      final VersionIndex index = readIndex(page);
+      final VersionIndex.Entry entry = index.find(label);
+      if (entry == null) {
+        throw new NoSuchVersionException("There is no version '" + label + "'");
+      }
+      final BlobStore store = getStore(page);
+      final PageData data = new PageData(page);
+      data.setContent(entry.content == null ? "" : new String(store.get(entry.content), "UTF-8"));
+      if (entry.properties != null) {
+        data.setProperties(new WikiPageProperties(new ByteArrayInputStream(store.get(entry.properties))));
+      }
+      data.addVersions(versionsIn(index));
+      return data;
+    } catch (NoSuchVersionException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public Collection<VersionInfo> history(final FileSystemPage page) {
+    try {
+      return versionsIn(readIndex(page));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public boolean isRevisionControlEnabled() {
+    return true;
+  }
+
+  public boolean isExternalRevisionControlEnabled() {
+    return false;
+  }
+
+  public synchronized VersionInfo makeVersion(final FileSystemPage page, final PageData data) {
+    final File directory = new File(page.getFileSystemPath());
+    final File content = new File(directory, CONTENT_FILE);
+    final File properties = new File(directory, PROPERTIES_FILE);
+    if (!content.exists() && !properties.exists()) {
+      return new VersionInfo("first_commit", "", new Date());
+    }
+    try {
+      final VersionInfo version = makeVersionInfo(data);
+      final VersionIndex index = new VersionIndex(directory);
+      final VersionIndex.Entry previous = index.last();
+      final BlobStore store = getStore(page);
+      final String contentHash = storeFile(store, content, previous == null ? null : previous.content);
+      final String propertiesHash = storeFile(store, properties, previous == null ? null : previous.properties);
+      index.add(new VersionIndex.Entry(version.getName(), contentHash, propertiesHash));
+      index.save();
+      return new VersionInfo(version.getName());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public synchronized void prune(final FileSystemPage page) {
+    try {
+      final VersionIndex index = readIndex(page);
+      final List<VersionInfo> expired = PageVersionPruner.findExpiredVersions(versionsIn(index));
+      for (VersionInfo version : expired) {
+        index.remove(version.getName());
+      }
+      if (!expired.isEmpty()) {
+        index.save();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public synchronized void removeVersion(final FileSystemPage page, final String versionName) {
+    try {
+      final VersionIndex index = readIndex(page);
+      if (index.remove(versionName)) {
+        index.save();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  synchronized BlobStore getStore(final FileSystemPage page) {
+    if (store == null) {
+      store = createStore(storeDirectory, deltaEncoding, new File(rootDirectoryOf(page)));
+    }
+    return store;
+  }
+
+  /**
+   * The store configured by the given plugins.properties settings for the
+   * wiki whose root page is in rootDirectory.
+   */
+  static BlobStore createStore(final Properties properties, final File rootDirectory) {
+    return createStore(properties.getProperty(STORE_DIRECTORY),
+      !"false".equalsIgnoreCase(properties.getProperty(DELTA_ENCODING)), rootDirectory);
+  }
+
+  private static BlobStore createStore(final String storeDirectory, final boolean deltaEncoding, final File rootDirectory) {
+    final File directory = storeDirectory != null ? new File(storeDirectory) :
+      new File(rootDirectory, DEFAULT_STORE_DIRECTORY);
+    return new BlobStore(directory, deltaEncoding);
+  }
+
+  private String rootDirectoryOf(final FileSystemPage page) {
+    try {
+      final WikiPage root = page.getPageCrawler().getRoot(page);
+      return root instanceof FileSystemPage ? ((FileSystemPage) root).getFileSystemPath() : page.getFileSystemPath();
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private String storeFile(final BlobStore store, final File file, final String base) throws Exception {
+    return file.exists() ? store.put(FileUtil.getFileBytes(file), base) : null;
+  }
+
+  private VersionIndex readIndex(final FileSystemPage page) throws IOException {
+    return new VersionIndex(new File(page.getFileSystemPath()));
+  }
+
+  private Set<VersionInfo> versionsIn(final VersionIndex index) {
+    final Set<VersionInfo> versions = new HashSet<VersionInfo>();
+    for (VersionIndex.Entry entry : index.getEntries()) {
+      versions.add(new VersionInfo(entry.name));
+    }
+    return versions;
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName();
+  }
+
+  public String getControllerName() {
+    return "Content-Addressed Version History";
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import util.DiskFileSystem;
+import util.FileUtil;
+import fitnesse.ComponentFactory;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.NoSuchVersionException;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PageVersionPruner;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.VersionInfo;
+
+public class BlobVersionsControllerTest extends TestCase {
+  private FileSystemPage root;
+  private FileSystemPage page;
+  private int daysTillVersionsExpire;
+
+  public void setUp() throws Exception {
+    daysTillVersionsExpire = PageVersionPruner.daysTillVersionsExpire;
+    Properties properties = new Properties();
+    properties.setProperty(ComponentFactory.VERSIONS_CONTROLLER, BlobVersionsController.class.getName());
+    root = new FileSystemPage("testDir", "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+    page = (FileSystemPage) root.getPageCrawler().addPage(root, PathParser.parse("PageOne"), "original content");
+  }
+
+  public void tearDown() throws Exception {
+    PageVersionPruner.daysTillVersionsExpire = daysTillVersionsExpire;
+    FileUtil.deleteFileSystemDirectory("testDir");
+  }
+
+  public void testVersionHoldsThePreviousContent() throws Exception {
+    VersionInfo version = commit("new content");
+
+    PageData versionData = page.getDataVersion(version.getName());
+    assertEquals("original content", versionData.getContent());
+    assertSame(page, versionData.getWikiPage());
+    assertEquals("new content", page.getData().getContent());
+  }
+
+  public void testHistoryComesFromTheIndex() throws Exception {
+    VersionInfo first = commit("second content");
+    VersionInfo second = commit("third content");
+
+    Set<VersionInfo> versions = page.getData().getVersions();
+    assertEquals(2, versions.size());
+    assertTrue(versions.contains(first));
+    assertTrue(versions.contains(second));
+    assertTrue(new File(page.getFileSystemPath(), VersionIndex.FILE_NAME).exists());
+    assertEquals(0, new File(page.getFileSystemPath()).list(new java.io.FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".zip");
+      }
+    }).length);
+  }
+
+  public void testIdenticalVersionsShareBlobs() throws Exception {
+    commit("other content");
+    commit("original content");
+    commit("other content");
+    BlobStore store = new BlobStore(new File(root.getFileSystemPath(), BlobVersionsController.DEFAULT_STORE_DIRECTORY), true);
+    assertEquals(3, store.list().size());
+  }
+
+  public void testPropertiesAreVersioned() throws Exception {
+    PageData data = page.getData();
+    data.setAttribute("MyProp", "my value");
+    page.commit(data);
+    data = page.getData();
+    data.removeAttribute("MyProp");
+    VersionInfo version = page.commit(data);
+
+    assertEquals("my value", page.getDataVersion(version.getName()).getAttribute("MyProp"));
+  }
+
+  public void testUnicodeInVersions() throws Exception {
+    FileSystemPage unicodePage = (FileSystemPage) root.getPageCrawler().addPage(root, PathParser.parse("SomePage"), "몀몁몂몃");
+    PageData data = unicodePage.getData();
+    data.setContent("blah");
+    VersionInfo version = unicodePage.commit(data);
+    assertEquals("몀몁몂몃", unicodePage.getDataVersion(version.getName()).getContent());
+  }
+
+  public void testRemovedVersionIsGone() throws Exception {
+    VersionInfo version = commit("new content");
+    new BlobVersionsController().removeVersion(page, version.getName());
+    assertTrue(new BlobVersionsController().history(page).isEmpty());
+    try {
+      page.getDataVersion(version.getName());
+      fail("a NoSuchVersionException should have been thrown");
+    } catch (NoSuchVersionException e) {
+      assertEquals("There is no version '" + version.getName() + "'", e.getMessage());
+    }
+  }
+
+  public void testExpiredVersionsArePruned() throws Exception {
+    PageVersionPruner.daysTillVersionsExpire = 3;
+    BlobVersionsController controller = new BlobVersionsController();
+    PageData data = page.getData();
+    for (String date : new String[]{"20031213000000", "20031214000000", "20031215000000", "20031216000000"}) {
+      data.getProperties().setLastModificationTime(VersionInfo.makeVersionTimeFormat().parse(date));
+      controller.makeVersion(page, data);
+    }
+    controller.prune(page);
+
+    Collection<VersionInfo> versions = controller.history(page);
+    assertEquals(3, versions.size());
+    for (VersionInfo version : versions)
+      assertFalse(version.getName().endsWith("20031213000000"));
+  }
+
+  private VersionInfo commit(String content) throws Exception {
+    PageData data = page.getData();
+    data.setContent(content);
+    return page.commit(data);
+  }
+}
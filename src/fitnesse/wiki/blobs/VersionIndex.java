@@ -0,0 +1,116 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The versions of one page, oldest first, as kept in the versions.idx file of
+ * the page directory: one line per version, with the version name and the
+ * hashes of the content.txt and properties.xml blobs of that version.  The
+ * file is rewritten through a temporary file and a rename, so that a reader
+ * never sees half an index, and so that the modification time of the page
+ * directory changes with every new version, as it did with zip files.
+ */
+public class VersionIndex {
+  public static final String FILE_NAME = "versions.idx";
+  private static final String NO_BLOB = "-";
+
+  private final File file;
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  public VersionIndex(File pageDirectory) throws IOException {
+    file = new File(pageDirectory, FILE_NAME);
+    if (file.exists())
+      read();
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  public Entry find(String name) {
+    for (Entry entry : entries) {
+      if (entry.name.equals(name))
+        return entry;
+    }
+    return null;
+  }
+
+  public Entry last() {
+    return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+  }
+
+  public void add(Entry entry) {
+    entries.add(entry);
+  }
+
+  public boolean remove(String name) {
+    Entry entry = find(name);
+    return entry != null && entries.remove(entry);
+  }
+
+  public void save() throws IOException {
+    if (entries.isEmpty()) {
+      file.delete();
+      return;
+    }
+    File temporary = new File(file.getParentFile(), FILE_NAME + ".tmp");
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+    try {
+      for (Entry entry : entries)
+        writer.write(entry.name + "\t" + orNone(entry.content) + "\t" + orNone(entry.properties) + "\n");
+    } finally {
+      writer.close();
+    }
+    if (!temporary.renameTo(file)) {
+      file.delete();
+      if (!temporary.renameTo(file))
+        throw new IOException("Could not write " + file);
+    }
+  }
+
+  private void read() throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t");
+        if (fields.length == 3)
+          entries.add(new Entry(fields[0], fromNone(fields[1]), fromNone(fields[2])));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static String orNone(String hash) {
+    return hash == null ? NO_BLOB : hash;
+  }
+
+  private static String fromNone(String field) {
+    return NO_BLOB.equals(field) ? null : field;
+  }
+
+  public static class Entry {
+    public final String name;
+    public final String content;
+    public final String properties;
+
+    public Entry(String name, String content, String properties) {
+      this.name = name;
+      this.content = content;
+      this.properties = properties;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import fitnesse.ComponentFactory;
+import fitnesse.wiki.VersionInfo;
+import fitnesse.wikitext.widgets.WikiWordWidget;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maintains the version store of a wiki that uses BlobVersionsController.
+ * Run it while FitNesse is stopped, from the directory FitNesse runs in:
+ * the store is found as FitNesse finds it, through the VersionsStoreDirectory
+ * and VersionsDeltaEncoding settings in the plugins.properties next to the
+ * root page directory.
+ * <p/>
+ * migrate moves the zip file versions of every page into the store and the
+ * version index of the page, and deletes the zip files (unless -k is given).
+ * collect deletes the blobs that no version refers to any more, such as the
+ * blobs of pruned versions.
+ * <p/>
+ * usage: VersionStoreTool migrate|collect rootPageDirectory [-k]
+ */
+public class VersionStoreTool {
+  private static final Pattern VERSION_FILE = Pattern.compile("(\\S+)?\\d+\\.zip");
+
+  private final File rootDirectory;
+  private final BlobStore store;
+  private int pages;
+  private int versions;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2 || !(args[0].equals("migrate") || args[0].equals("collect"))) {
+      System.err.println("usage: VersionStoreTool migrate|collect rootPageDirectory [-k]");
+      System.exit(1);
+    }
+    File rootDirectory = new File(args[1]);
+    Properties properties = new Properties();
+    new ComponentFactory(rootDirectory.getAbsoluteFile().getParent(), properties);
+    VersionStoreTool tool = new VersionStoreTool(rootDirectory,
+      BlobVersionsController.createStore(properties, rootDirectory));
+    if (args[0].equals("migrate")) {
+      boolean keepZipFiles = args.length > 2 && args[2].equals("-k");
+      tool.migrate(keepZipFiles);
+      System.out.println(String.format("Migrated %d versions of %d pages", tool.versions, tool.pages));
+    } else {
+      int removed = tool.collect();
+      System.out.println(String.format("Removed %d unused blobs", removed));
+    }
+  }
+
+  public VersionStoreTool(File rootDirectory, BlobStore store) {
+    this.rootDirectory = rootDirectory;
+    this.store = store;
+  }
+
+  public void migrate(boolean keepZipFiles) throws IOException {
+    for (File pageDirectory : pageDirectories())
+      migratePage(pageDirectory, keepZipFiles);
+  }
+
+  public int collect() throws IOException {
+    Set<String> used = new HashSet<String>();
+    for (File pageDirectory : pageDirectories()) {
+      for (VersionIndex.Entry entry : new VersionIndex(pageDirectory).getEntries()) {
+        markUsed(entry.content, used);
+        markUsed(entry.properties, used);
+      }
+    }
+    int removed = 0;
+    for (String hash : store.list()) {
+      if (!used.contains(hash)) {
+        store.remove(hash);
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  private void markUsed(String hash, Set<String> used) throws IOException {
+    while (hash != null && used.add(hash))
+      hash = store.getBase(hash);
+  }
+
+  private void migratePage(File pageDirectory, boolean keepZipFiles) throws IOException {
+    List<File> zipFiles = versionFiles(pageDirectory);
+    if (zipFiles.isEmpty())
+      return;
+    VersionIndex index = new VersionIndex(pageDirectory);
+    List<VersionIndex.Entry> migrated = new ArrayList<VersionIndex.Entry>();
+    String content = null;
+    String properties = null;
+    for (File zipFile : zipFiles) {
+      String name = versionNameOf(zipFile);
+      if (index.find(name) != null)
+        continue;
+      ZipFile zip = new ZipFile(zipFile);
+      try {
+        content = storeEntry(zip, "content.txt", content);
+        properties = storeEntry(zip, "properties.xml", properties);
+      } finally {
+        zip.close();
+      }
+      migrated.add(new VersionIndex.Entry(name, content, properties));
+    }
+    index.getEntries().addAll(0, migrated);
+    versions += migrated.size();
+    index.save();
+    pages++;
+    if (!keepZipFiles) {
+      for (File zipFile : zipFiles)
+        zipFile.delete();
+    }
+  }
+
+  private String storeEntry(ZipFile zip, String entryName, String base) throws IOException {
+    ZipEntry entry = zip.getEntry(entryName);
+    if (entry == null)
+      return null;
+    InputStream input = zip.getInputStream(entry);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1)
+        bytes.write(buffer, 0, read);
+      return store.put(bytes.toByteArray(), base);
+    } finally {
+      input.close();
+    }
+  }
+
+  private List<File> versionFiles(File pageDirectory) {
+    List<File> zipFiles = new ArrayList<File>();
+    File[] files = pageDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && VERSION_FILE.matcher(file.getName()).matches())
+          zipFiles.add(file);
+      }
+    }
+    Collections.sort(zipFiles, new Comparator<File>() {
+      public int compare(File a, File b) {
+        int byTime = versionOf(a).compareTo(versionOf(b));
+        return byTime != 0 ? byTime : a.getName().compareTo(b.getName());
+      }
+    });
+    return zipFiles;
+  }
+
+  private static VersionInfo versionOf(File zipFile) {
+    return new VersionInfo(versionNameOf(zipFile));
+  }
+
+  private static String versionNameOf(File zipFile) {
+    return zipFile.getName().substring(0, zipFile.getName().length() - 4);
+  }
+
+  private List<File> pageDirectories() {
+    List<File> directories = new ArrayList<File>();
+    List<File> pending = new ArrayList<File>(Arrays.asList(rootDirectory));
+    while (!pending.isEmpty()) {
+      File directory = pending.remove(pending.size() - 1);
+      directories.add(directory);
+      File[] files = directory.listFiles();
+      if (files == null)
+        continue;
+      for (File file : files) {
+        if (file.isDirectory() && WikiWordWidget.isWikiWord(file.getName()))
+          pending.add(file);
+      }
+    }
+    return directories;
+  }
+}
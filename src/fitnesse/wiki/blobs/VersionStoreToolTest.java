@@ -0,0 +1,101 @@
+// Copyright (C) 2003-2009 by Object Mentor, Inc. All rights reserved.
+// Released under the terms of the CPL Common Public License version 1.0.
+package fitnesse.wiki.blobs;
+
+import java.io.File;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import util.DiskFileSystem;
+import util.FileUtil;
+import fitnesse.ComponentFactory;
+import fitnesse.wiki.FileSystemPage;
+import fitnesse.wiki.PageData;
+import fitnesse.wiki.PathParser;
+import fitnesse.wiki.VersionInfo;
+import fitnesse.wiki.WikiPage;
+
+public class VersionStoreToolTest extends TestCase {
+  private File rootDirectory = new File("testDir/RooT");
+  private VersionStoreTool tool;
+
+  public void setUp() throws Exception {
+    tool = new VersionStoreTool(rootDirectory,
+      new BlobStore(new File(rootDirectory, BlobVersionsController.DEFAULT_STORE_DIRECTORY), true));
+  }
+
+  public void tearDown() throws Exception {
+    FileUtil.deleteFileSystemDirectory("testDir");
+  }
+
+  public void testZipVersionsAreMigrated() throws Exception {
+    FileSystemPage zipRoot = new FileSystemPage("testDir", "RooT");
+    WikiPage page = zipRoot.getPageCrawler().addPage(zipRoot, PathParser.parse("PageOne.ChildOne"), "first");
+    VersionInfo first = commit(page, "second");
+    VersionInfo second = commit(page, "third");
+
+    tool.migrate(false);
+
+    File pageDirectory = new File(rootDirectory, "PageOne/ChildOne");
+    assertFalse(new File(pageDirectory, first.getName() + ".zip").exists());
+    WikiPage blobPage = blobRootPage().getChildPage("PageOne").getChildPage("ChildOne");
+    assertEquals(2, blobPage.getData().getVersions().size());
+    assertEquals("first", blobPage.getDataVersion(first.getName()).getContent());
+    assertEquals("second", blobPage.getDataVersion(second.getName()).getContent());
+  }
+
+  public void testZipFilesCanBeKept() throws Exception {
+    FileSystemPage zipRoot = new FileSystemPage("testDir", "RooT");
+    WikiPage page = zipRoot.getPageCrawler().addPage(zipRoot, PathParser.parse("PageOne"), "first");
+    VersionInfo version = commit(page, "second");
+
+    tool.migrate(true);
+    assertTrue(new File(rootDirectory, "PageOne/" + version.getName() + ".zip").exists());
+    assertTrue(new File(rootDirectory, "PageOne/" + VersionIndex.FILE_NAME).exists());
+  }
+
+  public void testUnusedBlobsAreCollected() throws Exception {
+    FileSystemPage root = blobRootPage();
+    FileSystemPage page = (FileSystemPage) root.getPageCrawler().addPage(root, PathParser.parse("PageOne"), "first");
+    VersionInfo first = commit(page, "second");
+    VersionInfo second = commit(page, "third");
+    new BlobVersionsController().removeVersion(page, first.getName());
+
+    assertTrue(tool.collect() > 0);
+    assertEquals(0, tool.collect());
+    assertEquals("second", page.getDataVersion(second.getName()).getContent());
+  }
+
+  public void testStoreIsFoundThroughThePluginsProperties() throws Exception {
+    FileSystemPage zipRoot = new FileSystemPage("testDir", "RooT");
+    WikiPage page = zipRoot.getPageCrawler().addPage(zipRoot, PathParser.parse("PageOne"), "first");
+    VersionInfo version = commit(page, "second");
+    FileUtil.createFile("testDir/" + ComponentFactory.PROPERTIES_FILE,
+      BlobVersionsController.STORE_DIRECTORY + "=testDir/store\n" +
+      BlobVersionsController.DELTA_ENCODING + "=false\n");
+
+    VersionStoreTool.main(new String[]{"migrate", "testDir/RooT"});
+
+    assertTrue(new File("testDir/store/objects").isDirectory());
+    assertFalse(new File(rootDirectory, BlobVersionsController.DEFAULT_STORE_DIRECTORY).exists());
+    Properties properties = new Properties();
+    properties.setProperty(BlobVersionsController.STORE_DIRECTORY, "testDir/store");
+    WikiPage blobPage = blobRootPage(properties).getChildPage("PageOne");
+    assertEquals("first", blobPage.getDataVersion(version.getName()).getContent());
+  }
+
+  private FileSystemPage blobRootPage() throws Exception {
+    return blobRootPage(new Properties());
+  }
+
+  private FileSystemPage blobRootPage(Properties properties) throws Exception {
+    properties.setProperty(ComponentFactory.VERSIONS_CONTROLLER, BlobVersionsController.class.getName());
+    return new FileSystemPage("testDir", "RooT", new DiskFileSystem(), new ComponentFactory(properties));
+  }
+
+  private VersionInfo commit(WikiPage page, String content) throws Exception {
+    PageData data = page.getData();
+    data.setContent(content);
+    return page.commit(data);
+  }
+}
@@ -222,22 +222,6 @@ public class ZipFileVersionsController extends NullVersionsController {
     return getFileSystemPath(page) + "/" + name + ".zip";
   }
 
-  private VersionInfo makeVersionInfo(final PageData data) {
-    try {
-      Date time;
-      time = data.getProperties().getLastModificationTime();
-      String versionName = VersionInfo.nextId() + "-" + dateFormat().format(time);
-      final String user = data.getAttribute(PageData.LAST_MODIFYING_USER);
-      if (user != null && !"".equals(user)) {
-        versionName = user + "-" + versionName;
-      }
-
-      return new VersionInfo(versionName, user, time);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
-  }
-
   private String makeVersionName(final File file) {
     final String name = file.getName();
     return name.substring(0, name.length() - 4);
@@ -7,9 +7,8 @@ import fitnesse.wikitext.widgets.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -65,10 +64,10 @@ public class WidgetBuilder {
     VariableWidget.class
   );
 
-  private List<WidgetMatcher> widgetMatchers = new ArrayList<WidgetMatcher>();
+  private final List<Class<?>> widgetClasses = new ArrayList<Class<?>>();
+  private volatile WidgetScanner scanner;
 
-  private List<WidgetInterceptor> interceptors = new LinkedList<WidgetInterceptor>();
-  private final ReentrantLock widgetDataArraylock = new ReentrantLock();
+  private final List<WidgetInterceptor> interceptors = new CopyOnWriteArrayList<WidgetInterceptor>();
 
   public WidgetBuilder() {
   }
@@ -79,8 +78,9 @@ public class WidgetBuilder {
     }
   }
 
-  public final void addWidgetClass(Class<?> widgetClass) {
-    widgetMatchers.add(new WidgetMatcher(widgetClass));
+  public final synchronized void addWidgetClass(Class<?> widgetClass) {
+    widgetClasses.add(widgetClass);
+    scanner = null;
   }
 
   public void addChildWidgets(String value, ParentWidget parent) {
@@ -88,57 +88,77 @@ public class WidgetBuilder {
   }
 
   public void addChildWidgets(String value, ParentWidget parent, boolean includeTextWidgets) {
-    widgetDataArraylock.lock();
-    WidgetMatch firstMatch = findFirstMatch(value);
-    try {
-      if (firstMatch != null) {
-        String preString = value.substring(0, firstMatch.matchPosition());
-        if (!"".equals(preString) && includeTextWidgets) {
-          new TextWidget(parent, preString);
-        }
-        firstMatch.constructWidget(parent, interceptors);
-        String postString = value.substring(firstMatch.matchEnd());
-        if (!postString.equals("")) {
-          addChildWidgets(postString, parent, includeTextWidgets);
-        }
-      } else if (includeTextWidgets)
-        new TextWidget(parent, value);
-    }
-    finally {
-      widgetDataArraylock.unlock();
+    WidgetScanner scanner = getScanner();
+    Matcher matcher = scanner.matcher(value);
+    int position = 0;
+    int length = value.length();
+    while (position < length && matcher != null) {
+      matcher.region(position, length);
+      if (!matcher.find())
+        break;
+      if (matcher.start() > position && includeTextWidgets)
+        new TextWidget(parent, value.substring(position, matcher.start()));
+      scanner.constructWidget(matcher, parent, interceptors);
+      position = matcher.end();
     }
+    if (includeTextWidgets && (position < length || length == 0))
+      new TextWidget(parent, value.substring(position));
   }
 
   public Class<?> findWidgetClassMatching(String value) {
-    WidgetMatch firstMatch = findFirstMatch(value);
-    return firstMatch == null ? null : firstMatch.getWidgetClass();
-  }
-
-  private WidgetMatch findFirstMatch(String value) {
-    WidgetMatch firstMatch = null;
-    for (WidgetMatcher widgetMatcher : this.widgetMatchers) {
-      WidgetMatch widgetMatch = widgetMatcher.matches(value);
-      if (widgetMatch != null) {
-        if (firstMatch == null)
-          firstMatch = widgetMatch;
-        else if (widgetMatch.matchIsBefore(firstMatch))
-          firstMatch = widgetMatch;
-      }
-    }
-    return firstMatch;
+    WidgetScanner scanner = getScanner();
+    Matcher matcher = scanner.matcher(value);
+    if (matcher == null || !matcher.find())
+      return null;
+    return scanner.widgetClassFor(matcher);
   }
 
   public void addInterceptor(WidgetInterceptor interceptor) {
     interceptors.add(interceptor);
   }
 
-  private static class WidgetMatcher {
-    private Class<?> widgetClass;
-    private Pattern pattern;
+  private WidgetScanner getScanner() {
+    WidgetScanner current = scanner;
+    if (current == null)
+      current = buildScanner();
+    return current;
+  }
 
-    public WidgetMatcher(Class<?> widgetClass) {
-      this.widgetClass = widgetClass;
-      pattern = Pattern.compile(getRegexpFromWidgetClass(widgetClass), Pattern.DOTALL | Pattern.MULTILINE);
+  private synchronized WidgetScanner buildScanner() {
+    if (scanner == null)
+      scanner = new WidgetScanner(widgetClasses);
+    return scanner;
+  }
+
+  // Every widget's REGEXP becomes one capturing alternative of a single pattern.
+  // At each position the alternatives are tried in the order the widgets were
+  // added, so one find() yields the earliest match with ties going to the
+  // first widget, exactly as running each REGEXP separately would.  Matching
+  // within a region of the text keeps ^ and \b anchored to the start of the
+  // remaining text, as they were when the remainder was a substring.
+  private static class WidgetScanner {
+    private final Class<?>[] widgetClasses;
+    private final Constructor<?>[] constructors;
+    private final int[] groups;
+    private final Pattern pattern;
+
+    public WidgetScanner(List<Class<?>> widgetClassList) {
+      int size = widgetClassList.size();
+      widgetClasses = widgetClassList.toArray(new Class<?>[size]);
+      constructors = new Constructor<?>[size];
+      groups = new int[size];
+      StringBuilder combined = new StringBuilder();
+      int group = 1;
+      for (int i = 0; i < size; i++) {
+        String regexp = getRegexpFromWidgetClass(widgetClasses[i]);
+        if (i > 0)
+          combined.append('|');
+        combined.append('(').append(regexp).append(')');
+        groups[i] = group;
+        group += 1 + Pattern.compile(regexp).matcher("").groupCount();
+        constructors[i] = getConstructor(widgetClasses[i]);
+      }
+      pattern = size == 0 ? null : Pattern.compile(combined.toString(), Pattern.DOTALL | Pattern.MULTILINE);
     }
 
     public static String getRegexpFromWidgetClass(Class<?> widgetClass) {
@@ -153,56 +173,46 @@ public class WidgetBuilder {
       return regexp;
     }
 
-    public WidgetMatch matches(String value) {
-      Matcher matcher = pattern.matcher(value);
-      WidgetMatch match = null;
-      if (matcher.find()) {
-        match = new WidgetMatch(widgetClass, matcher);
+    private static Constructor<?> getConstructor(Class<?> widgetClass) {
+      try {
+        return widgetClass.getConstructor(ParentWidget.class, String.class);
+      }
+      catch (NoSuchMethodException e) {
+        return null;
       }
-      return match;
-    }
-  }
-
-  private static class WidgetMatch {
-    private Class<?> widgetClass;
-    private Matcher match;
-
-    private WidgetMatch(Class<?> widgetClass, Matcher match) {
-      this.widgetClass = widgetClass;
-      this.match = match;
-    }
-
-    String matchingString() {
-      return match.group();
-    }
-
-    public int matchPosition() {
-      return match.start();
     }
 
-    public int matchEnd() {
-      return match.end();
+    public Matcher matcher(String value) {
+      return pattern == null ? null : pattern.matcher(value);
     }
 
-    public boolean matchIsBefore(WidgetMatch aMatch) {
-      return matchPosition() < aMatch.matchPosition();
+    private int widgetIndexFor(Matcher matcher) {
+      for (int i = 0; i < groups.length; i++) {
+        if (matcher.start(groups[i]) != -1)
+          return i;
+      }
+      throw new IllegalStateException("No widget matched " + matcher.group());
     }
 
-    public Class<?> getWidgetClass() {
-      return widgetClass;
+    public Class<?> widgetClassFor(Matcher matcher) {
+      return widgetClasses[widgetIndexFor(matcher)];
     }
 
-    private WikiWidget constructWidget(ParentWidget parent, List<WidgetInterceptor> interceptors) {
+    private WikiWidget constructWidget(Matcher matcher, ParentWidget parent, List<WidgetInterceptor> interceptors) {
+      int index = widgetIndexFor(matcher);
+      Class<?> widgetClass = widgetClasses[index];
+      String matchingString = matcher.group();
       try {
-        Constructor<?> widgetConstructor = widgetClass.getConstructor(ParentWidget.class, String.class);
-        WikiWidget widget = (WikiWidget) widgetConstructor.newInstance(parent, matchingString());
+        if (constructors[index] == null)
+          throw new NoSuchMethodException(widgetClass.getName() + ".<init>(ParentWidget, String)");
+        WikiWidget widget = (WikiWidget) constructors[index].newInstance(parent, matchingString);
         for (WidgetInterceptor i : interceptors) {
           i.intercept(widget);
         }
         return widget;
       }
       catch (Exception e) {
-        System.out.println("text = " + matchingString());
+        System.out.println("text = " + matchingString);
         RuntimeException exception = new RuntimeException("Widget Construction failed for " +
           widgetClass.getName() + "\n" + e.getMessage());
         exception.setStackTrace(e.getStackTrace());
@@ -206,6 +206,31 @@ public class WidgetBuilderTest extends TestCase {
       assertEquals(expectedText, ((TextWidget) widget).getText());
   }
 
+  @SuppressWarnings("unchecked")
+  public void testEarliestMatchWinsAndTiesGoToFirstWidgetAdded() throws Exception {
+    WidgetBuilder italicFirst = new WidgetBuilder(new Class[]{ItalicWidget.class, BoldWidget.class});
+    WidgetBuilder boldFirst = new WidgetBuilder(new Class[]{BoldWidget.class, ItalicWidget.class});
+    assertEquals(ItalicWidget.class, italicFirst.findWidgetClassMatching("'''text'''"));
+    assertEquals(BoldWidget.class, boldFirst.findWidgetClassMatching("'''text'''"));
+    assertEquals(ItalicWidget.class, boldFirst.findWidgetClassMatching("''one'' '''two'''"));
+    assertNull(boldFirst.findWidgetClassMatching("plain text"));
+  }
+
+  public void testLineAnchoredWidgetMatchesRightAfterPreviousWidget() throws Exception {
+    ParentWidget page = new WidgetRoot("WikiWord!c centered", mockSource);
+    assertEquals(2, page.numberOfChildren());
+    testWidgetClassAndText(page.nextChild(), WikiWordWidget.class, "WikiWord");
+    assertEquals(CenterWidget.class, page.nextChild().getClass());
+  }
+
+  public void testManyWidgetsOnOnePage() throws Exception {
+    StringBuffer text = new StringBuffer();
+    for (int i = 0; i < 20000; i++)
+      text.append("WikiWord ");
+    ParentWidget page = new WidgetRoot(text.toString(), mockSource);
+    assertEquals(40000, page.numberOfChildren());
+  }
+
   @SuppressWarnings("unchecked")
   public void testConcurrentAddWidgets() throws Exception {
     WidgetBuilder widgetBuilder = new WidgetBuilder(new Class[]{BoldWidget.class});
@@ -7,6 +7,7 @@ import java.util.Date;
 
 import fitnesse.html.HtmlUtil;
 import fitnesse.wiki.PageData;
+import fitnesse.wiki.RenderedHtmlCache;
 import fitnesse.wikitext.WikiWidget;
 
 //created by Jason Sypher
@@ -29,6 +30,7 @@ public class LastModifiedWidget extends WikiWidget {
   }
 
   public String render() throws Exception {
+    RenderedHtmlCache.uncacheable();
     PageData data = getWikiPage().getData();
     String formattedDate = formatDate(data.getProperties().getLastModificationTime());
     String user = data.getAttribute(PageData.LAST_MODIFYING_USER);
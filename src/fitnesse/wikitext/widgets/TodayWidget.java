@@ -7,6 +7,8 @@ import java.util.GregorianCalendar;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import fitnesse.wiki.RenderedHtmlCache;
+
 public class TodayWidget extends ParentWidget {
   public static final String REGEXP = "!today(?: +(?:-t|-xml|\\(.*\\)))?( +((\\-|\\+)\\d+))?";
   public static final Pattern PATTERN = Pattern.compile("!today( +(?:(-t)|(-xml)|\\((.*)\\)))?( +((\\-|\\+)\\d+))?");
@@ -45,6 +47,7 @@ public class TodayWidget extends ParentWidget {
   }
 
   public String render() throws Exception {
+    RenderedHtmlCache.uncacheable();
     Calendar cal = todayForTest != null ? todayForTest : GregorianCalendar.getInstance();
     cal.add(Calendar.DAY_OF_MONTH, dayDiff);
 
@@ -5,6 +5,7 @@ package fitnesse.wikitext.widgets;
 import fitnesse.FitNesseContext;
 import fitnesse.wiki.PageData;
 import fitnesse.wiki.PagePointer;
+import fitnesse.wiki.RenderedHtmlCache;
 import fitnesse.wiki.WikiPage;
 import fitnesse.wikitext.WidgetBuilder;
 
@@ -134,9 +135,16 @@ public class WidgetRoot extends ParentWidget {
     if (value == null)
       value = getVariableFromParentPages(key);
     if (value == null)
-      value = System.getenv(key);
+      value = getVariableFromEnvironment(key);
+    return value;
+  }
+
+  private String getVariableFromEnvironment(String key) {
+    String value = System.getenv(key);
     if (value == null)
       value = System.getProperty(key);
+    if (value != null)
+      RenderedHtmlCache.uncacheable();
     return value;
   }
 
@@ -163,6 +171,8 @@ public class WidgetRoot extends ParentWidget {
       value = Integer.toString(FitNesseContext.globalContext.port);
     else if (key.equals("FITNESSE_ROOTPATH"))
       value = FitNesseContext.globalContext.rootPath;
+    if (key.startsWith("FITNESSE_"))
+      RenderedHtmlCache.uncacheable();
     return value;
   }
 
@@ -21,6 +21,8 @@ public class WikiWordWidget extends TextWidget implements PageReferencer {
   public static final String SINGLE_WIKIWORD_REGEXP = "\\b[A-Z](?:[a-z0-9]+[A-Z][a-z0-9]*)+";
   public static final String REGEXP = "(?:[<>^.])?(?:" + SINGLE_WIKIWORD_REGEXP + "[.]?)+\\b";
   public static final String REGRACE_LINK = "REGRACE_LINK";
+  private static final Pattern wikiWordPattern = Pattern.compile(REGEXP);
+  private static final Pattern singleWikiWordPattern = Pattern.compile(SINGLE_WIKIWORD_REGEXP);
 
     public static String makeWikiWord(String input) {
         if (isWikiWord(input)) return input;
@@ -189,7 +191,7 @@ public class WikiWordWidget extends TextWidget implements PageReferencer {
   }
 
   public static boolean isWikiWord(String word) {
-    return Pattern.matches(REGEXP, word);
+    return wikiWordPattern.matcher(word).matches();
   }
 
   protected String expandPrefix(String theWord) throws Exception {
@@ -228,6 +230,6 @@ public class WikiWordWidget extends TextWidget implements PageReferencer {
   }
 
   public static boolean isSingleWikiWord(String s) {
-    return Pattern.matches(SINGLE_WIKIWORD_REGEXP, s);
+    return singleWikiWordPattern.matcher(s).matches();
   }
 }
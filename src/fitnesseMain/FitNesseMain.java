@@ -12,6 +12,7 @@ import fitnesse.responders.ResponderFactory;
 import fitnesse.responders.WikiImportTestEventListener;
 import fitnesse.responders.run.formatters.TestTextFormatter;
 import fitnesse.updates.UpdaterImplementation;
+import fitnesse.wiki.PageSearchIndex;
 import fitnesse.wiki.PageVersionPruner;
 import util.CommandLine;
 
@@ -63,10 +64,18 @@ public class FitNesseMain {
       printStartMessage(arguments, context);
       if (arguments.getCommand() != null) {
         executeSingleCommand(arguments, fitnesse, context);
+      } else {
+        buildSearchIndex(context);
       }
     }
   }
 
+  private static void buildSearchIndex(FitNesseContext context) throws Exception {
+    PageSearchIndex index = PageSearchIndex.forPage(context.root);
+    if (index != null)
+      index.buildInBackground();
+  }
+
   private static void executeSingleCommand(Arguments arguments, FitNesse fitnesse, FitNesseContext context) throws Exception {
     context.doNotChunk = true;
     TestTextFormatter.finalErrorCount = 0;
@@ -97,7 +106,7 @@ public class FitNesseMain {
       context.defaultNewPageContent = defaultNewPageContent;
     WikiPageFactory wikiPageFactory = new WikiPageFactory();
     context.responderFactory = new ResponderFactory(context.rootPagePath);
-    context.logger = makeLogger(arguments);
+    context.logger = makeLogger(arguments, componentFactory);
     context.authenticator = makeAuthenticator(arguments.getUserpass(),
       componentFactory);
     context.htmlPageFactory = componentFactory
@@ -113,6 +122,10 @@ public class FitNesseMain {
 
     context.root = wikiPageFactory.makeRootPage(context.rootPath,
       context.rootDirectoryName, componentFactory);
+    String searchIndexFile = componentFactory.getProperty(ComponentFactory.SEARCH_INDEX_FILE);
+    PageSearchIndex searchIndex = PageSearchIndex.forPage(context.root);
+    if (searchIndexFile != null && searchIndex != null)
+      searchIndex.setFile(new File(searchIndexFile));
 
     WikiImportTestEventListener.register();
 
@@ -145,9 +158,21 @@ public class FitNesseMain {
     return arguments;
   }
 
-  private static Logger makeLogger(Arguments arguments) {
+  private static Logger makeLogger(Arguments arguments, ComponentFactory componentFactory) {
     String logDirectory = arguments.getLogDirectory();
-    return logDirectory != null ? new Logger(logDirectory) : null;
+    if (logDirectory == null)
+      return null;
+    Logger logger = new Logger(logDirectory);
+    String rotateDaily = componentFactory.getProperty(ComponentFactory.LOG_ROTATE_DAILY);
+    if (rotateDaily != null)
+      logger.setRotateDaily(Boolean.parseBoolean(rotateDaily));
+    String maximumFileSize = componentFactory.getProperty(ComponentFactory.LOG_MAXIMUM_FILE_SIZE);
+    if (maximumFileSize != null)
+      logger.setMaximumFileSize(Long.parseLong(maximumFileSize));
+    String compress = componentFactory.getProperty(ComponentFactory.LOG_COMPRESS_ROTATED_FILES);
+    if (compress != null)
+      logger.setCompressRotatedFiles(Boolean.parseBoolean(compress));
+    return logger;
   }
 
   public static Authenticator makeAuthenticator(String authenticationParameter,